@@ -0,0 +1,17 @@
+#ifndef _TILEMAP_DELTA_H
+#define _TILEMAP_DELTA_H
+
+#include <types.h>
+
+/// Offset value ending the delta stream
+#define TILEMAP_DELTA_END_OF_STREAM 0xFFFF
+
+/// @brief Applies a tilemap delta stream (see TilemapDeltaManager.java) over the tilemap of the frame loaded 2 frames before.
+/// The stream is a list of runs: u16 byte offset of the run in the tilemap (row and column already multiplied), u16 words of 
+/// the run minus 1, and the words. An offset of TILEMAP_DELTA_END_OF_STREAM ends the stream.
+/// Only the changed cells are written, so out must hold the tilemap the delta was encoded against.
+/// @param in delta stream. Must be word aligned.
+/// @param out tilemap buffer of the same frame buffer. Must be word aligned.
+void tilemap_delta_apply (u8* in, u8* out);
+
+#endif // _TILEMAP_DELTA_H
@@ -44,6 +44,12 @@
 // This is the fixed RAM address for the tilemap buffer.
 #define RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS (MEMORY_HIGH - (MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES * MOVIE_FRAME_HEIGHT_IN_TILES * 2))
 
+#if MOVIE_FRAME_TILEMAP_DELTA
+// Tilemap delta frames only hold the cells changed against the frame loaded 2 frames before, so every frame buffer has its own tilemap buffer.
+// This one is for the odd frames and goes right below the one for the even frames.
+#define RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS_ODD (RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS - (MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES * MOVIE_FRAME_HEIGHT_IN_TILES * 2))
+#endif
+
 // NOT USED ANYMORE! We now have splitted every frame's tileset in 3 chunks and using VIDEO_FRAME_TILESET_CHUNK_SIZE instead.
 // LEGACY.
 // Number of Tiles to be transferred by DMA_flushQueue() with mandatory off/on VDP setting to speed up the transfer (otherwise it glitches up).
@@ -49,6 +49,7 @@ const tilesetStatsId = "tilesetStats_1"
 // Finally check the new TILESET_STATS_COLLECTOR's output stats to accomodate new tiles max chunk and total values.
 const enableTilesCacheStats = false;
 const loadTilesCache = true;
+const splitTilesCachePerRegion = false; // a TileSet per cache VRAM region, so the player loads every region with a single DMA
 const tilesCacheId = "tilesCache_movie1"; // this is also the name of the variable contaning the Tileset with the cached tiles (it keeps the case)
 // 1792 (which is BG_A address 0xE000/32) is the max amount of tiles we allow with the plane size of 64x32 and custom config of BG_B 
 // (Window plane too) and BG_A. Additionally, by moving the SAT into the HScroll address we have 127 free tiles between 0xF020 and 0xFFFF.
@@ -65,6 +66,12 @@ const cacheRangesInVRAM_fixed_str = cacheRangesInVRAM_fixed
                                         .map(range => `${range.start}-${range.length}`)
                                         .join(','); // Comma separated list of ranges
 
+// Cache VRAM regions in the order rescomp fills them: fixed ranges by starting index, then the variable region
+const cacheRegionsInVRAM = cacheRangesInVRAM_fixed
+                                        .filter(range => range.length > 0)
+                                        .sort((a, b) => a.start - b.start)
+                                        .concat(cacheTilesNum_var > 0 ? [ {start: cacheStartIndexInVRAM_var, length: cacheTilesNum_var} ] : []);
+
 // Ensure no override happens between frame tiles and cache tiles
 checkCacheStartIndexAfterTilesets(loadTilesCache, cacheStartIndexInVRAM_var, resPropertiesMap);
 
@@ -73,6 +80,18 @@ const commonTilesRangeId = "commonTilesRange_movie1";
 const minCommonTilesNum = 10;
 const useCommonTilesRange = false;
 
+// Every frame loads only the tiles missing in its frame buffer, reusing the ones left in VRAM by the frame loaded 2 frames before.
+// Needs FORCE_NO_MISSING_FRAMES at videoPlayer.h and a tileset split strategy other than SPLIT_NORMAL. Not valid along with common tiles range.
+const useTilesDelta = false;
+const tilesDeltaId = "tilesDelta_movie1";
+if (useTilesDelta && useCommonTilesRange)
+    throw new Error("useTilesDelta can't be used along with useCommonTilesRange");
+
+// Every frame stores only the tilemap cells changed against the frame loaded 2 frames before, which the player applies over the tilemap 
+// buffer of the same frame buffer. Needs FORCE_NO_MISSING_FRAMES at videoPlayer.h, imageAddCompressionField and tilesetSplit > 1.
+const useTilemapDelta = false;
+const tilemapDeltaId = "tilemapDelta_movie1";
+
 // split tileset in N chunks. Current valid values are [1, 2, 3]
 const tilesetSplit = 3;
 // split tilemap in N chunks. Current values are [1, 2, 3]. Always <= tilesetSplit
@@ -83,6 +102,9 @@ const imageAddCompressionField = true;
 // Tileset split strategy: SPLIT_MAX_CAPACITY_FIRST or SPLIT_EVENLY
 var tilesetSplitStrategy = useCommonTilesRange ? "SPLIT_MAX_CAPACITY_FIRST" : "SPLIT_EVENLY";
 
+if (useTilemapDelta && (!imageAddCompressionField || tilesetSplit == 1))
+    throw new Error("useTilemapDelta needs imageAddCompressionField and tilesetSplit > 1");
+
 // Next data got experimentally from rescomp output (using resource TILESET_STATS_COLLECTOR). If odd then use next even number.
 var videoFrameTilesetChunkSize = resPropertiesMap.get('MAX_TILESET_NUM_FOR_MAP_BASE_TILE_INDEX');
 var videoFrameTilesetTotalSize = resPropertiesMap.get('MAX_TILESET_NUM_FOR_MAP_BASE_TILE_INDEX');
@@ -107,6 +129,9 @@ else if (tilesetSplit == 3) {
 	videoFrameTilesetTotalSize = resPropertiesMap.get('MAX_TILESET_TOTAL_SIZE_FOR_SPLIT_IN_3');
 }
 
+if (useTilesDelta == true)
+	type_ImageNoPals += "TilesDelta";
+
 if (imageAddCompressionField == true)
 	type_ImageNoPals += "CompField";
 
@@ -193,6 +218,20 @@ const RangeFixedVRAM cacheRangesInVRAM_fixed [MOVIE_TILES_CACHE_RANGES_NUM] = {
     ${cacheRangesInVRAM_fixed.map(range => `{ ${range.start}, ${range.length} }`).join(',\n    ')}
 };
 
+#define MOVIE_TILES_CACHE_SPLIT_PER_REGION ${splitTilesCachePerRegion? 1 : 0}
+
+#if MOVIE_TILES_CACHE_SPLIT_PER_REGION
+#define MOVIE_TILES_CACHE_REGIONS_NUM ${cacheRegionsInVRAM.length}
+
+const TileSet* const cacheRegionsTileSet [MOVIE_TILES_CACHE_REGIONS_NUM] = {
+    ${cacheRegionsInVRAM.map((range, i) => `&${tilesCacheId}_region${i}`).join(',\n    ')}
+};
+
+const unsigned short cacheRegionsStartInVRAM [MOVIE_TILES_CACHE_REGIONS_NUM] = {
+    ${cacheRegionsInVRAM.map(range => `${range.start}`).join(',\n    ')}
+};
+#endif
+
 #endif // _MOVIE_CACHE_CONSTS_H
 `);
 
@@ -213,6 +252,8 @@ fs.writeFileSync(`${GEN_INC_DIR}/movie_data_consts.h`,
 #define MOVIE_FRAME_HEIGHT_IN_TILES ${heightTiles}
 #define MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES ${widthTilesExt_forVideoPlayer}
 #define MOVIE_FRAME_STRIPS ${stripsPerFrame}
+#define MOVIE_FRAME_TILES_DELTA ${useTilesDelta? 1 : 0}
+#define MOVIE_FRAME_TILEMAP_DELTA ${useTilemapDelta? 1 : 0}
 
 #define MOVIE_FRAME_COLORS_PER_STRIP ${colorsPerStrip}
 // In case you were to split any calculation over the colors of strip by an odd divisor n
@@ -264,11 +305,13 @@ const ${type_Palettes}* pals_data[MOVIE_FRAME_COUNT] = {
 // Eg: "TileMapCustom, ImageNoPalsSplit31, Palette32AllStripsSplit3"
 const headerAppenderAllCustom = `HEADER_APPENDER_ALL_CUSTOM  headerAllCustomTypes` + '\n\n';
 
-// TILES_CACHE_LOADER tilesCacheId enable cacheStartIndexInVRAM_var cacheVarTilesNum cacheRangesInVRAM_fixed filename compression compressionCustom
-// Eg: TILES_CACHE_LOADER  movieFrames_cache  TRUE  1576  216  1921-127  movieFrames_cache.txt  APLIB  NONE
+// TILES_CACHE_LOADER tilesCacheId enable cacheStartIndexInVRAM_var cacheVarTilesNum cacheRangesInVRAM_fixed filename compression compressionCustom splitPerRegion
+// Eg: TILES_CACHE_LOADER  movieFrames_cache  TRUE  1576  216  1921-127  movieFrames_cache.txt  APLIB  NONE  FALSE
 // Flag 'enable' possible values: FALSE, TRUE
+// Flag 'splitPerRegion' possible values: FALSE, TRUE
 const loadTilesCacheStr = `TILES_CACHE_LOADER  ${tilesCacheId}  ${loadTilesCache? 'TRUE':'FALSE'}`
-		+ `  ${cacheStartIndexInVRAM_var}  ${cacheTilesNum_var}  ${cacheRangesInVRAM_fixed_str}  ${tilesCacheId}.txt  APLIB  NONE` + '\n\n';
+		+ `  ${cacheStartIndexInVRAM_var}  ${cacheTilesNum_var}  ${cacheRangesInVRAM_fixed_str}  ${tilesCacheId}.txt  APLIB  NONE`
+		+ `  ${splitTilesCachePerRegion? 'TRUE':'FALSE'}` + '\n\n';
 
 // TILES_CACHE_STATS_ENABLER tilesCacheId enable minTilesetSize
 // Eg: TILES_CACHE_STATS_ENABLER  movieFrames_cache  TRUE  500
@@ -281,13 +324,14 @@ const commonTilesRangeStr = `IMAGE_STRIPS_COMMON_TILES_RANGE  ${commonTilesRange
         + `  "${FRAMES_DIR}${sortedFileNamesOnlyEveryFirstStrip[0]}"  ${stripsPerFrame}`
         + `  ${sortedFileNamesOnlyEveryFirstStrip.length}  LZ4W  ${tilesCacheId}  ${minCommonTilesNum}` + '\n\n';
 
-// IMAGE_STRIPS_NO_PALS name "baseFile" strips [tilesetStatsCollectorId tilesCacheId commonTilesRangeId splitTileset splitTilesetStrategy splitTilemap toggleMapTileBaseIndexFlag mapExtendedWidth compression compressionCustomTileSet compressionCustomTileMap addCompressionField map_opt map_base]
-// Eg: IMAGE_STRIPS_NO_PALS  mv_frame_46_0_RGB  "rgb/frame_46_0_RGB.png"  22  tilesetStats1  tilesCache_movie1  commonTilesRange_movie1  3  1  ODD  64  NONE  LZ4W  RLEW_A  TRUE  ALL
+// IMAGE_STRIPS_NO_PALS name "baseFile" strips [tilesetStatsCollectorId tilesCacheId commonTilesRangeId splitTileset splitTilesetStrategy splitTilemap toggleMapTileBaseIndexFlag mapExtendedWidth compression compressionCustomTileSet compressionCustomTileMap addCompressionField map_opt map_base tilesDeltaId tilemapDeltaId]
+// Eg: IMAGE_STRIPS_NO_PALS  mv_frame_46_0_RGB  "rgb/frame_46_0_RGB.png"  22  tilesetStats1  tilesCache_movie1  commonTilesRange_movie1  3  1  ODD  64  NONE  LZ4W  RLEW_A  TRUE  ALL  0  NONE  NONE
 const imageResListStr = sortedFileNamesOnlyEveryFirstStrip
 	.map(s => `IMAGE_STRIPS_NO_PALS  mv_${removeExtension(s)}  "${FRAMES_DIR}${s}"  ${stripsPerFrame}  ${tilesetStatsId}`
 			+ `  ${tilesCacheId}  ${commonTilesRangeId}  ${tilesetSplit}  ${tilesetSplitStrategy}  ${tilemapSplit}`
             + `  ${toggleMapTileBaseIndexFlag}  ${mapExtendedWidth_forResource}  NONE  LZ4W  LZ4W`
-			+ `  ${imageAddCompressionField? 'TRUE':'FALSE'}  ALL`
+			+ `  ${imageAddCompressionField? 'TRUE':'FALSE'}  ALL  0  ${useTilesDelta? tilesDeltaId : 'NONE'}`
+			+ `  ${useTilemapDelta? tilemapDeltaId : 'NONE'}`
     )
 	.join('\n') + '\n\n';
 
@@ -314,8 +358,19 @@ const printTilesetStatsCollector = `TILESET_STATS_COLLECTOR  ${tilesetStatsId}`
 // This resource runs only if the tile cache stats were set enabled, at TILES_CACHE_STATS_ENABLER
 const printTilesCacheStatsStr = `TILES_CACHE_STATS_PRINTER  ${tilesCacheId}  FILE` + '\n\n';
 
+// TILES_CACHE_BUILDER tilesCacheId filename order
+// Eg: TILES_CACHE_BUILDER  movieFrames_cache  movieFrames_cache.txt  USAGE
+// Writes the cache file with the most used tiles from the stats, filling the cache VRAM set at TILES_CACHE_LOADER. Next build uses it.
+// Flag order possible values: USAGE (most used tiles go to the VRAM regions loaded first), FILE (cached tiles keep their order)
+// This resource runs only if the tile cache stats were set enabled, at TILES_CACHE_STATS_ENABLER
+const buildTilesCacheStr = enableTilesCacheStats? `TILES_CACHE_BUILDER  ${tilesCacheId}  ${tilesCacheId}.txt  USAGE` + '\n\n' : '';
+
 const customCompressorTracker = `HEADER_APPENDER_COMPRESSION_CUSTOM_TRACKER  compressionCustomTrackerHeader_movie1` + '\n\n';
 
+// Eg: DECODE_BUDGET_REPORT  decodeBudget_movie1  15  100
+// Reports the frames whose tileset and tilemap estimated decode cycles go over the given percentage of the frame time
+const decodeBudgetReportStr = `DECODE_BUDGET_REPORT  decodeBudget_movie1  ${frameRate}  100` + '\n\n';
+
 // Create movie_frames.res file
 fs.writeFileSync(`${RES_DIR}/movie_frames.res`, 
         headerAppenderAllCustom + 
@@ -325,7 +380,9 @@ fs.writeFileSync(`${RES_DIR}/movie_frames.res`,
         imageResListStr + 
         (stripsPerFrame === 1? palette64ResListStr : palette32ResListStr) + 
         printTilesCacheStatsStr + 
+        buildTilesCacheStr + 
 		printTilesetStatsCollector +
+		decodeBudgetReportStr +
 		customCompressorTracker);
 
 function countTilesCacheLines (filePath) {
@@ -0,0 +1,216 @@
+package sgdk.rescomp.tool;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import sgdk.rescomp.resource.TilesetOriginalCustom;
+import sgdk.rescomp.type.Basics.Compression;
+import sgdk.rescomp.type.Basics.TileOptimization;
+import sgdk.rescomp.type.Basics.TileOrdering;
+import sgdk.rescomp.type.CompressionCustom;
+import sgdk.rescomp.type.Tile;
+
+/**
+ * Synthetic inputs for {@link RescompExtBenchmark} so the benchmarks run offline, without the movie frames.</br>
+ * Frames are made of tiles taken from a pool, with blank areas, flipped duplicates, and every tile position changing its tile
+ * once every few frames, which is roughly how the frames of a movie look once converted to 4 palettes of 16 colors.
+ * Everything is generated from a seed so every run measures the same data.
+ */
+public class BenchmarkFixtures {
+
+	public static final int FRAME_WIDTH = 272;
+	public static final int FRAME_HEIGHT = 192;
+
+	// distinct tiles the frames take their tiles from
+	private static final int TILES_POOL_SIZE = 1024;
+	// a tile position changes its tile once every this number of frames (every position at a different frame)
+	private static final int TILE_CHANGE_PERIOD = 8;
+	private static final int BLANK_TILES_PERCENT = 12;
+	private static final int FLIPPED_TILES_PERCENT = 10;
+
+	/**
+	 * @param frame frame number in the synthetic movie
+	 * @param seed
+	 * @return 8bpp image of {@link #FRAME_WIDTH} x {@link #FRAME_HEIGHT}: palette in bits 4-5 and color index in bits 0-3
+	 */
+	public static byte[] frame8bpp (int frame, long seed) {
+		final int w = FRAME_WIDTH;
+		final int wt = FRAME_WIDTH / 8;
+		final int ht = FRAME_HEIGHT / 8;
+		final byte[] image = new byte[FRAME_WIDTH * FRAME_HEIGHT];
+
+		for (int ty = 0; ty < ht; ++ty) {
+			for (int tx = 0; tx < wt; ++tx) {
+				final int pos = ty * wt + tx;
+				final int phase = (int) (mix(seed, pos) & 0xFFFF) % TILE_CHANGE_PERIOD;
+				final int epoch = (frame + phase) / TILE_CHANGE_PERIOD;
+				final long h = mix(seed + epoch, pos);
+
+				// blank tile: left as 0s
+				if ((h & 0xFFFF) % 100 < BLANK_TILES_PERCENT)
+					continue;
+
+				final int tileId = (int) ((h >>> 16) & 0xFFFF) % TILES_POOL_SIZE;
+				final boolean flipped = ((h >>> 32) & 0xFFFF) % 100 < FLIPPED_TILES_PERCENT;
+				drawTile(image, w, tx * 8, ty * 8, tileId, seed, flipped && (h & (1L << 48)) != 0, flipped && (h & (1L << 49)) != 0);
+			}
+		}
+
+		return image;
+	}
+
+	private static void drawTile (byte[] image, int w, int x0, int y0, int tileId, long seed, boolean hflip, boolean vflip) {
+		final int pal = tileId & 3;
+		for (int y = 0; y < 8; ++y) {
+			final long bits = mix(seed ^ tileId, y);
+			for (int x = 0; x < 8; ++x) {
+				// no color 0 so a tile is never blank
+				final int color = 1 + (int) ((bits >>> (x * 4)) & 0xF) % 15;
+				final int px = hflip ? 7 - x : x;
+				final int py = vflip ? 7 - y : y;
+				image[(y0 + py) * w + x0 + px] = (byte) ((pal << 4) | color);
+			}
+		}
+	}
+
+	/**
+	 * Writes the frame as an RGB png with the palettes at the top (4 rows of 16 tiles, one color per tile), which is the layout
+	 * expected by {@link ImageUtilFast#convertRGBTo8bpp(String, boolean)}.
+	 * @return the png file
+	 */
+	public static File writeRGBFrame (File dir, int frame, long seed) throws IOException {
+		final int w = FRAME_WIDTH;
+		final int h = FRAME_HEIGHT + 32;
+		final int[] palette = getPaletteRGB();
+		final BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+
+		// palette tiles. Rest of the tiles in the palettes rows use color 0
+		for (int y = 0; y < 32; ++y) {
+			for (int x = 0; x < w; ++x) {
+				final int tx = x / 8;
+				img.setRGB(x, y, tx < 16 ? palette[(y / 8) * 16 + tx] : palette[0]);
+			}
+		}
+
+		final byte[] image = frame8bpp(frame, seed);
+		for (int y = 0; y < FRAME_HEIGHT; ++y) {
+			for (int x = 0; x < w; ++x) {
+				final int value = image[y * w + x] & 0xFF;
+				img.setRGB(x, y + 32, palette[((value >> 4) & 3) * 16 + (value & 0xF)]);
+			}
+		}
+
+		final File file = new File(dir, "frame_" + frame + "_RGB.png");
+		ImageIO.write(img, "png", file);
+		return file;
+	}
+
+	/**
+	 * 64 distinct colors, 2 bits per component.
+	 */
+	private static int[] getPaletteRGB () {
+		final int[] palette = new int[64];
+		for (int i = 0; i < 64; ++i)
+			palette[i] = 0xFF000000 | ((i & 3) * 0x55) << 16 | (((i >> 2) & 3) * 0x55) << 8 | ((i >> 4) & 3) * 0x55;
+		return palette;
+	}
+
+	/**
+	 * @return tiles of the image in row order, without the blank ones and without duplicates (flipped ones are kept)
+	 */
+	public static List<Tile> getTiles (byte[] image8bpp) {
+		final int wt = FRAME_WIDTH / 8;
+		final int ht = FRAME_HEIGHT / 8;
+		final List<Tile> tiles = new ArrayList<>(wt * ht);
+		final Map<Tile, Integer> seen = new HashMap<>(wt * ht * 2);
+
+		for (int ty = 0; ty < ht; ++ty) {
+			for (int tx = 0; tx < wt; ++tx) {
+				final Tile tile = Tile.getTile(image8bpp, FRAME_WIDTH, FRAME_HEIGHT, tx * 8, ty * 8, 8);
+				if (tile.isBlank() || seen.putIfAbsent(tile, Integer.valueOf(tiles.size())) != null)
+					continue;
+				tiles.add(tile);
+			}
+		}
+
+		return tiles;
+	}
+
+	/**
+	 * @return every tile of the image in row order, blank and duplicated ones included, as a tilemap lookup sees them
+	 */
+	public static Tile[] getAllTiles (byte[] image8bpp) {
+		final int wt = FRAME_WIDTH / 8;
+		final int ht = FRAME_HEIGHT / 8;
+		final Tile[] tiles = new Tile[wt * ht];
+		for (int ty = 0; ty < ht; ++ty)
+			for (int tx = 0; tx < wt; ++tx)
+				tiles[ty * wt + tx] = Tile.getTile(image8bpp, FRAME_WIDTH, FRAME_HEIGHT, tx * 8, ty * 8, 8);
+		return tiles;
+	}
+
+	/**
+	 * Tilemap of the frame as the big endian words {@link RLEWCompressor} packs: one word per tile with the palette bits and the
+	 * index of the tile in the frame's tileset, so indexes increase along the rows, with 0s for blank tiles and repeated indexes
+	 * for duplicated tiles.
+	 * @param frame
+	 * @param seed
+	 * @param startTileIndex VRAM index of the first tile of the tileset
+	 * @return {@link #FRAME_WIDTH}/8 words per row
+	 */
+	public static byte[] getTilemapWords (int frame, long seed, int startTileIndex) {
+		final Tile[] allTiles = getAllTiles(frame8bpp(frame, seed));
+		final Map<Tile, Integer> indexes = new HashMap<>(allTiles.length * 2);
+		final byte[] words = new byte[allTiles.length * 2];
+
+		for (int i = 0; i < allTiles.length; ++i) {
+			final Tile tile = allTiles[i];
+			if (tile.isBlank())
+				continue;
+			Integer index = indexes.get(tile);
+			if (index == null) {
+				index = Integer.valueOf(startTileIndex + indexes.size());
+				indexes.put(tile, index);
+			}
+			final int word = Tile.TILE_ATTR_FULL(tile.pal, false, false, false, index.intValue());
+			words[i * 2] = (byte) (word >> 8);
+			words[i * 2 + 1] = (byte) word;
+		}
+
+		return words;
+	}
+
+	/**
+	 * Temporary tilesets of consecutive frames named as the video player tools name them, so they can be fed to the common tiles optimizers.
+	 */
+	public static List<TilesetOriginalCustom> getTilesets (int frames, long seed, String tilesCacheId) {
+		final List<TilesetOriginalCustom> tilesets = new ArrayList<>(frames);
+		for (int frame = 0; frame < frames; ++frame)
+			tilesets.add(newTileset(frame, frame8bpp(frame, seed), tilesCacheId));
+		return tilesets;
+	}
+
+	public static TilesetOriginalCustom newTileset (int frame, byte[] image8bpp, String tilesCacheId) {
+		final boolean isTempTileset = true;
+		return new TilesetOriginalCustom("frame_" + frame + "_tileset", image8bpp, FRAME_WIDTH, FRAME_HEIGHT, 0, 0, FRAME_WIDTH / 8, FRAME_HEIGHT / 8,
+				TileOptimization.ALL, Compression.NONE, CompressionCustom.NONE, false, isTempTileset, TileOrdering.ROW, tilesCacheId, false, null);
+	}
+
+	/**
+	 * SplitMix64 finalizer over the seed and a value.
+	 */
+	private static long mix (long seed, long value) {
+		long z = seed + value * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
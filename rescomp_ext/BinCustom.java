@@ -2,8 +2,12 @@ package sgdk.rescomp.resource;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import sgdk.rescomp.tool.CompressionCustomUsageTracker;
+import sgdk.rescomp.tool.CompressionDecodeCost;
 import sgdk.rescomp.tool.MdComp;
 import sgdk.rescomp.tool.Util;
 import sgdk.rescomp.type.Basics.Compression;
@@ -16,6 +20,14 @@ public class BinCustom extends Bin
 {
 	public CompressionCustom wantedCompressionCustom;
 	public CompressionCustom doneCompressionCustom;
+	// fabri1983: compression submitted in advance to the compressors pool
+	private Future<PackedDataCustom> prepacked;
+	// fabri1983: candidates of the auto selection modes submitted in advance to the compressors pool
+	private Future<List<PackedDataCustom>> prepackedCandidates;
+	// fabri1983: estimated 68000 cycles to unpack the data, set once the bin is written
+	public long decodeCycles;
+	// fabri1983: size of the data once decoded, only for the data coming already encoded (see CompressionCustom.isPreEncoded())
+	private int preEncodedUnpackedSize;
 
     public BinCustom(String id, byte[] data, int align, int sizeAlign, int fill, Compression compression, CompressionCustom compressionCustom, boolean far, boolean embedded)
     {
@@ -64,6 +76,39 @@ public class BinCustom extends Bin
         this(id, ArrayUtil.intToByte(data), 2, 0, 0, compression, compressionCustom);
     }
 
+    /**
+     * fabri1983: the data comes already encoded by the resource with the given custom compression, so it's written as it is.
+     * Call it before adding the bin as internal resource.
+     * @param compressionCustom one of {@link CompressionCustom#isPreEncoded(CompressionCustom)}
+     * @param unpackedSize size in bytes of the data once decoded
+     * @return this bin
+     */
+    public BinCustom preEncoded(CompressionCustom compressionCustom, int unpackedSize)
+    {
+        if (!CompressionCustom.isPreEncoded(compressionCustom))
+            throw new IllegalArgumentException("ERROR: " + compressionCustom.getValue() + " isn't a pre encoded compression. Bin " + id);
+        this.wantedCompressionCustom = compressionCustom;
+        this.preEncodedUnpackedSize = unpackedSize;
+        return this;
+    }
+
+    /**
+     * fabri1983: submits the custom compression to the compressors pool so it runs in background while rescomp keeps going,
+     * then {@link #out(ByteArrayOutputStream, StringBuilder, StringBuilder)} just waits for the result.
+     * Only call it on bins that end up in the output (ie: not the ones from temporary resources).
+     * @return this bin
+     */
+    public BinCustom prepack()
+    {
+        if (CompressionCustom.isAutoSelection(wantedCompressionCustom)) {
+            if (prepackedCandidates == null)
+                prepackedCandidates = MdComp.packCandidatesAsync(data, id);
+        }
+        else if (prepacked == null && wantedCompressionCustom != CompressionCustom.NONE && !CompressionCustom.isPreEncoded(wantedCompressionCustom))
+            prepacked = MdComp.packAsync(data, id, wantedCompressionCustom);
+        return this;
+    }
+
     @Override
     public void out(ByteArrayOutputStream outB, StringBuilder outS, StringBuilder outH) throws IOException
     {
@@ -71,8 +116,16 @@ public class BinCustom extends Bin
         Util.align(outB, align);
 
         // IMPORTANT: CompressionCustom option has priority over Compression option
-        if (wantedCompressionCustom != CompressionCustom.NONE) {
-        	PackedDataCustom packedDataCustom = MdComp.pack(data, id, wantedCompressionCustom);
+        if (CompressionCustom.isAutoSelection(wantedCompressionCustom)) {
+        	packAutoSelection(outB);
+        }
+        else if (CompressionCustom.isPreEncoded(wantedCompressionCustom)) {
+        	packedData = new PackedData(data, Compression.NONE);
+        	doneCompressionCustom = wantedCompressionCustom;
+        	doneCompression = Compression.NONE;
+        }
+        else if (wantedCompressionCustom != CompressionCustom.NONE) {
+        	PackedDataCustom packedDataCustom = prepacked != null ? MdComp.await(prepacked) : MdComp.pack(data, id, wantedCompressionCustom);
         	packedData = (PackedData) packedDataCustom;
         	doneCompressionCustom = packedDataCustom.compressionCustom;
         	doneCompression = Compression.NONE;
@@ -84,11 +137,16 @@ public class BinCustom extends Bin
 	        doneCompressionCustom = CompressionCustom.NONE;
         }
 
-        final int baseSize = data.length;
+        final int baseSize = CompressionCustom.isPreEncoded(doneCompressionCustom) ? preEncodedUnpackedSize : data.length;
         final int packedSize = packedData.data.length;
 
+        if (doneCompression != Compression.NONE)
+        	decodeCycles = CompressionDecodeCost.estimateCycles(doneCompression, packedData.data, baseSize);
+        else
+        	decodeCycles = CompressionDecodeCost.estimateCycles(doneCompressionCustom, packedData.data, baseSize);
+
         // data was custom compressed ?
-        if (wantedCompressionCustom != CompressionCustom.NONE) {
+        if (wantedCompressionCustom != CompressionCustom.NONE && doneCompression == Compression.NONE) {
             System.out.print("'" + id + "' ");
 
             switch (doneCompressionCustom)
@@ -104,11 +162,12 @@ public class BinCustom extends Bin
 
             if (doneCompressionCustom != CompressionCustom.NONE) {
             	CompressionCustomUsageTracker.markUsed(doneCompressionCustom);
-                System.out.println("size = " + packedSize + " (" + Math.round((packedSize * 100f) / baseSize) + "% - origin size = " + baseSize + ")");
+                System.out.println("size = " + packedSize + " (" + Math.round((packedSize * 100f) / baseSize) + "% - origin size = " + baseSize 
+                		+ ") decode ~" + decodeCycles + " cycles");
             }
         }
         // data was compressed ?
-        else if (wantedCompression != Compression.NONE)
+        else if (wantedCompression != Compression.NONE || doneCompression != Compression.NONE)
         {
             System.out.print("'" + id + "' ");
 
@@ -134,7 +193,8 @@ public class BinCustom extends Bin
             }
 
             if (doneCompression != Compression.NONE)
-                System.out.println("size = " + packedSize + " (" + Math.round((packedSize * 100f) / baseSize) + "% - origin size = " + baseSize + ")");
+                System.out.println("size = " + packedSize + " (" + Math.round((packedSize * 100f) / baseSize) + "% - origin size = " + baseSize 
+                		+ ") decode ~" + decodeCycles + " cycles");
         }
 
         // output binary data (data alignment was done before)
@@ -147,4 +207,33 @@ public class BinCustom extends Bin
 		Util.declArrayEnd(outS, outH, "u8", id, packedData.data.length, align, global);
         outS.append("\n");
     }
+
+    /**
+     * fabri1983: AUTO_SIZE and AUTO_DECODE_BUDGET. The custom candidates were compressed in the compressors pool, 
+     * but SGDK's LZ4W is packed here since it can reference the previous data already in 'outB'.
+     */
+    private void packAutoSelection(ByteArrayOutputStream outB)
+    {
+        List<PackedDataCustom> candidates = new ArrayList<>(prepackedCandidates != null ? 
+                MdComp.await(prepackedCandidates) : MdComp.await(MdComp.packCandidatesAsync(data, id)));
+
+        PackedData packedLz4w = null;
+        if (MdComp.getAutoCandidates().contains(CompressionCustom.LZ4W)) {
+            packedLz4w = Util.pack(data, Compression.LZ4W, outB, true);
+            if (packedLz4w.compression == Compression.LZ4W)
+                candidates.add(new PackedDataCustom(packedLz4w.data, CompressionCustom.LZ4W));
+        }
+
+        PackedDataCustom selected = MdComp.selectAuto(candidates, data, wantedCompressionCustom);
+        if (selected.compressionCustom == CompressionCustom.LZ4W) {
+            packedData = packedLz4w;
+            doneCompression = Compression.LZ4W;
+            doneCompressionCustom = CompressionCustom.NONE;
+        }
+        else {
+            packedData = (PackedData) selected;
+            doneCompression = Compression.NONE;
+            doneCompressionCustom = selected.compressionCustom;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package sgdk.rescomp.type;
+
+import java.util.Arrays;
+
+/**
+ * Candidate ranges of the common tiles optimizers as primitive (start, end, numTiles) records, without their tiles.
+ * Every candidate is packed into a long, so sorting them sorts by ending index, then starting index, then number of tiles.
+ * Only the ranges finally selected are turned into {@link CommonTilesRange} along with their tiles.</br>
+ * Not thread safe: fill one instance per thread and merge them with {@link #addAll(CommonTilesRangeCandidates)}.
+ */
+public class CommonTilesRangeCandidates {
+
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1;
+	public static final int MAX_VALUE = (int) MASK;
+
+	private long[] packed;
+	private int size;
+
+	public CommonTilesRangeCandidates () {
+		this(64);
+	}
+
+	public CommonTilesRangeCandidates (int initialCapacity) {
+		packed = new long[Math.max(4, initialCapacity)];
+	}
+
+	/**
+	 * @param startingImgIdx index in the original list of images
+	 * @param endingImgIdx index in the original list of images, inclusive
+	 * @param numTiles number of common tiles in the range
+	 */
+	public void add (int startingImgIdx, int endingImgIdx, int numTiles) {
+		if (startingImgIdx < 0 || startingImgIdx > MAX_VALUE || endingImgIdx < 0 || endingImgIdx > MAX_VALUE
+				|| numTiles < 0 || numTiles > MAX_VALUE)
+			throw new IllegalArgumentException("ERROR: range [" + startingImgIdx + ", " + endingImgIdx + "] with " + numTiles
+					+ " tiles exceeds the max value of " + MAX_VALUE);
+		ensureCapacity(size + 1);
+		packed[size++] = ((long) endingImgIdx << (2 * BITS)) | ((long) startingImgIdx << BITS) | numTiles;
+	}
+
+	public void addAll (CommonTilesRangeCandidates other) {
+		ensureCapacity(size + other.size);
+		System.arraycopy(other.packed, 0, packed, size, other.size);
+		size += other.size;
+	}
+
+	private void ensureCapacity (int capacity) {
+		if (capacity > packed.length)
+			packed = Arrays.copyOf(packed, Math.max(capacity, packed.length * 2));
+	}
+
+	/**
+	 * Sorts by ending index, then starting index, then number of tiles, all of them ascending.
+	 */
+	public void sort () {
+		Arrays.sort(packed, 0, size);
+	}
+
+	public int size () {
+		return size;
+	}
+
+	public boolean isEmpty () {
+		return size == 0;
+	}
+
+	public int getStartingImgIdx (int i) {
+		return (int) ((packed[i] >>> BITS) & MASK);
+	}
+
+	public int getEndingImgIdx (int i) {
+		return (int) (packed[i] >>> (2 * BITS));
+	}
+
+	public int getNumTiles (int i) {
+		return (int) (packed[i] & MASK);
+	}
+
+}
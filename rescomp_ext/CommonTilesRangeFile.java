@@ -0,0 +1,200 @@
+package sgdk.rescomp.tool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import sgdk.rescomp.type.CommonTilesRange;
+import sgdk.rescomp.type.Tile;
+
+/**
+ * Text file with the optimized common tiles ranges of an IMAGE_STRIPS_COMMON_TILES_RANGE resource, so the next rescomp runs
+ * load them instead of running the optimizer again.</br>
+ * The file is named <code>COMMONTILESRANGE_&lt;resId&gt;.txt</code> and is located at the same location than rescomp_ext.jar,
+ * same than the <code>TILESCACHE_*.txt</code> files. It holds the hash of everything the ranges depend on: content of the strips
+ * files, tiles of the tiles cache and parameters of the resource. When any of them changes the file is ignored and written again.</br>
+ * Format, one value per line except ranges and tiles:
+ * <pre>
+ * COMMONTILESRANGE_&lt;resId&gt;
+ * &lt;format version&gt;
+ * &lt;inputs hash&gt;
+ * &lt;number of ranges&gt;
+ * &lt;startingImgIdx&gt;,&lt;endingImgIdx&gt;,&lt;startingImgNumInName&gt;,&lt;endingImgNumInName&gt;,&lt;numTiles&gt;
+ * &lt;pal&gt;,&lt;prio&gt;,&lt;8 ints of tile data&gt;   (numTiles lines)
+ * </pre>
+ * Set COMMON_TILES_RANGE_FILE_ENABLED = false in ext.resource.properties to always run the optimizer.
+ */
+public class CommonTilesRangeFile {
+
+	private static final String FILE_PREFIX = "COMMONTILESRANGE_";
+	// increment it when the file format or the optimizer output changes
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String rescomp_ext_jar_path = new File(CommonTilesRangeFile.class.getProtectionDomain().getCodeSource().getLocation().getPath())
+			.getParentFile().getAbsolutePath();
+
+	private static volatile Boolean enabled;
+
+	public static boolean isEnabled () {
+		if (enabled == null) {
+			// enabled by default
+			String value = ExtProperties.getString(ExtProperties.COMMON_TILES_RANGE_FILE_ENABLED);
+			enabled = Boolean.valueOf(value == null || !"false".equalsIgnoreCase(value.trim()));
+		}
+		return enabled.booleanValue();
+	}
+
+	public static File getFile (String resId) {
+		return new File(rescomp_ext_jar_path + File.separator + FILE_PREFIX + resId + ".txt");
+	}
+
+	/**
+	 * @param resId
+	 * @param allStripsInList strips of every image. Their content is hashed, not their paths nor dates
+	 * @param tilesCacheId can be null
+	 * @param minCommonTilesNum
+	 * @param maxCommonTilesNum
+	 * @return hex SHA-256 of all the inputs of the optimizer
+	 */
+	public static String getInputsHash (String resId, List<List<String>> allStripsInList, String tilesCacheId,
+			int minCommonTilesNum, int maxCommonTilesNum) throws IOException {
+		final MessageDigest md = newSha256();
+		update(md, FORMAT_VERSION + "|" + resId + "|" + tilesCacheId + "|" + minCommonTilesNum + "|" + maxCommonTilesNum
+				+ "|" + allStripsInList.size());
+
+		// tiles in the cache are left out of the frames tilesets, so they change the ranges
+		for (Tile tile : TilesCacheManager.getCacheTiles(tilesCacheId)) {
+			update(md, "|" + tile.pal + "," + tile.prio);
+			for (int row : tile.data)
+				update(md, "," + row);
+		}
+
+		for (List<String> stripsFileList : allStripsInList) {
+			update(md, "|" + stripsFileList.size());
+			for (String stripFile : stripsFileList) {
+				File file = new File(stripFile);
+				update(md, "|" + file.getName() + ":");
+				md.update(Files.readAllBytes(file.toPath()));
+			}
+		}
+
+		return toHex(md.digest());
+	}
+
+	/**
+	 * @return the ranges saved for the resource, or null if there is no file or it was saved with other inputs or format
+	 */
+	public static List<CommonTilesRange> load (String resId, String inputsHash) {
+		File file = getFile(resId);
+		if (!file.isFile())
+			return null;
+
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			if (!(FILE_PREFIX + resId).equals(reader.readLine())
+					|| !String.valueOf(FORMAT_VERSION).equals(reader.readLine())
+					|| !inputsHash.equals(reader.readLine()))
+				return null;
+
+			int numRanges = Integer.parseInt(reader.readLine().trim());
+			List<CommonTilesRange> ranges = new ArrayList<>(numRanges);
+			for (int r = 0; r < numRanges; r++) {
+				String[] values = reader.readLine().split(",");
+				int numTiles = Integer.parseInt(values[4].trim());
+				List<Tile> tiles = new ArrayList<>(numTiles);
+				for (int t = 0; t < numTiles; t++)
+					tiles.add(parseTile(reader.readLine()));
+				ranges.add(new CommonTilesRange(numTiles, Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim()), tiles,
+						Integer.parseInt(values[2].trim()), Integer.parseInt(values[3].trim())));
+			}
+
+			System.out.println(resId + ": Loaded " + ranges.size() + " common tiles ranges from " + file.getName());
+			return ranges;
+		}
+		catch (IOException | RuntimeException e) {
+			// truncated or malformed: it's written again once the ranges are calculated
+			System.out.println("[WARNING] Couldn't read " + file + ". " + e.getMessage());
+			return null;
+		}
+	}
+
+	public static void save (String resId, String inputsHash, List<CommonTilesRange> ranges) {
+		Path path = getFile(resId).toPath();
+		Path tmpPath = new File(path.toString() + "." + System.nanoTime() + ".tmp").toPath();
+
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(tmpPath, StandardCharsets.UTF_8)) {
+				writer.write(FILE_PREFIX + resId + "\n");
+				writer.write(FORMAT_VERSION + "\n");
+				writer.write(inputsHash + "\n");
+				writer.write(ranges.size() + "\n");
+				for (CommonTilesRange range : ranges) {
+					writer.write(range.getStartingImgIdx() + "," + range.getEndingImgIdx() + "," + range.getStartingImgNumInName()
+							+ "," + range.getEndingImgNumInName() + "," + range.getTiles().size() + "\n");
+					for (Tile tile : range.getTiles())
+						writer.write(formatTile(tile));
+				}
+			}
+
+			// never leave a half written file where the next run looks for it
+			try {
+				Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e) {
+			System.out.println("[WARNING] Couldn't save file " + path + ". " + e.getMessage());
+			try {
+				Files.deleteIfExists(tmpPath);
+			} catch (IOException e2) {}
+		}
+	}
+
+	private static String formatTile (Tile tile) {
+		StringBuilder sb = new StringBuilder(96);
+		sb.append(tile.pal).append(',').append(tile.prio ? 1 : 0);
+		for (int row : tile.data)
+			sb.append(',').append(row);
+		return sb.append('\n').toString();
+	}
+
+	private static Tile parseTile (String line) {
+		String[] values = line.split(",");
+		if (values.length != 2 + 8)
+			throw new IllegalArgumentException("tile line with " + values.length + " values: " + line);
+		int[] data = new int[8];
+		for (int i = 0; i < 8; i++)
+			data[i] = Integer.parseInt(values[2 + i].trim());
+		return new Tile(data, 8, Integer.parseInt(values[0].trim()), "1".equals(values[1].trim()), 0);
+	}
+
+	private static MessageDigest newSha256 () {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void update (MessageDigest md, String value) {
+		md.update(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String toHex (byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b & 0xFF));
+		return sb.toString();
+	}
+
+}
@@ -1,9 +1,9 @@
 package sgdk.rescomp.tool;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import sgdk.rescomp.type.CommonTilesRange;
@@ -12,7 +12,9 @@ public class CommonTilesRangeManager {
 
 	public static final Pattern stripsBaseFileNamePattern = Pattern.compile("^[A-Za-z_]+_(\\d+)_(\\d+)(_RGB)?\\.(png|bmp)$", Pattern.CASE_INSENSITIVE);
 
-	private static Map<String, List<CommonTilesRange>> optimizedRangesByResId_map = new HashMap<>();
+	private static Map<String, List<CommonTilesRange>> optimizedRangesByResId_map = new ConcurrentHashMap<>();
+	// built on first use and shared by every tileset and tilemap of the range
+	private static Map<CommonTilesRange, TileFingerprintIndex> tilesIndexByRange_map = new ConcurrentHashMap<>();
 
 	public static void saveForResId (String resId, List<CommonTilesRange> optimizedCommonTiles) {
 		if (resId != null && !resId.isBlank()) {
@@ -21,7 +23,11 @@ public class CommonTilesRangeManager {
 				if (optimizedRangesByResId_map.containsKey(resId)) {
 					System.out.println("[WARNING] There is already a key with name " + resId + ". At class " + CommonTilesRangeManager.class.getSimpleName());
 				}
-				optimizedRangesByResId_map.put(resId, optimizedCommonTiles);
+				List<CommonTilesRange> previous = optimizedRangesByResId_map.put(resId, optimizedCommonTiles);
+				if (previous != null)
+					previous.forEach(tilesIndexByRange_map::remove);
+				// frames prefetched with the previous common tiles aren't valid anymore
+				ImageStripsFramePipeline.discardPending();
 			}
 		}
 	}
@@ -35,7 +41,12 @@ public class CommonTilesRangeManager {
 		return Collections.emptyList();
 	}
 
-	
+	/**
+	 * Fingerprint based index over the common tiles of the range, so matching a tile doesn't need to scan the whole list.
+	 */
+	public static TileFingerprintIndex getTilesIndex (CommonTilesRange range) {
+		return tilesIndexByRange_map.computeIfAbsent(range, r -> new TileFingerprintIndex(r.getTiles()));
+	}
 
 	public static CommonTilesRange findRangeForImageIdx (List<CommonTilesRange> rangeList, int imgIdx) {
 		// commonTiles should be already sorted by startingImgIdx
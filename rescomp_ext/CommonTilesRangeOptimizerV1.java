@@ -7,7 +7,6 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
@@ -18,15 +17,9 @@ import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
 import sgdk.rescomp.resource.TilesetOriginalCustom;
-import sgdk.rescomp.type.Basics.Compression;
-import sgdk.rescomp.type.Basics.TileEquality;
-import sgdk.rescomp.type.Basics.TileOptimization;
-import sgdk.rescomp.type.Basics.TileOrdering;
 import sgdk.rescomp.type.CommonTilesRange;
-import sgdk.rescomp.type.CompressionCustom;
+import sgdk.rescomp.type.CommonTilesRangeCandidates;
 import sgdk.rescomp.type.Tile;
-import sgdk.tool.ImageUtil;
-import sgdk.tool.ImageUtil.BasicImageInfo;
 
 public class CommonTilesRangeOptimizerV1 {
 
@@ -42,26 +35,24 @@ public class CommonTilesRangeOptimizerV1 {
 		ExecutorService executor = Executors.newFixedThreadPool(processors);
 
 		int taskCount = allStripsInList.size() - (minRange - 1);
-		CompletionService<List<CommonTilesRange>> completionTasks = new ExecutorCompletionService<>(executor);
+		CompletionService<CommonTilesRangeCandidates> completionTasks = new ExecutorCompletionService<>(executor);
 
 		System.out.println("Calculating common tiles between all possible [" + minRange + "," + maxRange
 				+ "] consecutives images from a total of " + allStripsInList.size() + " images...");
 
+		// fabri1983: every image is read once and its tiles indexed by the images they are in, so the common tiles of a range
+		// are just the tiles of its smallest tileset present along the whole range, instead of intersecting all its tilesets again
+		final TilePresenceIndex tilePresenceIndex = buildTilePresenceIndex(allStripsInList, tilesCacheId, minCommonTilesNum,
+				maxCommonTilesNum, executor);
+
 		for (int i = 0; i < taskCount; i++) {
 			final int startIdx = i;
 
 			completionTasks.submit(() -> {
 				final int finalIdx = Math.min(startIdx + maxRange - 1, allStripsInList.size() - 1);
 				// System.out.println("Calculating common tiles for range [" + startIdx + ", " + finalIdx + "]");
-				List<CommonTilesRange> localList = new ArrayList<>();
-
-				// Extract the starting image number
-				String startingImgPath = allStripsInList.get(startIdx).get(0);
-				File baseStartingFileDesc = new File(startingImgPath);
-		        String baseStartingFileName = baseStartingFileDesc.getName();
-				Matcher startingImgNumMatcher = CommonTilesRangeManager.stripsBaseFileNamePattern.matcher(baseStartingFileName);
-				startingImgNumMatcher.matches();
-				int startingImgNumInName = Integer.parseInt(startingImgNumMatcher.group(1));
+				// fabri1983: only (start, end, numTiles) of every candidate is kept. Tiles are taken for the chosen ranges only
+				CommonTilesRangeCandidates localCandidates = new CommonTilesRangeCandidates(maxRange);
 
 				for (int endIdx = startIdx + minRange - 1; endIdx <= finalIdx; endIdx++) {
 					// Given the nature of two-buffers swapping solution for the video player we have to capture always 
@@ -70,36 +61,25 @@ public class CommonTilesRangeOptimizerV1 {
 						continue;
 
 					// calculate common tiles between startingImgIdx and endingImgIdx (inclusive)
-					List<Tile> tiles = getCommonTiles(startIdx, endIdx, allStripsInList, tilesCacheId, minCommonTilesNum, maxCommonTilesNum);
-					int commonTilesNum = tiles.size();
-					if (commonTilesNum >= minCommonTilesNum) {
-
-						// Extract the ending image number
-						String endingImgPath = allStripsInList.get(endIdx).get(0);
-						File baseEndingFileDesc = new File(endingImgPath);
-				        String baseEndingFileName = baseEndingFileDesc.getName();
-						Matcher endingImgNumMatcher = CommonTilesRangeManager.stripsBaseFileNamePattern.matcher(baseEndingFileName);
-						endingImgNumMatcher.matches();
-						int endingImgNumInName = Integer.parseInt(endingImgNumMatcher.group(1));
-
-						localList.add(new CommonTilesRange(commonTilesNum, startIdx, endIdx, tiles, startingImgNumInName, endingImgNumInName));
-					}
+					int commonTilesNum = tilePresenceIndex.countCommonTiles(startIdx, endIdx);
+					if (commonTilesNum >= minCommonTilesNum)
+						localCandidates.add(startIdx, endIdx, commonTilesNum);
 				}
 
-				return localList;
+				return localCandidates;
 			});
 		}
 
 		executor.shutdown();
 
 		// Collect results in completion order while tracking progress
-		List<CommonTilesRange> allCommonTilesRanges = new ArrayList<>();
+		CommonTilesRangeCandidates allCandidates = new CommonTilesRangeCandidates(Math.max(1, taskCount) * 4);
 		System.out.print("Progress:   0.0%");  // Initial display with padding
 		System.out.flush();
 
 		for (int i = 1; i <= taskCount; i++) {
-			Future<List<CommonTilesRange>> completedFuture = completionTasks.take(); // waits for next completed
-			allCommonTilesRanges.addAll(completedFuture.get());
+			Future<CommonTilesRangeCandidates> completedFuture = completionTasks.take(); // waits for next completed
+			allCandidates.addAll(completedFuture.get());
 
 		    double progress = (i * 100.0) / taskCount;
 		    // \r brings cursor back to beginning of line. It doesn't work in Eclipse's Console view.
@@ -109,56 +89,58 @@ public class CommonTilesRangeOptimizerV1 {
 
 		System.out.println(" Done.");
 
-		// Sort by startingImgIdx in ascending order, then by getEndingImgIdx in ascending order
-	    allCommonTilesRanges.sort((a, b) -> {
-	        if (a.getStartingImgIdx() != b.getStartingImgIdx()) {
-	            return Integer.compare(a.getStartingImgIdx(), b.getStartingImgIdx());
-	        }
-	        // For same starting index, prefer larger ranges (higher ending index)
-	        return Integer.compare(a.getEndingImgIdx(), b.getEndingImgIdx());
-	    });
-	    //allCommonTilesRanges.forEach(System.out::println);
+		// Sort by endingImgIdx in ascending order, then by startingImgIdx in ascending order
+		allCandidates.sort();
 
 	    // Total ranges
-	    System.out.println("Total number of ranges: " + allCommonTilesRanges.size());
-
-		// Find Biggest numTiles
-		allCommonTilesRanges.stream()
-				.max(Comparator.comparingInt(CommonTilesRange::getNumTiles))
-				.ifPresent(result -> {
-					System.out.println("Biggest numTiles: " + result);
-				});
+	    System.out.println("Total number of ranges: " + allCandidates.size());
+
+		// Find Biggest numTiles: the first one in starting and ending index order
+		int biggest = -1;
+		for (int i = 0; i < allCandidates.size(); i++) {
+			if (biggest == -1 || allCandidates.getNumTiles(i) > allCandidates.getNumTiles(biggest)
+					|| (allCandidates.getNumTiles(i) == allCandidates.getNumTiles(biggest)
+						&& allCandidates.getStartingImgIdx(i) < allCandidates.getStartingImgIdx(biggest)))
+				biggest = i;
+		}
+		if (biggest != -1)
+			System.out.println("Biggest numTiles: " + toCommonTilesRange(allCandidates, biggest, tilePresenceIndex, allStripsInList));
 
 		// Create an optimized list of CommonTilesInFrames such that it maximizes the number of common tiles
 		System.out.println("Optimization of common tiles. Strategies: Weighted Interval Scheduling and Disjoint Points. Maximizes sum(numTiles) and longer or better ranges when equal score.");
-		List<CommonTilesRange> optimizedRanges_strat_A = optimize_max_sum_numTile_strategy_A(allCommonTilesRanges);
-		List<CommonTilesRange> optimizedRanges_strat_B = optimize_max_sum_numTile_strategy_B(allCommonTilesRanges, minRange, allStripsInList.size(), true);
+		int[] optimizedRanges_strat_A = optimize_max_sum_numTile_strategy_A(allCandidates);
+		int[] optimizedRanges_strat_B = optimize_max_sum_numTile_strategy_B(allCandidates, minRange, allStripsInList.size(), true);
 		// sum(numTiles)
-		int sum_numTiles_strat_A = optimizedRanges_strat_A.stream()
-				.mapToInt(CommonTilesRange::getNumTiles)
+		int sum_numTiles_strat_A = Arrays.stream(optimizedRanges_strat_A)
+				.map(allCandidates::getNumTiles)
 				.sum();
-		int sum_numTiles_strat_B = optimizedRanges_strat_B.stream()
-				.mapToInt(CommonTilesRange::getNumTiles)
+		int sum_numTiles_strat_B = Arrays.stream(optimizedRanges_strat_B)
+				.map(allCandidates::getNumTiles)
 				.sum();
 		// num of ranges
-		int totalRanges_strat_A = optimizedRanges_strat_A.size();
-		int totalRanges_strat_B = optimizedRanges_strat_B.size();
+		int totalRanges_strat_A = optimizedRanges_strat_A.length;
+		int totalRanges_strat_B = optimizedRanges_strat_B.length;
 		// Choose the best solution
-		List<CommonTilesRange> optimizedRanges = null;
+		int[] optimizedCandidates = null;
 		if (sum_numTiles_strat_A < sum_numTiles_strat_B)
-			optimizedRanges = optimizedRanges_strat_A;
+			optimizedCandidates = optimizedRanges_strat_A;
 		else if (sum_numTiles_strat_A > sum_numTiles_strat_B)
-			optimizedRanges = optimizedRanges_strat_B;
+			optimizedCandidates = optimizedRanges_strat_B;
 		else {
 			if (totalRanges_strat_A <= totalRanges_strat_B)
-				optimizedRanges = optimizedRanges_strat_A;
+				optimizedCandidates = optimizedRanges_strat_A;
 			else
-				optimizedRanges = optimizedRanges_strat_B;
+				optimizedCandidates = optimizedRanges_strat_B;
 		}
 
 		//System.out.println("Optimization of common tiles. Strategy: Longest Ranges.");
 		//List<CommonTilesRange> optimizedRanges = optimize_longest_non_overlapping_ranges(allCommonTilesRanges);
 
+		// Only the chosen ranges get their tiles
+		List<CommonTilesRange> optimizedRanges = new ArrayList<>(optimizedCandidates.length);
+		for (int candidateIdx : optimizedCandidates)
+			optimizedRanges.add(toCommonTilesRange(allCandidates, candidateIdx, tilePresenceIndex, allStripsInList));
+
 		// Print the optimized result
 		//optimizedRanges.forEach(System.out::println);
 
@@ -183,101 +165,53 @@ public class CommonTilesRangeOptimizerV1 {
 		return optimizedRanges;
 	}
 
-    private static List<Tile> getCommonTiles (int startingImgIdx, int endingImgIdx, List<List<String>> allStripsInList, 
-    		String tilesCacheId, int minCommonTilesNum, int maxCommonTilesNum) throws Exception
-    {
-    	// Step 1: Create all the tilesets in the given range
-
-    	List<TilesetOriginalCustom> tilesetsList = new ArrayList<>((endingImgIdx - startingImgIdx) + 1);
-
-    	for (int i = startingImgIdx; i <= endingImgIdx; i++) {
-    		List<String> stripsFileList = allStripsInList.get(i);
-
-    		File baseFileDesc = new File(stripsFileList.get(0));
-            String baseFileName = baseFileDesc.getName();
-    		String thisImageName = baseFileName.substring(0, baseFileName.lastIndexOf('.'));
-
-			// finalImageData has no more palette definitions at the top
-			byte[] finalImageData = mergeAllStrips(stripsFileList);
-			// get info from first strip
-			BasicImageInfo strip0Info = ImageUtil.getBasicInfo(stripsFileList.get(0));
-			// width and height in pixels
-			int w = strip0Info.w;
-			// we determine 'h' from data length and 'w' as we can crop image vertically to remove palette data
-			int h = finalImageData.length / w;
-			// get size in tile
-			int wt = w / 8;
-			int ht = h / 8;
-
-            // Create a tileset with final tiles: no plain tiles and no cached tiles
-			boolean isTempTileset = true;
-			TilesetOriginalCustom tilesetTemp = new TilesetOriginalCustom(thisImageName + "_tileset", finalImageData, w, h, 0, 0, wt, ht, 
-					TileOptimization.NONE, Compression.NONE, CompressionCustom.NONE, false, isTempTileset, TileOrdering.ROW, tilesCacheId, 
-					false, null);
-
-			// If a tileset has less than the minimum tiles expected then we just ignore it
-			if (tilesetTemp.getNumTile() < minCommonTilesNum)
-				//return Collections.emptyList();
-				continue;
-
-			// If a tileset has more than the maximum tiles expected then we just ignore it
-			if (tilesetTemp.getNumTile() > maxCommonTilesNum)
-				//return Collections.emptyList();
-				continue;
-
-			tilesetsList.add(tilesetTemp);
-    	}
-
-    	// Step 2: Calculate how many common tiles exist between all the tilesets in tilesetsList, ie: how many tiles intersect.
-
-		Optional<TilesetOriginalCustom> optionalSmallerTileset = tilesetsList.stream()
-				.min(Comparator.comparingInt(TilesetOriginalCustom::getNumTile));
-
-		if (optionalSmallerTileset.isEmpty())
-			return Collections.emptyList();
-
-		TilesetOriginalCustom smallerTileset = optionalSmallerTileset.get();
-
-		boolean[] isCommonToAll = new boolean[smallerTileset.getNumTile()];
-		Arrays.fill(isCommonToAll, true);
-
-		// Check each tile from the first tileset against all other tilesets
-		for (int tileIdx = 0; tileIdx < smallerTileset.getNumTile(); tileIdx++) {
-			Tile referenceTile = smallerTileset.get(tileIdx);
-
-			// Check if referenceTile exists in every other tileset
-			for (int tilesetIdx = 1; tilesetIdx < tilesetsList.size(); tilesetIdx++) {
-				TilesetOriginalCustom currentTileset = tilesetsList.get(tilesetIdx);
-				List<Tile> currentTiles = currentTileset.tiles;
-
-				boolean foundInCurrentTileset = false;
+	private static CommonTilesRange toCommonTilesRange (CommonTilesRangeCandidates candidates, int candidateIdx,
+			TilePresenceIndex tilePresenceIndex, List<List<String>> allStripsInList)
+	{
+		int startIdx = candidates.getStartingImgIdx(candidateIdx);
+		int endIdx = candidates.getEndingImgIdx(candidateIdx);
+		List<Tile> tiles = tilePresenceIndex.getCommonTiles(startIdx, endIdx);
+		return new CommonTilesRange(tiles.size(), startIdx, endIdx, tiles, getImgNumInName(allStripsInList.get(startIdx)),
+				getImgNumInName(allStripsInList.get(endIdx)));
+	}
 
-				// Search for referenceTile in the current tileset
-				for (Tile currentTile : currentTiles) {
-					if (referenceTile.getEquality(currentTile) != TileEquality.NONE) {
-						foundInCurrentTileset = true;
-						break;
-					}
-				}
+	private static int getImgNumInName (List<String> stripsFileList)
+	{
+		String baseFileName = new File(stripsFileList.get(0)).getName();
+		Matcher imgNumMatcher = CommonTilesRangeManager.stripsBaseFileNamePattern.matcher(baseFileName);
+		imgNumMatcher.matches();
+		return Integer.parseInt(imgNumMatcher.group(1));
+	}
 
-				// If not found in any tileset, mark as not common
-				if (!foundInCurrentTileset) {
-					isCommonToAll[tileIdx] = false;
-					break;
-				}
-			}
+	/**
+	 * Reads the tileset of every image once, in parallel, and indexes in which images every tile is present.
+	 * @return the index, with the images whose tileset is out of [minCommonTilesNum, maxCommonTilesNum] left out of the intersections
+	 */
+	private static TilePresenceIndex buildTilePresenceIndex (List<List<String>> allStripsInList, String tilesCacheId,
+			int minCommonTilesNum, int maxCommonTilesNum, ExecutorService executor) throws InterruptedException, ExecutionException
+	{
+		List<Future<TilesetOriginalCustom>> tilesetTasks = new ArrayList<>(allStripsInList.size());
+		for (List<String> stripsFileList : allStripsInList) {
+			tilesetTasks.add(executor.submit(() -> {
+				File baseFileDesc = new File(stripsFileList.get(0));
+				String baseFileName = baseFileDesc.getName();
+				String thisImageName = baseFileName.substring(0, baseFileName.lastIndexOf('.'));
+				// Create a tileset with final tiles: no plain tiles and no cached tiles
+				return DecodedFrameCache.getTempTileset(thisImageName + "_tileset", stripsFileList, tilesCacheId).tileset;
+			}));
 		}
 
-		// Save every common Tile
-		List<Tile> currentTiles = smallerTileset.tiles;
-		List<Tile> commonTiles = new ArrayList<>();
-		for (int i=0; i < currentTiles.size(); ++i) {
-			if (isCommonToAll[i]) {
-				commonTiles.add(currentTiles.get(i));
-			}
+		// tilesets are indexed in images order, as they are ready
+		TilePresenceIndex tilePresenceIndex = new TilePresenceIndex(allStripsInList.size());
+		for (int i = 0; i < tilesetTasks.size(); i++) {
+			TilesetOriginalCustom tilesetTemp = tilesetTasks.get(i).get();
+			tilesetTasks.set(i, null);
+			// If a tileset has less than the minimum tiles expected, or more than the maximum tiles expected, then we just ignore it
+			boolean eligible = tilesetTemp.getNumTile() >= minCommonTilesNum && tilesetTemp.getNumTile() <= maxCommonTilesNum;
+			tilePresenceIndex.addFrame(i, tilesetTemp.tiles, eligible);
 		}
 
-		return commonTiles;
+		return tilePresenceIndex;
 	}
 
     /**
@@ -363,10 +297,10 @@ public class CommonTilesRangeOptimizerV1 {
 	 * @param rangesList
 	 * @return
 	 */
-	private static List<CommonTilesRange> optimize_max_sum_numTile_strategy_A (List<CommonTilesRange> rangesList)
+	private static int[] optimize_max_sum_numTile_strategy_A (CommonTilesRangeCandidates rangesList)
 	{
 		if (rangesList == null || rangesList.isEmpty()) {
-			return Collections.emptyList();
+			return new int[0];
 		}
 
 		/*
@@ -380,21 +314,18 @@ public class CommonTilesRangeOptimizerV1 {
 		If your intended meaning of "maximize use of tiles" is select non-overlapping ranges whose total numTiles is maximum, this is the right algorithm.
 		*/
 
-		// 1. Sort by ending index (required for weighted interval scheduling)
-		List<CommonTilesRange> intervals = new ArrayList<>(rangesList);
-		intervals.sort(Comparator.comparingInt(CommonTilesRange::getEndingImgIdx));
-
-		int n = intervals.size();
+		// 1. Candidates are already sorted by ending index (required for weighted interval scheduling)
+		int n = rangesList.size();
 
 		// 2. p(i): For each interval i, find the rightmost interval j < i that does not overlap i
 		int[] p = new int[n];
 		for (int i = 0; i < n; i++) {
-			CommonTilesRange current = intervals.get(i);
+			int currentStart = rangesList.getStartingImgIdx(i);
 			int compatible = -1;
 
 			// binary search possible, but linear is fine for moderate sizes
 			for (int j = i - 1; j >= 0; j--) {
-				if (intervals.get(j).getEndingImgIdx() < current.getStartingImgIdx()) {
+				if (rangesList.getEndingImgIdx(j) < currentStart) {
 					compatible = j;
 					break;
 				}
@@ -406,7 +337,7 @@ public class CommonTilesRangeOptimizerV1 {
 		int[] dp = new int[n];
 
 		for (int i = 0; i < n; i++) {
-			int includeWeight = intervals.get(i).getNumTiles();
+			int includeWeight = rangesList.getNumTiles(i);
 			if (p[i] != -1) {
 				includeWeight += dp[p[i]];
 			}
@@ -415,16 +346,17 @@ public class CommonTilesRangeOptimizerV1 {
 		}
 
 		// 4. Recover the selected intervals
-		List<CommonTilesRange> result = new ArrayList<>();
+		int[] result = new int[n];
+		int resultSize = 0;
 		int i = n - 1;
 
 		while (i >= 0) {
-			int includeWeight = intervals.get(i).getNumTiles() + (p[i] != -1 ? dp[p[i]] : 0);
+			int includeWeight = rangesList.getNumTiles(i) + (p[i] != -1 ? dp[p[i]] : 0);
 			int excludeWeight = (i == 0 ? 0 : dp[i - 1]);
 
 			if (includeWeight >= excludeWeight) {
 				// include interval i
-				result.add(intervals.get(i));
+				result[resultSize++] = i;
 				i = p[i]; // jump to its predecessor
 			} else {
 				i -= 1; // skip interval i
@@ -432,9 +364,7 @@ public class CommonTilesRangeOptimizerV1 {
 		}
 
 		// 5. Result is reversed due to backtracking
-		Collections.reverse(result);
-
-		return result;
+		return reverse(result, resultSize);
 	}
 
 	/**
@@ -448,25 +378,25 @@ public class CommonTilesRangeOptimizerV1 {
      * @param numberOfImages   Total number of images
      * @param minRange         Minimum allowed range length
      * @param useTieBreakers   Whether to use extended tie-breaking logic
-	 * @return
+	 * @return indexes of the chosen candidates
 	 */
-	private static List<CommonTilesRange> optimize_max_sum_numTile_strategy_B (List<CommonTilesRange> rangesList, int minRange, 
+	private static int[] optimize_max_sum_numTile_strategy_B (CommonTilesRangeCandidates rangesList, int minRange, 
 			int numberOfImages, boolean useTieBreakers)
 	{
 		if (rangesList == null || rangesList.isEmpty()) {
-			return Collections.emptyList();
+			return new int[0];
 		}
 
-		// --- 1) Build lookup matrix: rangeLookup[start][end] = CommonTilesRange ---
-		CommonTilesRange[][] rangeLookup = new CommonTilesRange[numberOfImages][numberOfImages];
+		// --- 1) Build lookup matrix: rangeLookup[start][end] = candidate index + 1 (0 when no range) ---
+		int[][] rangeLookup = new int[numberOfImages][numberOfImages];
 
-		for (CommonTilesRange r : rangesList) {
-			int s = r.getStartingImgIdx();
-			int e = r.getEndingImgIdx();
+		for (int r = 0; r < rangesList.size(); r++) {
+			int s = rangesList.getStartingImgIdx(r);
+			int e = rangesList.getEndingImgIdx(r);
 
 			// must satisfy minimum range length
 			if ((e - s + 1) >= minRange) {
-				rangeLookup[s][e] = r;
+				rangeLookup[s][e] = r + 1;
 			}
 		}
 
@@ -482,12 +412,12 @@ public class CommonTilesRangeOptimizerV1 {
 			int bestStart = -1;
 
 			for (int s = 0; s <= i; s++) {
-				CommonTilesRange r = rangeLookup[s][i];
-				if (r == null)
+				int r = rangeLookup[s][i] - 1;
+				if (r == -1)
 					continue;
 
 				long before = (s > 0) ? best[s - 1] : 0L;
-				long candidate = before + r.getNumTiles();
+				long candidate = before + rangesList.getNumTiles(r);
 
 				if (candidate > bestVal) {
 					// normal improvement
@@ -498,7 +428,7 @@ public class CommonTilesRangeOptimizerV1 {
 				else if (useTieBreakers && candidate == bestVal && bestStart != -1) {
 					// --- TIE BREAKERS ---
 
-					CommonTilesRange existing = rangeLookup[bestStart][i];
+					int existing = rangeLookup[bestStart][i] - 1;
 
 					int lenCandidate = i - s;
 					int lenExisting = i - bestStart;
@@ -509,11 +439,11 @@ public class CommonTilesRangeOptimizerV1 {
 					}
 					// Rule 2: if same length, prefer more tiles
 					else if (lenCandidate == lenExisting) {
-						if (r.getNumTiles() > existing.getNumTiles()) {
+						if (rangesList.getNumTiles(r) > rangesList.getNumTiles(existing)) {
 							bestStart = s;
 						}
 						// Rule 3: if still tied, earlier start wins
-						else if (r.getNumTiles() == existing.getNumTiles() && s < bestStart) {
+						else if (rangesList.getNumTiles(r) == rangesList.getNumTiles(existing) && s < bestStart) {
 							bestStart = s;
 						}
 					}
@@ -525,7 +455,7 @@ public class CommonTilesRangeOptimizerV1 {
 		}
 
 		// --- 4) Reconstruction ---
-		List<CommonTilesRange> result = new ArrayList<>();
+		List<Integer> result = new ArrayList<>();
 		int i = numberOfImages - 1;
 
 		while (i >= 0) {
@@ -533,7 +463,7 @@ public class CommonTilesRangeOptimizerV1 {
 			if (s == -1) {
 				i--;
 			} else {
-				result.add(rangeLookup[s][i]);
+				result.add(rangeLookup[s][i] - 1);
 				i = s - 1;
 			}
 		}
@@ -546,21 +476,21 @@ public class CommonTilesRangeOptimizerV1 {
 			improved = false;
 
 			for (int idx = 0; idx < result.size() - 1; idx++) {
-				CommonTilesRange r1 = result.get(idx);
-				CommonTilesRange r2 = result.get(idx + 1);
+				int r1 = result.get(idx);
+				int r2 = result.get(idx + 1);
 
-				if (r1.getEndingImgIdx() + 1 != r2.getStartingImgIdx())
+				if (rangesList.getEndingImgIdx(r1) + 1 != rangesList.getStartingImgIdx(r2))
 					continue;
 
-				int mergedStart = r1.getStartingImgIdx();
-				int mergedEnd = r2.getEndingImgIdx();
+				int mergedStart = rangesList.getStartingImgIdx(r1);
+				int mergedEnd = rangesList.getEndingImgIdx(r2);
 
-				CommonTilesRange merged = rangeLookup[mergedStart][mergedEnd];
-				if (merged == null)
+				int merged = rangeLookup[mergedStart][mergedEnd] - 1;
+				if (merged == -1)
 					continue;
 
-				int mergedTiles = merged.getNumTiles();
-				int sumTiles = r1.getNumTiles() + r2.getNumTiles();
+				int mergedTiles = rangesList.getNumTiles(merged);
+				int sumTiles = rangesList.getNumTiles(r1) + rangesList.getNumTiles(r2);
 
 				if (mergedTiles > sumTiles) {
 					result.remove(idx + 1);
@@ -571,55 +501,15 @@ public class CommonTilesRangeOptimizerV1 {
 			}
 		}
 
-		return result;
-	}
-
-	private static byte[] mergeAllStrips (List<String> stripsFileList) throws Exception
-    {
-		// get tile data per pixel (color position in palette), check image dimension is aligned to tile, remove palette info if any
-		byte[] image0 = ImageUtilFast.getImageAs8bpp(stripsFileList.get(0), true, true);
-		int stripLength = image0.length;
-		// allocate space for bigger image
-		final byte[] finalImage = new byte[stripLength * stripsFileList.size()];
-
-		// copy all the strips into finalImage
-		for (int i = 0; i < stripsFileList.size(); ++i) {
-			String imgFile = stripsFileList.get(i);
-			byte[] image = ImageUtilFast.getImageAs8bpp(imgFile, true, true);
-			checkImageNotNull(imgFile, image);
-			checkImageColorByte(imgFile, image);
-			System.arraycopy(image, 0, finalImage, i * stripLength, stripLength);
-		}
-
-		return finalImage;
+		return result.stream().mapToInt(Integer::intValue).toArray();
 	}
 
-	/**
-	 * Happen when we couldn't retrieve palette data from RGB image
-	 * 
-	 * @param imgFile
-	 * @param image
-	 */
-	private static void checkImageNotNull(String imgFile, byte[] image) {
-		if (image == null)
-			throw new IllegalArgumentException("RGB image '" + imgFile
-					+ "' does not contains palette data (see 'Important note about image format' in the rescomp.txt file");
-	}
-
-	/**
-	 * b0-b3 = pixel data; b4-b5 = palette index; b7 = priority bit check if image
-	 * try to use bit 6 (probably mean that we have too much colors in our image)
-	 * 
-	 * @param imgFile
-	 * @param image
-	 */
-	private static void checkImageColorByte(String imgFile, byte[] image) {
-		for (byte d : image) {
-			// bit 6 used ?
-			if ((d & 0x40) != 0)
-				throw new IllegalArgumentException("'" + imgFile
-						+ "' has color index in [64..127] range, IMAGE resource requires image with a maximum of 64 colors");
-		}
+	private static int[] reverse (int[] values, int size)
+	{
+		int[] reversed = new int[size];
+		for (int i = 0; i < size; i++)
+			reversed[i] = values[size - 1 - i];
+		return reversed;
 	}
 
 }
@@ -7,17 +7,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import sgdk.rescomp.resource.TilesetOriginalCustom;
-import sgdk.rescomp.type.Basics.Compression;
-import sgdk.rescomp.type.Basics.TileEquality;
-import sgdk.rescomp.type.Basics.TileOptimization;
-import sgdk.rescomp.type.Basics.TileOrdering;
 import sgdk.rescomp.type.CommonTilesRange;
-import sgdk.rescomp.type.CompressionCustom;
+import sgdk.rescomp.type.CommonTilesRangeCandidates;
 import sgdk.rescomp.type.Tile;
-import sgdk.tool.ImageUtil;
-import sgdk.tool.ImageUtil.BasicImageInfo;
+import sgdk.rescomp.type.TileFingerprint;
 
 public class CommonTilesRangeOptimizerV2 {
 
@@ -47,23 +44,8 @@ public class CommonTilesRangeOptimizerV2 {
             String baseFileName = baseFileDesc.getName();
     		String thisImageName = baseFileName.substring(0, baseFileName.lastIndexOf('.'));
 
-			// finalImageData has no more palette definitions at the top
-			byte[] finalImageData = mergeAllStrips(stripsFileList);
-			// get info from first strip
-			BasicImageInfo strip0Info = ImageUtil.getBasicInfo(stripsFileList.get(0));
-			// width and height in pixels
-			int w = strip0Info.w;
-			// we determine 'h' from data length and 'w' as we can crop image vertically to remove palette data
-			int h = finalImageData.length / w;
-			// get size in tile
-			int wt = w / 8;
-			int ht = h / 8;
-
-            // Create a tileset with final tiles: no plain tiles and no cached tiles
-			boolean isTempTileset = true;
-			TilesetOriginalCustom tilesetTemp = new TilesetOriginalCustom(thisImageName + "_tileset", finalImageData, w, h, 0, 0, wt, ht, 
-					TileOptimization.NONE, Compression.NONE, CompressionCustom.NONE, false, isTempTileset, TileOrdering.ROW, tilesCacheId, 
-					false, null);
+			// Create a tileset with final tiles: no plain tiles and no cached tiles. The decoded frame is kept for the strips resources
+			TilesetOriginalCustom tilesetTemp = DecodedFrameCache.getTempTileset(thisImageName + "_tileset", stripsFileList, tilesCacheId).tileset;
 
 			// If a tileset has less than the minimum tiles expected then we just ignore it
 			if (tilesetTemp.getNumTile() < minCommonTilesNum)
@@ -106,50 +88,24 @@ public class CommonTilesRangeOptimizerV2 {
 		return optimizedRanges;
 	}
 
-	private static List<CommonTilesRange> computeOptimzalRanges (List<TilesetOriginalCustom> tilesetsList, int minRange, int minCommonTilesNum)
+	// package-private so RescompExtBenchmark can measure it without going through the image files
+	static List<CommonTilesRange> computeOptimzalRanges (List<TilesetOriginalCustom> tilesetsList, int minRange, int minCommonTilesNum)
 	{
 		int n = tilesetsList.size();
 		if (n == 0)
 			return Collections.emptyList();
 
-		// Step 1: Enumerate all valid ranges
-		List<CommonTilesRange> allRanges = new ArrayList<>();
-
-		for (int startIdx = 0; startIdx < n; startIdx++) {
-			List<Tile> common = new ArrayList<>(tilesetsList.get(startIdx).tiles);
-
-			Matcher startMatcher = TilesetOriginalCustom.imageNameStripsFromResIdPattern
-					.matcher(tilesetsList.get(startIdx).id);
-			startMatcher.matches();
-			int startingImgNum = Integer.parseInt(startMatcher.group(1));
-
-			for (int endIdx = startIdx; endIdx < n; endIdx++) {
-				if (endIdx > startIdx) {
-					common = intersectTiles(common, tilesetsList.get(endIdx).tiles);
-					if (common.isEmpty())
-						break;
-				}
+		// fabri1983: every tileset is indexed by tile fingerprint once, instead of scanning it for every tile of every range it ends
+		List<TileFingerprintIndex> tilesetsIndexes = indexTilesets(tilesetsList);
 
-				int frames = endIdx - startIdx + 1;
-
-				if (frames >= minRange && common.size() >= minCommonTilesNum) {
-					Matcher endMatcher = TilesetOriginalCustom.imageNameStripsFromResIdPattern
-							.matcher(tilesetsList.get(endIdx).id);
-					endMatcher.matches();
-					int endingImgNum = Integer.parseInt(endMatcher.group(1));
-
-					allRanges.add(new CommonTilesRange(common.size(), startIdx, endIdx, new ArrayList<>(common),
-							startingImgNum, endingImgNum));
-				}
-			}
-		}
+		// Step 1: Enumerate all valid ranges
+		CommonTilesRangeCandidates allRanges = enumerateRanges(tilesetsList, tilesetsIndexes, minRange, minCommonTilesNum);
 
 		if (allRanges.isEmpty())
 			return Collections.emptyList();
 
 		// Sort by ending index (important for DP)
-		allRanges.sort(Comparator.comparingInt(CommonTilesRange::getEndingImgIdx)
-				.thenComparingInt(CommonTilesRange::getStartingImgIdx));
+		allRanges.sort();
 
 		// Step 2: DP Arrays
 		long[] dp = new long[n]; // best score ending at frame i
@@ -167,13 +123,12 @@ public class CommonTilesRangeOptimizerV2 {
 			prev[i] = i - 1;
 
 			// Consider all ranges ending at i
-			while (rangeIndex < allRanges.size() && allRanges.get(rangeIndex).getEndingImgIdx() == i) {
+			while (rangeIndex < allRanges.size() && allRanges.getEndingImgIdx(rangeIndex) == i) {
 
-				CommonTilesRange r = allRanges.get(rangeIndex);
-				int s = r.getStartingImgIdx();
+				int s = allRanges.getStartingImgIdx(rangeIndex);
 
-				int frames = r.getEndingImgIdx() - r.getStartingImgIdx() + 1;
-				long score = frames * (long) r.getNumTiles();
+				int frames = i - s + 1;
+				long score = frames * (long) allRanges.getNumTiles(rangeIndex);
 
 				long candidate = score + (s > 0 ? dp[s - 1] : 0);
 
@@ -187,7 +142,7 @@ public class CommonTilesRangeOptimizerV2 {
 			}
 		}
 
-		// Step 3: Backtrack reconstruction
+		// Step 3: Backtrack reconstruction. Tiles are only calculated again for the chosen ranges
 		List<CommonTilesRange> result = new ArrayList<>();
 		int idx = n - 1;
 
@@ -197,8 +152,11 @@ public class CommonTilesRangeOptimizerV2 {
 				continue;
 			}
 
-			CommonTilesRange r = allRanges.get(choice[idx]);
-			result.add(r);
+			int startIdx = allRanges.getStartingImgIdx(choice[idx]);
+			int endIdx = allRanges.getEndingImgIdx(choice[idx]);
+			List<Tile> common = getCommonTiles(tilesetsList, tilesetsIndexes, startIdx, endIdx);
+			result.add(new CommonTilesRange(common.size(), startIdx, endIdx, common,
+					getImgNumInName(tilesetsList.get(startIdx)), getImgNumInName(tilesetsList.get(endIdx))));
 			idx = prev[idx];
 		}
 
@@ -206,69 +164,103 @@ public class CommonTilesRangeOptimizerV2 {
 		return result;
 	}
 
+	// package-private so RescompExtBenchmark can measure it without going through the image files
+	static List<TileFingerprintIndex> indexTilesets (List<TilesetOriginalCustom> tilesetsList)
+	{
+		return tilesetsList.parallelStream()
+				.map(tileset -> new TileFingerprintIndex(tileset.tiles))
+				.collect(Collectors.toList());
+	}
+
 	/**
-	 * Compute intersection between lists of tiles. Preserves order from listA.
+	 * Every range of at least minRange tilesets having at least minCommonTilesNum common tiles, in ascending start and end order.
+	 * Every starting index is enumerated in parallel, since it doesn't depend on the others.</br>
+	 * Package-private so RescompExtBenchmark can measure it without going through the image files.
 	 */
-	private static List<Tile> intersectTiles (List<Tile> listA, List<Tile> listB)
+	static CommonTilesRangeCandidates enumerateRanges (List<TilesetOriginalCustom> tilesetsList, List<TileFingerprintIndex> tilesetsIndexes,
+			int minRange, int minCommonTilesNum)
 	{
-		List<Tile> result = new ArrayList<>();
-		for (Tile a : listA) {
-			for (Tile b : listB) {
-				if (a.getEquality(b) != TileEquality.NONE) {
-					result.add(a);
+		return IntStream.range(0, tilesetsList.size())
+				.parallel()
+				.mapToObj(startIdx -> enumerateRangesFrom(startIdx, tilesetsList, tilesetsIndexes, minRange, minCommonTilesNum))
+				// merged in starting index order
+				.collect(CommonTilesRangeCandidates::new, CommonTilesRangeCandidates::addAll, CommonTilesRangeCandidates::addAll);
+	}
+
+	private static CommonTilesRangeCandidates enumerateRangesFrom (int startIdx, List<TilesetOriginalCustom> tilesetsList,
+			List<TileFingerprintIndex> tilesetsIndexes, int minRange, int minCommonTilesNum)
+	{
+		int n = tilesetsList.size();
+		CommonTilesRangeCandidates ranges = new CommonTilesRangeCandidates(16);
+
+		List<Tile> common = new ArrayList<>(tilesetsList.get(startIdx).tiles);
+		List<TileFingerprint> commonFingerprints = getFingerprints(common);
+
+		for (int endIdx = startIdx; endIdx < n; endIdx++) {
+			if (endIdx > startIdx) {
+				intersectTiles(common, commonFingerprints, tilesetsIndexes.get(endIdx));
+				// common tiles only decrease as the range grows, so no longer range from startIdx can be a valid one
+				if (common.isEmpty() || common.size() < minCommonTilesNum)
 					break;
-				}
 			}
-		}
-		return result;
-	}
 
-	private static byte[] mergeAllStrips (List<String> stripsFileList) throws Exception
-    {
-		// get tile data per pixel (color position in palette), check image dimension is aligned to tile, remove palette info if any
-		byte[] image0 = ImageUtilFast.getImageAs8bpp(stripsFileList.get(0), true, true);
-		int stripLength = image0.length;
-		// allocate space for bigger image
-		final byte[] finalImage = new byte[stripLength * stripsFileList.size()];
-
-		// copy all the strips into finalImage
-		for (int i = 0; i < stripsFileList.size(); ++i) {
-			String imgFile = stripsFileList.get(i);
-			byte[] image = ImageUtilFast.getImageAs8bpp(imgFile, true, true);
-			checkImageNotNull(imgFile, image);
-			checkImageColorByte(imgFile, image);
-			System.arraycopy(image, 0, finalImage, i * stripLength, stripLength);
+			int frames = endIdx - startIdx + 1;
+
+			if (frames >= minRange && common.size() >= minCommonTilesNum)
+				ranges.add(startIdx, endIdx, common.size());
 		}
 
-		return finalImage;
+		return ranges;
 	}
 
 	/**
-	 * Happen when we couldn't retrieve palette data from RGB image
-	 * 
-	 * @param imgFile
-	 * @param image
+	 * @return tiles of the starting tileset present in every tileset of the range, same than the ones the range was enumerated with
 	 */
-	private static void checkImageNotNull(String imgFile, byte[] image) {
-		if (image == null)
-			throw new IllegalArgumentException("RGB image '" + imgFile
-					+ "' does not contains palette data (see 'Important note about image format' in the rescomp.txt file");
+	private static List<Tile> getCommonTiles (List<TilesetOriginalCustom> tilesetsList, List<TileFingerprintIndex> tilesetsIndexes,
+			int startIdx, int endIdx)
+	{
+		List<Tile> common = new ArrayList<>(tilesetsList.get(startIdx).tiles);
+		List<TileFingerprint> commonFingerprints = getFingerprints(common);
+		for (int i = startIdx + 1; i <= endIdx; i++)
+			intersectTiles(common, commonFingerprints, tilesetsIndexes.get(i));
+		return common;
+	}
+
+	private static List<TileFingerprint> getFingerprints (List<Tile> tiles)
+	{
+		List<TileFingerprint> fingerprints = new ArrayList<>(tiles.size());
+		for (Tile tile : tiles)
+			fingerprints.add(TileFingerprint.of(tile));
+		return fingerprints;
+	}
+
+	private static int getImgNumInName (TilesetOriginalCustom tileset)
+	{
+		Matcher matcher = TilesetOriginalCustom.imageNameStripsFromResIdPattern.matcher(tileset.id);
+		matcher.matches();
+		return Integer.parseInt(matcher.group(1));
 	}
 
 	/**
-	 * b0-b3 = pixel data; b4-b5 = palette index; b7 = priority bit check if image
-	 * try to use bit 6 (probably mean that we have too much colors in our image)
-	 * 
-	 * @param imgFile
-	 * @param image
+	 * Compute intersection between lists of tiles, in place. Preserves order from listA.
+	 * @param listA tiles to keep only if they are in the index
+	 * @param fingerprintsA fingerprints of listA tiles, in the same order. Updated along listA
+	 * @param indexB
 	 */
-	private static void checkImageColorByte(String imgFile, byte[] image) {
-		for (byte d : image) {
-			// bit 6 used ?
-			if ((d & 0x40) != 0)
-				throw new IllegalArgumentException("'" + imgFile
-						+ "' has color index in [64..127] range, IMAGE resource requires image with a maximum of 64 colors");
+	private static void intersectTiles (List<Tile> listA, List<TileFingerprint> fingerprintsA, TileFingerprintIndex indexB)
+	{
+		int kept = 0;
+		for (int i = 0; i < listA.size(); i++) {
+			Tile a = listA.get(i);
+			TileFingerprint fingerprint = fingerprintsA.get(i);
+			if (indexB.contains(a, fingerprint)) {
+				listA.set(kept, a);
+				fingerprintsA.set(kept, fingerprint);
+				kept++;
+			}
 		}
+		listA.subList(kept, listA.size()).clear();
+		fingerprintsA.subList(kept, fingerprintsA.size()).clear();
 	}
 
 }
@@ -0,0 +1,132 @@
+package sgdk.rescomp.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import sgdk.rescomp.type.CompressionCustom;
+
+/**
+ * On disk cache of the compressors output, so the bins whose data didn't change since the last build aren't compressed again.</br>
+ * Entries are content addressed: the file name is made of the SHA-256 of the uncompressed data, the compression, and a hash of the
+ * compressor signature (command line flags, executable size and date), so changing any of them just misses the cache.</br>
+ * Entries are stored in folder <code>compression_cache</code> located at the same location than rescomp_ext.jar.
+ * Delete the folder to clear the cache. Set COMPRESSION_CACHE_ENABLED = false in ext.resource.properties to disable it.
+ */
+public class CompressionCache {
+
+	private static final String CACHE_DIR_NAME = "compression_cache";
+	// "MDCC"
+	private static final int MAGIC = 0x4D444343;
+	// increment it when the entry format changes
+	private static final int FORMAT_VERSION = 1;
+	// header: magic, version, packed length
+	private static final int HEADER_SIZE = 4 + 4 + 4;
+
+	private static final File cacheDir = new File(new File(CompressionCache.class.getProtectionDomain().getCodeSource().getLocation().getPath())
+			.getParentFile().getAbsolutePath() + File.separator + CACHE_DIR_NAME);
+
+	private static volatile Boolean enabled;
+
+	public static boolean isEnabled () {
+		if (enabled == null) {
+			// enabled by default
+			String value = ExtProperties.getString(ExtProperties.COMPRESSION_CACHE_ENABLED);
+			enabled = Boolean.valueOf(value == null || !"false".equalsIgnoreCase(value.trim()));
+		}
+		return enabled.booleanValue();
+	}
+
+	/**
+	 * @param data uncompressed data
+	 * @param compression
+	 * @param compressorSignature anything that changes the compressor output for the same data: flags, executable version, etc
+	 * @return the key of the entry, which is also its file name
+	 */
+	public static String getKey (byte[] data, CompressionCustom compression, String compressorSignature) {
+		return toHex(sha256(data)) + "_" + compression.getValue() + "_" + String.format("%08X", compressorSignature.hashCode()) + ".bin";
+	}
+
+	/**
+	 * @return the packed data cached under the key, or null if there is no valid entry
+	 */
+	public static byte[] get (String key) {
+		Path path = new File(cacheDir, key).toPath();
+		if (!Files.isRegularFile(path))
+			return null;
+
+		try {
+			byte[] entry = Files.readAllBytes(path);
+			if (entry.length >= HEADER_SIZE) {
+				ByteBuffer bb = ByteBuffer.wrap(entry);
+				int magic = bb.getInt();
+				int version = bb.getInt();
+				int packedLength = bb.getInt();
+				if (magic == MAGIC && version == FORMAT_VERSION && packedLength == entry.length - HEADER_SIZE) {
+					byte[] packed = new byte[packedLength];
+					bb.get(packed);
+					return packed;
+				}
+			}
+			// truncated or from an older format: drop it so it's stored again
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			System.out.println("[WARNING] Couldn't read compression cache entry " + path + ". " + e.getMessage());
+		}
+
+		return null;
+	}
+
+	public static void put (String key, byte[] packed) {
+		Path path = new File(cacheDir, key).toPath();
+		Path tmpPath = new File(cacheDir, key + "." + Thread.currentThread().getId() + "_" + System.nanoTime() + ".tmp").toPath();
+
+		try {
+			Files.createDirectories(cacheDir.toPath());
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(HEADER_SIZE + packed.length);
+			try (DataOutputStream dos = new DataOutputStream(baos)) {
+				dos.writeInt(MAGIC);
+				dos.writeInt(FORMAT_VERSION);
+				dos.writeInt(packed.length);
+				dos.write(packed);
+			}
+			Files.write(tmpPath, baos.toByteArray());
+
+			// other threads or another rescomp run may be reading the same entry, so never expose a half written file
+			try {
+				Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			System.out.println("[WARNING] Couldn't write compression cache entry " + path + ". " + e.getMessage());
+			try {
+				Files.deleteIfExists(tmpPath);
+			} catch (IOException e2) {}
+		}
+	}
+
+	private static byte[] sha256 (byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHex (byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b & 0xFF));
+		return sb.toString();
+	}
+}
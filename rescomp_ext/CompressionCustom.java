@@ -10,6 +10,8 @@ public enum CompressionCustom {
 	LZ4W(					"LZ4W",					"",						0), // just a place holder, BinCustom changes the type to Compress before creating the bin
 	APLIB(					"APLIB",				"",						0), // just a place holder, BinCustom changes the type to Compress before creating the bin
 	BEST(					"BEST",					"",						0), // just a place holder, BinCustom changes the type to Compress before creating the bin
+	AUTO_SIZE(				"AUTO_SIZE",			"",						0), // just a place holder, BinCustom picks the candidate with the smallest output
+	AUTO_DECODE_BUDGET(		"AUTO_DECODE_BUDGET",	"",						0), // just a place holder, BinCustom picks the smallest candidate whose decode cost fits the budget
 	BYTEKILLER(				"BYTEKILLER",			"bytekiller",			10),
 	CLOWNNEMESIS(			"CLOWNNEMESIS",			"clownnemesis",			11),
 	COMPER(					"COMPER",				"compcmp",				12),
@@ -46,7 +48,8 @@ public enum CompressionCustom {
 	UFTC(					"UFTC",					"uftc",					43),
 	UFTC15(					"UFTC15",				"uftc",					44),
 	UNAPLIB(				"UNAPLIB",				"",						45),
-	ZX0(					"ZX0",					"salvador",				46);
+	ZX0(					"ZX0",					"salvador",				46),
+	TILEMAP_DELTA(			"TILEMAP_DELTA",		"",						47); // tilemap already encoded by TilemapDeltaManager, not selectable as compression
 
     private final String value;
     private final String exeName;
@@ -97,6 +100,24 @@ public enum CompressionCustom {
     	return false;
     }
 
+    /**
+     * If one of the modes selecting the compression among the candidates set in property COMPRESSION_AUTO_CANDIDATES.
+     * @param cc
+     * @return
+     */
+    public static boolean isAutoSelection (CompressionCustom cc) {
+    	return cc == AUTO_SIZE || cc == AUTO_DECODE_BUDGET;
+    }
+
+    /**
+     * If the data comes already encoded by the resource, so the bin writes it as it is.
+     * @param cc
+     * @return
+     */
+    public static boolean isPreEncoded (CompressionCustom cc) {
+    	return cc == TILEMAP_DELTA;
+    }
+
     public static Compression getSgdkCompression (CompressionCustom cc) {
     	switch (cc) {
     	case AUTO: return Compression.AUTO;
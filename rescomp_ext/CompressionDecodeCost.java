@@ -0,0 +1,143 @@
+package sgdk.rescomp.tool;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import sgdk.rescomp.type.Basics.Compression;
+import sgdk.rescomp.type.CompressionCustom;
+
+/**
+ * Estimation of the 68000 cycles the decompressors on the SGDK side take to unpack a bin.</br>
+ * Every compression has its own {@link Model}. By default the cost is a linear model: a fixed call overhead plus a cost
+ * per packed byte read and a cost per unpacked byte written. Values are approximations taken from the decompressors
+ * main loops and can be fitted against real measurements with property <code>COMPRESSION_DECODE_COST_&lt;COMPRESSION&gt; =
+ * callCycles,cyclesPerPackedByte,cyclesPerUnpackedByte</code>.</br>
+ * RLEW_A and RLEW_B use {@link RLEWDecodeCost} which walks the packed stream through the same paths than our asm decompressors.
+ * TILEMAP_DELTA uses {@link TilemapDeltaDecodeCost} which walks the runs of the delta stream.
+ * Use {@link #register(CompressionCustom, Model)} to plug a different model.
+ */
+public class CompressionDecodeCost {
+
+	public interface Model {
+		/**
+		 * @param packed compressed data
+		 * @param unpackedSize size in bytes of the decompressed data
+		 * @return estimated 68000 cycles to decompress the data
+		 */
+		long estimateCycles (byte[] packed, int unpackedSize);
+	}
+
+	public static class LinearModel implements Model {
+		public final int callCycles;
+		public final int cyclesPerPackedByte;
+		public final int cyclesPerUnpackedByte;
+
+		public LinearModel (int callCycles, int cyclesPerPackedByte, int cyclesPerUnpackedByte) {
+			this.callCycles = callCycles;
+			this.cyclesPerPackedByte = cyclesPerPackedByte;
+			this.cyclesPerUnpackedByte = cyclesPerUnpackedByte;
+		}
+
+		@Override
+		public long estimateCycles (byte[] packed, int unpackedSize) {
+			return callCycles + (long) cyclesPerPackedByte * packed.length + (long) cyclesPerUnpackedByte * unpackedSize;
+		}
+	}
+
+	// function call, registers save/restore and setup
+	private static final int CALL_CYCLES = 300;
+
+	private static final Map<CompressionCustom, Model> models = new EnumMap<>(CompressionCustom.class);
+
+	static {
+		models.put(CompressionCustom.RLEW_A, RLEWDecodeCost::estimateCycles_A);
+		models.put(CompressionCustom.RLEW_B, RLEWDecodeCost::estimateCycles_B);
+		models.put(CompressionCustom.TILEMAP_DELTA, TilemapDeltaDecodeCost::estimateCycles);
+	}
+
+	/**
+	 * Replaces the model used for the compression.
+	 */
+	public static synchronized void register (CompressionCustom compression, Model model) {
+		models.put(compression, model);
+	}
+
+	public static synchronized Model getModel (CompressionCustom compression) {
+		Model model = models.get(compression);
+		if (model == null) {
+			model = getLinearModelFromProperties(compression);
+			if (model == null)
+				model = new LinearModel(CALL_CYCLES, getCyclesPerPackedByte(compression), getCyclesPerUnpackedByte(compression));
+			models.put(compression, model);
+		}
+		return model;
+	}
+
+	/**
+	 * @param compression
+	 * @param packed compressed data
+	 * @param unpackedSize size in bytes of the decompressed data
+	 * @return estimated 68000 cycles to decompress the data
+	 */
+	public static long estimateCycles (CompressionCustom compression, byte[] packed, int unpackedSize) {
+		if (compression == CompressionCustom.NONE)
+			return 0;
+		return getModel(compression).estimateCycles(packed, unpackedSize);
+	}
+
+	/**
+	 * Same than {@link #estimateCycles(CompressionCustom, byte[], int)} for the data packed with SGDK's compressions.
+	 */
+	public static long estimateCycles (Compression compression, byte[] packed, int unpackedSize) {
+		switch (compression) {
+		case APLIB: return estimateCycles(CompressionCustom.APLIB, packed, unpackedSize);
+		case LZ4W: return estimateCycles(CompressionCustom.LZ4W, packed, unpackedSize);
+		default: return 0;
+		}
+	}
+
+	private static LinearModel getLinearModelFromProperties (CompressionCustom compression) {
+		String key = ExtProperties.COMPRESSION_DECODE_COST_PREFIX + compression.getValue();
+		String value = ExtProperties.getString(key);
+		if (value == null || value.isBlank())
+			return null;
+
+		String[] values = value.split(",");
+		try {
+			if (values.length == 3)
+				return new LinearModel(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim()), Integer.parseInt(values[2].trim()));
+		} catch (NumberFormatException e) {}
+
+		System.out.println("[WARNING] " + key + " = " + value + " isn't valid. Expected callCycles,cyclesPerPackedByte,cyclesPerUnpackedByte. Using default values.");
+		return null;
+	}
+
+	private static int getCyclesPerPackedByte (CompressionCustom compression) {
+		switch (compression) {
+		case LZ4W: return 8;
+		case UFTC:
+		case UFTC15: return 4;
+		case LZ4: return 10;
+		case ZX0: return 30;
+		case APLIB:
+		case UNAPLIB: return 50;
+		default: return 40;
+		}
+	}
+
+	private static int getCyclesPerUnpackedByte (CompressionCustom compression) {
+		switch (compression) {
+		// word based copies
+		case LZ4W: return 22;
+		// dictionary of 8 bytes blocks
+		case UFTC:
+		case UFTC15: return 8;
+		case LZ4: return 30;
+		case ZX0: return 40;
+		case APLIB:
+		case UNAPLIB: return 70;
+		default: return 60;
+		}
+	}
+
+}
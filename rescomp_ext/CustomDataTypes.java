@@ -23,6 +23,18 @@ public enum CustomDataTypes {
 	ImageNoPalsSplit31CompField("ImageNoPalsSplit31CompField"),
 	ImageNoPalsSplit32CompField("ImageNoPalsSplit32CompField"),
 	ImageNoPalsSplit33CompField("ImageNoPalsSplit33CompField"),
+	ImageNoPalsTilesDelta("ImageNoPalsTilesDelta"),
+	ImageNoPalsTilesDeltaCompField("ImageNoPalsTilesDeltaCompField"),
+	ImageNoPalsSplit21TilesDelta("ImageNoPalsSplit21TilesDelta"),
+	ImageNoPalsSplit22TilesDelta("ImageNoPalsSplit22TilesDelta"),
+	ImageNoPalsSplit31TilesDelta("ImageNoPalsSplit31TilesDelta"),
+	ImageNoPalsSplit32TilesDelta("ImageNoPalsSplit32TilesDelta"),
+	ImageNoPalsSplit33TilesDelta("ImageNoPalsSplit33TilesDelta"),
+	ImageNoPalsSplit21TilesDeltaCompField("ImageNoPalsSplit21TilesDeltaCompField"),
+	ImageNoPalsSplit22TilesDeltaCompField("ImageNoPalsSplit22TilesDeltaCompField"),
+	ImageNoPalsSplit31TilesDeltaCompField("ImageNoPalsSplit31TilesDeltaCompField"),
+	ImageNoPalsSplit32TilesDeltaCompField("ImageNoPalsSplit32TilesDeltaCompField"),
+	ImageNoPalsSplit33TilesDeltaCompField("ImageNoPalsSplit33TilesDeltaCompField"),
 	Palette16("Palette16"),
 	Palette32("Palette32"),
 	Palette64("Palette64"),
@@ -73,6 +85,25 @@ public enum CustomDataTypes {
 		return result;
 	}
 
+	/**
+	 * fabri1983
+	 * @return the type of the image with the tilesOffset field of the tiles delta mode. See sgdk.rescomp.tool.FrameTilesDeltaManager
+	 */
+	public static CustomDataTypes tilesDeltaOf (CustomDataTypes image) {
+		String value = image.getValue();
+		if (value.endsWith("CompField"))
+			return from(value.substring(0, value.length() - "CompField".length()) + "TilesDeltaCompField");
+		return from(value + "TilesDelta");
+	}
+
+	// same definition than the image type plus the VRAM offset (in tiles) from where the tilesets are loaded into the frame buffer
+	private static String withTilesOffset (CustomDataTypes image, CustomDataTypes cdt) {
+		String definition = getDefinition(image);
+		return definition.substring(0, definition.lastIndexOf("} "))
+				+ "    u16 tilesOffset;\n"
+				+ "} " + cdt.getValue() + ";\n";
+	}
+
 	public static String getDefinition (CustomDataTypes cdt) {
 		switch (cdt) {
 		case TileSetOriginalCustom:
@@ -186,6 +217,30 @@ public enum CustomDataTypes {
 					+ "    TileMapCustomCompField* tilemap2;\n"
 					+ "    TileMapCustomCompField* tilemap3;\n"
 					+ "} " + ImageNoPalsSplit33CompField.getValue() + ";\n";
+		case ImageNoPalsTilesDelta:
+			return withTilesOffset(ImageNoPals, cdt);
+		case ImageNoPalsTilesDeltaCompField:
+			return withTilesOffset(ImageNoPalsCompField, cdt);
+		case ImageNoPalsSplit21TilesDelta:
+			return withTilesOffset(ImageNoPalsSplit21, cdt);
+		case ImageNoPalsSplit22TilesDelta:
+			return withTilesOffset(ImageNoPalsSplit22, cdt);
+		case ImageNoPalsSplit31TilesDelta:
+			return withTilesOffset(ImageNoPalsSplit31, cdt);
+		case ImageNoPalsSplit32TilesDelta:
+			return withTilesOffset(ImageNoPalsSplit32, cdt);
+		case ImageNoPalsSplit33TilesDelta:
+			return withTilesOffset(ImageNoPalsSplit33, cdt);
+		case ImageNoPalsSplit21TilesDeltaCompField:
+			return withTilesOffset(ImageNoPals21CompField, cdt);
+		case ImageNoPalsSplit22TilesDeltaCompField:
+			return withTilesOffset(ImageNoPalsSplit22CompField, cdt);
+		case ImageNoPalsSplit31TilesDeltaCompField:
+			return withTilesOffset(ImageNoPalsSplit31CompField, cdt);
+		case ImageNoPalsSplit32TilesDeltaCompField:
+			return withTilesOffset(ImageNoPalsSplit32CompField, cdt);
+		case ImageNoPalsSplit33TilesDeltaCompField:
+			return withTilesOffset(ImageNoPalsSplit33CompField, cdt);
 		case Palette16:
 			return "typedef struct {\n"
 					+ "    u16* data;\n"
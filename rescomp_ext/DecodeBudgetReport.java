@@ -0,0 +1,47 @@
+package sgdk.rescomp.tool;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import sgdk.rescomp.resource.BinCustom;
+
+/**
+ * Keeps the bins every movie frame unpacks (tilesets and tilemaps) so once all the bins were written the estimated
+ * decode cycles of each frame can be compared against the frame time.
+ */
+public class DecodeBudgetReport {
+
+	// 68000 clock on NTSC systems
+	public static final int CPU_CLOCK_NTSC = 7670453;
+
+	private static final Map<String, List<BinCustom>> binsPerFrame = new LinkedHashMap<>();
+
+	/**
+	 * @param frameId
+	 * @param bins bins unpacked by the frame. Null ones are ignored
+	 */
+	public static synchronized void registerFrame (String frameId, BinCustom... bins) {
+		List<BinCustom> list = Arrays.stream(bins).filter(Objects::nonNull).collect(Collectors.toList());
+		binsPerFrame.put(frameId, list);
+	}
+
+	/**
+	 * Only valid once the bins were written, ie: from the out() method of a non Bin resource.
+	 * @return estimated decode cycles per frame id, in the order the frames were registered
+	 */
+	public static synchronized Map<String, Long> getCyclesPerFrame () {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Map.Entry<String, List<BinCustom>> entry : binsPerFrame.entrySet()) {
+			long cycles = 0;
+			for (BinCustom bin : entry.getValue())
+				cycles += bin.decodeCycles;
+			result.put(entry.getKey(), Long.valueOf(cycles));
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,124 @@
+package sgdk.rescomp.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import sgdk.rescomp.Resource;
+import sgdk.rescomp.processor.DecodeBudgetReportProcessor;
+import sgdk.rescomp.tool.DecodeBudgetReport;
+import sgdk.rescomp.tool.TilemapDeltaManager;
+
+public class DecodeBudgetReportPrinter extends Resource
+{
+    final int hc;
+    final int frameRate;
+    final int budgetPercent;
+
+    public DecodeBudgetReportPrinter(String id, int frameRate, int budgetPercent) throws Exception
+    {
+        super(id);
+        this.frameRate = frameRate;
+        this.budgetPercent = budgetPercent;
+
+        // compute hash code
+        hc = id.hashCode() ^ DecodeBudgetReportPrinter.class.getSimpleName().hashCode();
+    }
+
+	@Override
+    public int internalHashCode()
+    {
+        return hc;
+    }
+
+    @Override
+    public boolean internalEquals(Object obj)
+    {
+        if (obj instanceof DecodeBudgetReportPrinter)
+        {
+            final DecodeBudgetReportPrinter other = (DecodeBudgetReportPrinter) obj;
+            return hc == other.hc;
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<Bin> getInternalBinResources()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int shallowSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public int totalSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public void out(ByteArrayOutputStream outB, StringBuilder outS, StringBuilder outH)
+    {
+    	// bins are written before any other resource, so their decode cycles are already known here
+    	Map<String, Long> cyclesPerFrame = DecodeBudgetReport.getCyclesPerFrame();
+
+    	final long frameCycles = DecodeBudgetReport.CPU_CLOCK_NTSC / frameRate;
+    	final long budgetCycles = (frameCycles * budgetPercent) / 100;
+
+		System.out.println(DecodeBudgetReportProcessor.resId + ": " + id + " -> " + cyclesPerFrame.size() + " frames at " + frameRate 
+				+ " fps. Frame time " + frameCycles + " cycles, budget " + budgetCycles + " cycles (" + budgetPercent + "%)");
+
+		if (cyclesPerFrame.isEmpty())
+			return;
+
+		long totalCycles = 0;
+		long maxCycles = -1;
+		String maxFrameId = null;
+		int overBudget = 0;
+
+		for (Map.Entry<String, Long> entry : cyclesPerFrame.entrySet()) {
+			long cycles = entry.getValue().longValue();
+			totalCycles += cycles;
+			if (cycles > maxCycles) {
+				maxCycles = cycles;
+				maxFrameId = entry.getKey();
+			}
+			if (cycles > budgetCycles) {
+				++overBudget;
+				System.out.println("[WARNING] " + entry.getKey() + ": decode ~" + cycles + " cycles (" 
+						+ Math.round((cycles * 100f) / frameCycles) + "% of frame time)");
+			}
+		}
+
+		System.out.println("Avg decode per frame: " + (totalCycles / cyclesPerFrame.size()) + " cycles");
+		System.out.println("Max decode per frame: " + maxCycles + " cycles (" + maxFrameId + ")");
+		System.out.println("Frames over budget: " + overBudget);
+
+		printTilemapDeltaStats();
+    }
+
+    /**
+     * Size of the tilemap delta frames against the whole tilemaps they replace. Their decode cycles are already in the report.
+     */
+    private void printTilemapDeltaStats()
+    {
+    	for (Map.Entry<String, TilemapDeltaManager.Stats> entry : TilemapDeltaManager.getStats().entrySet()) {
+    		TilemapDeltaManager.Stats stats = entry.getValue();
+    		System.out.print("Tilemap delta " + entry.getKey() + ": " + stats.deltaFrames + " delta frames, " + stats.keyFrames + " key frames");
+    		if (stats.deltaFrames == 0) {
+    			System.out.println();
+    			continue;
+    		}
+    		System.out.println(". Delta " + stats.deltaBytes + " bytes against " + stats.tilemapBytes + " bytes of tilemaps (" 
+    				+ Math.round((stats.deltaBytes * 100f) / stats.tilemapBytes) + "%). Avg per delta frame: " 
+    				+ (stats.changedWords / stats.deltaFrames) + " words changed in " + (stats.runs / stats.deltaFrames) + " runs");
+    	}
+    }
+
+}
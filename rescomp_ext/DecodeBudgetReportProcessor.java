@@ -0,0 +1,48 @@
+package sgdk.rescomp.processor;
+
+import sgdk.rescomp.Processor;
+import sgdk.rescomp.Resource;
+import sgdk.rescomp.resource.DecodeBudgetReportPrinter;
+import sgdk.tool.StringUtil;
+
+public class DecodeBudgetReportProcessor implements Processor
+{
+	public static final String resId = "DECODE_BUDGET_REPORT";
+
+	@Override
+    public String getId()
+    {
+        return resId;
+    }
+
+    @Override
+    public Resource execute(String[] fields) throws Exception
+    {
+        if (fields.length < 3)
+        {
+            System.out.println("Wrong " + resId + " definition");
+            System.out.println(resId + " name frameRate [budgetPercent]");
+            System.out.println("  name              Just an id for this report.");
+            System.out.println("  frameRate         Movie frame rate. The frame time is the 68000 cycles between two movie frames.");
+            System.out.println("  budgetPercent     Percentage of the frame time the tileset and tilemap decode can take. Default 100.");
+            System.out.println("                    Every frame whose estimated decode cycles go over the budget is reported.");
+            System.out.println("  Declare it after the movie frames resources.");
+            return null;
+        }
+
+        // get resource id (name parameter)
+        String id = fields[1];
+
+        int frameRate = StringUtil.parseInt(fields[2], 0);
+        if (frameRate <= 0 || frameRate > 60)
+        	throw new IllegalArgumentException("frameRate must be in range [1, 60]");
+
+        int budgetPercent = 100;
+        if (fields.length >= 4)
+        	budgetPercent = StringUtil.parseInt(fields[3], 0);
+        if (budgetPercent <= 0)
+        	throw new IllegalArgumentException("budgetPercent must be > 0");
+
+        return new DecodeBudgetReportPrinter(id, frameRate, budgetPercent);
+    }
+}
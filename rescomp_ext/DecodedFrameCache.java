@@ -0,0 +1,272 @@
+package sgdk.rescomp.tool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import sgdk.rescomp.resource.TilesetOriginalCustom;
+import sgdk.rescomp.tool.ImageUtilFast.Image8bpp;
+import sgdk.rescomp.type.Basics.Compression;
+import sgdk.rescomp.type.Basics.TileOptimization;
+import sgdk.rescomp.type.Basics.TileOrdering;
+import sgdk.rescomp.type.CompressionCustom;
+import sgdk.rescomp.type.Tile;
+
+/**
+ * LRU cache of the frames made of strips, so a frame is decoded only once per rescomp run although the common tiles optimizers
+ * visit it once per range it belongs to, and the IMAGE_STRIPS_NO_PALS resources need it again afterwards.</br>
+ * A frame is keyed by the path, modification date and size of its strips files, hence a modified strip is decoded again.
+ * The cache is bounded by the estimated memory of the entries, set with DECODED_FRAME_CACHE_MB in ext.resource.properties
+ * (0 disables it), and evicts the least recently used frames.</br>
+ * Thread safe: a frame asked by several threads at once is decoded only once, the other threads wait for it.
+ */
+public class DecodedFrameCache {
+
+	public static class DecodedFrame {
+		// merged strips in 8bpp format without the palettes rows
+		public final byte[] image8bpp;
+		// width and height in pixels
+		public final int w, h;
+		// temporary tilesets of the frame per tiles cache id
+		private final Map<String, FrameTileset> tilesetsByCacheId = new ConcurrentHashMap<>();
+
+		DecodedFrame (byte[] image8bpp, int w, int h) {
+			this.image8bpp = image8bpp;
+			this.w = w;
+			this.h = h;
+		}
+
+		/**
+		 * @return tiles of the frame in row order, blank tiles and duplicates included
+		 */
+		public Iterable<Tile> tiles () {
+			final int wt = w / 8;
+			final int ht = h / 8;
+			return () -> new Iterator<Tile>() {
+				int i = 0;
+
+				@Override
+				public boolean hasNext () {
+					return i < wt * ht;
+				}
+
+				@Override
+				public Tile next () {
+					final int tx = i % wt;
+					final int ty = i / wt;
+					++i;
+					return Tile.getTile(image8bpp, w, h, tx * 8, ty * 8, 8);
+				}
+			};
+		}
+
+		long estimatedSize () {
+			// the tiles of a temporary tileset plus their fingerprint index take about the same than 2 copies of the image
+			return 3L * image8bpp.length;
+		}
+	}
+
+	/**
+	 * Temporary tileset of a frame with no tile optimization: no plain tiles and no cached tiles.
+	 */
+	public static class FrameTileset {
+		public final TilesetOriginalCustom tileset;
+		private volatile TileFingerprintIndex tilesIndex;
+
+		FrameTileset (TilesetOriginalCustom tileset) {
+			this.tileset = tileset;
+		}
+
+		/**
+		 * @return index by fingerprint of the tiles of the tileset. Built the first time it's asked for
+		 */
+		public TileFingerprintIndex getTilesIndex () {
+			TileFingerprintIndex index = tilesIndex;
+			if (index == null) {
+				// building it twice from 2 threads is harmless
+				index = new TileFingerprintIndex(tileset.tiles);
+				tilesIndex = index;
+			}
+			return index;
+		}
+	}
+
+	private static class Entry {
+		final FutureTask<DecodedFrame> task;
+		// 0 until the frame is decoded
+		long size;
+
+		Entry (FutureTask<DecodedFrame> task) {
+			this.task = task;
+		}
+	}
+
+	// access ordered. Guarded by itself
+	private static final LinkedHashMap<String, Entry> frames = new LinkedHashMap<>(256, 0.75f, true);
+	private static long usedBytes;
+	private static volatile Long maxBytes;
+	// decoded strip, reused by all the frames decoded in the same thread
+	private static final ThreadLocal<Image8bpp> stripBuffer = ThreadLocal.withInitial(Image8bpp::new);
+
+	public static boolean isEnabled () {
+		return getMaxBytes() > 0;
+	}
+
+	private static long getMaxBytes () {
+		if (maxBytes == null) {
+			// 0 or negative disables the cache
+			long mb = ExtProperties.getInt(ExtProperties.DECODED_FRAME_CACHE_MB);
+			maxBytes = Long.valueOf(Math.max(0, mb) * 1024 * 1024);
+		}
+		return maxBytes.longValue();
+	}
+
+	/**
+	 * @param stripsFileList strips of the frame in top to bottom order
+	 * @return the decoded frame, from the cache if it was already decoded and its strips files didn't change
+	 */
+	public static DecodedFrame get (List<String> stripsFileList) throws Exception {
+		if (!isEnabled())
+			return decode(stripsFileList);
+
+		final String key = getKey(stripsFileList);
+		final Entry entry;
+		boolean isOwner = false;
+		synchronized (frames) {
+			Entry existing = frames.get(key);
+			if (existing != null)
+				entry = existing;
+			else {
+				entry = new Entry(new FutureTask<>(() -> decode(stripsFileList)));
+				frames.put(key, entry);
+				isOwner = true;
+			}
+		}
+
+		// decoded in the first thread asking for it, outside the lock
+		if (isOwner)
+			entry.task.run();
+
+		try {
+			final DecodedFrame frame = entry.task.get();
+			if (isOwner) {
+				synchronized (frames) {
+					// it may have been discarded meanwhile
+					if (frames.get(key) == entry) {
+						entry.size = frame.estimatedSize();
+						usedBytes += entry.size;
+						evict(entry);
+					}
+				}
+			}
+			return frame;
+		}
+		catch (ExecutionException e) {
+			synchronized (frames) {
+				frames.remove(key, entry);
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * @param tilesetId id of the temporary tileset
+	 * @param stripsFileList strips of the frame in top to bottom order
+	 * @param tilesCacheId tiles cache whose tiles are left out of the tileset. Can be null
+	 * @return temporary tileset of the frame without plain tiles and cached tiles, from the cache if it was already built
+	 */
+	public static FrameTileset getTempTileset (String tilesetId, List<String> stripsFileList, String tilesCacheId) throws Exception {
+		// not cached: strips are streamed so only one of them is decoded at a time
+		if (!isEnabled())
+			return new FrameTileset(newTempTileset(tilesetId, StripsTileIterator.tilesOf(stripsFileList), tilesCacheId));
+
+		final DecodedFrame frame = get(stripsFileList);
+		return frame.tilesetsByCacheId.computeIfAbsent(tilesCacheId == null ? "" : tilesCacheId,
+				k -> new FrameTileset(newTempTileset(tilesetId, frame.tiles(), tilesCacheId)));
+	}
+
+	private static TilesetOriginalCustom newTempTileset (String tilesetId, Iterable<Tile> tiles, String tilesCacheId) {
+		boolean isTempTileset = true;
+		return new TilesetOriginalCustom(tilesetId, tiles, TileOptimization.NONE, Compression.NONE, CompressionCustom.NONE, false,
+				isTempTileset, TileOrdering.ROW, tilesCacheId, false, null);
+	}
+
+	/**
+	 * Drops the temporary tilesets kept with the frames. Needed when the tiles cache changes, since the tilesets were built with it.
+	 */
+	public static void discardTilesets () {
+		List<Entry> entries;
+		synchronized (frames) {
+			entries = new ArrayList<>(frames.values());
+		}
+		for (Entry entry : entries) {
+			if (entry.task.isDone() && entry.size > 0) {
+				try {
+					entry.task.get().tilesetsByCacheId.clear();
+				} catch (InterruptedException | ExecutionException e) {}
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used frames until the cache fits in its memory, always keeping the given entry.
+	 */
+	private static void evict (Entry keep) {
+		Iterator<Entry> it = frames.values().iterator();
+		while (usedBytes > getMaxBytes() && it.hasNext()) {
+			Entry e = it.next();
+			// frames still being decoded aren't accounted yet
+			if (e == keep || e.size == 0)
+				continue;
+			usedBytes -= e.size;
+			it.remove();
+		}
+	}
+
+	private static String getKey (List<String> stripsFileList) {
+		StringBuilder sb = new StringBuilder(stripsFileList.size() * 96);
+		for (String stripFile : stripsFileList) {
+			File file = new File(stripFile);
+			sb.append(file.getAbsolutePath()).append('@').append(file.lastModified()).append(':').append(file.length()).append('|');
+		}
+		return sb.toString();
+	}
+
+	private static DecodedFrame decode (List<String> stripsFileList) throws Exception {
+		// strips are decoded into the thread's buffer, only the merged image is allocated
+		final Image8bpp strip = stripBuffer.get();
+		byte[] finalImage = null;
+		int stripLength = 0;
+
+		// copy all the strips into finalImage
+		for (int i = 0; i < stripsFileList.size(); ++i) {
+			String imgFile = stripsFileList.get(i);
+			// get tile data per pixel (color position in palette), check image dimension is aligned to tile, remove palette info if any
+			ImageUtilFast.checkImageNotNull(imgFile, ImageUtilFast.getImageAs8bpp(imgFile, true, true, strip));
+			ImageUtilFast.checkImageColorByte(imgFile, strip);
+			if (finalImage == null) {
+				stripLength = strip.length();
+				// allocate space for bigger image
+				finalImage = new byte[stripLength * stripsFileList.size()];
+			}
+			else if (strip.length() != stripLength)
+				throw new IllegalArgumentException("'" + imgFile + "' size differs from the size of the first strip of the frame");
+			System.arraycopy(strip.data, 0, finalImage, i * stripLength, stripLength);
+		}
+
+		if (finalImage == null)
+			return new DecodedFrame(new byte[0], 0, 0);
+
+		return new DecodedFrame(finalImage, strip.w, finalImage.length / strip.w);
+	}
+
+}
@@ -19,6 +19,15 @@ public class ExtProperties {
 	public static final String MAX_TILESET_CHUNK_2_SIZE_FOR_SPLIT_IN_3 =	"MAX_TILESET_CHUNK_2_SIZE_FOR_SPLIT_IN_3";
 	public static final String MAX_TILESET_CHUNK_3_SIZE_FOR_SPLIT_IN_3 =	"MAX_TILESET_CHUNK_3_SIZE_FOR_SPLIT_IN_3";
 	public static final String TOP_N_USED_TILES =							"TOP_N_USED_TILES";
+	public static final String TILES_CACHE_VRAM_RESERVED_RANGES =			"TILES_CACHE_VRAM_RESERVED_RANGES";
+	public static final String IMAGE_STRIPS_PREFETCH_FRAMES =				"IMAGE_STRIPS_PREFETCH_FRAMES";
+	public static final String DECODED_FRAME_CACHE_MB =						"DECODED_FRAME_CACHE_MB";
+	public static final String COMMON_TILES_RANGE_FILE_ENABLED =			"COMMON_TILES_RANGE_FILE_ENABLED";
+	public static final String COMPRESSION_CACHE_ENABLED =					"COMPRESSION_CACHE_ENABLED";
+	public static final String COMPRESSION_THREADS =						"COMPRESSION_THREADS";
+	public static final String COMPRESSION_AUTO_CANDIDATES =				"COMPRESSION_AUTO_CANDIDATES";
+	public static final String COMPRESSION_AUTO_DECODE_BUDGET_CYCLES =		"COMPRESSION_AUTO_DECODE_BUDGET_CYCLES";
+	public static final String COMPRESSION_DECODE_COST_PREFIX =				"COMPRESSION_DECODE_COST_";
 
 	private static ExtProperties instance;
 	private Properties properties[] = {null, null};
@@ -0,0 +1,80 @@
+package sgdk.rescomp.type;
+
+import java.util.List;
+
+import sgdk.rescomp.type.Basics.TileEquality;
+
+/**
+ * Tiles a frame loads into its frame buffer when the tiles it shares with the frame previously loaded in the same buffer are
+ * left in VRAM: a contiguous span of the buffer starting at {@link #startIndex}, plus where every tile of the frame tileset is
+ * in the buffer so its tilemap can be remapped. See sgdk.rescomp.tool.FrameTilesDeltaManager.
+ */
+public class FrameTilesDelta {
+
+	/**
+	 * VRAM index of the first tile of the frame buffer, ie: the base tile index of the tilemap.
+	 */
+	public final int bufferBaseIndex;
+	/**
+	 * First tile loaded, relative to the frame buffer.
+	 */
+	public final int startIndex;
+	/**
+	 * Tiles to load from startIndex on: the new tiles and the ones of the frame left in between them.
+	 */
+	public final List<Tile> tiles;
+	/**
+	 * Tiles of the frame tileset already in the frame buffer.
+	 */
+	public final int reusedTiles;
+	/**
+	 * True if the whole frame tileset is loaded at the start of the buffer, same than without delta.
+	 */
+	public final boolean keyFrame;
+
+	// position in the frame buffer of every tile of the frame tileset
+	private final int[] slotOfTile;
+	// flip to apply on the tile in the frame buffer to get the tile of the frame tileset
+	private final TileEquality[] flipOfTile;
+
+	public FrameTilesDelta (int bufferBaseIndex, int startIndex, List<Tile> tiles, int reusedTiles, boolean keyFrame, int[] slotOfTile,
+			TileEquality[] flipOfTile) {
+		this.bufferBaseIndex = bufferBaseIndex;
+		this.startIndex = startIndex;
+		this.tiles = tiles;
+		this.reusedTiles = reusedTiles;
+		this.keyFrame = keyFrame;
+		this.slotOfTile = slotOfTile;
+		this.flipOfTile = flipOfTile;
+	}
+
+	/**
+	 * Points the tilemap entries of the frame tileset tiles to their position in the frame buffer, composing the flips.
+	 * Entries of the blank tile, the cached tiles and the extended width aren't in the frame buffer range and stay as they are.
+	 * @param data tilemap built against the frame tileset with bufferBaseIndex as base tile index
+	 */
+	public void remapTilemap (short[] data) {
+		for (int i = 0; i < data.length; ++i) {
+			int entry = data[i] & 0xFFFF;
+			int tilePos = (entry & Tile.TILE_INDEX_MASK) - bufferBaseIndex;
+			if (tilePos < 0 || tilePos >= slotOfTile.length)
+				continue;
+
+			entry = (entry & ~Tile.TILE_INDEX_MASK) | (bufferBaseIndex + slotOfTile[tilePos]);
+			// flips are their own inverse and commute, so they compose by xor
+			if (flipOfTile[tilePos].hflip)
+				entry ^= Tile.TILE_HFLIP_MASK;
+			if (flipOfTile[tilePos].vflip)
+				entry ^= Tile.TILE_VFLIP_MASK;
+			data[i] = (short) entry;
+		}
+	}
+
+	@Override
+	public String toString () {
+		if (keyFrame)
+			return "tiles delta: key frame";
+		return "tiles delta: " + reusedTiles + " reused, " + tiles.size() + " loaded at +" + startIndex;
+	}
+
+}
@@ -0,0 +1,156 @@
+package sgdk.rescomp.tool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+import sgdk.rescomp.type.Basics.TileEquality;
+import sgdk.rescomp.type.FrameTilesDelta;
+import sgdk.rescomp.type.Tile;
+import sgdk.rescomp.type.TileFingerprint;
+import sgdk.rescomp.type.ToggleMapTileBaseIndex;
+
+/**
+ * Keeps what every frame buffer holds in VRAM along the frames of a video, so a frame only loads the tiles that aren't there.</br>
+ * The video player loads the frames alternating 2 frame buffers (see {@link ToggleMapTileBaseIndex}), so every frame is diffed
+ * against the frame loaded 2 frames before in the same buffer. Tiles (or their flipped versions) still in the buffer are reused
+ * where they are, and the new tiles go to the free positions: the ones holding tiles the frame doesn't use. The new tiles take
+ * the window of free positions spanning the less tiles, so the frame loads a single contiguous span of the buffer (the reused
+ * tiles in between are loaded again) and the player needs nothing but the span start to do it.
+ * If the span isn't smaller than the frame tileset then the whole tileset is loaded at the start of the buffer, same than without delta.</br>
+ * Frames must be created in playing order, which is the order of the .res file, and the player can't skip frames.
+ */
+public class FrameTilesDeltaManager {
+
+	private static class FrameBuffer {
+		final Tile[] tiles;
+		final TileFingerprint[] fingerprints;
+		final Map<TileFingerprint, Integer> slotByFingerprint;
+
+		FrameBuffer (int capacity) {
+			tiles = new Tile[capacity];
+			fingerprints = new TileFingerprint[capacity];
+			slotByFingerprint = new HashMap<>((int)(capacity / 0.75) + 1);
+		}
+
+		void set (int slot, Tile tile, TileFingerprint fingerprint) {
+			// the previous tile may still be somewhere else in the buffer, but only its last position is kept
+			TileFingerprint previous = fingerprints[slot];
+			if (previous != null && Integer.valueOf(slot).equals(slotByFingerprint.get(previous)))
+				slotByFingerprint.remove(previous);
+			tiles[slot] = tile;
+			fingerprints[slot] = fingerprint;
+			slotByFingerprint.put(fingerprint, Integer.valueOf(slot));
+		}
+	}
+
+	private static Map<String, FrameBuffer> frameBuffersById = new ConcurrentHashMap<>();
+
+	/**
+	 * @param toggleMapTileBaseIndexFlag
+	 * @param mapBase
+	 * @param firstStripFile first strip of the frame, which name has the frame num
+	 * @return VRAM index of the first tile of the frame buffer the frame is loaded into
+	 */
+	public static int getFrameBufferBaseIndex (ToggleMapTileBaseIndex toggleMapTileBaseIndexFlag, int mapBase, String firstStripFile) {
+		int videoFrameBufferOffsetIndex = 0;
+		if (toggleMapTileBaseIndexFlag != ToggleMapTileBaseIndex.NONE) {
+			String fileName = new File(firstStripFile).getName();
+			Matcher baseFileNameMatcher = CommonTilesRangeManager.stripsBaseFileNamePattern.matcher(fileName);
+			if (!baseFileNameMatcher.matches())
+				throw new IllegalArgumentException("ERROR: couldn't extract the frame num from " + fileName + " for the tiles delta.");
+			int tileIndexA = ExtProperties.getInt(ExtProperties.STARTING_TILESET_ON_SGDK);
+			int tileIndexB = tileIndexA + ExtProperties.getInt(ExtProperties.MAX_TILESET_NUM_FOR_MAP_BASE_TILE_INDEX);
+			videoFrameBufferOffsetIndex = TilemapCustomTools.calculateVideoFrameBufferOffsetIndex(toggleMapTileBaseIndexFlag,
+					Integer.valueOf(baseFileNameMatcher.group(1)), tileIndexA, tileIndexB);
+		}
+		return (mapBase & Tile.TILE_INDEX_MASK) + videoFrameBufferOffsetIndex;
+	}
+
+	/**
+	 * Diffs the frame against the frame buffer and updates the buffer with the tiles of the frame.
+	 * @param tilesDeltaId groups the frames of a video
+	 * @param bufferBaseIndex see {@link #getFrameBufferBaseIndex(ToggleMapTileBaseIndex, int, String)}
+	 * @param frameTiles tileset of the whole frame
+	 * @param capacity number of tiles of the frame buffer
+	 * @return the tiles to load and where they go
+	 */
+	public static FrameTilesDelta nextFrame (String tilesDeltaId, int bufferBaseIndex, List<Tile> frameTiles, int capacity) {
+		// index 0 is the blank tile in the tilemaps, so it can't be the first tile of a frame buffer
+		if (bufferBaseIndex <= 0)
+			throw new IllegalArgumentException("ERROR: tiles delta " + tilesDeltaId + " needs a frame buffer base tile index > 0. See "
+					+ ExtProperties.STARTING_TILESET_ON_SGDK + " in ext.resource.properties.");
+
+		final FrameBuffer buffer = frameBuffersById.computeIfAbsent(tilesDeltaId + "@" + bufferBaseIndex, k -> new FrameBuffer(capacity));
+		final int numTiles = frameTiles.size();
+		if (numTiles > buffer.tiles.length)
+			throw new RuntimeException("ERROR: frame tileset of " + numTiles + " tiles exceeds the frame buffer of " + buffer.tiles.length
+					+ " tiles of tiles delta " + tilesDeltaId);
+
+		final TileFingerprint[] fingerprints = new TileFingerprint[numTiles];
+		final boolean[] usedSlots = new boolean[buffer.tiles.length];
+		// tiles not in the buffer, one per fingerprint (the tileset may hold a tile twice with different palette or priority)
+		final List<Integer> newTiles = new ArrayList<>();
+		final Map<TileFingerprint, Integer> newTileByFingerprint = new HashMap<>();
+		for (int i = 0; i < numTiles; ++i) {
+			fingerprints[i] = TileFingerprint.of(frameTiles.get(i));
+			Integer slot = buffer.slotByFingerprint.get(fingerprints[i]);
+			if (slot != null)
+				usedSlots[slot.intValue()] = true;
+			else if (newTileByFingerprint.putIfAbsent(fingerprints[i], Integer.valueOf(i)) == null)
+				newTiles.add(Integer.valueOf(i));
+		}
+
+		int[] freeSlots = new int[buffer.tiles.length];
+		int numFreeSlots = 0;
+		for (int slot = 0; slot < usedSlots.length; ++slot) {
+			if (!usedSlots[slot])
+				freeSlots[numFreeSlots++] = slot;
+		}
+
+		// window of newTiles.size() free slots spanning the less tiles, the first one on ties
+		final int numNewTiles = newTiles.size();
+		int bestWindow = 0;
+		for (int w = 1; w + numNewTiles - 1 < numFreeSlots && numNewTiles > 0; ++w) {
+			if (freeSlots[w + numNewTiles - 1] - freeSlots[w] < freeSlots[bestWindow + numNewTiles - 1] - freeSlots[bestWindow])
+				bestWindow = w;
+		}
+		final int spanStart = numNewTiles == 0 ? 0 : freeSlots[bestWindow];
+		final int spanLength = numNewTiles == 0 ? 0 : freeSlots[bestWindow + numNewTiles - 1] - spanStart + 1;
+
+		final int[] slotOfTile = new int[numTiles];
+		final TileEquality[] flipOfTile = new TileEquality[numTiles];
+
+		// loading the span costs as much as loading the whole frame tileset, so load it as without delta
+		if (numNewTiles > 0 && spanLength >= numTiles) {
+			for (int i = 0; i < numTiles; ++i) {
+				buffer.set(i, frameTiles.get(i), fingerprints[i]);
+				slotOfTile[i] = i;
+				flipOfTile[i] = TileEquality.EQUAL;
+			}
+			return new FrameTilesDelta(bufferBaseIndex, 0, frameTiles, 0, true, slotOfTile, flipOfTile);
+		}
+
+		for (int n = 0; n < numNewTiles; ++n) {
+			int i = newTiles.get(n).intValue();
+			buffer.set(freeSlots[bestWindow + n], frameTiles.get(i), fingerprints[i]);
+		}
+
+		int reusedTiles = 0;
+		for (int i = 0; i < numTiles; ++i) {
+			if (!newTileByFingerprint.containsKey(fingerprints[i]))
+				++reusedTiles;
+			slotOfTile[i] = buffer.slotByFingerprint.get(fingerprints[i]).intValue();
+			flipOfTile[i] = buffer.fingerprints[slotOfTile[i]].getFlipTo(fingerprints[i]);
+		}
+
+		List<Tile> spanTiles = new ArrayList<>(Arrays.asList(buffer.tiles).subList(spanStart, spanStart + spanLength));
+		return new FrameTilesDelta(bufferBaseIndex, spanStart, spanTiles, reusedTiles, false, slotOfTile, flipOfTile);
+	}
+
+}
@@ -21,7 +21,8 @@ public class HeaderAppenderCompressionCustom extends Resource
         
         StringBuilder sb = new StringBuilder(256);
         for (CompressionCustom cc : CompressionCustom.values()) {
-        	if (cc == CompressionCustom.NONE)
+        	// AUTO modes are resolved by rescomp into another method, so the player never gets them
+        	if (cc == CompressionCustom.NONE || CompressionCustom.isAutoSelection(cc))
         		continue;
         	sb.append("#define ").append(cc.getValue()).append(" ").append(cc.getDefineValue()).append(System.lineSeparator());
         }
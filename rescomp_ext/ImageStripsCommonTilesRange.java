@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import sgdk.rescomp.Resource;
+import sgdk.rescomp.tool.CommonTilesRangeFile;
 import sgdk.rescomp.tool.CommonTilesRangeManager;
 import sgdk.rescomp.tool.CommonTilesRangeOptimizerV1;
 import sgdk.rescomp.tool.ExtProperties;
@@ -41,10 +42,23 @@ public class ImageStripsCommonTilesRange extends Resource
 	        }
 
 	        final int maxCommonTilesNum = ExtProperties.getInt(ExtProperties.MAX_TILESET_NUM_FOR_MAP_BASE_TILE_INDEX);
-        	List<CommonTilesRange> optimizedRangeList = CommonTilesRangeOptimizerV1.generateOptimizedCommonTiles(
-        			allStripsInList, tilesCacheId, minCommonTilesNum, maxCommonTilesNum);
-//	        List<CommonTilesRange> optimizedRangeList = CommonTilesRangeOptimizerV2.generateOptimizedCommonTiles(
-//	        		allStripsInList, tilesCacheId, minCommonTilesNum, maxCommonTilesNum);
+
+	        // fabri1983: ranges saved by a previous run are used as long as the strips, tiles cache and parameters didn't change
+	        String inputsHash = null;
+	        List<CommonTilesRange> optimizedRangeList = null;
+	        if (CommonTilesRangeFile.isEnabled()) {
+	        	inputsHash = CommonTilesRangeFile.getInputsHash(id, allStripsInList, tilesCacheId, minCommonTilesNum, maxCommonTilesNum);
+	        	optimizedRangeList = CommonTilesRangeFile.load(id, inputsHash);
+	        }
+
+	        if (optimizedRangeList == null) {
+	        	optimizedRangeList = CommonTilesRangeOptimizerV1.generateOptimizedCommonTiles(
+	        			allStripsInList, tilesCacheId, minCommonTilesNum, maxCommonTilesNum);
+//		        optimizedRangeList = CommonTilesRangeOptimizerV2.generateOptimizedCommonTiles(
+//		        		allStripsInList, tilesCacheId, minCommonTilesNum, maxCommonTilesNum);
+	        	if (inputsHash != null)
+	        		CommonTilesRangeFile.save(id, inputsHash, optimizedRangeList);
+	        }
 
         	CommonTilesRangeManager.saveForResId(id, optimizedRangeList);
 
@@ -65,7 +79,7 @@ public class ImageStripsCommonTilesRange extends Resource
         		        // internal
         		        binResource.global = false;
 //        		        final BinCustom bin = (BinCustom) addInternalResource(binResource);
-        		        final BinCustom bin = binResource;
+        		        final BinCustom bin = binResource.prepack();
         				return new CommonTilesRangeResData(range.getNumTiles(), range.getStartingImgIdx(), range.getEndingImgIdx(), bin);
         			})
         			.collect(Collectors.toList());
@@ -0,0 +1,228 @@
+package sgdk.rescomp.tool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+
+import sgdk.rescomp.resource.TilesetOriginalCustom;
+import sgdk.rescomp.type.Basics.Compression;
+import sgdk.rescomp.type.Basics.TileOptimization;
+import sgdk.rescomp.type.Basics.TileOrdering;
+import sgdk.rescomp.type.CompressionCustom;
+
+/**
+ * Pre-computes in background threads the next frames of a movie declared with IMAGE_STRIPS_NO_PALS while rescomp is processing
+ * the current one: decoding and merging of the strips, and the temporary tileset of the whole frame (tiles dedup plus tiles cache
+ * and common tiles matching), which are the expensive parts of every frame.</br>
+ * Rescomp still creates the resources one at a time in the order of the .res file, so tilesets and tilemaps resources,
+ * duplicates detection, stats and console output keep the same order than a serial run and the output is the same.
+ * A prefetched frame is only used if it was built with the exact same inputs than the ones asked for, otherwise
+ * (or if its computation failed) the frame is computed in the caller thread.
+ */
+public class ImageStripsFramePipeline {
+
+	public static class Frame {
+		// merged strips in 8bpp format without the palettes rows
+		public final byte[] image8bpp;
+		// width and height in pixels
+		public final int w, h;
+		// temporary tileset of the whole frame
+		public final TilesetOriginalCustom tileset;
+
+		Frame (byte[] image8bpp, int w, int h, TilesetOriginalCustom tileset) {
+			this.image8bpp = image8bpp;
+			this.w = w;
+			this.h = h;
+			this.tileset = tileset;
+		}
+	}
+
+	private static ExecutorService executor;
+	// prefetched frames in submission order. Guarded by itself
+	private static final Map<String, Future<Frame>> pendingFrames = new LinkedHashMap<>();
+	// frame numbers (and the digits as they appear in the file name) of the strips files found in a folder, per naming pattern
+	private static final Map<String, TreeMap<Integer, String>> frameNumsByPattern = new ConcurrentHashMap<>();
+
+	/**
+	 * @return how many frames are prefetched ahead of the current one. 0 means disabled.
+	 */
+	public static int getPrefetchFramesNum () {
+		int value = ExtProperties.getInt(ExtProperties.IMAGE_STRIPS_PREFETCH_FRAMES);
+		if (value < 0)
+			return Runtime.getRuntime().availableProcessors();
+		return value;
+	}
+
+	private static synchronized ExecutorService getExecutor () {
+		if (executor == null) {
+			// rescomp thread keeps consuming the frames, so leave it one processor
+			final int processors = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			executor = Executors.newFixedThreadPool(processors, r -> {
+				Thread t = new Thread(r, ImageStripsFramePipeline.class.getSimpleName());
+				// don't prevent rescomp from exiting
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Submits the next frames following the one given by <code>baseFileName</code>, taken from the files in the same folder
+	 * following the same naming pattern. The resource id of a next frame is the current <code>name</code> with its frame number replaced.
+	 */
+	public static void prefetchNextFrames (String name, String baseFileAbsPath, String baseFileName, List<String> stripsFileList,
+			TileOptimization tileOpt, Compression compression, CompressionCustom compressionCustomTileset, String tilesCacheId,
+			boolean addCompressionField, String commonTilesRangeId)
+	{
+		final int framesAhead = getPrefetchFramesNum();
+		if (framesAhead <= 0)
+			return;
+
+		// Eg: mv_frame_47_0_RGB.png
+		Matcher fileMatcher = CommonTilesRangeManager.stripsBaseFileNamePattern.matcher(baseFileName);
+		if (!fileMatcher.matches())
+			return;
+		final int frameNum = Integer.parseInt(fileMatcher.group(1));
+		final String filePrefix = baseFileName.substring(0, fileMatcher.start(1)); // mv_frame_
+		final String fileSuffix = baseFileName.substring(fileMatcher.end(1)); // _0_RGB.png
+		final int frameDigitsLength = fileMatcher.group(1).length();
+
+		// the frame number of the tileset id is the one used to find the common tiles range, so it has to be the same than in the file name
+		final String tilesetId = name + "_tileset";
+		Matcher idMatcher = TilesetOriginalCustom.imageNameStripsFromResIdPattern.matcher(tilesetId);
+		if (!idMatcher.matches() || Integer.parseInt(idMatcher.group(1)) != frameNum)
+			return;
+
+		TreeMap<Integer, String> frameNums = frameNumsByPattern.computeIfAbsent(baseFileAbsPath + filePrefix + "*" + fileSuffix,
+				k -> scanFrameNums(baseFileAbsPath, filePrefix, fileSuffix));
+
+		Map.Entry<Integer, String> next = frameNums.higherEntry(frameNum);
+		for (int i = 0; i < framesAhead && next != null; ++i, next = frameNums.higherEntry(next.getKey())) {
+			String nextTilesetId = tilesetId.substring(0, idMatcher.start(1)) + next.getKey() + tilesetId.substring(idMatcher.end(1));
+			List<String> nextStripsFileList = new ArrayList<>(stripsFileList.size());
+			for (String stripFile : stripsFileList) {
+				// same absolute path and prefix, the strip number and ending are after the frame digits
+				String stripTail = stripFile.substring(baseFileAbsPath.length() + filePrefix.length() + frameDigitsLength);
+				nextStripsFileList.add(baseFileAbsPath + filePrefix + next.getValue() + stripTail);
+			}
+			prefetch(nextTilesetId, nextStripsFileList, tileOpt, compression, compressionCustomTileset, tilesCacheId,
+					addCompressionField, commonTilesRangeId);
+		}
+	}
+
+	private static TreeMap<Integer, String> scanFrameNums (String absPath, String filePrefix, String fileSuffix) {
+		TreeMap<Integer, String> frameNums = new TreeMap<>();
+		String[] fileNames = new File(absPath).list();
+		if (fileNames == null)
+			return frameNums;
+		for (String fileName : fileNames) {
+			Matcher m = CommonTilesRangeManager.stripsBaseFileNamePattern.matcher(fileName);
+			if (m.matches() && filePrefix.equals(fileName.substring(0, m.start(1))) && fileSuffix.equals(fileName.substring(m.end(1))))
+				frameNums.put(Integer.valueOf(m.group(1)), m.group(1));
+		}
+		return frameNums;
+	}
+
+	private static void prefetch (String tilesetId, List<String> stripsFileList, TileOptimization tileOpt, Compression compression,
+			CompressionCustom compressionCustomTileset, String tilesCacheId, boolean addCompressionField, String commonTilesRangeId)
+	{
+		final String key = getKey(tilesetId, stripsFileList, tileOpt, compression, compressionCustomTileset, tilesCacheId,
+				addCompressionField, commonTilesRangeId);
+		synchronized (pendingFrames) {
+			if (pendingFrames.containsKey(key))
+				return;
+			pendingFrames.put(key, getExecutor().submit(() -> buildFrame(tilesetId, stripsFileList, tileOpt, compression,
+					compressionCustomTileset, tilesCacheId, addCompressionField, commonTilesRangeId)));
+			// frames never asked for (ie: different parameters in the .res file) are dropped, oldest first
+			final int maxPending = 2 * Math.max(1, getPrefetchFramesNum());
+			Iterator<Future<Frame>> it = pendingFrames.values().iterator();
+			while (pendingFrames.size() > maxPending) {
+				it.next().cancel(true);
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops the prefetched frames. Needed when the tiles cache or the common tiles change, since the prefetched tilesets were built with them.
+	 */
+	public static void discardPending () {
+		synchronized (pendingFrames) {
+			for (Future<Frame> future : pendingFrames.values())
+				future.cancel(true);
+			pendingFrames.clear();
+		}
+		// same for the temporary tilesets kept with the decoded frames
+		DecodedFrameCache.discardTilesets();
+	}
+
+	/**
+	 * Gets the frame from the prefetched ones, or computes it in the caller thread if it wasn't prefetched.
+	 * @param tilesetId id of the temporary tileset of the whole frame, ie: the image resource id + "_tileset"
+	 */
+	public static Frame getFrame (String tilesetId, List<String> stripsFileList, TileOptimization tileOpt, Compression compression,
+			CompressionCustom compressionCustomTileset, String tilesCacheId, boolean addCompressionField, String commonTilesRangeId) throws Exception
+	{
+		final String key = getKey(tilesetId, stripsFileList, tileOpt, compression, compressionCustomTileset, tilesCacheId,
+				addCompressionField, commonTilesRangeId);
+		Future<Frame> future;
+		synchronized (pendingFrames) {
+			future = pendingFrames.remove(key);
+		}
+
+		if (future != null) {
+			try {
+				return future.get();
+			}
+			catch (ExecutionException e) {
+				// computed again below so the error is thrown from the caller thread, same than without the prefetch
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return buildFrame(tilesetId, stripsFileList, tileOpt, compression, compressionCustomTileset, tilesCacheId,
+				addCompressionField, commonTilesRangeId);
+	}
+
+	private static String getKey (String tilesetId, List<String> stripsFileList, TileOptimization tileOpt, Compression compression,
+			CompressionCustom compressionCustomTileset, String tilesCacheId, boolean addCompressionField, String commonTilesRangeId)
+	{
+		return tilesetId + "|" + String.join(",", stripsFileList) + "|" + tileOpt + "|" + compression + "|" + compressionCustomTileset
+				+ "|" + tilesCacheId + "|" + addCompressionField + "|" + commonTilesRangeId;
+	}
+
+	private static Frame buildFrame (String tilesetId, List<String> stripsFileList, TileOptimization tileOpt, Compression compression,
+			CompressionCustom compressionCustomTileset, String tilesCacheId, boolean addCompressionField, String commonTilesRangeId) throws Exception
+	{
+		// fabri1983: decoded once per rescomp run, the common tiles optimizers may have already decoded it
+		DecodedFrameCache.DecodedFrame decoded = DecodedFrameCache.get(stripsFileList);
+		// finalImageData has no more palette definitions at the top
+		byte[] finalImageData = decoded.image8bpp;
+		// width and height in pixels
+		int w = decoded.w;
+		int h = decoded.h;
+		// get size in tile
+		int wt = w / 8;
+		int ht = h / 8;
+
+		boolean isTempTileset = true;
+		TilesetOriginalCustom tileset = new TilesetOriginalCustom(tilesetId, finalImageData, w, h, 0, 0, wt, ht, tileOpt, compression,
+				compressionCustomTileset, false, isTempTileset, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId);
+
+		return new Frame(finalImageData, w, h, tileset);
+	}
+
+}
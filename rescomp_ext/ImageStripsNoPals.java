@@ -5,8 +5,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import sgdk.rescomp.Resource;
+import sgdk.rescomp.tool.DecodeBudgetReport;
 import sgdk.rescomp.tool.ExtProperties;
-import sgdk.rescomp.tool.ImageUtilFast;
+import sgdk.rescomp.tool.FrameTilesDeltaManager;
+import sgdk.rescomp.tool.ImageStripsFramePipeline;
 import sgdk.rescomp.tool.TilesCacheManager;
 import sgdk.rescomp.tool.TilesetStatsCollector;
 import sgdk.rescomp.tool.Util;
@@ -15,9 +17,8 @@ import sgdk.rescomp.type.Basics.TileOptimization;
 import sgdk.rescomp.type.Basics.TileOrdering;
 import sgdk.rescomp.type.CompressionCustom;
 import sgdk.rescomp.type.CustomDataTypes;
+import sgdk.rescomp.type.FrameTilesDelta;
 import sgdk.rescomp.type.ToggleMapTileBaseIndex;
-import sgdk.tool.ImageUtil;
-import sgdk.tool.ImageUtil.BasicImageInfo;
 
 public class ImageStripsNoPals extends Resource
 {
@@ -25,32 +26,46 @@ public class ImageStripsNoPals extends Resource
 
 	public final TilesetOriginalCustom tileset;
 	public final TilemapOriginalCustom tilemap;
+	public final FrameTilesDelta tilesDelta;
 
     public ImageStripsNoPals(String id, List<String> stripsFileList, ToggleMapTileBaseIndex toggleMapTileBaseIndexFlag, int mapExtendedWidth, 
     		Compression compression, TileOptimization tileOpt, int mapBase, CompressionCustom compressionCustomTileset, 
     		CompressionCustom compressionCustomTilemap, boolean addCompressionField, String tilesCacheId, String tilesetStatsCollectorId, 
-    		String commonTilesRangeId) throws Exception
+    		String commonTilesRangeId, String tilesDeltaId) throws Exception
     {
         super(id);
 
-        // finalImageData has no more palette definitions at the top
-        byte[] finalImageData = mergeAllStrips(stripsFileList);
+        // fabri1983: merged strips and tileset of the whole frame, likely already computed in background
+        ImageStripsFramePipeline.Frame frame = ImageStripsFramePipeline.getFrame(id + "_tileset", stripsFileList, tileOpt, compression, 
+        		compressionCustomTileset, tilesCacheId, addCompressionField, commonTilesRangeId);
 
-        // get info from first strip
-        BasicImageInfo strip0Info = ImageUtil.getBasicInfo(stripsFileList.get(0));
+        // finalImageData has no more palette definitions at the top
+        byte[] finalImageData = frame.image8bpp;
         // width and height in pixels
-        int w = strip0Info.w;
-        // we determine 'h' from data length and 'w' as we can crop image vertically to remove palette data
-        int h = finalImageData.length / w;
+        int w = frame.w;
+        int h = frame.h;
         // get size in tile
         int wt = w / 8;
         int ht = h / 8;
 
+        // fabri1983: only the tiles missing in the frame buffer are loaded, as a single span of it
+        tilesDelta = tilesDeltaId == null ? null : FrameTilesDeltaManager.nextFrame(tilesDeltaId, 
+        		FrameTilesDeltaManager.getFrameBufferBaseIndex(toggleMapTileBaseIndexFlag, mapBase, stripsFileList.get(0)), 
+        		frame.tileset.tiles, ExtProperties.getInt(ExtProperties.MAX_TILESET_NUM_FOR_MAP_BASE_TILE_INDEX));
+
         // build TILESET with wanted compression
-        tileset = (TilesetOriginalCustom) addInternalResource(new TilesetOriginalCustom(id + "_tileset", finalImageData, w, h, 0, 0, wt, ht, tileOpt, 
-        		compression, compressionCustomTileset, false, false, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId));
+        // fabri1983: built from the tiles of the frame's temporary tileset, which are the same tiles the image would give
+        if (tilesDelta == null)
+	        tileset = (TilesetOriginalCustom) addInternalResource(new TilesetOriginalCustom(id + "_tileset", frame.tileset.tiles, tileOpt, 
+	        		compression, compressionCustomTileset, false, false, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId));
+        else
+        	// the span keeps the buffer order, duplicates included
+        	tileset = (TilesetOriginalCustom) addInternalResource(new TilesetOriginalCustom(id + "_tileset", tilesDelta.tiles, TileOptimization.NONE, 
+	        		compression, compressionCustomTileset, false, false, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId));
 
         System.out.print(" " + id + " -> numTiles: " + tileset.getNumTile() + ". ");
+        if (tilesDelta != null)
+        	System.out.print(tilesDelta + ". ");
         if (tilesetStatsCollectorId != null && !"".equals(tilesetStatsCollectorId)) {
 	        TilesetStatsCollector.count1chunk(tilesetStatsCollectorId, tileset.getNumTile());
         }
@@ -58,67 +73,26 @@ public class ImageStripsNoPals extends Resource
         int maxFrameTilesetTotalSize = ExtProperties.getInt(ExtProperties.MAX_TILESET_NUM_FOR_MAP_BASE_TILE_INDEX);
 
         // build TILEMAP with wanted compression
-        tilemap = (TilemapOriginalCustom) addInternalResource(TilemapOriginalCustom.getTilemap(id + "_tilemap", tileset, toggleMapTileBaseIndexFlag, 
+        // fabri1983: with tiles delta the tilemap is built against the whole frame tileset and then remapped to the frame buffer
+        tilemap = (TilemapOriginalCustom) addInternalResource(TilemapOriginalCustom.getTilemap(id + "_tilemap", 
+        		tilesDelta == null ? tileset : frame.tileset, toggleMapTileBaseIndexFlag, 
         		mapBase, finalImageData, wt, ht, tileOpt, compression, compressionCustomTilemap, mapExtendedWidth, TileOrdering.ROW, tilesCacheId, 
-        		addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize));
+        		addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize, tilesDelta));
 
         if (TilesCacheManager.isStatsEnabledFor(tilesCacheId) 
         		&& tileset.getNumTile() >= TilesCacheManager.getMinTilesetSizeForStatsFor(tilesCacheId)) {
         	TilesCacheManager.countResourcesPerTile(tilesCacheId, tileset.tiles);
         	TilesCacheManager.countTotalTiles(tilesCacheId, tileset.tiles);
+        	TilesCacheManager.countCachedTilesUsage(tilesCacheId, finalImageData, w, h);
         }
 
+        // fabri1983: bins the frame unpacks, for the decode budget report
+        DecodeBudgetReport.registerFrame(id, tileset.bin, tilemap.bin);
+
         // compute hash code
-        hc = tileset.hashCode() ^ tilemap.hashCode();
+        hc = tileset.hashCode() ^ tilemap.hashCode() ^ (tilesDelta == null ? 0 : tilesDelta.startIndex);
     }
 
-    private byte[] mergeAllStrips(List<String> stripsFileList) throws Exception
-    {
-		// get tile data per pixel (color position in palette), check image dimension is aligned to tile, remove palette info if any
-        byte[] image0 = ImageUtilFast.getImageAs8bpp(stripsFileList.get(0), true, true);
-        int stripLength = image0.length;
-        // allocate space for bigger image
-        final byte[] finalImage = new byte[stripLength * stripsFileList.size()];
-
-        // copy all the strips into finalImage
-        for (int i = 0; i < stripsFileList.size(); ++i) {
-        	String imgFile = stripsFileList.get(i);
-        	byte[] image = ImageUtilFast.getImageAs8bpp(imgFile, true, true);
-        	checkImageNotNull(imgFile, image);
-            checkImageColorByte(imgFile, image);
-            System.arraycopy(image, 0, finalImage, i * stripLength, stripLength);
-        }
-
-        return finalImage;
-	}
-
-    /**
-     * Happen when we couldn't retrieve palette data from RGB image
-     * @param imgFile
-     * @param image
-     */
-	private void checkImageNotNull(String imgFile, byte[] image) {
-		if (image == null)
-            throw new IllegalArgumentException(
-                    "RGB image '" + imgFile + "' does not contains palette data (see 'Important note about image format' in the rescomp.txt file");
-	}
-
-	/**
-	 * b0-b3 = pixel data; b4-b5 = palette index; b7 = priority bit
-	 * check if image try to use bit 6 (probably mean that we have too much colors in our image)
-	 * @param imgFile
-	 * @param image
-	 */
-	private void checkImageColorByte(String imgFile, byte[] image) {
-        for (byte d : image)
-        {
-            // bit 6 used ?
-            if ((d & 0x40) != 0)
-                throw new IllegalArgumentException(
-                        "'" + imgFile + "' has color index in [64..127] range, IMAGE resource requires image with a maximum of 64 colors");
-        }
-	}
-
 	public int getWidth()
     {
         return tilemap.w * 8;
@@ -129,6 +103,14 @@ public class ImageStripsNoPals extends Resource
         return tilemap.h * 8;
     }
 
+    /**
+     * @return offset in tiles into the frame buffer where the tileset is loaded. 0 if tiles delta is disabled
+     */
+    public int getTilesOffset()
+    {
+        return tilesDelta == null ? 0 : tilesDelta.startIndex;
+    }
+
     @Override
     public int internalHashCode()
     {
@@ -141,7 +123,7 @@ public class ImageStripsNoPals extends Resource
         if (obj instanceof ImageStripsNoPals)
         {
             final ImageStripsNoPals image = (ImageStripsNoPals) obj;
-            return tilemap.equals(image.tilemap) && tileset.equals(image.tileset);
+            return tilemap.equals(image.tilemap) && tileset.equals(image.tileset) && getTilesOffset() == image.getTilesOffset();
         }
 
         return false;
@@ -156,7 +138,7 @@ public class ImageStripsNoPals extends Resource
     @Override
     public int shallowSize()
     {
-        return 4 + 4;
+        return 4 + 4 + (tilesDelta == null ? 0 : 2);
     }
 
     @Override
@@ -172,14 +154,19 @@ public class ImageStripsNoPals extends Resource
 		outB.reset();
 
 		// output Image structure
+		CustomDataTypes type = CustomDataTypes.ImageNoPals;
 		if (tileset.addCompressionField == true || tilemap.addCompressionField == true)
-			Util.decl(outS, outH, CustomDataTypes.ImageNoPalsCompField.getValue(), id, 2, global);
-		else
-			Util.decl(outS, outH, CustomDataTypes.ImageNoPals.getValue(), id, 2, global);
+			type = CustomDataTypes.ImageNoPalsCompField;
+		if (tilesDelta != null)
+			type = CustomDataTypes.tilesDeltaOf(type);
+		Util.decl(outS, outH, type.getValue(), id, 2, global);
 		// Tileset pointer
 		outS.append("    dc.l    " + tileset.id + "\n");
 		// Tilemap pointer
 		outS.append("    dc.l    " + tilemap.id + "\n");
+		// Tiles offset into the frame buffer
+		if (tilesDelta != null)
+			outS.append("    dc.w    " + tilesDelta.startIndex + "\n");
 		outS.append("\n");
     }
 }
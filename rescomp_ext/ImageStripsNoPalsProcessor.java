@@ -16,6 +16,7 @@ import sgdk.rescomp.resource.ImageStripsNoPals;
 import sgdk.rescomp.resource.ImageStripsNoPalsSplit2;
 import sgdk.rescomp.resource.ImageStripsNoPalsSplit3;
 import sgdk.rescomp.tool.CommonTilesRangeManager;
+import sgdk.rescomp.tool.ImageStripsFramePipeline;
 import sgdk.rescomp.tool.TilesCacheManager;
 import sgdk.rescomp.tool.Util;
 import sgdk.rescomp.type.Basics.Compression;
@@ -44,7 +45,7 @@ public class ImageStripsNoPalsProcessor implements Processor
 		if (fields.length < 4)
 		{
 			System.out.println("Wrong " + resId + " definition");
-			System.out.println(resId + " name \"baseFile\" strips [tilesetStatsCollectorId tilesCacheId commonTilesId splitTileset splitTilesetStrategy splitTilemap toggleMapTileBaseIndexFlag mapExtendedWidth compression compressionCustomTileSet compressionCustomTileMap addCompressionField map_opt map_base]");
+			System.out.println(resId + " name \"baseFile\" strips [tilesetStatsCollectorId tilesCacheId commonTilesId splitTileset splitTilesetStrategy splitTilemap toggleMapTileBaseIndexFlag mapExtendedWidth compression compressionCustomTileSet compressionCustomTileMap addCompressionField map_opt map_base tilesDeltaId tilemapDeltaId]");
 			System.out.println("  name               Image variable name. Eg: frame_12");
 			System.out.println("  baseFile           Path of the first strip for input RGB image file with palettes (BMP or PNG image). Eg: \"res/rgb/frame_12_0.png\" or \"res/rgb/frame_12_0_RGB.png\"");
 			System.out.println("  strips             How many strips is the final image composed of. Eg: 21. It means there are frame_12_0.png, frame_12_1.png, ... frame_12_20.png");
@@ -87,6 +88,16 @@ public class ImageStripsNoPalsProcessor implements Processor
 			System.out.println("                        1 / ALL         = find duplicate and flipped tile (default)");
 			System.out.println("                        2 / DUPLICATE   = find duplicate tile only");
 			System.out.println("  map_base           Define the base tilemap value, useful to set a default priority, palette and base tile index offset.");
+			System.out.println("  tilesDeltaId       Set an id (case insensitive) to load only the tiles missing in the frame buffer, reusing the ones the frame loaded 2 frames before left in VRAM.");
+			System.out.println("                       Use NONE or NULL (default) to load the whole tileset of every frame.");
+			System.out.println("                       Frames must be declared in playing order and the video player can't skip frames. Not valid with commonTilesId,");
+			System.out.println("                       with map_opt NONE, with toggleMapTileBaseIndexFlag " + ToggleMapTileBaseIndex.NONE.getValue() + ", nor with splitTilesetStrategy "
+					+ TilesetSplitStrategyEnum.SPLIT_NORMAL.getValue() + " when splitTileset > 1.");
+			System.out.println("  tilemapDeltaId     Set an id (case insensitive) to store only the tilemap cells changed against the tilemap of the frame loaded 2 frames before,");
+			System.out.println("                       as runs the video player applies over its tilemap buffer of the same frame buffer. Frames with no smaller delta keep compressionCustomTileMap.");
+			System.out.println("                       Use NONE or NULL (default) to store the whole tilemap of every frame.");
+			System.out.println("                       Frames must be declared in playing order and the video player can't skip frames. Needs splitTileset > 1, addCompressionField TRUE");
+			System.out.println("                       and toggleMapTileBaseIndexFlag other than " + ToggleMapTileBaseIndex.NONE.getValue() + ".");
 			return null;
 		}
 
@@ -200,9 +211,56 @@ public class ImageStripsNoPalsProcessor implements Processor
         if (fields.length >= 18)
             mapBase = Integer.parseInt(fields[17]);
 
+        // tilesDeltaId
+        String tilesDeltaId = null; // null or empty string is considered as an invalid tiles delta id
+        if (fields.length >= 19) {
+        	String valueId = fields[18].toUpperCase();
+        	if (!"NONE".equals(valueId) && !"NULL".equals(valueId)) {
+        		tilesDeltaId = valueId;
+        	}
+        }
+        if (tilesDeltaId != null) {
+        	// the frame buffer positions of the common tiles are fixed, so the tiles can't be moved around
+        	if (!CommonTilesRangeManager.getFromResId(commonTilesRangeId).isEmpty())
+        		throw new IllegalArgumentException("tilesDeltaId can't be used along with commonTilesId.");
+        	if (tileOpt == TileOptimization.NONE)
+        		throw new IllegalArgumentException("tilesDeltaId can't be used with map_opt NONE.");
+        	// tiles are split in the order they are loaded, not by the image height
+        	if (splitTileset > 1 && splitTilesetStrategy == TilesetSplitStrategyEnum.SPLIT_NORMAL)
+        		throw new IllegalArgumentException("tilesDeltaId can't be used with splitTilesetStrategy " + TilesetSplitStrategyEnum.SPLIT_NORMAL.getValue() + ".");
+        	// the player alternates the frame buffers, so the tiles left in a buffer are the ones of 2 frames before
+        	if (toggleMapTileBaseIndexFlag == ToggleMapTileBaseIndex.NONE)
+        		throw new IllegalArgumentException("tilesDeltaId can't be used with toggleMapTileBaseIndexFlag " + ToggleMapTileBaseIndex.NONE.getValue() + ".");
+        }
+
+        // tilemapDeltaId
+        String tilemapDeltaId = null; // null or empty string is considered as an invalid tilemap delta id
+        if (fields.length >= 20) {
+        	String valueId = fields[19].toUpperCase();
+        	if (!"NONE".equals(valueId) && !"NULL".equals(valueId)) {
+        		tilemapDeltaId = valueId;
+        	}
+        }
+        if (tilemapDeltaId != null) {
+        	// the player tells the delta frames from the key frames by the compression field
+        	if (!addCompressionField)
+        		throw new IllegalArgumentException("tilemapDeltaId needs addCompressionField TRUE.");
+        	if (splitTileset == 1)
+        		throw new IllegalArgumentException("tilemapDeltaId needs splitTileset 2 or 3.");
+        	// the player alternates the tilemap buffers, so the previous frame of a buffer is the one of 2 frames before
+        	if (toggleMapTileBaseIndexFlag == ToggleMapTileBaseIndex.NONE)
+        		throw new IllegalArgumentException("tilemapDeltaId can't be used with toggleMapTileBaseIndexFlag " + ToggleMapTileBaseIndex.NONE.getValue() + ".");
+        }
+        if (CompressionCustom.isPreEncoded(compressionCustomTileset) || CompressionCustom.isPreEncoded(compressionCustomTilemap))
+        	throw new IllegalArgumentException(CompressionCustom.TILEMAP_DELTA.getValue() + " isn't a compression. Use tilemapDeltaId instead.");
+
         // generate the list of strip files
         List<String> stripsInList = generateFilesInForStrips(baseFileAbsPath, baseFileName, baseFileNameMatcher, strips);
 
+        // fabri1983: let the next frames be computed in background while this one is processed
+        ImageStripsFramePipeline.prefetchNextFrames(name, baseFileAbsPath, baseFileName, stripsInList, tileOpt, compression, 
+        		compressionCustomTileset, tilesCacheId, addCompressionField, commonTilesRangeId);
+
         // add resource file (used for deps generation)
         // NOTE: missing split in 2 parts when splitTileset > 1
 //		String baseFileIn = baseFileAbsPath + name + FileUtil.getFileExtension(baseFile, true);
@@ -212,15 +270,15 @@ public class ImageStripsNoPalsProcessor implements Processor
         if (splitTileset == 1)
         	return new ImageStripsNoPals(name, stripsInList, toggleMapTileBaseIndexFlag, mapExtendedWidth, compression, tileOpt, mapBase, 
         			compressionCustomTileset, compressionCustomTilemap, addCompressionField, tilesCacheId, tilesetStatsCollectorId,
-        			commonTilesRangeId);
+        			commonTilesRangeId, tilesDeltaId);
         else if (splitTileset == 2)
         	return new ImageStripsNoPalsSplit2(name, stripsInList, splitTilemap, toggleMapTileBaseIndexFlag, mapExtendedWidth, compression, 
         			tileOpt, mapBase, compressionCustomTileset, compressionCustomTilemap, addCompressionField, tilesCacheId, tilesetStatsCollectorId,
-        			commonTilesRangeId, splitTilesetStrategy);
+        			commonTilesRangeId, splitTilesetStrategy, tilesDeltaId, tilemapDeltaId);
         else
         	return new ImageStripsNoPalsSplit3(name, stripsInList, splitTilemap, toggleMapTileBaseIndexFlag, mapExtendedWidth, compression, 
         			tileOpt, mapBase, compressionCustomTileset, compressionCustomTilemap, addCompressionField, tilesCacheId, tilesetStatsCollectorId,
-        			commonTilesRangeId, splitTilesetStrategy);
+        			commonTilesRangeId, splitTilesetStrategy, tilesDeltaId, tilemapDeltaId);
     }
 
 	private List<String> generateFilesInForStrips(String absPath, String baseFileName, Matcher baseFileNameMatcher, int strips)
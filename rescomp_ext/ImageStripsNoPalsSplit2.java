@@ -10,8 +10,10 @@ import java.util.stream.Collectors;
 
 import sgdk.rescomp.Resource;
 import sgdk.rescomp.tool.CommonTilesRangeManager;
+import sgdk.rescomp.tool.DecodeBudgetReport;
 import sgdk.rescomp.tool.ExtProperties;
-import sgdk.rescomp.tool.ImageUtilFast;
+import sgdk.rescomp.tool.FrameTilesDeltaManager;
+import sgdk.rescomp.tool.ImageStripsFramePipeline;
 import sgdk.rescomp.tool.TilesCacheManager;
 import sgdk.rescomp.tool.TilesetSizeSplitCalculator;
 import sgdk.rescomp.tool.TilesetStatsCollector;
@@ -22,11 +24,10 @@ import sgdk.rescomp.type.Basics.TileOrdering;
 import sgdk.rescomp.type.CommonTilesRange;
 import sgdk.rescomp.type.CompressionCustom;
 import sgdk.rescomp.type.CustomDataTypes;
+import sgdk.rescomp.type.FrameTilesDelta;
 import sgdk.rescomp.type.Tile;
 import sgdk.rescomp.type.TilesetSplitStrategyEnum;
 import sgdk.rescomp.type.ToggleMapTileBaseIndex;
-import sgdk.tool.ImageUtil;
-import sgdk.tool.ImageUtil.BasicImageInfo;
 
 public class ImageStripsNoPalsSplit2 extends Resource
 {
@@ -34,32 +35,43 @@ public class ImageStripsNoPalsSplit2 extends Resource
 
 	public final TilesetOriginalCustom tileset1, tileset2;
 	public final TilemapCustom tilemap1, tilemap2;
+	public final FrameTilesDelta tilesDelta;
 
     public ImageStripsNoPalsSplit2(String id, List<String> stripsFileList, int splitTilemap, ToggleMapTileBaseIndex toggleMapTileBaseIndexFlag, 
     		int mapExtendedWidth, Compression compression, TileOptimization tileOpt, int mapBase, CompressionCustom compressionCustomTileset, 
     		CompressionCustom compressionCustomTilemap, boolean addCompressionField, String tilesCacheId, String tilesetStatsCollectorId, 
-    		String commonTilesRangeId, TilesetSplitStrategyEnum splitStrategy) throws Exception
+    		String commonTilesRangeId, TilesetSplitStrategyEnum splitStrategy, String tilesDeltaId, 
+    		String tilemapDeltaId) throws Exception
     {
         super(id);
 
-        // finalImageData has no more palette definitions at the top
-        byte[] finalImageData = mergeAllStrips(stripsFileList);
+        // fabri1983: merged strips and tileset of the whole frame, likely already computed in background
+        ImageStripsFramePipeline.Frame frame = ImageStripsFramePipeline.getFrame(id + "_tileset", stripsFileList, tileOpt, compression, 
+        		compressionCustomTileset, tilesCacheId, addCompressionField, commonTilesRangeId);
 
-        // get info from first strip
-        BasicImageInfo strip0Info = ImageUtil.getBasicInfo(stripsFileList.get(0));
+        // finalImageData has no more palette definitions at the top
+        byte[] finalImageData = frame.image8bpp;
         // width and height in pixels
-        int w = strip0Info.w;
-        // we determine 'h' from data length and 'w' as we can crop image vertically to remove palette data
-        int h = finalImageData.length / w;
+        int w = frame.w;
+        int h = frame.h;
         // get size in tile
         int wt = w / 8;
         int ht = h / 8;
 
-        boolean isTempTileset = true;
-        TilesetOriginalCustom tilesetTemp = new TilesetOriginalCustom(id + "_tileset", finalImageData, w, h, 0, 0, wt, ht, tileOpt, compression, 
-        		compressionCustomTileset, false, isTempTileset, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId);
+        TilesetOriginalCustom tilesetTemp = frame.tileset;
         checkTilesetMaxSizeForSplitIn2(tilesetTemp.getNumTile());
 
+        // fabri1983: frame buffer the frame is loaded into, which keys the tiles delta and the tilemap delta
+        int frameBufferBaseIndex = tilesDeltaId == null && tilemapDeltaId == null ? 0 
+        		: FrameTilesDeltaManager.getFrameBufferBaseIndex(toggleMapTileBaseIndexFlag, mapBase, stripsFileList.get(0));
+
+        // fabri1983: only the tiles missing in the frame buffer are loaded, as a single span of it which is then split in chunks
+        tilesDelta = tilesDeltaId == null ? null : FrameTilesDeltaManager.nextFrame(tilesDeltaId, frameBufferBaseIndex, 
+        		tilesetTemp.tiles, ExtProperties.getInt(ExtProperties.MAX_TILESET_NUM_FOR_MAP_BASE_TILE_INDEX));
+        // the span keeps the buffer order, duplicates included
+        List<Tile> tilesToSplit = tilesDelta == null ? tilesetTemp.tiles : tilesDelta.tiles;
+        TileOptimization tilesetOpt = tilesDelta == null ? tileOpt : TileOptimization.NONE;
+
         // Calculate height for each tileset/tilemap
         int ht_1 = ht/2;
         int ht_2 = ht/2 + (ht % 2); // tileset2 height in tiles is calculated considering if ht is even or odd
@@ -78,10 +90,10 @@ public class ImageStripsNoPalsSplit2 extends Resource
         	int maxTilesetChunkSize = ExtProperties.getInt(ExtProperties.MAX_TILESET_CHUNK_SIZE_FOR_SPLIT_IN_2);
 
 			if (splitStrategy == TilesetSplitStrategyEnum.SPLIT_MAX_CAPACITY_FIRST) {
-        		splitTiles = TilesetSizeSplitCalculator.splitWithMaxTilesFirst(tilesetTemp.tiles, 2, maxTilesetChunkSize);
+        		splitTiles = TilesetSizeSplitCalculator.splitWithMaxTilesFirst(tilesToSplit, 2, maxTilesetChunkSize);
         	}
         	else if (splitStrategy == TilesetSplitStrategyEnum.SPLIT_EVENLY) {
-        		splitTiles = TilesetSizeSplitCalculator.splitWithMaxEvenlyDistribution(tilesetTemp.tiles, 2, maxTilesetChunkSize);
+        		splitTiles = TilesetSizeSplitCalculator.splitWithMaxEvenlyDistribution(tilesToSplit, 2, maxTilesetChunkSize);
         	}
 
     		// If there is common tiles for this image and is also the first image of the range 
@@ -92,9 +104,9 @@ public class ImageStripsNoPalsSplit2 extends Resource
 			}
 
 	    	tileset1 = (TilesetOriginalCustom) addInternalResource(new TilesetOriginalCustom(id + "_chunk1_tileset", splitTiles.get(0),
-					tileOpt, compression, compressionCustomTileset, false, false, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId));
+					tilesetOpt, compression, compressionCustomTileset, false, false, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId));
 			tileset2 = (TilesetOriginalCustom) addInternalResource(new TilesetOriginalCustom(id + "_chunk2_tileset", splitTiles.get(1),
-					tileOpt, compression, compressionCustomTileset, false, false, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId));
+					tilesetOpt, compression, compressionCustomTileset, false, false, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId));
 			
         }
 
@@ -105,28 +117,36 @@ public class ImageStripsNoPalsSplit2 extends Resource
 
     	System.out.print(" " + id + " -> numTiles (chunk1 + chunk2): " + tileset1.getNumTile() + " + " + tileset2.getNumTile() + " = " + 
     			(tileset1.getNumTile() + tileset2.getNumTile()) + ". ");
+    	if (tilesDelta != null)
+    		System.out.print(tilesDelta + ". ");
     	if (tilesetStatsCollectorId != null && !"".equals(tilesetStatsCollectorId)) {
     		TilesetStatsCollector.count2chunks(tilesetStatsCollectorId, tileset1.getNumTile(), tileset2.getNumTile());
         }
 
     	int maxFrameTilesetTotalSize = ExtProperties.getInt(ExtProperties.MAX_TILESET_TOTAL_SIZE_FOR_SPLIT_IN_2);
         int[] offsetAccumPerTilesetChunk = {0, tileset1.getNumTile()};
+        // fabri1983: with tiles delta the tilemap is built against the whole frame tileset and then remapped to the frame buffer
+        List<TilesetOriginalCustom> tilemapTilesets = tilesDelta == null ? tilesetsList : Arrays.asList(tilesetTemp);
+        int[] tilemapOffsetAccum = tilesDelta == null ? offsetAccumPerTilesetChunk : new int[] {0};
 //    	int[] offsetAccumPerTilesetChunk = {0, ExtProperties.getInt(ExtProperties.MAX_TILESET_CHUNK_1_SIZE_FOR_SPLIT_IN_2)};
 
         if (splitTilemap == 1) {
-			tilemap1 = (TilemapCustom) addInternalResource(TilemapCustom.getTilemap(id + "_chunk1_tilemap", tilesetsList, offsetAccumPerTilesetChunk, 
+			tilemap1 = (TilemapCustom) addInternalResource(TilemapCustom.getTilemap(id + "_chunk1_tilemap", tilemapTilesets, tilemapOffsetAccum, 
 	        		toggleMapTileBaseIndexFlag, mapBase, finalImageData, w, h, 0, 0, wt, ht, tileOpt, compression, compressionCustomTilemap, 
-	        		mapExtendedWidth, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize));
+	        		mapExtendedWidth, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize, tilesDelta, tilemapDeltaId, 
+	        		frameBufferBaseIndex));
 			tilemap2 = null;
         }
         else {
-			tilemap1 = (TilemapCustom) addInternalResource(TilemapCustom.getTilemap(id + "_chunk1_tilemap", tilesetsList, offsetAccumPerTilesetChunk, 
+			tilemap1 = (TilemapCustom) addInternalResource(TilemapCustom.getTilemap(id + "_chunk1_tilemap", tilemapTilesets, tilemapOffsetAccum, 
 	        		toggleMapTileBaseIndexFlag, mapBase, finalImageData, w, h, 0, 0, wt, ht_1, tileOpt, compression, compressionCustomTilemap, 
-	        		mapExtendedWidth, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize));
+	        		mapExtendedWidth, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize, tilesDelta, tilemapDeltaId, 
+	        		frameBufferBaseIndex));
 	
-	        tilemap2 = (TilemapCustom) addInternalResource(TilemapCustom.getTilemap(id + "_chunk2_tilemap", tilesetsList, offsetAccumPerTilesetChunk, 
+	        tilemap2 = (TilemapCustom) addInternalResource(TilemapCustom.getTilemap(id + "_chunk2_tilemap", tilemapTilesets, tilemapOffsetAccum, 
 	        		toggleMapTileBaseIndexFlag, mapBase, finalImageData, w, h, 0, ht_1, wt, ht_2, tileOpt, compression, compressionCustomTilemap, 
-	        		mapExtendedWidth, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize));
+	        		mapExtendedWidth, TileOrdering.ROW, tilesCacheId, addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize, tilesDelta, tilemapDeltaId, 
+	        		frameBufferBaseIndex));
         }
 
         if (TilesCacheManager.isStatsEnabledFor(tilesCacheId) && 
@@ -134,12 +154,18 @@ public class ImageStripsNoPalsSplit2 extends Resource
 	        TilesCacheManager.countResourcesPerTile(tilesCacheId, tilesetTemp.tiles);
 	        TilesCacheManager.countTotalTiles(tilesCacheId, tileset1.tiles);
 	        TilesCacheManager.countTotalTiles(tilesCacheId, tileset2.tiles);
+	        TilesCacheManager.countCachedTilesUsage(tilesCacheId, finalImageData, w, h);
         }
 
+        // fabri1983: bins the frame unpacks, for the decode budget report
+        DecodeBudgetReport.registerFrame(id, tileset1.bin, tileset2.bin, tilemap1.bin, tilemap2 == null ? null : tilemap2.bin);
+
         // compute hash code
         int hcTemp = tileset1.hashCode() ^ tileset2.hashCode() ^ tilemap1.hashCode();
         if (tilemap2 != null)
         	hcTemp ^= tilemap2.hashCode();
+        if (tilesDelta != null)
+        	hcTemp ^= tilesDelta.startIndex;
         hc = hcTemp;
     }
 
@@ -216,53 +242,6 @@ public class ImageStripsNoPalsSplit2 extends Resource
 	
 	}
 
-	private byte[] mergeAllStrips(List<String> stripsFileList) throws Exception
-    {
-		// get tile data per pixel (color position in palette), check image dimension is aligned to tile, remove palette info if any
-        byte[] image0 = ImageUtilFast.getImageAs8bpp(stripsFileList.get(0), true, true);
-        int stripLength = image0.length;
-        // allocate space for bigger image
-        final byte[] finalImage = new byte[stripLength * stripsFileList.size()];
-
-        // copy all the strips into finalImage
-        for (int i = 0; i < stripsFileList.size(); ++i) {
-        	String imgFile = stripsFileList.get(i);
-        	byte[] image = ImageUtilFast.getImageAs8bpp(imgFile, true, true);
-        	checkImageNotNull(imgFile, image);
-            checkImageColorByte(imgFile, image);
-            System.arraycopy(image, 0, finalImage, i * stripLength, stripLength);
-        }
-
-        return finalImage;
-	}
-
-    /**
-     * Happen when we couldn't retrieve palette data from RGB image
-     * @param imgFile
-     * @param image
-     */
-	private void checkImageNotNull(String imgFile, byte[] image) {
-		if (image == null)
-            throw new IllegalArgumentException(
-                    "RGB image '" + imgFile + "' does not contains palette data (see 'Important note about image format' in the rescomp.txt file");
-	}
-
-	/**
-	 * b0-b3 = pixel data; b4-b5 = palette index; b7 = priority bit
-	 * check if image try to use bit 6 (probably mean that we have too much colors in our image)
-	 * @param imgFile
-	 * @param image
-	 */
-	private void checkImageColorByte(String imgFile, byte[] image) {
-        for (byte d : image)
-        {
-            // bit 6 used ?
-            if ((d & 0x40) != 0)
-                throw new IllegalArgumentException(
-                        "'" + imgFile + "' has color index in [64..127] range, IMAGE resource requires image with a maximum of 64 colors");
-        }
-	}
-
 	public int getWidth()
     {
         return tilemap1.w * 8; // width is the same for every splitted tilemap 
@@ -276,6 +255,14 @@ public class ImageStripsNoPalsSplit2 extends Resource
     		return tilemap1.h * 8 + tilemap2.h * 8;
     }
 
+    /**
+     * @return offset in tiles into the frame buffer where the tilesets are loaded. 0 if tiles delta is disabled
+     */
+    public int getTilesOffset()
+    {
+        return tilesDelta == null ? 0 : tilesDelta.startIndex;
+    }
+
     @Override
     public int internalHashCode()
     {
@@ -291,7 +278,8 @@ public class ImageStripsNoPalsSplit2 extends Resource
         	boolean tilemap2equality = (tilemap2 == null && other.tilemap2 == null) 
         			|| (tilemap2 != null && other.tilemap2 != null && tilemap2.equals(other.tilemap2));
             return tileset1.equals(other.tileset1) && tileset2.equals(other.tileset2) 
-            		&& tilemap1.equals(other.tilemap1) && tilemap2equality;
+            		&& tilemap1.equals(other.tilemap1) && tilemap2equality
+            		&& getTilesOffset() == other.getTilesOffset();
         }
 
         return false;
@@ -307,7 +295,7 @@ public class ImageStripsNoPalsSplit2 extends Resource
     public int shallowSize()
     {
     	// 4 bytes (a long) per pointer declaration
-        return 4 + 4 + 4 + (tilemap2 == null ? 0 : 4);
+        return 4 + 4 + 4 + (tilemap2 == null ? 0 : 4) + (tilesDelta == null ? 0 : 2);
     }
 
     @Override
@@ -326,17 +314,21 @@ public class ImageStripsNoPalsSplit2 extends Resource
 		boolean addCompressedField = tileset1.addCompressionField == true || tilemap1.addCompressionField == true;
 
 		// output Image structure
+		CustomDataTypes type;
 		if (tilemap2 == null) {
 			if (addCompressedField)
-				Util.decl(outS, outH, CustomDataTypes.ImageNoPals21CompField.getValue(), id, 2, global);
+				type = CustomDataTypes.ImageNoPals21CompField;
 			else
-				Util.decl(outS, outH, CustomDataTypes.ImageNoPalsSplit21.getValue(), id, 2, global);
+				type = CustomDataTypes.ImageNoPalsSplit21;
 		} else {
 			if (addCompressedField)
-				Util.decl(outS, outH, CustomDataTypes.ImageNoPalsSplit22CompField.getValue(), id, 2, global);
+				type = CustomDataTypes.ImageNoPalsSplit22CompField;
 			else
-				Util.decl(outS, outH, CustomDataTypes.ImageNoPalsSplit22.getValue(), id, 2, global);
+				type = CustomDataTypes.ImageNoPalsSplit22;
 		}
+		if (tilesDelta != null)
+			type = CustomDataTypes.tilesDeltaOf(type);
+		Util.decl(outS, outH, type.getValue(), id, 2, global);
 		// Tileset1 pointer
 		outS.append("    dc.l    " + tileset1.id + "\n");
 		// Tileset2 pointer
@@ -346,6 +338,9 @@ public class ImageStripsNoPalsSplit2 extends Resource
 		// Tilemap2 pointer
 		if (tilemap2 != null)
 			outS.append("    dc.l    " + tilemap2.id + "\n");
+		// Tiles offset into the frame buffer
+		if (tilesDelta != null)
+			outS.append("    dc.w    " + tilesDelta.startIndex + "\n");
 		outS.append("\n");
     }
 }
@@ -1,7 +1,5 @@
 package sgdk.rescomp.tool;
 
-import java.awt.Dimension;
-import java.awt.Rectangle;
 import java.util.Arrays;
 
 import sgdk.tool.ImageUtil;
@@ -9,7 +7,42 @@ import sgdk.tool.ImageUtil.BasicImageInfo;
 
 public class ImageUtilFast {
 
+    /**
+     * fabri1983: 8bpp image whose buffer is reused between images. Only the first <code>w * h</code> bytes of <code>data</code> are valid.
+     */
+    public static class Image8bpp {
+        public byte[] data = new byte[0];
+        // width and height in pixels
+        public int w, h;
+
+        public int length() {
+            return w * h;
+        }
+
+        byte[] setSize(int w, int h) {
+            this.w = w;
+            this.h = h;
+            if (data.length < w * h)
+                data = new byte[w * h];
+            return data;
+        }
+    }
+
     public static byte[] getImageAs8bpp(String imgFile, boolean checkTileAligned, boolean removeRGBPalette) throws Exception
+    {
+        final Image8bpp image = new Image8bpp();
+        if (!getImageAs8bpp(imgFile, checkTileAligned, removeRGBPalette, image))
+            return null;
+        // fresh buffer, so it has the exact size
+        return image.data;
+    }
+
+    /**
+     * fabri1983: same than {@link #getImageAs8bpp(String, boolean, boolean)} but the image is written in the buffer of <code>out</code>, 
+     * so decoding many images of the same size doesn't allocate a new result every time.
+     * @return false if it's an RGB image without palette data
+     */
+    public static boolean getImageAs8bpp(String imgFile, boolean checkTileAligned, boolean removeRGBPalette, Image8bpp out) throws Exception
     {
         // retrieve basic infos about the image
         final BasicImageInfo imgInfo = ImageUtil.getBasicInfo(imgFile);
@@ -25,12 +58,45 @@ public class ImageUtilFast {
 
         // true color / RGB image ?
         if (imgInfo.bpp > 8)
-            return convertRGBTo8bpp(imgFile, removeRGBPalette);
+            return convertRGBTo8bpp(imgFile, removeRGBPalette, out);
 
         // get image data
         final byte[] data = ImageUtil.getIndexedPixels(imgFile);
         // convert to 8 bpp
-        return ImageUtil.convertTo8bpp(data, imgInfo.bpp);
+        final byte[] image = ImageUtil.convertTo8bpp(data, imgInfo.bpp);
+        System.arraycopy(image, 0, out.setSize(imgInfo.w, image.length / imgInfo.w), 0, image.length);
+        return true;
+    }
+
+    /**
+     * fabri1983: checks the result of {@link #getImageAs8bpp(String, boolean, boolean, Image8bpp)}.
+     * Happen when we couldn't retrieve palette data from RGB image
+     * @param imgFile
+     * @param hasImage
+     */
+    public static void checkImageNotNull(String imgFile, boolean hasImage)
+    {
+        if (!hasImage)
+            throw new IllegalArgumentException(
+                    "RGB image '" + imgFile + "' does not contains palette data (see 'Important note about image format' in the rescomp.txt file");
+    }
+
+    /**
+     * b0-b3 = pixel data; b4-b5 = palette index; b7 = priority bit
+     * check if image try to use bit 6 (probably mean that we have too much colors in our image)
+     * @param imgFile
+     * @param image
+     */
+    public static void checkImageColorByte(String imgFile, Image8bpp image)
+    {
+        final byte[] data = image.data;
+        for (int i = 0, len = image.length(); i < len; ++i)
+        {
+            // bit 6 used ?
+            if ((data[i] & 0x40) != 0)
+                throw new IllegalArgumentException(
+                        "'" + imgFile + "' has color index in [64..127] range, IMAGE resource requires image with a maximum of 64 colors");
+        }
     }
 
     /**
@@ -45,6 +111,19 @@ public class ImageUtilFast {
      * @throws Exception
      */
     public static byte[] convertRGBTo8bpp(String filename, boolean cropPalette) throws Exception {
+        final Image8bpp image = new Image8bpp();
+        if (!convertRGBTo8bpp(filename, cropPalette, image))
+            return null;
+        // fresh buffer, so it has the exact size
+        return image.data;
+    }
+
+    /**
+     * fabri1983: same than {@link #convertRGBTo8bpp(String, boolean)} but the image is written in the buffer of <code>out</code>.
+     * When the palette is cropped the palette rows aren't processed at all and the image rows are written straight at their final place.
+     * @return false if not palette data found
+     */
+    public static boolean convertRGBTo8bpp(String filename, boolean cropPalette, Image8bpp out) throws Exception {
 
         final BasicImageInfo imageInfo = ImageUtil.getBasicInfo(filename);
         final int w = imageInfo.w;
@@ -61,7 +140,7 @@ public class ImageUtilFast {
         // load palette
         final int[] palette = ImageUtil.getRGBA8888PaletteFromTiles(argb, w, h);
         if (palette == null)
-            return null;
+            return false;
 
         final int[] palARGB = new int[64];
         for (int i = 0; i < 64; i++)
@@ -113,12 +192,16 @@ public class ImageUtilFast {
 
         final int wt = w / 8;
         final int ht = h / 8;
-        final byte[] result = new byte[w * h];
+        // palette rows are the first 4 rows of tiles
+        final int cropRows = cropPalette ? 32 : 0;
+        // result[] offsets are the argb[] offsets minus the cropped pixels
+        final int cropOffset = cropRows * w;
+        final byte[] result = out.setSize(w, h - cropRows);
 
         // ------------------------------------------------------------------
         // INITIAL WRITE OF PALETTE TILES
         // ------------------------------------------------------------------
-        for (int yt = 0; yt < 4; yt++) {
+        for (int yt = 0; yt < 4 && !cropPalette; yt++) {
             for (int xt = 0; xt < wt; xt++) {
 
                 int palIndex = (xt < 16) ? (yt * 16 + xt) : 0;
@@ -136,7 +219,7 @@ public class ImageUtilFast {
         // ------------------------------------------------------------------
         // PROCESS ALL IMAGE TILES
         // ------------------------------------------------------------------
-        for (int yt = 0; yt < ht; yt++) {
+        for (int yt = cropRows / 8; yt < ht; yt++) {
             for (int xt = 0; xt < wt; xt++) {
 
                 // skip palette tiles
@@ -147,7 +230,7 @@ public class ImageUtilFast {
 
                 // special case (yt==0,xt==16)
                 if (yt == 0 && xt == 16) {
-                    int off = baseOff;
+                    int off = baseOff - cropOffset;
                     for (int y = 0; y < 8; y++) {
                         Arrays.fill(result, off, off + 8, (byte)0);
                         off += w;
@@ -209,7 +292,7 @@ public class ImageUtilFast {
                         if (finalIndex < 0)
                             throw new Exception(filename+": palette mismatch at tile ["+xt+","+yt+"]");
 
-                        result[off] = (byte) finalIndex;
+                        result[off - cropOffset] = (byte) finalIndex;
                         off++;
                     }
                     off += w - 8;
@@ -217,10 +300,7 @@ public class ImageUtilFast {
             }
         }
 
-        if (cropPalette)
-			return ImageUtil.getSubImage(result, new Dimension(w, h), new Rectangle(0, 32, w, h - 32));
-
-        return result;
+        return true;
     }
 
 }
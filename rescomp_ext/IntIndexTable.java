@@ -0,0 +1,163 @@
+package sgdk.rescomp.tool;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table from int keys to a chain of int values (ie: positions in a list), kept in insertion order.</br>
+ * Keys are stored in primitive arrays (linear probing) and the values of a same key are chained through arrays too,
+ * so adding and looking up doesn't box integers nor allocate lists. The table can be cleared and reused without reallocation.</br>
+ * Iterate the values of a key as:
+ * <pre>
+ * for (int e = table.first(key); e != -1; e = table.next(e))
+ *     int value = table.value(e);
+ * </pre>
+ * Not thread safe. Use {@link #acquire()} and {@link #release(IntIndexTable)} to reuse tables in the current thread.
+ */
+public class IntIndexTable {
+
+	private static final int DEFAULT_CAPACITY = 256;
+	private static final int POOL_MAX_SIZE = 4;
+
+	private static final ThreadLocal<ArrayDeque<IntIndexTable>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+
+	// slots (open addressing)
+	private int[] slotKeys;
+	private int[] slotHeads; // -1 means empty slot
+	private int[] slotTails;
+	private int mask;
+	private int usedSlots;
+
+	// entries (chained per key)
+	private int[] entryValues;
+	private int[] entryNext;
+	private int size;
+
+	public IntIndexTable () {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public IntIndexTable (int expectedEntries) {
+		int slots = Integer.highestOneBit(Math.max(16, expectedEntries * 2 - 1)) << 1;
+		allocSlots(slots);
+		entryValues = new int[Math.max(16, expectedEntries)];
+		entryNext = new int[entryValues.length];
+	}
+
+	/**
+	 * Gets an empty table from the current thread's pool, or a new one if the pool is empty.
+	 */
+	public static IntIndexTable acquire () {
+		IntIndexTable table = pool.get().poll();
+		return table != null ? table : new IntIndexTable();
+	}
+
+	/**
+	 * Clears the table and gives it back to the current thread's pool. The table must not be used afterwards.
+	 */
+	public static void release (IntIndexTable table) {
+		ArrayDeque<IntIndexTable> tables = pool.get();
+		if (tables.size() < POOL_MAX_SIZE) {
+			table.clear();
+			tables.push(table);
+		}
+	}
+
+	private void allocSlots (int slots) {
+		slotKeys = new int[slots];
+		slotHeads = new int[slots];
+		slotTails = new int[slots];
+		Arrays.fill(slotHeads, -1);
+		mask = slots - 1;
+		usedSlots = 0;
+	}
+
+	private static int mix (int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int findSlot (int key) {
+		int slot = mix(key) & mask;
+		while (slotHeads[slot] != -1 && slotKeys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Appends the value at the end of the chain of values for the key.
+	 */
+	public void add (int key, int value) {
+		if (size == entryValues.length) {
+			entryValues = Arrays.copyOf(entryValues, size * 2);
+			entryNext = Arrays.copyOf(entryNext, size * 2);
+		}
+		final int entry = size++;
+		entryValues[entry] = value;
+		entryNext[entry] = -1;
+
+		int slot = findSlot(key);
+		if (slotHeads[slot] == -1) {
+			slotKeys[slot] = key;
+			slotHeads[slot] = entry;
+			slotTails[slot] = entry;
+			// keep load factor under 0.5
+			if (++usedSlots * 2 > slotKeys.length)
+				rehash();
+		}
+		else {
+			entryNext[slotTails[slot]] = entry;
+			slotTails[slot] = entry;
+		}
+	}
+
+	private void rehash () {
+		final int[] oldKeys = slotKeys;
+		final int[] oldHeads = slotHeads;
+		final int[] oldTails = slotTails;
+		allocSlots(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldHeads[i] == -1)
+				continue;
+			int slot = findSlot(oldKeys[i]);
+			slotKeys[slot] = oldKeys[i];
+			slotHeads[slot] = oldHeads[i];
+			slotTails[slot] = oldTails[i];
+			++usedSlots;
+		}
+	}
+
+	/**
+	 * @return first entry of the chain for the key, or -1 if the key isn't present
+	 */
+	public int first (int key) {
+		return slotHeads[findSlot(key)];
+	}
+
+	/**
+	 * @return next entry in the chain, or -1 if it was the last one
+	 */
+	public int next (int entry) {
+		return entryNext[entry];
+	}
+
+	public int value (int entry) {
+		return entryValues[entry];
+	}
+
+	public int size () {
+		return size;
+	}
+
+	/**
+	 * Removes all the entries keeping the allocated arrays.
+	 */
+	public void clear () {
+		if (size == 0)
+			return;
+		Arrays.fill(slotHeads, -1);
+		usedSlots = 0;
+		size = 0;
+	}
+
+}
@@ -3,6 +3,8 @@ package sgdk.rescomp.tool;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.file.Files;
@@ -10,9 +12,19 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import sgdk.rescomp.resource.BinCustom;
 import sgdk.rescomp.type.CompressionCustom;
@@ -24,15 +36,94 @@ public class MdComp {
 	private static boolean isWindows = System.getProperty("os.name").toLowerCase().indexOf("win") >= 0;
 	private static final String rescomp_ext_jar_path = new File(MdComp.class.getProtectionDomain().getCodeSource().getLocation().getPath())
 			.getParentFile().getAbsolutePath();
-	private static final String tmdDir = SystemUtil.getProperty("java.io.tmpdir");
+	private static final File compressorsDir = new File(rescomp_ext_jar_path + File.separator + "compressors");
+	private static final String tmdDir = getTempDir();
+
+	// fabri1983: bins are compressed in background by a bounded pool of threads, each one running at most one compressor process
+	private static ExecutorService compressorPool;
+	// the same data compressed the same way is submitted only once. Keyed by the compression cache key
+	private static final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+	// SGDK's aplib packer isn't known to be thread safe
+	private static final Object appackLock = new Object();
+	// Increment it if the appack output changes in a way the rescomp jar size and date don't tell
+	private static final int APPACK_IMPLEMENTATION_VERSION = 1;
+
+	private static final String DEFAULT_AUTO_CANDIDATES = "LZ4W,RLEW_A,RLEW_B,UFTC,ZX0,UNAPLIB";
+	// 68000 cycles in one NTSC frame (7.67 MHz / 60)
+	private static final long DEFAULT_AUTO_DECODE_BUDGET_CYCLES = 127840;
+	private static List<CompressionCustom> autoCandidates;
+
+	private static String getTempDir() {
+		// fabri1983: prefer a memory backed folder so the compressors input and output files don't hit the disk
+		File shm = new File("/dev/shm");
+		if (!isWindows && shm.isDirectory() && shm.canWrite())
+			return shm.getAbsolutePath();
+		return SystemUtil.getProperty("java.io.tmpdir");
+	}
+
+	private static synchronized ExecutorService getCompressorPool() {
+		if (compressorPool == null) {
+			int threads = ExtProperties.getInt(ExtProperties.COMPRESSION_THREADS);
+			if (threads <= 0)
+				threads = Runtime.getRuntime().availableProcessors();
+			compressorPool = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, MdComp.class.getSimpleName());
+				// don't prevent rescomp from exiting
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return compressorPool;
+	}
+
+	/**
+	 * Submits the compression to the compressors pool. Use {@link #await(Future)} to get the result.
+	 */
+	public static Future<PackedDataCustom> packAsync(byte[] data, String binId, CompressionCustom compression) {
+		// nothing to do
+		if (compression == CompressionCustom.NONE)
+			return CompletableFuture.completedFuture(new PackedDataCustom(data, CompressionCustom.NONE));
+		checkNotPreEncoded(binId, compression);
+
+		if (CompressionCustom.isAutoSelection(compression))
+			return packCandidatesAsync(data, binId).thenApply(candidates -> selectAuto(candidates, data, compression));
+
+		return compressAsync(data, binId, compression).thenApply(result -> toPackedData(data, result, compression));
+	}
+
+	public static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
 
 	public static PackedDataCustom pack(byte[] data, String binId, CompressionCustom compression) {
 		// nothing to do
 		if (compression == CompressionCustom.NONE)
 			return new PackedDataCustom(data, CompressionCustom.NONE);
+		checkNotPreEncoded(binId, compression);
+
+		if (CompressionCustom.isAutoSelection(compression))
+			return selectAuto(await(packCandidatesAsync(data, binId)), data, compression);
+
+		String key = CompressionCache.getKey(data, compression, getCompressorSignature(compression, binId));
+		return toPackedData(data, compressCached(data, binId, compression, key), compression);
+	}
+
+	// fabri1983: pre encoded data is written as it is by BinCustom, there is no compressor for it
+	private static void checkNotPreEncoded(String binId, CompressionCustom compression) {
+		if (CompressionCustom.isPreEncoded(compression))
+			throw new IllegalArgumentException("ERROR: " + compression.getValue() + " isn't a compression. Can't be used to pack " + binId);
+	}
 
-		byte[] result = data;
-		result = compress(data, binId, compression);
+	private static PackedDataCustom toPackedData(byte[] data, byte[] result, CompressionCustom compression) {
 		// no good compression? return origin data
         if (!isCompressionValuable(result.length, data.length))
             return new PackedDataCustom(data, CompressionCustom.NONE);
@@ -40,6 +131,110 @@ public class MdComp {
         	return new PackedDataCustom(result, compression);
 	}
 
+	private static CompletableFuture<byte[]> compressAsync(byte[] data, String binId, CompressionCustom compression) {
+		final String cacheKey = CompressionCache.getKey(data, compression, getCompressorSignature(compression, binId));
+		return inFlight.computeIfAbsent(cacheKey, k -> CompletableFuture.supplyAsync(() -> {
+			try {
+				return compressCached(data, binId, compression, k);
+			} finally {
+				inFlight.remove(k);
+			}
+		}, getCompressorPool()));
+	}
+
+	private static byte[] compressCached(byte[] data, String binId, CompressionCustom compression, String key) {
+		// fabri1983: reuse the output of a previous build if the same data was already compressed the same way
+		String cacheKey = CompressionCache.isEnabled() ? key : null;
+		byte[] result = cacheKey != null ? CompressionCache.get(cacheKey) : null;
+		if (result == null) {
+			result = compress(data, binId, compression);
+			if (cacheKey != null)
+				CompressionCache.put(cacheKey, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Candidates tried by {@link CompressionCustom#AUTO_SIZE} and {@link CompressionCustom#AUTO_DECODE_BUDGET}, 
+	 * in the order given by property COMPRESSION_AUTO_CANDIDATES.
+	 */
+	public static synchronized List<CompressionCustom> getAutoCandidates() {
+		if (autoCandidates == null) {
+			String value = ExtProperties.getString(ExtProperties.COMPRESSION_AUTO_CANDIDATES);
+			if (value == null || value.isBlank())
+				value = DEFAULT_AUTO_CANDIDATES;
+			List<CompressionCustom> list = new ArrayList<>();
+			for (String name : value.split(",")) {
+				try {
+					CompressionCustom cc = CompressionCustom.from(name.trim());
+					// only real compressions, SGDK's ones except LZ4W (packed by BinCustom) are already covered by the custom ones
+					if (cc == CompressionCustom.LZ4W || (!CompressionCustom.isOneOfSgdkCompression(cc) 
+							&& !CompressionCustom.isAutoSelection(cc) && !CompressionCustom.isPreEncoded(cc) && cc != CompressionCustom.NONE)) {
+						if (!list.contains(cc))
+							list.add(cc);
+					}
+					else
+						System.out.println("[WARNING] " + ExtProperties.COMPRESSION_AUTO_CANDIDATES + ": " + name.trim() + " isn't a valid candidate. Ignored.");
+				} catch (IllegalArgumentException e) {
+					System.out.println("[WARNING] " + ExtProperties.COMPRESSION_AUTO_CANDIDATES + ": " + e.getMessage() + ". Ignored.");
+				}
+			}
+			autoCandidates = Collections.unmodifiableList(list);
+		}
+		return autoCandidates;
+	}
+
+	/**
+	 * @return max decode cycles allowed per bin by {@link CompressionCustom#AUTO_DECODE_BUDGET}
+	 */
+	public static long getAutoDecodeBudgetCycles() {
+		int value = ExtProperties.getInt(ExtProperties.COMPRESSION_AUTO_DECODE_BUDGET_CYCLES);
+		return value > 0 ? value : DEFAULT_AUTO_DECODE_BUDGET_CYCLES;
+	}
+
+	/**
+	 * Submits every custom candidate of the auto selection modes. SGDK's LZ4W isn't submitted because it can reference 
+	 * the previous data in the output stream, so BinCustom packs it when the output is written.
+	 * @return the raw output of the candidates (not discarded when compression isn't valuable), in candidates order
+	 */
+	public static CompletableFuture<List<PackedDataCustom>> packCandidatesAsync(byte[] data, String binId) {
+		List<CompletableFuture<PackedDataCustom>> futures = new ArrayList<>();
+		for (CompressionCustom cc : getAutoCandidates()) {
+			if (CompressionCustom.isOneOfSgdkCompression(cc))
+				continue;
+			// a failing candidate (ie: compressor not installed or not suited to the data) is just left out
+			futures.add(compressAsync(data, binId, cc).handle((result, ex) -> ex == null ? new PackedDataCustom(result, cc) : null));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+				.thenApply(v -> futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Picks the smallest candidate. For {@link CompressionCustom#AUTO_DECODE_BUDGET} only among the candidates whose 
+	 * estimated decode cycles fit the budget. Ties are resolved by the candidates order.
+	 * @return the selected candidate, or the origin data not compressed if no candidate is valuable or fits the budget
+	 */
+	public static PackedDataCustom selectAuto(List<PackedDataCustom> candidates, byte[] data, CompressionCustom mode) {
+		final long budget = mode == CompressionCustom.AUTO_DECODE_BUDGET ? getAutoDecodeBudgetCycles() : Long.MAX_VALUE;
+		final List<CompressionCustom> order = getAutoCandidates();
+
+		PackedDataCustom best = null;
+		for (PackedDataCustom candidate : candidates) {
+			if (!isCompressionValuable(candidate.data.length, data.length))
+				continue;
+			if (CompressionDecodeCost.estimateCycles(candidate.compressionCustom, candidate.data, data.length) > budget)
+				continue;
+			if (best == null || candidate.data.length < best.data.length || (candidate.data.length == best.data.length 
+					&& order.indexOf(candidate.compressionCustom) < order.indexOf(best.compressionCustom)))
+				best = candidate;
+		}
+
+		// not compressed data has no decode cost, so it always fits the budget
+		if (best == null)
+			return new PackedDataCustom(data, CompressionCustom.NONE);
+		return best;
+	}
+
     private static boolean isCompressionValuable(int compressedSize, int uncompressedSize)
     {
         final int minDiff = 60;
@@ -55,8 +250,10 @@ public class MdComp {
 		//countUnique(data);
 
 		if (compression == CompressionCustom.UNAPLIB) {
-			byte[] result = Util.appack(data);
-			return result;
+			synchronized (appackLock) {
+				byte[] result = Util.appack(data);
+				return result;
+			}
 		}
 		else if (compression == CompressionCustom.RLEW_A) {
 			byte[] result = RLEWCompressor.compress_A(data, binId);
@@ -67,86 +264,35 @@ public class MdComp {
 			return result;
 		}
 	
-		long suffix = System.currentTimeMillis();
-		String infile = tmdDir + File.separator + compression.getValue() + "_" + binId + "_IN_" + suffix + ".bin";
-		String outfile = tmdDir + File.separator + compression.getValue() + "_" + binId + "_OUT_" + suffix + ".bin";
-		
-		if (compression == CompressionCustom.TWIZZLER) {
-			outfile = infile.replace(".bin", ".twiz");
-		}
-		else if (compression == CompressionCustom.TWIZZLERMOD) {
-			outfile = infile.replace(".bin", ".twim");
+		// fabri1983: compressors able to read stdin and write stdout don't need temp files
+		if (isPiped(compression)) {
+			try {
+				return callProgramPiped(resolveExecutable(getCompressorArgs(compression, null, null)), data);
+			} catch (IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
 		}
 
+		String infile = null;
+		String outfile = null;
+
 		try {
-			writeBytesToFile(data, infile);
-			List<String> flags;
+			// unique names since several compressions run at the same time
+			infile = Files.createTempFile(Paths.get(tmdDir), compression.getValue() + "_" + binId + "_IN_", ".bin").toString();
+			outfile = infile.replace("_IN_", "_OUT_");
 
-			if (compression == CompressionCustom.CLOWNNEMESIS) {
-				flags = Arrays.asList(compression.getExeName(), "-c", infile, outfile);
-			}
-			else if (compression == CompressionCustom.COMPERXM) {
-				flags = Arrays.asList(compression.getExeName(), "-m", infile, outfile);
-			}
-			else if (compression == CompressionCustom.ELEKTRO) {
-				// byte aligned: 2; slightly fast compression: 3
-				flags = Arrays.asList(compression.getExeName(), infile, outfile, "2", "3");
-			}
-			else if (compression == CompressionCustom.LZ4) {
-				// -f: force overwrite; -9: best compression (slow) 
-				flags = Arrays.asList(compression.getExeName(), "-f", "-9", "--favor-decSpeed", "--no-frame-crc", infile, outfile);
+			if (compression == CompressionCustom.TWIZZLER) {
+				outfile = infile.replace(".bin", ".twiz");
 			}
-			else if (compression == CompressionCustom.LZ4_SMALL || compression == CompressionCustom.LZ4X) {
-				// -f: force overwrite; -9: best compression (slow) 
-				flags = Arrays.asList(compression.getExeName(), "-f", "-9", infile, outfile);
-			}
-			else if (compression == CompressionCustom.MEGAPACK) {
-				flags = Arrays.asList(compression.getExeName(), infile, outfile, "c");
-			}
-			else if (compression == CompressionCustom.NIBBLER) {
-				flags = Arrays.asList("vamos", compression.getExeName(), infile, outfile);
-			}
-			else if (compression == CompressionCustom.PACKFIRE_LARGE) {
-				// -b: binary output; -l: generates large model
-				flags = Arrays.asList(compression.getExeName(), "-b", "-l", infile, outfile);
-			}
-			else if (compression == CompressionCustom.PACKFIRE_TINY) {
-				// -b: binary output; -t: Try to output tiny model data if possible
-				flags = Arrays.asList(compression.getExeName(), "-b", "-t", infile, outfile);
-			}
-			else if (compression == CompressionCustom.RNC1) {
-				flags = Arrays.asList(compression.getExeName(), "p", infile, outfile, "-m=1");
-			}
-			else if (compression == CompressionCustom.RNC2) {
-				flags = Arrays.asList(compression.getExeName(), "p", infile, outfile, "-m=2");
-			}
-			else if (compression == CompressionCustom.SHRINKLER) {
-				flags = Arrays.asList(compression.getExeName(), "--data", "--bytes", "--no-progress", "-6", infile, outfile);
-			}
-			else if (compression == CompressionCustom.TWIZZLER || compression == CompressionCustom.TWIZZLERMOD) {
-				flags = Arrays.asList(compression.getExeName(), infile);
-			}
-			else if (compression == CompressionCustom.UFTC || compression == CompressionCustom.UFTC15) {
-				if (compression == CompressionCustom.UFTC15)
-					flags = Arrays.asList(compression.getExeName(), "-15", "-c", infile, outfile);
-				else
-					flags = Arrays.asList(compression.getExeName(), "-c", infile, outfile);
-			}
-			else {
-				flags = Arrays.asList(compression.getExeName(), infile, outfile);
+			else if (compression == CompressionCustom.TWIZZLERMOD) {
+				outfile = infile.replace(".bin", ".twim");
 			}
 
-			List<String> all = new ArrayList<>(10);
-			if (isWindows) {
-				all.add("cmd.exe");
-				all.add("/c");
-			} else {
-				all.add("bash");
-				all.add("-c");
-			}
-			all.addAll(flags);
+			writeBytesToFile(data, infile);
+			List<String> flags = getCompressorArgs(compression, infile, outfile);
 
-			callProgram(all);
+			// the compressor is executed directly, without a cmd/bash wrapper
+			callProgram(resolveExecutable(flags));
 
 			byte[] result = readFileAsByteArray(outfile);
 			//printByteArray(result);
@@ -155,11 +301,131 @@ public class MdComp {
 		} catch (IOException | InterruptedException e) {
 			throw new RuntimeException(e);
 		} finally {
-			deleteFile(infile);
-			deleteFile(outfile);
+			if (infile != null)
+				deleteFile(infile);
+			if (outfile != null)
+				deleteFile(outfile);
 		}
 	}
 
+	private static List<String> getCompressorArgs(CompressionCustom compression, String infile, String outfile) {
+		List<String> flags;
+
+		if (compression == CompressionCustom.CLOWNNEMESIS) {
+			flags = Arrays.asList(compression.getExeName(), "-c", infile, outfile);
+		}
+		else if (compression == CompressionCustom.COMPERXM) {
+			flags = Arrays.asList(compression.getExeName(), "-m", infile, outfile);
+		}
+		else if (compression == CompressionCustom.ELEKTRO) {
+			// byte aligned: 2; slightly fast compression: 3
+			flags = Arrays.asList(compression.getExeName(), infile, outfile, "2", "3");
+		}
+		else if (compression == CompressionCustom.LZ4) {
+			// -9: best compression (slow); -c: write to stdout; -: read from stdin 
+			flags = Arrays.asList(compression.getExeName(), "-9", "--favor-decSpeed", "--no-frame-crc", "-c", "-");
+		}
+		else if (compression == CompressionCustom.LZ4_SMALL || compression == CompressionCustom.LZ4X) {
+			// -f: force overwrite; -9: best compression (slow) 
+			flags = Arrays.asList(compression.getExeName(), "-f", "-9", infile, outfile);
+		}
+		else if (compression == CompressionCustom.MEGAPACK) {
+			flags = Arrays.asList(compression.getExeName(), infile, outfile, "c");
+		}
+		else if (compression == CompressionCustom.NIBBLER) {
+			flags = Arrays.asList("vamos", compression.getExeName(), infile, outfile);
+		}
+		else if (compression == CompressionCustom.PACKFIRE_LARGE) {
+			// -b: binary output; -l: generates large model
+			flags = Arrays.asList(compression.getExeName(), "-b", "-l", infile, outfile);
+		}
+		else if (compression == CompressionCustom.PACKFIRE_TINY) {
+			// -b: binary output; -t: Try to output tiny model data if possible
+			flags = Arrays.asList(compression.getExeName(), "-b", "-t", infile, outfile);
+		}
+		else if (compression == CompressionCustom.RNC1) {
+			flags = Arrays.asList(compression.getExeName(), "p", infile, outfile, "-m=1");
+		}
+		else if (compression == CompressionCustom.RNC2) {
+			flags = Arrays.asList(compression.getExeName(), "p", infile, outfile, "-m=2");
+		}
+		else if (compression == CompressionCustom.SHRINKLER) {
+			flags = Arrays.asList(compression.getExeName(), "--data", "--bytes", "--no-progress", "-6", infile, outfile);
+		}
+		else if (compression == CompressionCustom.TWIZZLER || compression == CompressionCustom.TWIZZLERMOD) {
+			flags = Arrays.asList(compression.getExeName(), infile);
+		}
+		else if (compression == CompressionCustom.UFTC || compression == CompressionCustom.UFTC15) {
+			if (compression == CompressionCustom.UFTC15)
+				flags = Arrays.asList(compression.getExeName(), "-15", "-c", infile, outfile);
+			else
+				flags = Arrays.asList(compression.getExeName(), "-c", infile, outfile);
+		}
+		else {
+			flags = Arrays.asList(compression.getExeName(), infile, outfile);
+		}
+
+		return flags;
+	}
+
+	/**
+	 * Everything that changes the output of the compressor for the same input data: the command line flags and the executable 
+	 * size and date, or the implementation version (and its settings for the bin) for the compressors coded in Java.
+	 */
+	private static String getCompressorSignature(CompressionCustom compression, String binId) {
+		if (compression == CompressionCustom.UNAPLIB)
+			return compression.getValue() + ":sgdk_appack:v" + APPACK_IMPLEMENTATION_VERSION + getJarSignature(Util.class);
+		else if (compression == CompressionCustom.RLEW_A || compression == CompressionCustom.RLEW_B)
+			return compression.getValue() + ":" + RLEWCompressor.class.getSimpleName() + ":v" + RLEWCompressor.IMPLEMENTATION_VERSION
+					+ ":wordsPerRow=" + RLEWCompressor.getWordsPerRowProperty(binId);
+
+		StringBuilder sb = new StringBuilder(String.join(" ", getCompressorArgs(compression, "<in>", "<out>")));
+		File exe = findCompressorExe(compression.getExeName());
+		if (exe != null)
+			sb.append(" ").append(exe.length()).append(" ").append(exe.lastModified());
+		return sb.toString();
+	}
+
+	/**
+	 * Size and date of the jar holding the class, ie: SGDK's rescomp.jar for appack. Empty if it can't be resolved.
+	 */
+	private static String getJarSignature(Class<?> clazz) {
+		try {
+			File jar = new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (jar.isFile())
+				return " " + jar.length() + " " + jar.lastModified();
+		} catch (Exception e) {}
+		return "";
+	}
+
+	/**
+	 * Compressors reading the data from stdin and writing the result to stdout.
+	 */
+	private static boolean isPiped(CompressionCustom compression) {
+		return compression == CompressionCustom.LZ4;
+	}
+
+	private static File findCompressorExe(String exeName) {
+		for (String exeFileName : new String[] {exeName, exeName + ".exe"}) {
+			File exe = new File(compressorsDir, exeFileName);
+			if (exe.isFile())
+				return exe;
+		}
+		return null;
+	}
+
+	/**
+	 * Replaces the executable name by its absolute path when it's located in the compressors folder, otherwise it's looked up in the PATH.
+	 */
+	private static List<String> resolveExecutable(List<String> flags) {
+		File exe = findCompressorExe(flags.get(0));
+		if (exe == null)
+			return flags;
+		List<String> resolved = new ArrayList<>(flags);
+		resolved.set(0, exe.getAbsolutePath());
+		return resolved;
+	}
+
 	private static void printByteArray(byte[] data) {
 		ByteBuffer bb = ByteBuffer.wrap(data);
 		System.out.println(data.length);
@@ -216,11 +482,41 @@ public class MdComp {
 	private static void callProgram(List<String> commands) throws InterruptedException, IOException {
 		ProcessBuilder pb = new ProcessBuilder(commands);
 		pb.redirectErrorStream(true);
-		pb.directory(new File(rescomp_ext_jar_path + File.separator + "compressors"));
+		// output is never read, so discard it instead of letting a verbose compressor block on a full pipe
+		pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		pb.directory(compressorsDir);
+		Process process = pb.start();
+		int terminationCode = process.waitFor();
+		if (terminationCode != 0)
+			throw new RuntimeException("ERROR! Compressor program returned value != 0");
+	}
+
+	private static byte[] callProgramPiped(List<String> commands, byte[] input) throws InterruptedException, IOException {
+		ProcessBuilder pb = new ProcessBuilder(commands);
+		pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+		pb.directory(compressorsDir);
 		Process process = pb.start();
+
+		// stdin is fed from another thread, otherwise a compressor writing its output before consuming all the input would block both sides
+		Thread feeder = new Thread(() -> {
+			try (OutputStream os = process.getOutputStream()) {
+				os.write(input);
+			} catch (IOException e) {
+				// the compressor died, its termination code tells it
+			}
+		}, MdComp.class.getSimpleName() + "_stdin");
+		feeder.setDaemon(true);
+		feeder.start();
+
+		byte[] result;
+		try (InputStream is = process.getInputStream()) {
+			result = is.readAllBytes();
+		}
 		int terminationCode = process.waitFor();
+		feeder.join();
 		if (terminationCode != 0)
 			throw new RuntimeException("ERROR! Compressor program returned value != 0");
+		return result;
 	}
 
 	private static byte[] readFileAsByteArray(String fileName) throws IOException {
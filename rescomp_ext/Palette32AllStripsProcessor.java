@@ -94,6 +94,11 @@ public class Palette32AllStripsProcessor implements Processor
         if (fields.length >= 9)
         	compressionCustom = CompressionCustom.from(fields[8]);
 
+        // fabri1983: split chunks must share the compression method, but AUTO modes pick one per chunk
+        if (splitChunks > 1 && CompressionCustom.isAutoSelection(compressionCustom))
+        	throw new IllegalArgumentException("ERROR: " + id + ": compressionCustom " + compressionCustom.getValue()
+        			+ " can't be used with splitChunks > 1 since all the chunks must use the same compression method");
+
         boolean addCompressionField = false;
         if (fields.length >= 10)
         	addCompressionField = Boolean.parseBoolean(fields[9]);
@@ -1,8 +1,7 @@
 package sgdk.rescomp.tool;
 
-import java.io.ByteArrayOutputStream;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +21,11 @@ import java.util.stream.Collectors;
 public class RLEWCompressor {
 
 	public static final String RLE_PROPERTY_SUFFIX_WORDS_PER_ROW = "_WORDS_PER_ROW";
+	/**
+	 * Version of the encoded output. Increment it on every change of the encoder output, so the compression cache
+	 * doesn't return the streams encoded by a previous version.
+	 */
+	public static final int IMPLEMENTATION_VERSION = 1;
 
 	/**
 	 * Only 6 bits used for the length (in words), hence (2^6)-1=63.
@@ -64,6 +68,57 @@ public class RLEWCompressor {
 		}
 	}
 
+	/**
+	 * Growable array of bytes used to build every phase of the encoding without boxing bytes.
+	 * {@link #array()} exposes the backing array, valid up to {@link #size()}.
+	 */
+	private static class ByteStream {
+		private byte[] buf;
+		private int size;
+
+		ByteStream (int initialCapacity) {
+			buf = new byte[Math.max(16, initialCapacity)];
+		}
+
+		private void ensureCapacity (int minCapacity) {
+			if (minCapacity > buf.length)
+				buf = Arrays.copyOf(buf, Math.max(minCapacity, buf.length * 2));
+		}
+
+		void write (int b) {
+			ensureCapacity(size + 1);
+			buf[size++] = (byte) b;
+		}
+
+		void writeWord (int word) {
+			ensureCapacity(size + 2);
+			buf[size++] = (byte) (word >> 8);
+			buf[size++] = (byte) word;
+		}
+
+		void write (byte[] src, int offset, int length) {
+			ensureCapacity(size + length);
+			System.arraycopy(src, offset, buf, size, length);
+			size += length;
+		}
+
+		void reset () {
+			size = 0;
+		}
+
+		int size () {
+			return size;
+		}
+
+		byte[] array () {
+			return buf;
+		}
+
+		byte[] toByteArray () {
+			return Arrays.copyOf(buf, size);
+		}
+	}
+
 	/**
 	 * Method A: lower compression ratio but faster decompression time.<br/>
 	 * Compress an array of words using RLE for 16 bits words. Only up to {@link RLEWCompressor#RLE_MAX_RUN_LENGTH} word per row.
@@ -77,7 +132,7 @@ public class RLEWCompressor {
 
 		// this is the width in words of the data region containing valid data (not the extended width in the case of a map).
 		// up to RLE_MAX_RUN_LENGTH because we use 6 bits for the length
-		int wordsPerRow = getIntProperty(binId + RLE_PROPERTY_SUFFIX_WORDS_PER_ROW);
+		int wordsPerRow = getWordsPerRowProperty(binId);
 		if (wordsPerRow == 0) {
 			wordsPerRow = RLE_MAX_RUN_LENGTH;
 			System.out.println("WARN: " + RLEWCompressor.class.getSimpleName() + ": wordsPerRow was invalid, now is " + RLE_MAX_RUN_LENGTH);
@@ -97,6 +152,7 @@ public class RLEWCompressor {
 		byte[] packedWithHeader = addHeader(packed, rows);
 		byte[] packedFinal = addParityBytes_A(packedWithHeader);
 //		printAsHexa(packedFinal);
+		checkRoundTrip(data, RLEWDecompressor.decompress_A(packedFinal, 0), "A");
 		return packedFinal;
 	}
 
@@ -113,7 +169,7 @@ public class RLEWCompressor {
 
 		// this is the width in words of the data region containing valid data (not the extended width in the case of a map).
 		// up to RLE_MAX_RUN_LENGTH because we use 6 bits for the length
-		int wordsPerRow = getIntProperty(binId + RLE_PROPERTY_SUFFIX_WORDS_PER_ROW);
+		int wordsPerRow = getWordsPerRowProperty(binId);
 		if (wordsPerRow == 0) {
 			wordsPerRow = RLE_MAX_RUN_LENGTH;
 			System.out.println("WARN: " + RLEWCompressor.class.getSimpleName() + ": wordsPerRow was invalid, now is " + RLE_MAX_RUN_LENGTH);
@@ -133,6 +189,7 @@ public class RLEWCompressor {
 		byte[] packedWithHeader = addHeader(packed, rows);
 		byte[] packedFinal = addParityBytes_B(packedWithHeader);
 //		printAsHexa(packedFinal);
+		checkRoundTrip(data, RLEWDecompressor.decompress_B(packedFinal, 0), "B");
 		return packedFinal;
 	}
 
@@ -190,7 +247,7 @@ public class RLEWCompressor {
 		// Uses a byte descriptor to hold the run length (first 6 LSBs) followed by a word (2 bytes) value.
 		// The byte descriptor holds the end of row bit at its MSB: 1 if true, 0 if not.
 
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+		ByteStream rleStreamPhase1 = new ByteStream(data.length + data.length / 2);
 		int accumWordsThisRow = 0;
 
 		for (int i = 0; i < data.length; i += 2) {
@@ -212,18 +269,17 @@ public class RLEWCompressor {
 				setEndOfRowBit = true;
 			}
 
-			ByteBuffer buffer = ByteBuffer.allocate(3);
 			byte rleDescriptor = (byte) (runLength & 0b00111111); // keep only first 6 bits
 
 			if (setEndOfRowBit)
 				rleDescriptor = (byte) (rleDescriptor | 0b10000000); // set the bit marking end of row
 
-			buffer.put(rleDescriptor); // store RLE byte descriptor
-			buffer.putShort((short) currentWord); // store word value
-			outputStream.write(buffer.array(), 0, 3);
+			rleStreamPhase1.write(rleDescriptor); // store RLE byte descriptor
+			rleStreamPhase1.writeWord(currentWord); // store word value
 		}
 
-		byte[] rleArrayPhase1 = outputStream.toByteArray();
+		final byte[] rleArrayPhase1 = rleStreamPhase1.array();
+		final int rleLengthPhase1 = rleStreamPhase1.size();
 
 		// PHASE 2:
 		// Now transform consecutive words having RLE byte descriptor with length 1 into one stream of at least N words.
@@ -231,38 +287,35 @@ public class RLEWCompressor {
 		// and with the MSB indicating if is end of row.
 		// The rest of the encoded RLE stays the same if the stream criteria is not met.
 
-		List<Byte> rleArrayPhase2List = new ArrayList<>(rleArrayPhase1.length);
+		ByteStream rleStreamPhase2 = new ByteStream(rleLengthPhase1);
 
 		int i = 0;
-		while (i < rleArrayPhase1.length) {
+		while (i < rleLengthPhase1) {
 			byte rleDescriptor = rleArrayPhase1[i];
 			int length = rleDescriptor & 0b00111111;
 
 			// Check if the length is 1 (single word repeat)
 			if (length == 1) {
-				i = collectWordsIntoStream_A(rleArrayPhase1, rleArrayPhase2List, i);
+				i = collectWordsIntoStream_A(rleArrayPhase1, rleLengthPhase1, rleStreamPhase2, i);
 			}
 			// Segment's length > 1 => copy the segment as it is
 			else {
-				rleArrayPhase2List.add(rleDescriptor);
-				rleArrayPhase2List.add(rleArrayPhase1[i + 1]); // word high byte
-				rleArrayPhase2List.add(rleArrayPhase1[i + 2]); // word low byte
+				rleStreamPhase2.write(rleArrayPhase1, i, 3); // descriptor + word
 				i += 3;
 			}
 		}
 
-		byte[] rleArrayPhase2 = convertToByteArray(rleArrayPhase2List);
-		return rleArrayPhase2;
+		return rleStreamPhase2.toByteArray();
 	}
 
-	private static int collectWordsIntoStream_A (byte[] source, List<Byte> target, int i) {
+	private static int collectWordsIntoStream_A (byte[] source, int sourceLength, ByteStream target, int i) {
 		// Start collecting a stream of single-word repeats
 		int sequenceStart = i; // descriptor's position
 		int sequenceLength = 0;
 		boolean isEndOfRow = false;
 
 		// Scan forward to count how many consecutive words with length == 1 we find
-		while (i < source.length && (source[i] & 0b00111111) == 1 && !isEndOfRow) {
+		while (i < sourceLength && (source[i] & 0b00111111) == 1 && !isEndOfRow) {
 			isEndOfRow = (source[i] & 0b10000000) != 0;
 			sequenceLength++;
 			i += 3; // Move to the next descriptor
@@ -275,19 +328,16 @@ public class RLEWCompressor {
 			if (isEndOfRow)
 				newDescriptor = (byte) (newDescriptor | 0b10000000);
 
-			target.add(newDescriptor);
+			target.write(newDescriptor);
 
 			// Add the collected words
-			for (int j = 0; j < sequenceLength; j++) {
-				target.add(source[sequenceStart + 1 + 3*j]); // word high byte
-				target.add(source[sequenceStart + 2 + 3*j]); // word low byte
-			}
+			for (int j = 0; j < sequenceLength; j++)
+				target.write(source, sequenceStart + 1 + 3*j, 2); // word high and low bytes
 		}
 		// Not enough length to form a stream, then copy the segments as it is
 		else {
 			// Copy descriptor + word
-			for (int j = sequenceStart; j < (sequenceStart + 3 * sequenceLength); j++)
-				target.add(source[j]);
+			target.write(source, sequenceStart, 3 * sequenceLength);
 		}
 
 		return i;
@@ -305,7 +355,7 @@ public class RLEWCompressor {
 		// Uses a byte descriptor to hold the run length (first 6 LSBs) followed by a word (2 bytes) value.
 		// Uses an additional byte with value 0 to mark the end of row.
 
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+		ByteStream rlePhase1Stream = new ByteStream(data.length * 2);
 		int accumWordsThisRow = 0;
 
 		for (int i = 0; i < data.length; i += 2) {
@@ -327,145 +377,129 @@ public class RLEWCompressor {
 				setEndOfRowBit = true;
 			}
 
-			ByteBuffer buffer = ByteBuffer.allocate(4);
 			byte rleDescriptor = (byte) (runLength & 0b00111111); // keep only first 6 bits
-			buffer.put(rleDescriptor); // store RLE byte descriptor
-			buffer.putShort((short) currentWord); // store word value
-			
-			if (setEndOfRowBit) {
-				buffer.put((byte)0); // add byte 0 to mark the end of a row
-				outputStream.write(buffer.array(), 0, 4);
-			}
-			else {
-				outputStream.write(buffer.array(), 0, 3);
-			}
+			rlePhase1Stream.write(rleDescriptor); // store RLE byte descriptor
+			rlePhase1Stream.writeWord(currentWord); // store word value
+
+			if (setEndOfRowBit)
+				rlePhase1Stream.write(0); // add byte 0 to mark the end of a row
 		}
 
-		byte[] rlePhase1Array = outputStream.toByteArray();
-		outputStream.reset();
-		outputStream = null;
+		final byte[] rlePhase1Array = rlePhase1Stream.array();
+		final int rlePhase1Length = rlePhase1Stream.size();
 
 		// PHASE 2:
-		List<Byte> rlePhase2List = new ArrayList<>(rlePhase1Array.length);
+		ByteStream rlePhase2Stream = new ByteStream(rlePhase1Length);
 
-		for (int i = 0; i < rlePhase1Array.length;) {
+		for (int i = 0; i < rlePhase1Length;) {
 
 			byte rleDescriptor = rlePhase1Array[i];
 			
 			// If the descriptor is the end of row mark then collect it and continue
 			if (rleDescriptor == 0) {
-				rlePhase2List.add(rleDescriptor);
+				rlePhase2Stream.write(rleDescriptor);
 				++i;
 			}
 			// Try to find an incremental RLE segment only if segment is length 1
 			else if ((rleDescriptor & 0b00111111) == 1) {
-				i = collectIncrementalRLE_B(rlePhase1Array, rlePhase2List, i);
+				i = collectIncrementalRLE_B(rlePhase1Array, rlePhase1Length, rlePhase2Stream, i);
 			}
 			// Copy the RLE segment
 			else {
-				rlePhase2List.add(rleDescriptor);
-				rlePhase2List.add(rlePhase1Array[i + 1]); // word high byte
-				rlePhase2List.add(rlePhase1Array[i + 2]); // word low byte
+				rlePhase2Stream.write(rlePhase1Array, i, 3); // descriptor + word
 				i += 3;
 			}
 		}
 
-		byte[] rlePhase2Array = convertToByteArray(rlePhase2List);
-		rlePhase1Array = null;
-		rlePhase2List.clear();
+		final byte[] rlePhase2Array = rlePhase2Stream.array();
+		final int rlePhase2Length = rlePhase2Stream.size();
 
 		// PHASE 3:
 		// Now transform consecutive words having RLE byte descriptor with length 1 into one stream of at least N words.
 		// The new RLE byte descriptor for such streams has 1 as its MSB and the length in the 6 LSBs.
 		// The rest of the encoded RLE stays the same if the stream criteria is not met.
 
-		List<Byte> rlePhase3List = new ArrayList<>(rlePhase2Array.length);
+		// phase 1 buffer is no longer used, so reuse it
+		ByteStream rlePhase3Stream = rlePhase1Stream;
+		rlePhase3Stream.reset();
 
-		for (int i = 0; i < rlePhase2Array.length;) {
+		for (int i = 0; i < rlePhase2Length;) {
 
 			byte rleDescriptor = rlePhase2Array[i];
 
 			// If the descriptor is the end of row mark then collect it and continue
 			if (rleDescriptor == 0) {
-				rlePhase3List.add(rleDescriptor);
+				rlePhase3Stream.write(rleDescriptor);
 				++i;
 			}
 			// Check if the length is 1 (single word repeat)
 			else if ((rleDescriptor & 0b00111111) == 1) {
-				i = collectWordsIntoStream_B(rlePhase2Array, rlePhase3List, i);
+				i = collectWordsIntoStream_B(rlePhase2Array, rlePhase2Length, rlePhase3Stream, i);
 			}
 			// Segment's length > 1
 			else {
 				// If descriptor's mask matches 0b01...... then we have an incremental RLE segment
 				if ((byte)(rleDescriptor & 0b11000000) == (byte)0b01000000) {
-					rlePhase3List.add(rleDescriptor);
-					rlePhase3List.add(rlePhase2Array[i + 1]); // operand
-					rlePhase3List.add(rlePhase2Array[i + 2]); // word high byte
-					rlePhase3List.add(rlePhase2Array[i + 3]); // word low byte
+					rlePhase3Stream.write(rlePhase2Array, i, 4); // descriptor + operand + word
 					i += 4;
 				}
 				// Others
 				else {
-					rlePhase3List.add(rleDescriptor);
-					rlePhase3List.add(rlePhase2Array[i + 1]); // word high byte
-					rlePhase3List.add(rlePhase2Array[i + 2]); // word low byte
+					rlePhase3Stream.write(rlePhase2Array, i, 3); // descriptor + word
 					i += 3;
 				}
 			}
 		}
 
-		byte[] rlePhase3Array = convertToByteArray(rlePhase3List);
-		rlePhase2Array = null;
-		rlePhase3List.clear();
+		final byte[] rlePhase3Array = rlePhase3Stream.array();
+		final int rlePhase3Length = rlePhase3Stream.size();
 
 		// PHASE 4:
 		// Process the streams of words and extract at least N consecutive words having the same high byte. 
 		// This way the common high byte can be included once at the beginning of the stream and then continue 
 		// with the low byte of every remaining word in the stream. This saves up to <50% in the best case.
 
-		List<Byte> rlePhase4List = new ArrayList<>(rlePhase3Array.length);
+		// phase 2 buffer is no longer used, so reuse it
+		ByteStream rlePhase4Stream = rlePhase2Stream;
+		rlePhase4Stream.reset();
+		// scratch buffers reused by every stream of words
+		ByteStream pass1 = new ByteStream(2 * RLE_MAX_RUN_LENGTH * 3);
+		ByteStream pass2 = new ByteStream(2 * RLE_MAX_RUN_LENGTH * 3);
 
-		for (int i = 0; i < rlePhase3Array.length; ) {
+		for (int i = 0; i < rlePhase3Length; ) {
 
 			byte rleDescriptor = rlePhase3Array[i];
 
 			// If the descriptor is the end of row mark then collect it and continue
 			if (rleDescriptor == 0) {
-				rlePhase4List.add(rleDescriptor);
+				rlePhase4Stream.write(rleDescriptor);
 				++i;
 				continue;
 			}
 
 			// If descriptor has the stream bit set then we're going to analyze the stream
 			if ((byte)(rleDescriptor & 0b10000000) != (byte)0) {
-				i = compressStreamCommonHighBytes_B(rlePhase3Array, rlePhase4List, i);
+				i = compressStreamCommonHighBytes_B(rlePhase3Array, rlePhase3Length, rlePhase4Stream, i, pass1, pass2);
 			}
 			// Others
 			else {
 				// If descriptor's mask matches 0b01...... then we have an incremental RLE segment
 				if ((byte)(rleDescriptor & 0b11000000) == (byte)0b01000000) {
-					rlePhase4List.add(rleDescriptor);
-					rlePhase4List.add(rlePhase3Array[i + 1]); // operand
-					rlePhase4List.add(rlePhase3Array[i + 2]); // word high byte
-					rlePhase4List.add(rlePhase3Array[i + 3]); // word low byte
+					rlePhase4Stream.write(rlePhase3Array, i, 4); // descriptor + operand + word
 					i += 4;
 				}
 				// Others
 				else {
-					rlePhase4List.add(rleDescriptor);
-					rlePhase4List.add(rlePhase3Array[i + 1]); // word high byte
-					rlePhase4List.add(rlePhase3Array[i + 2]); // word low byte
+					rlePhase4Stream.write(rlePhase3Array, i, 3); // descriptor + word
 					i += 3;
 				}
 			}
 		}
 
-		// Convert List<Byte> to byte[]
-		byte[] rlePhase4Array = convertToByteArray(rlePhase4List);
-		return rlePhase4Array;
+		return rlePhase4Stream.toByteArray();
 	}
 
-	private static int collectIncrementalRLE_B (byte[] source, List<Byte> target, int i) {
+	private static int collectIncrementalRLE_B (byte[] source, int sourceLength, ByteStream target, int i) {
 		// Start collecting a sequence of incremental words
 		int sequenceStart = i; // descriptor's position
 		int sequenceLength = 1; // we start counting the first word is already in because the comparison is between 2 words
@@ -473,7 +507,7 @@ public class RLEWCompressor {
 
 		// Scan forward to count how many consecutive words with an incremental nature we find.
 		// We only interesting in RLE segments of length 1
-		while ((i+5) < source.length && source[i] != 0 && source[i+3] != 0 && (source[i] & 0b00111111) == 1 
+		while ((i+5) < sourceLength && source[i] != 0 && source[i+3] != 0 && (source[i] & 0b00111111) == 1 
 				&& (source[i+3] & 0b00111111) == 1 && keepSameOperand(source, i, operand)) {
 			sequenceLength++;
 			i += 3; // Move to the next descriptor
@@ -484,18 +518,16 @@ public class RLEWCompressor {
 			i += 3; // Move to the next descriptor
 			// Set the mask to tell this is an incremental RLE segment, including the length
 			byte newDescriptor = (byte) (0b01000000 | (sequenceLength & 0b00111111));
-			target.add(newDescriptor);
-			target.add(operand[0]);
-			target.add(source[sequenceStart + 1]); // word high byte
-			target.add(source[sequenceStart + 2]); // word low byte
+			target.write(newDescriptor);
+			target.write(operand[0]);
+			target.write(source, sequenceStart + 1, 2); // word high and low bytes
 		}
 		// Not enough length to form an incremental RLE, then copy the segments as it is
 		else {
 			// Accommodate for the last word used in the condition above
 			i += 3; // Move to the next descriptor
 			// Copy descriptor + word
-			for (int j = sequenceStart; j < (sequenceStart + 3 * sequenceLength); j++)
-				target.add(source[j]);
+			target.write(source, sequenceStart, 3 * sequenceLength);
 		}
 
 		return i;
@@ -513,13 +545,13 @@ public class RLEWCompressor {
 		return a != b && (previousOp == 0 || previousOp == operand[0]);
 	}
 
-	private static int collectWordsIntoStream_B (byte[] source, List<Byte> target, int i) {
+	private static int collectWordsIntoStream_B (byte[] source, int sourceLength, ByteStream target, int i) {
 		// Start collecting a stream of single-word repeats
 		int sequenceStart = i; // descriptor's position
 		int sequenceLength = 0;
 
 		// Scan forward to count how many consecutive words with length == 1 we find
-		while (i < source.length && (source[i] & 0b00111111) == 1) {
+		while (i < sourceLength && (source[i] & 0b00111111) == 1) {
 			sequenceLength++;
 			i += 3; // Move to the next descriptor
 		}
@@ -528,26 +560,25 @@ public class RLEWCompressor {
 			// Set the MSB to 1 to tell this is a stream of words, followed by the length of 
 			// the stream in the remaining 6 LSBs
 			byte newDescriptor = (byte) (0b10000000 | (sequenceLength & 0b00111111));
-			target.add(newDescriptor);
+			target.write(newDescriptor);
 
 			// Add the collected words
-			for (int j = 0; j < sequenceLength; j++) {
-				target.add(source[sequenceStart + 3*j + 1]); // word high byte
-				target.add(source[sequenceStart + 3*j + 2]); // word low byte
-			}
+			for (int j = 0; j < sequenceLength; j++)
+				target.write(source, sequenceStart + 3*j + 1, 2); // word high and low bytes
 		}
 		// Not enough length to form a stream, then copy the segments as it is
 		else {
 			// Copy descriptor + word
-			for (int j = sequenceStart; j < (sequenceStart + 3 * sequenceLength); j++)
-				target.add(source[j]);
+			target.write(source, sequenceStart, 3 * sequenceLength);
 		}
 
 		return i;
 	}
 
-	private static int compressStreamCommonHighBytes_B (byte[] rleArrayPhase2, List<Byte> rleArrayPhase3List, int i) {
-		List<Byte> tempCollectorListPass1 = new ArrayList<>();
+	private static int compressStreamCommonHighBytes_B (byte[] rleArrayPhase2, int rleLengthPhase2, ByteStream rleStreamPhase3, int i, 
+			ByteStream tempCollectorPass1, ByteStream tempCollectorPass2) {
+		tempCollectorPass1.reset();
+		tempCollectorPass2.reset();
 		int streamStartAt = i;
 		int streamLength = rleArrayPhase2[i] & 0b00111111;
 		++i; // Move to the high byte of the first word in the stream
@@ -559,7 +590,7 @@ public class RLEWCompressor {
 			byte currentHighByte = rleArrayPhase2[i];
 
 			// Scan forward to count how many consecutive words with same high byte we actually find
-			while (i < rleArrayPhase2.length && rleArrayPhase2[i] == currentHighByte && streamLenAux > 0) {
+			while (i < rleLengthPhase2 && rleArrayPhase2[i] == currentHighByte && streamLenAux > 0) {
 				sequenceLength++;
 				i += 2; // Move to the next word's high byte in the stream
 				--streamLenAux; // one word less in the stream
@@ -569,78 +600,57 @@ public class RLEWCompressor {
 			if (sequenceLength >= RLE_MIN_COMMON_HIGH_BYTE_SEQUENCE) {
 				// Set the first 2 MSBs to 1 to tell this is a stream of bytes using a common high byte for the following N bytes.
 				byte newDescriptor = (byte) (0b11000000 | (sequenceLength & 0b00111111));
-				tempCollectorListPass1.add(newDescriptor);
-				tempCollectorListPass1.add(currentHighByte);
+				tempCollectorPass1.write(newDescriptor);
+				tempCollectorPass1.write(currentHighByte);
 				// Add every low byte
 				for (int j = 0; j < sequenceLength; j++)
-					tempCollectorListPass1.add(rleArrayPhase2[sequenceStart + 1 + 2*j]); // word's low byte
+					tempCollectorPass1.write(rleArrayPhase2[sequenceStart + 1 + 2*j]); // word's low byte
 			}
 			// Not enough length to compress the words, then copy every word as a RLE of length 1
 			else {
 				for (int j = sequenceStart; j < (sequenceStart + 2 * sequenceLength); j += 2) {
 					// Use a RLE descriptor with length 1 so we can convert them into a stream later on
-					tempCollectorListPass1.add((byte) 0b00000001);
+					tempCollectorPass1.write((byte) 0b00000001);
 					// Collect the word
-					tempCollectorListPass1.add(rleArrayPhase2[j]);
-					tempCollectorListPass1.add(rleArrayPhase2[j+1]);
+					tempCollectorPass1.write(rleArrayPhase2, j, 2);
 				}
 			}
 		}
 
-		// Convert List<Byte> to byte[]
-		byte[] tempCollectorArrayPass1 = convertToByteArray(tempCollectorListPass1);
-
-		List<Byte> tempCollectorListPass2 = new ArrayList<>();
+		final byte[] tempCollectorArrayPass1 = tempCollectorPass1.array();
+		final int tempCollectorLengthPass1 = tempCollectorPass1.size();
 
 		// Now traverse the previous list and perform RLE only over the words having descriptor 0b10000001
-		for (int j = 0; j < tempCollectorArrayPass1.length;) {
+		for (int j = 0; j < tempCollectorLengthPass1;) {
 
 			byte descriptor = tempCollectorArrayPass1[j];
 
 			// If the descriptor is a RLE of length 1 (previously set on purpose) then we're going to process this 
 			// and consecutive words trying to collect them into a stream
 			if (descriptor == (byte) 0b00000001) {
-				j = collectWordsIntoStream_B(tempCollectorArrayPass1, tempCollectorListPass2, j);
+				j = collectWordsIntoStream_B(tempCollectorArrayPass1, tempCollectorLengthPass1, tempCollectorPass2, j);
 			}
 			// If the descriptor is the one marking a high common byte, then we just collect the sequence
 			else if ((byte)(descriptor & 0b11000000) == (byte)0b11000000) {
-				tempCollectorListPass2.add(descriptor);
-				j++; // move to the high common byte
-				tempCollectorListPass2.add(tempCollectorArrayPass1[j++]); // collect the high common byte and move forward
 				int len = descriptor & 0b00111111;
-				for (int k = 0; k < len; ++k)
-					tempCollectorListPass2.add(tempCollectorArrayPass1[j++]);
+				// descriptor + high common byte + low bytes
+				tempCollectorPass2.write(tempCollectorArrayPass1, j, 2 + len);
+				j += 2 + len;
 			}
 			else
 				throw new RuntimeException("ERROR: " + RLEWCompressor.class.getSimpleName() + ": descriptor is not expected.");
 		}
 
 		// Resulting array must be at least 80% smaller than the original stream of words
-		if (tempCollectorListPass2.size() <= ((1 + streamLength * 2) * RLE_THRESHOLD_PHASE_2_TO_PHASE_3))
-			rleArrayPhase3List.addAll(tempCollectorListPass2);
+		if (tempCollectorPass2.size() <= ((1 + streamLength * 2) * RLE_THRESHOLD_PHASE_2_TO_PHASE_3))
+			rleStreamPhase3.write(tempCollectorPass2.array(), 0, tempCollectorPass2.size());
 		// Otherwise just copy all the original stream of words
 		else
-			rleArrayPhase3List.addAll(convertToByteList(rleArrayPhase2, streamStartAt, streamStartAt + 1 + streamLength * 2));
+			rleStreamPhase3.write(rleArrayPhase2, streamStartAt, 1 + streamLength * 2);
 
 		return i;
 	}
 
-	private static byte[] convertToByteArray (List<Byte> list) {
-		byte[] array = new byte[list.size()];
-		for (int k = 0; k < list.size(); k++) {
-			array[k] = list.get(k);
-		}
-		return array;
-	}
-
-	private static List<Byte> convertToByteList (byte[] array, int startAt, int endAtExclusive) {
-		List<Byte> list = new ArrayList<>(1 + endAtExclusive - startAt);
-		for (int k = startAt; k < endAtExclusive; k++) {
-			list.add(array[k]);
-		}
-		return list;
-	}
-
 	private static byte[] addHeader (byte[] rleData, int mapTilesPerRow) {
 		byte[] newArray = new byte[rleData.length + 1];
 		newArray[0] = (byte) mapTilesPerRow;
@@ -649,12 +659,13 @@ public class RLEWCompressor {
 	}
 
 	private static byte[] addParityBytes_A (byte[] rleData) {
-		List<Byte> list = new ArrayList<>(rleData.length); // initial capacity
+		// one parity byte per descriptor at most
+		ByteStream stream = new ByteStream(rleData.length + rleData.length / 3 + 1);
 		int index = 0;
 		boolean firstRun = true;
 
 		// first byte is the header
-		list.add(rleData[index++]);
+		stream.write(rleData[index++]);
 
 		// visit the rest of the array
 		while (index < rleData.length) {
@@ -662,47 +673,46 @@ public class RLEWCompressor {
 			
 			// if not the first run then we add parity byte and then copy with the segment
 			if (!firstRun)
-				list.add((byte) 0); // add the parity byte
+				stream.write((byte) 0); // add the parity byte
 
-			list.add(descriptor);
+			stream.write(descriptor);
 
 			// test if descriptor 2nd MSB is 0 then we have basic RLE entry
 			if ((byte)(descriptor & 0b01000000) == (byte)0) {
 				// copy the word
-				list.add(rleData[index++]);
-				list.add(rleData[index++]);
+				stream.write(rleData, index, 2);
+				index += 2;
 			}
 			// descriptor 2nd MSB is 1, then we have a stream of words
 			else {
 				// copy the words
 				int length = descriptor & 0x3F; // First 6 bits for length
-				for (int i = 0; i < length; i++) {
-					list.add(rleData[index++]);
-					list.add(rleData[index++]);
-				}
+				stream.write(rleData, index, 2 * length);
+				index += 2 * length;
 			}
 			
 			firstRun = false;
 		}
 
-		return convertToByteArray(list);
+		return stream.toByteArray();
 	}
 
 	private static byte[] addParityBytes_B (byte[] rleData) {
-		List<Byte> list = new ArrayList<>(rleData.length); // initial capacity
+		// one parity byte per descriptor at most
+		ByteStream stream = new ByteStream(rleData.length + rleData.length / 3 + 1);
 		int index = 0;
 		int offsetAccum = 0;
 
 		// first byte is the header
-		list.add(rleData[index++]);
+		stream.write(rleData[index++]);
 
 		// visit the rest of the array
 		while (index < rleData.length) {
 			byte descriptor = rleData[index++];
-			list.add(descriptor);
 
 			// descriptor == 0 is the mark for end of row
 			if (descriptor == 0) {
+				stream.write(descriptor);
 				continue;
 			}
 
@@ -710,66 +720,56 @@ public class RLEWCompressor {
 			if ((byte)(descriptor & 0b11000000) == (byte)0b00000000) {
 				// if descriptor was at even position then we'll add before him the parity byte
 				if (isEven(index - 1, offsetAccum)) {
-					list.remove(list.size() - 1); // remove descriptor
-					list.add((byte) 0b01000000); // add the parity byte
-					list.add(descriptor); // now add the descriptor
+					stream.write((byte) 0b01000000); // add the parity byte
 					++offsetAccum;
 				}
+				stream.write(descriptor);
 				// copy the word
-				list.add(rleData[index++]);
-				list.add(rleData[index++]);
+				stream.write(rleData, index, 2);
+				index += 2;
 			}
 			// test if descriptor's mask matches 0b01...... then we have an incremental RLE segment
 			else if ((byte)(descriptor & 0b11000000) == (byte)0b01000000) {
 				// if descriptor was at even position then we'll add before him the parity byte
 				if (isOdd(index - 1, offsetAccum)) {
-					list.remove(list.size() - 1); // remove descriptor
-					list.add((byte) 0b01000000); // add the parity byte
-					list.add(descriptor); // now add the descriptor
+					stream.write((byte) 0b01000000); // add the parity byte
 					++offsetAccum;
 				}
-				// copy the operand
-				list.add(rleData[index++]);
-				// copy the word
-				list.add(rleData[index++]);
-				list.add(rleData[index++]);
+				stream.write(descriptor);
+				// copy the operand and the word
+				stream.write(rleData, index, 3);
+				index += 3;
 			}
 			// test if descriptor's mask matches 0b10...... then is a stream of words
 			else if ((byte)(descriptor & 0b11000000) == (byte)0b10000000) {
 				// if descriptor was at even position then we'll add before him the parity byte
 				if (isEven(index - 1, offsetAccum)) {
-					list.remove(list.size() - 1); // remove descriptor
-					list.add((byte) 0b01000000); // add the parity byte
-					list.add(descriptor); // now add the descriptor
+					stream.write((byte) 0b01000000); // add the parity byte
 					++offsetAccum;
 				}
+				stream.write(descriptor);
 				// copy the words
 				int length = descriptor & 0x3F; // First 6 bits for length
-				for (int i = 0; i < length; i++) {
-					list.add(rleData[index++]);
-					list.add(rleData[index++]);
-				}
+				stream.write(rleData, index, 2 * length);
+				index += 2 * length;
 			}
 			// descriptor's mask matches 0b11...... then is a stream with a common high byte
 			else {
 				// if descriptor was at even position then we'll add before him the parity byte
 				if (isEven(index - 1, offsetAccum)) {
-					list.remove(list.size() - 1); // remove descriptor
-					list.add((byte) 0b01000000); // add the parity byte
-					list.add(descriptor); // now add the descriptor
+					stream.write((byte) 0b01000000); // add the parity byte
 					++offsetAccum;
 				}
-				list.add(rleData[index++]); // common high byte
+				stream.write(descriptor);
 				int length = (descriptor & 0x3F); // length is first 6 bits
-				// copy the bytes
-				for (int i = 0; i < length; i++)
-					list.add(rleData[index++]);
+				// copy the common high byte and the low bytes
+				stream.write(rleData, index, 1 + length);
+				index += 1 + length;
 			}
 		}
 		
-		return convertToByteArray(list);
+		return stream.toByteArray();
 	}
-
 	private static boolean isEven(int i, int offset) {
 		return ((i + offset) % 2) == 0;
 	}
@@ -851,6 +851,17 @@ public class RLEWCompressor {
 		}
 	}
 
+	/**
+	 * The packed data is decoded back with {@link RLEWDecompressor} so a broken encoding never reaches the ROM.
+	 */
+	private static void checkRoundTrip (byte[] data, byte[] unpacked, String method) {
+		if (Arrays.equals(data, unpacked))
+			return;
+		int pos = Arrays.mismatch(data, unpacked);
+		throw new RuntimeException("ERROR: " + RLEWCompressor.class.getSimpleName() + " method " + method + ": round trip check failed at byte " 
+				+ pos + " (data length " + data.length + ", decoded length " + unpacked.length + ")");
+	}
+
 	private static void printStats (Map<String, WordInfo> wordInfoMap) {
 		// Collect entries into a list and sort by count in descending order
 		List<Entry<String, WordInfo>> sortedEntries = wordInfoMap.entrySet().stream()
@@ -962,6 +973,14 @@ public class RLEWCompressor {
         System.out.println(hexString.toString());
 	}
 	
+	/**
+	 * @param binId
+	 * @return words per row set for the bin with {@link #RLE_PROPERTY_SUFFIX_WORDS_PER_ROW}, 0 if not set or invalid
+	 */
+	public static int getWordsPerRowProperty (String binId) {
+		return getIntProperty(binId + RLE_PROPERTY_SUFFIX_WORDS_PER_ROW);
+	}
+
 	private static int getIntProperty (String key) {
 		String value = System.getProperty(key);
 		try {
@@ -0,0 +1,178 @@
+package sgdk.rescomp.tool;
+
+/**
+ * Exact 68000 cycles count of <code>rlew_decomp_A_asm</code> and <code>rlew_decomp_B_asm</code> (src/decomp/rlew_a_.s and rlew_b_.s)
+ * for a stream packed by {@link RLEWCompressor}.</br>
+ * The packed stream is walked segment by segment adding the cycles of every instruction in the path the asm code takes for it,
+ * so keep it in sync with the asm code. Cycles are the ones from the 68000 manual without wait states (ie: data in RAM/ROM).
+ * The C call to the function is included, the DMA of the decompressed data isn't.
+ */
+public class RLEWDecodeCost {
+
+	// jsr abs.l
+	private static final int JSR = 20;
+	// movem.l 4(sp) (3 regs), movem.l -(sp) (8 regs), registers setup, rows read and jmp to first descriptor
+	private static final int ENTRY_A = 40 + 72 + 4 + 4 + 8 + 4*4 + 8 + 4 + 10;
+	// movem.l (sp)+ (8 regs) + rts
+	private static final int EXIT_A = 76 + 16;
+	// movem.l 4(sp) (3 regs), movem.l -(sp) (9 regs), registers setup, rows read and jmp (a3) to first descriptor
+	private static final int ENTRY_B = 40 + 80 + 4 + 4 + 4 + 8 + 8 + 4 + 8 + 4 + 8 + 4 + 8;
+	// movem.l (sp)+ (9 regs) + rts
+	private static final int EXIT_B = 84 + 16;
+
+	/**
+	 * @param packed output of {@link RLEWCompressor#compress_A(byte[], String)}
+	 * @param unpackedSize not used, the cost is given by the segments in the stream
+	 * @return 68000 cycles taken by <code>rlew_decomp_A_asm</code>
+	 */
+	public static long estimateCycles_A (byte[] packed, int unpackedSize) {
+		long cycles = JSR + ENTRY_A + EXIT_A;
+		int i = 1; // skip rows
+		boolean firstRun = true;
+
+		while (i < packed.length) {
+			// first descriptor has no parity byte
+			final boolean isFirstRun = firstRun;
+			if (!isFirstRun) {
+				++i;
+				cycles += 8; // addq.w #1,a0
+			}
+			firstRun = false;
+			if (i >= packed.length)
+				break;
+
+			final int descriptor = packed[i++] & 0xFF;
+			int length = descriptor & 0x3F;
+			cycles += 8 + 6; // move.b (a0)+,d2 | btst d6,d2
+
+			// basic RLE
+			if ((descriptor & 0x40) == 0) {
+				cycles += 10; // beq taken
+				cycles += 4 + 8 + 4 + 6; // move.b d2,d7 | move.w (a0)+,d3 | and.w d5,d2 | btst d0,d2
+				i += 2;
+				if ((length & 1) != 0) {
+					cycles += 8 + 8 + 4; // beq.s not taken | move.w d3,(a1)+ | subq.w #1,d2
+					--length;
+					if (length == 0) {
+						cycles += 10; // beq taken: goes straight to next descriptor
+						continue;
+					}
+					cycles += 8; // beq not taken
+				}
+				else
+					cycles += 10; // beq.s taken
+				cycles += 4 + 4 + 4 + 4 + 14; // value_l setup | neg.w d2 | jmp (pc,d2.w)
+				cycles += (length / 2) * 12; // move.l d3,(a1)+
+			}
+			// stream of words
+			else {
+				cycles += 8; // beq not taken
+				if (isFirstRun)
+					cycles += 10; // bra.s
+				cycles += 4 + 4 + 6; // move.b d2,d7 | and.w d5,d2 | btst d0,d2
+				i += 2 * length;
+				if ((length & 1) != 0) {
+					cycles += 8 + 12 + 4; // beq.s not taken | move.w (a0)+,(a1)+ | subq.w #1,d2
+					--length;
+				}
+				else
+					cycles += 10; // beq.s taken
+				cycles += 4 + 14; // neg.w d2 | jmp (pc,d2.w)
+				cycles += (length / 2) * 20; // move.l (a0)+,(a1)+
+			}
+
+			// end of row test
+			cycles += 4; // cmp.b d4,d7
+			if ((descriptor & 0x80) == 0)
+				cycles += 10; // bcs taken
+			else
+				cycles += 8 + 8 + (i < packed.length ? 10 : 14); // bcs not taken | adda.l a2,a1 | dbra
+		}
+
+		return cycles;
+	}
+
+	/**
+	 * @param packed output of {@link RLEWCompressor#compress_B(byte[], String)}
+	 * @param unpackedSize not used, the cost is given by the segments in the stream
+	 * @return 68000 cycles taken by <code>rlew_decomp_B_asm</code>
+	 */
+	public static long estimateCycles_B (byte[] packed, int unpackedSize) {
+		long cycles = JSR + ENTRY_B + EXIT_B;
+		int i = 1; // skip rows
+
+		while (i < packed.length) {
+			int descriptor = packed[i++] & 0xFF;
+			cycles += 8; // move.b (a0)+,d2
+
+			// end of row
+			if (descriptor == 0) {
+				cycles += 10 + 8 + (i < packed.length ? 10 : 14); // beq taken | adda.l a2,a1 | dbra
+				continue;
+			}
+
+			cycles += 8 + 4; // beq not taken | cmp.b d4,d2
+			// parity byte
+			if (descriptor == 0x40) {
+				cycles += 8 + 8; // bne.s not taken | move.b (a0)+,d2
+				descriptor = packed[i++] & 0xFF;
+			}
+			else
+				cycles += 10; // bne.s taken
+
+			int length = descriptor & 0x3F;
+			cycles += 4; // cmp.b d4,d2
+
+			// basic RLE
+			if (descriptor < 0x40) {
+				cycles += 10; // bcs taken
+				cycles += 8 + 4 + 6; // move.w (a0)+,d3 | and.w d7,d2 | btst d0,d2
+				i += 2;
+				if ((length & 1) != 0) {
+					cycles += 8 + 8 + 4; // beq.s not taken | move.w d3,(a1)+ | subq.w #1,d2
+					--length;
+					if (length == 0) {
+						cycles += 10; // beq taken
+						continue;
+					}
+					cycles += 8; // beq not taken
+				}
+				else
+					cycles += 10; // beq.s taken
+				cycles += 4 + 4 + 4 + 4 + 14; // value_l setup | neg.w d2 | jmp (pc,d2.w)
+				cycles += (length / 2) * 12; // move.l d3,(a1)+
+				cycles += 8; // jmp (a3)
+				continue;
+			}
+
+			cycles += 8 + 4; // bcs not taken | cmp.b d6,d2
+
+			// stream of words (incremental RLE is disabled in the asm code, hence it goes here too)
+			if (descriptor < 0xC0) {
+				cycles += 10; // bcs taken
+				cycles += 4 + 6; // and.w d7,d2 | btst d0,d2
+				i += 2 * length;
+				if ((length & 1) != 0) {
+					cycles += 8 + 12 + 4; // beq.s not taken | move.w (a0)+,(a1)+ | subq.w #1,d2
+					--length;
+				}
+				else
+					cycles += 10; // beq.s taken
+				cycles += 4 + 14; // neg.w d2 | jmp (pc,d2.w)
+				cycles += (length / 2) * 20; // move.l (a0)+,(a1)+
+				cycles += 8; // jmp (a3)
+			}
+			// stream with high common byte
+			else {
+				cycles += 8; // bcs not taken
+				cycles += 4 + 8 + 4 + 4 + 4 + 14; // and.w d7,d2 | move.w (a0)+,d3 | add.w x2 | neg.w d2 | jmp (pc,d2.w)
+				i += 1 + length;
+				// the move.b of the last entry is the next descriptor read, hence counted at the start of the loop
+				cycles += (length - 1) * (8 + 8) + 8; // move.w d3,(a1)+ | move.b (a0)+,d3
+			}
+		}
+
+		return cycles;
+	}
+
+}
@@ -0,0 +1,170 @@
+package sgdk.rescomp.tool;
+
+import java.util.Arrays;
+
+/**
+ * Reference decoder of the streams packed by {@link RLEWCompressor}. It follows the same steps than <code>rlew_decomp_A</code>
+ * and <code>rlew_decomp_B</code> (src/decomp/rlew.c): header with the number of rows, parity bytes, descriptors and end of row marks.</br>
+ * Unlike the decoders on the SGDK side it validates the stream, so a malformed one throws an exception instead of writing garbage.
+ *
+ * @author fabri1983
+ */
+public class RLEWDecompressor {
+
+	/**
+	 * Method A.
+	 * @param packed output of {@link RLEWCompressor#compress_A(byte[], String)}
+	 * @param jumpGap bytes to skip in the output at the end of every row (left as 0s). Use 0 to get the same data that was packed
+	 * @return
+	 */
+	public static byte[] decompress_A (byte[] packed, int jumpGap) {
+		final Output out = new Output(packed.length * 2);
+		int rows = getRows(packed);
+		int in = 1;
+		boolean firstRun = true;
+
+		while (rows > 0) {
+			// the rows byte acts as parity byte of the first descriptor
+			if (!firstRun)
+				++in; // skip parity byte
+			firstRun = false;
+
+			final int descriptor = readByte(packed, in++, "A");
+			int length = descriptor & 0b00111111;
+			if (length == 0)
+				throw new RuntimeException("ERROR: " + RLEWDecompressor.class.getSimpleName() + " method A: descriptor with length 0 at " + (in - 1));
+
+			// if 2nd MSB == 0 then it's a basic RLE: just copy a word value N times
+			if ((descriptor & 0b01000000) == 0) {
+				final int word = readWord(packed, in, "A");
+				in += 2;
+				for (int i = 0; i < length; ++i)
+					out.writeWord(word);
+			}
+			// 2nd MSB == 1 then we're going to copy a stream of words
+			else {
+				for (int i = 0; i < length; ++i, in += 2)
+					out.writeWord(readWord(packed, in, "A"));
+			}
+
+			// is end of row bit set?
+			if ((descriptor & 0b10000000) != 0) {
+				out.skip(jumpGap);
+				--rows;
+			}
+		}
+
+		checkFullyConsumed(packed, in, "A");
+		return out.toByteArray();
+	}
+
+	/**
+	 * Method B.
+	 * @param packed output of {@link RLEWCompressor#compress_B(byte[], String)}
+	 * @param jumpGap bytes to skip in the output at the end of every row (left as 0s). Use 0 to get the same data that was packed
+	 * @return
+	 */
+	public static byte[] decompress_B (byte[] packed, int jumpGap) {
+		final Output out = new Output(packed.length * 2);
+		int rows = getRows(packed);
+		int in = 1;
+
+		while (rows > 0) {
+			int descriptor = readByte(packed, in++, "B");
+
+			// is descriptor the parity byte?
+			if (descriptor == 0b01000000)
+				descriptor = readByte(packed, in++, "B");
+
+			final int length = descriptor & 0b00111111;
+
+			// is end of row byte?
+			if (descriptor == 0) {
+				out.skip(jumpGap);
+				--rows;
+			}
+			else if (length == 0) {
+				throw new RuntimeException("ERROR: " + RLEWDecompressor.class.getSimpleName() + " method B: descriptor with length 0 at " + (in - 1));
+			}
+			// if descriptor's mask matches 0b00...... then is a basic RLE: copy a word N times
+			else if (descriptor < 0b01000000) {
+				final int word = readWord(packed, in, "B");
+				in += 2;
+				for (int i = 0; i < length; ++i)
+					out.writeWord(word);
+			}
+			// if descriptor's mask matches 0b01...... then we have an incremental RLE segment
+			else if (descriptor < 0b10000000) {
+				final byte operand = (byte) readByte(packed, in++, "B");
+				int word = readWord(packed, in, "B");
+				in += 2;
+				for (int i = 0; i < length; ++i) {
+					out.writeWord(word);
+					word = (word + operand) & 0xFFFF;
+				}
+			}
+			// if descriptor's mask matches 0b10...... then is a stream of words
+			else if (descriptor < 0b11000000) {
+				for (int i = 0; i < length; ++i, in += 2)
+					out.writeWord(readWord(packed, in, "B"));
+			}
+			// descriptor's mask matches 0b11...... then is a stream with a common high byte
+			else {
+				final int highByte = readByte(packed, in++, "B");
+				for (int i = 0; i < length; ++i)
+					out.writeWord((highByte << 8) | readByte(packed, in++, "B"));
+			}
+		}
+
+		checkFullyConsumed(packed, in, "B");
+		return out.toByteArray();
+	}
+
+	private static int getRows (byte[] packed) {
+		if (packed.length == 0)
+			throw new RuntimeException("ERROR: " + RLEWDecompressor.class.getSimpleName() + ": empty stream");
+		return packed[0] & 0xFF;
+	}
+
+	private static int readByte (byte[] packed, int pos, String method) {
+		if (pos >= packed.length)
+			throw new RuntimeException("ERROR: " + RLEWDecompressor.class.getSimpleName() + " method " + method + ": stream ends before the last row");
+		return packed[pos] & 0xFF;
+	}
+
+	private static int readWord (byte[] packed, int pos, String method) {
+		return (readByte(packed, pos, method) << 8) | readByte(packed, pos + 1, method);
+	}
+
+	private static void checkFullyConsumed (byte[] packed, int pos, String method) {
+		if (pos != packed.length)
+			throw new RuntimeException("ERROR: " + RLEWDecompressor.class.getSimpleName() + " method " + method + ": "
+					+ (packed.length - pos) + " bytes left after the last row");
+	}
+
+	private static class Output {
+		private byte[] buf;
+		private int size;
+
+		Output (int initialCapacity) {
+			buf = new byte[Math.max(16, initialCapacity)];
+		}
+
+		void writeWord (int word) {
+			skip(2);
+			buf[size - 2] = (byte) (word >> 8);
+			buf[size - 1] = (byte) word;
+		}
+
+		void skip (int bytes) {
+			if (size + bytes > buf.length)
+				buf = Arrays.copyOf(buf, Math.max(size + bytes, buf.length * 2));
+			size += bytes;
+		}
+
+		byte[] toByteArray () {
+			return Arrays.copyOf(buf, size);
+		}
+	}
+
+}
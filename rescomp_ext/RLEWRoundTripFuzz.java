@@ -0,0 +1,247 @@
+package sgdk.rescomp.tool;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import sgdk.rescomp.type.Tile;
+
+/**
+ * Round trip fuzzer of {@link RLEWCompressor} methods A and B against {@link RLEWDecompressor}.
+ * It isn't part of rescomp_ext.jar: run it with run_rlew_fuzz.bat once create_extension_jar.bat has compiled the classes.</br>
+ * Every case generates rows of words, packs them with both methods and decodes them back, with and without a jump gap at the
+ * end of every row (as the player does with the extended width of a tilemap). Cases are random words, tilemap shaped words
+ * (blank cells, runs, incremental tile indexes and attributes), palette shaped words, corner cases for the run lengths and the
+ * tilemaps of the synthetic frames of {@link BenchmarkFixtures}.</br>
+ * Every case has its own seed, printed when it fails, so it can be repeated with -seed and -n 1.</br>
+ * Arguments, all optional:
+ * <ul>
+ * <li>-n N: cases per generator. Default 2000</li>
+ * <li>-seed N: seed of the first case. Default a fixed one</li>
+ * </ul>
+ * Exit code is 1 if any case fails.
+ */
+public class RLEWRoundTripFuzz {
+
+	@FunctionalInterface
+	private interface Generator {
+		/**
+		 * @return rows * wordsPerRow words, big endian
+		 */
+		byte[] generate (Random rnd, int wordsPerRow, int rows);
+	}
+
+	private static final long SEED = 0x5E6A_1983L;
+	private static final String BIN_ID = "rlew_fuzz";
+	// limited by the 6 bits of the descriptor length
+	private static final int MAX_WORDS_PER_ROW = 63;
+	// limited by the byte of the header
+	private static final int MAX_ROWS = 64;
+	// frames of the synthetic movie used as real tilemaps
+	private static final int FIXTURE_FRAMES = 8;
+
+	private static int cases;
+	private static int failures;
+
+	public static void main (String[] args) throws Exception {
+		int n = 2000;
+		long seed = SEED;
+
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+			case "-n": n = Integer.parseInt(args[++i]); break;
+			case "-seed": seed = Long.parseLong(args[++i]); break;
+			default: break;
+			}
+		}
+
+		run("random words", n, seed, null, RLEWRoundTripFuzz::randomWords);
+		run("tilemap words", n, seed, null, RLEWRoundTripFuzz::tilemapWords);
+		// palettes are packed 16 or 32 words per row
+		run("palette words", n, seed, new int[] { 16, 32 }, RLEWRoundTripFuzz::paletteWords);
+		run("run lengths", n, seed, null, RLEWRoundTripFuzz::runLengthWords);
+		runFixtureTilemaps();
+
+		System.out.println(cases + " cases, " + failures + " failures");
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * @param wordsPerRowValues widths to pick from, or null for any width up to {@link #MAX_WORDS_PER_ROW}
+	 */
+	private static void run (String name, int n, long seed, int[] wordsPerRowValues, Generator generator) {
+		final int failuresBefore = failures;
+		for (int i = 0; i < n; ++i) {
+			final long caseSeed = seed + i;
+			final Random rnd = new Random(caseSeed);
+			final int wordsPerRow = wordsPerRowValues != null ? wordsPerRowValues[rnd.nextInt(wordsPerRowValues.length)]
+					: 1 + rnd.nextInt(MAX_WORDS_PER_ROW);
+			final int rows = 1 + rnd.nextInt(MAX_ROWS);
+			check(name + " seed=" + caseSeed, generator.generate(rnd, wordsPerRow, rows), wordsPerRow);
+		}
+		System.out.println(String.format("%-16s %6d cases, %6d failures", name, n, failures - failuresBefore));
+	}
+
+	private static void runFixtureTilemaps () {
+		final int failuresBefore = failures;
+		final int wordsPerRow = BenchmarkFixtures.FRAME_WIDTH / 8;
+		for (int frame = 0; frame < FIXTURE_FRAMES; ++frame)
+			check("fixture tilemap frame=" + frame, BenchmarkFixtures.getTilemapWords(frame, SEED, 1), wordsPerRow);
+		System.out.println(String.format("%-16s %6d cases, %6d failures", "fixture tilemaps", FIXTURE_FRAMES, failures - failuresBefore));
+	}
+
+	private static void check (String caseName, byte[] data, int wordsPerRow) {
+		System.setProperty(BIN_ID + RLEWCompressor.RLE_PROPERTY_SUFFIX_WORDS_PER_ROW, String.valueOf(wordsPerRow));
+		// extended width of the tilemap planes: 32, 64 or 128 words minus the data width
+		final int extWordsPerRow = wordsPerRow <= 32 ? 32 : 64;
+		final int jumpGap = (extWordsPerRow - wordsPerRow) * 2;
+		final byte[] expectedWithGap = addJumpGap(data, wordsPerRow, jumpGap);
+
+		++cases;
+		try {
+			final byte[] packedA = RLEWCompressor.compress_A(data, BIN_ID);
+			assertEquals("A", data, RLEWDecompressor.decompress_A(packedA, 0));
+			assertEquals("A jumpGap=" + jumpGap, expectedWithGap, RLEWDecompressor.decompress_A(packedA, jumpGap));
+
+			final byte[] packedB = RLEWCompressor.compress_B(data, BIN_ID);
+			assertEquals("B", data, RLEWDecompressor.decompress_B(packedB, 0));
+			assertEquals("B jumpGap=" + jumpGap, expectedWithGap, RLEWDecompressor.decompress_B(packedB, jumpGap));
+		} catch (RuntimeException e) {
+			fail(caseName, wordsPerRow, data, e.getMessage());
+		}
+	}
+
+	private static void assertEquals (String method, byte[] expected, byte[] actual) {
+		if (!Arrays.equals(expected, actual))
+			throw new RuntimeException("method " + method + ": differs at byte " + Arrays.mismatch(expected, actual)
+					+ " (expected length " + expected.length + ", decoded length " + actual.length + ")");
+	}
+
+	private static void fail (String caseName, int wordsPerRow, byte[] data, String message) {
+		++failures;
+		System.out.println("[WARNING] " + caseName + " wordsPerRow=" + wordsPerRow + " rows=" + (data.length / (wordsPerRow * 2))
+				+ ": " + message);
+	}
+
+	/**
+	 * Same layout {@link RLEWDecompressor} gives with a jump gap: every row followed by jumpGap bytes left as 0s.
+	 */
+	private static byte[] addJumpGap (byte[] data, int wordsPerRow, int jumpGap) {
+		final int rowBytes = wordsPerRow * 2;
+		final int rows = data.length / rowBytes;
+		final byte[] result = new byte[rows * (rowBytes + jumpGap)];
+		for (int row = 0; row < rows; ++row)
+			System.arraycopy(data, row * rowBytes, result, row * (rowBytes + jumpGap), rowBytes);
+		return result;
+	}
+
+	private static byte[] randomWords (Random rnd, int wordsPerRow, int rows) {
+		final byte[] data = new byte[wordsPerRow * rows * 2];
+		rnd.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Words as {@link Tile#TILE_ATTR_FULL(int, boolean, boolean, boolean, int)} makes them: blank cells, repeated tiles,
+	 * consecutive tile indexes of a frame and the attributes of a few palettes.
+	 */
+	private static byte[] tilemapWords (Random rnd, int wordsPerRow, int rows) {
+		final int words = wordsPerRow * rows;
+		final int[] data = new int[words];
+		final int baseIndex = 1 + rnd.nextInt(0x600);
+		int nextIndex = baseIndex;
+		int i = 0;
+		while (i < words) {
+			final int length = Math.min(words - i, 1 + rnd.nextInt(2 * MAX_WORDS_PER_ROW));
+			final int pal = rnd.nextInt(4);
+			final boolean prio = rnd.nextInt(8) == 0;
+			switch (rnd.nextInt(5)) {
+			// blank cells
+			case 0:
+				for (int k = 0; k < length; ++k)
+					data[i++] = 0;
+				break;
+			// same tile repeated
+			case 1: {
+				final int word = Tile.TILE_ATTR_FULL(pal, prio, false, false, baseIndex + rnd.nextInt(Math.max(1, nextIndex - baseIndex + 1)));
+				for (int k = 0; k < length; ++k)
+					data[i++] = word;
+				break;
+			}
+			// new tiles of the frame
+			case 2:
+				for (int k = 0; k < length; ++k)
+					data[i++] = Tile.TILE_ATTR_FULL(pal, prio, false, false, (nextIndex++) & 0x7FF);
+				break;
+			// already used tiles, sometimes flipped
+			case 3:
+				for (int k = 0; k < length; ++k)
+					data[i++] = Tile.TILE_ATTR_FULL(pal, prio, rnd.nextInt(4) == 0, rnd.nextInt(4) == 0,
+							baseIndex + rnd.nextInt(Math.max(1, nextIndex - baseIndex + 1)));
+				break;
+			// any attributes
+			default:
+				for (int k = 0; k < length; ++k)
+					data[i++] = rnd.nextInt(0x10000);
+				break;
+			}
+		}
+		return toBytes(data);
+	}
+
+	/**
+	 * 9 bits colors as the palettes store them, with the repeated colors and the black of unused entries.
+	 */
+	private static byte[] paletteWords (Random rnd, int wordsPerRow, int rows) {
+		final int[] data = new int[wordsPerRow * rows];
+		final int[] colors = new int[1 + rnd.nextInt(16)];
+		for (int c = 0; c < colors.length; ++c)
+			colors[c] = rnd.nextInt(0x10000) & 0x0EEE;
+		for (int i = 0; i < data.length; ++i) {
+			final int r = rnd.nextInt(4);
+			data[i] = r == 0 ? 0 : r == 1 && i > 0 ? data[i - 1] : colors[rnd.nextInt(colors.length)];
+		}
+		return toBytes(data);
+	}
+
+	/**
+	 * Runs around the row width and the max length of a descriptor, and streams sharing the high byte.
+	 */
+	private static byte[] runLengthWords (Random rnd, int wordsPerRow, int rows) {
+		final int words = wordsPerRow * rows;
+		final int[] data = new int[words];
+		final int[] lengths = { 1, 2, 3, wordsPerRow - 1, wordsPerRow, wordsPerRow + 1, MAX_WORDS_PER_ROW, MAX_WORDS_PER_ROW + 1 };
+		int i = 0;
+		while (i < words) {
+			final int length = Math.min(words - i, Math.max(1, lengths[rnd.nextInt(lengths.length)]));
+			final int highByte = rnd.nextInt(0x100) << 8;
+			switch (rnd.nextInt(3)) {
+			case 0: {
+				final int word = rnd.nextInt(0x10000);
+				for (int k = 0; k < length; ++k)
+					data[i++] = word;
+				break;
+			}
+			case 1:
+				for (int k = 0; k < length; ++k)
+					data[i++] = highByte | rnd.nextInt(0x100);
+				break;
+			default:
+				for (int k = 0; k < length; ++k)
+					data[i++] = rnd.nextInt(0x10000);
+				break;
+			}
+		}
+		return toBytes(data);
+	}
+
+	private static byte[] toBytes (int[] words) {
+		final byte[] data = new byte[words.length * 2];
+		for (int i = 0; i < words.length; ++i) {
+			data[i * 2] = (byte) (words[i] >> 8);
+			data[i * 2 + 1] = (byte) words[i];
+		}
+		return data;
+	}
+
+}
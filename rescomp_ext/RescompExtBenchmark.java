@@ -0,0 +1,309 @@
+package sgdk.rescomp.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sgdk.rescomp.resource.TilesetOriginalCustom;
+import sgdk.rescomp.type.Basics.TileEquality;
+import sgdk.rescomp.type.Tile;
+
+/**
+ * Micro benchmarks of the rescomp_ext hot paths over the synthetic movie frames of {@link BenchmarkFixtures}.
+ * It isn't part of rescomp_ext.jar: run it with run_benchmarks.bat once create_extension_jar.bat has compiled the classes.</br>
+ * Every benchmark runs warmup iterations, so the JIT settles, and then the measured iterations. An iteration calls the benchmark
+ * in a loop during a fixed time and gives the average time per call. Results go to a sink so the JIT can't drop the calls.</br>
+ * Arguments, all optional:
+ * <ul>
+ * <li>text: only runs the benchmarks whose name contains it</li>
+ * <li>-wi N: warmup iterations. Default 5</li>
+ * <li>-i N: measured iterations. Default 10</li>
+ * <li>-t millis: duration of every iteration. Default 500</li>
+ * <li>-o file: saves the results as csv</li>
+ * <li>-baseline file: csv saved by a previous run. Benchmarks slower than in the baseline by more than -threshold percent
+ * (default 10) are reported as regressions and the exit code is 1</li>
+ * </ul>
+ */
+public class RescompExtBenchmark {
+
+	@FunctionalInterface
+	private interface Benchmark {
+		Object run () throws Exception;
+	}
+
+	private static class Result {
+		final String name;
+		final double nsPerOp;
+		final double error;
+		final double minNsPerOp;
+
+		Result (String name, double nsPerOp, double error, double minNsPerOp) {
+			this.name = name;
+			this.nsPerOp = nsPerOp;
+			this.error = error;
+			this.minNsPerOp = minNsPerOp;
+		}
+	}
+
+	private static final long SEED = 0x5E6A_1983L;
+	private static final String TILES_CACHE_ID = "benchmark_cache";
+	// tiles of the synthetic cache: the first tiles of the first frame
+	private static final int TILES_CACHE_SIZE = 256;
+	// frames given to the common tiles optimizer
+	private static final int COMMON_TILES_FRAMES = 24;
+	// frames of the movie used to compare the ranges enumeration against the pairwise tiles intersection
+	private static final int MOVIE_FRAMES = 1000;
+
+	private static volatile int sink;
+
+	public static void main (String[] args) throws Exception {
+		String filter = null;
+		int warmupIterations = 5;
+		int iterations = 10;
+		long iterationMillis = 500;
+		String outputFile = null;
+		String baselineFile = null;
+		double thresholdPercent = 10;
+
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+			case "-wi": warmupIterations = Integer.parseInt(args[++i]); break;
+			case "-i": iterations = Integer.parseInt(args[++i]); break;
+			case "-t": iterationMillis = Long.parseLong(args[++i]); break;
+			case "-o": outputFile = args[++i]; break;
+			case "-baseline": baselineFile = args[++i]; break;
+			case "-threshold": thresholdPercent = Double.parseDouble(args[++i]); break;
+			default: filter = args[i]; break;
+			}
+		}
+
+		File tmpDir = Files.createTempDirectory("rescomp_ext_benchmark").toFile();
+		try {
+			Map<String, Benchmark> benchmarks = createBenchmarks(tmpDir);
+			List<Result> results = new ArrayList<>();
+
+			System.out.println(String.format("%-68s %14s %12s %14s", "Benchmark", "ns/op", "+- error", "min ns/op"));
+			for (Map.Entry<String, Benchmark> entry : benchmarks.entrySet()) {
+				if (filter != null && !entry.getKey().contains(filter))
+					continue;
+				Result result = measure(entry.getKey(), entry.getValue(), warmupIterations, iterations, iterationMillis * 1_000_000L);
+				System.out.println(String.format("%-68s %14.1f %12.1f %14.1f", result.name, result.nsPerOp, result.error, result.minNsPerOp));
+				results.add(result);
+			}
+
+			if (outputFile != null)
+				saveResults(results, outputFile);
+
+			if (baselineFile != null && hasRegressions(results, loadResults(baselineFile), thresholdPercent))
+				System.exit(1);
+		}
+		finally {
+			File[] files = tmpDir.listFiles();
+			if (files != null)
+				for (File f : files)
+					f.delete();
+			tmpDir.delete();
+		}
+	}
+
+	/**
+	 * Fixtures are created here, so their cost is left out of the measures.
+	 */
+	private static Map<String, Benchmark> createBenchmarks (File tmpDir) throws IOException {
+		Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+
+		final byte[] frame = BenchmarkFixtures.frame8bpp(0, SEED);
+		final List<Tile> frameTiles = BenchmarkFixtures.getTiles(frame);
+
+		// RGB png to 8bpp
+		final String rgbFile = BenchmarkFixtures.writeRGBFrame(tmpDir, 0, SEED).getAbsolutePath();
+		benchmarks.put("ImageUtilFast.convertRGBTo8bpp 272x192", () -> ImageUtilFast.convertRGBTo8bpp(rgbFile, true));
+
+		// tiles cache lookups. Tiles of a later frame: some of them are in the cache and most of them aren't
+		TilesCacheManager.setStartIndexInVRAM_var(TILES_CACHE_ID, 1);
+		TilesCacheManager.setCacheTilesNum_var(TILES_CACHE_ID, TILES_CACHE_SIZE);
+		TilesCacheManager.setCacheTiles(TILES_CACHE_ID, new ArrayList<>(frameTiles.subList(0, Math.min(TILES_CACHE_SIZE, frameTiles.size()))));
+		final Tile[] lookupTiles = BenchmarkFixtures.getAllTiles(BenchmarkFixtures.frame8bpp(4, SEED));
+		benchmarks.put("TilesCacheManager.getCachedTile x" + lookupTiles.length + " tiles", () -> {
+			int found = 0;
+			for (Tile tile : lookupTiles)
+				if (TilesCacheManager.getCachedTile(TILES_CACHE_ID, tile) != null)
+					++found;
+			return Integer.valueOf(found);
+		});
+
+		// tileset of a frame
+		benchmarks.put("TilesetOriginalCustom 272x192 no cache", () -> BenchmarkFixtures.newTileset(0, frame, null));
+		benchmarks.put("TilesetOriginalCustom 272x192 with tiles cache", () -> BenchmarkFixtures.newTileset(0, frame, TILES_CACHE_ID));
+
+		// tilemap compression
+		final String binId = "benchmark_tilemap";
+		System.setProperty(binId + RLEWCompressor.RLE_PROPERTY_SUFFIX_WORDS_PER_ROW, String.valueOf(BenchmarkFixtures.FRAME_WIDTH / 8));
+		final byte[] tilemap = BenchmarkFixtures.getTilemapWords(0, SEED, 1 + TILES_CACHE_SIZE);
+		benchmarks.put("RLEWCompressor.compress_A 34x24 tilemap", () -> RLEWCompressor.compress_A(tilemap, binId));
+		benchmarks.put("RLEWCompressor.compress_B 34x24 tilemap", () -> RLEWCompressor.compress_B(tilemap, binId));
+
+		// common tiles ranges
+		final List<TilesetOriginalCustom> tilesets = BenchmarkFixtures.getTilesets(COMMON_TILES_FRAMES, SEED, null);
+		final int minRange = 3;
+		final int minCommonTilesNum = 32;
+		benchmarks.put("CommonTilesRangeOptimizerV2.computeOptimzalRanges " + COMMON_TILES_FRAMES + " frames",
+				() -> CommonTilesRangeOptimizerV2.computeOptimzalRanges(tilesets, minRange, minCommonTilesNum));
+
+		// ranges enumeration of a whole movie: fingerprint indexes versus the former pairwise tiles comparison
+		final List<TilesetOriginalCustom> movieTilesets = BenchmarkFixtures.getTilesets(MOVIE_FRAMES, SEED, null);
+		benchmarks.put("CommonTilesRangeOptimizerV2.enumerateRanges " + MOVIE_FRAMES + " frames",
+				() -> CommonTilesRangeOptimizerV2.enumerateRanges(movieTilesets, CommonTilesRangeOptimizerV2.indexTilesets(movieTilesets),
+						minRange, minCommonTilesNum));
+		benchmarks.put("CommonTilesRangeOptimizerV2.enumerateRanges pairwise (before) " + MOVIE_FRAMES + " frames",
+				() -> enumerateRangesPairwise(movieTilesets, minRange, minCommonTilesNum));
+
+		// common tiles of every V1 range: index the frames once and then intersect every [3, 12] frames window
+		benchmarks.put("TilePresenceIndex all [3,12] ranges " + COMMON_TILES_FRAMES + " frames", () -> {
+			TilePresenceIndex index = new TilePresenceIndex(tilesets.size());
+			for (int i = 0; i < tilesets.size(); ++i)
+				index.addFrame(i, tilesets.get(i).tiles, true);
+			int commonTiles = 0;
+			for (int start = 0; start < tilesets.size(); ++start)
+				for (int end = start + 2; end < Math.min(start + 12, tilesets.size()); end += 2)
+					commonTiles += index.getCommonTiles(start, end).size();
+			return Integer.valueOf(commonTiles);
+		});
+
+		// tiles cache stats of a whole movie: frames count their tiles in parallel and then the most used tiles are listed
+		benchmarks.put("TileStatsCounter count + top " + TILES_CACHE_SIZE + " " + MOVIE_FRAMES + " frames", () -> {
+			TileStatsCounter stats = new TileStatsCounter();
+			movieTilesets.parallelStream().forEach(tileset -> {
+				stats.countResource(tileset.tiles);
+				stats.countOccurrences(tileset.tiles);
+			});
+			return stats.getTopByOccurrences(TILES_CACHE_SIZE);
+		});
+
+		// tileset split in chunks
+		final int numChunks = 3;
+		final int maxTilesPerChunk = (frameTiles.size() + 2) / 3 + 16;
+		benchmarks.put("TilesetSizeSplitCalculator.splitWithMaxTilesFirst 3 chunks",
+				() -> TilesetSizeSplitCalculator.splitWithMaxTilesFirst(frameTiles, numChunks, maxTilesPerChunk));
+		benchmarks.put("TilesetSizeSplitCalculator.splitWithMaxEvenlyDistribution 3 chunks",
+				() -> TilesetSizeSplitCalculator.splitWithMaxEvenlyDistribution(frameTiles, numChunks, maxTilesPerChunk));
+
+		return benchmarks;
+	}
+
+	/**
+	 * Ranges enumeration as CommonTilesRangeOptimizerV2 did before indexing the tilesets: every tile of the intersection is
+	 * compared against every tile of the next tileset, and a start stops only once the intersection is empty.
+	 * @return number of ranges, which must be the same than with {@link CommonTilesRangeOptimizerV2#enumerateRanges(List, List, int, int)}
+	 */
+	private static int enumerateRangesPairwise (List<TilesetOriginalCustom> tilesetsList, int minRange, int minCommonTilesNum) {
+		int ranges = 0;
+		for (int startIdx = 0; startIdx < tilesetsList.size(); startIdx++) {
+			List<Tile> common = new ArrayList<>(tilesetsList.get(startIdx).tiles);
+			for (int endIdx = startIdx; endIdx < tilesetsList.size(); endIdx++) {
+				if (endIdx > startIdx) {
+					List<Tile> result = new ArrayList<>();
+					for (Tile a : common) {
+						for (Tile b : tilesetsList.get(endIdx).tiles) {
+							if (a.getEquality(b) != TileEquality.NONE) {
+								result.add(a);
+								break;
+							}
+						}
+					}
+					common = result;
+					if (common.isEmpty())
+						break;
+				}
+				if (endIdx - startIdx + 1 >= minRange && common.size() >= minCommonTilesNum)
+					++ranges;
+			}
+		}
+		return ranges;
+	}
+
+	private static Result measure (String name, Benchmark benchmark, int warmupIterations, int iterations, long iterationNanos) throws Exception {
+		for (int i = 0; i < warmupIterations; ++i)
+			runIteration(benchmark, iterationNanos);
+
+		final double[] nsPerOp = new double[Math.max(1, iterations)];
+		double sum = 0;
+		double min = Double.MAX_VALUE;
+		for (int i = 0; i < nsPerOp.length; ++i) {
+			nsPerOp[i] = runIteration(benchmark, iterationNanos);
+			sum += nsPerOp[i];
+			min = Math.min(min, nsPerOp[i]);
+		}
+
+		final double mean = sum / nsPerOp.length;
+		double variance = 0;
+		for (double v : nsPerOp)
+			variance += (v - mean) * (v - mean);
+		final double stdDev = nsPerOp.length > 1 ? Math.sqrt(variance / (nsPerOp.length - 1)) : 0;
+
+		return new Result(name, mean, stdDev, min);
+	}
+
+	private static double runIteration (Benchmark benchmark, long iterationNanos) throws Exception {
+		long ops = 0;
+		long elapsed;
+		final long start = System.nanoTime();
+		do {
+			consume(benchmark.run());
+			++ops;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+		return (double) elapsed / ops;
+	}
+
+	private static void consume (Object result) {
+		sink += System.identityHashCode(result);
+	}
+
+	private static void saveResults (List<Result> results, String outputFile) throws IOException {
+		List<String> lines = new ArrayList<>(results.size() + 1);
+		lines.add("benchmark,nsPerOp,error,minNsPerOp");
+		for (Result r : results)
+			lines.add(r.name + "," + r.nsPerOp + "," + r.error + "," + r.minNsPerOp);
+		Files.write(new File(outputFile).toPath(), lines, StandardCharsets.UTF_8);
+		System.out.println("Results saved in " + outputFile);
+	}
+
+	private static Map<String, Result> loadResults (String baselineFile) throws IOException {
+		Map<String, Result> results = new HashMap<>();
+		List<String> lines = Files.readAllLines(new File(baselineFile).toPath(), StandardCharsets.UTF_8);
+		// skip header
+		for (int i = 1; i < lines.size(); ++i) {
+			String[] values = lines.get(i).split(",");
+			if (values.length != 4)
+				continue;
+			results.put(values[0], new Result(values[0], Double.parseDouble(values[1]), Double.parseDouble(values[2]), Double.parseDouble(values[3])));
+		}
+		return results;
+	}
+
+	private static boolean hasRegressions (List<Result> results, Map<String, Result> baseline, double thresholdPercent) {
+		boolean regression = false;
+		for (Result r : results) {
+			Result base = baseline.get(r.name);
+			if (base == null)
+				continue;
+			double diffPercent = (r.nsPerOp - base.nsPerOp) * 100d / base.nsPerOp;
+			if (diffPercent > thresholdPercent) {
+				System.out.println(String.format("[WARNING] Regression in %s: %.1f ns/op vs %.1f ns/op in baseline (%+.1f%%)",
+						r.name, r.nsPerOp, base.nsPerOp, diffPercent));
+				regression = true;
+			}
+			else
+				System.out.println(String.format("%s: %+.1f%% vs baseline", r.name, diffPercent));
+		}
+		return regression;
+	}
+
+}
@@ -0,0 +1,104 @@
+package sgdk.rescomp.tool;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import sgdk.rescomp.tool.ImageUtilFast.Image8bpp;
+import sgdk.rescomp.type.Tile;
+
+/**
+ * Iterates the 8x8 tiles of a frame made of strips, in the same order than the tiles of the merged frame image (strips one after
+ * the other, tiles in row order) but without merging the strips: only one strip is decoded at a time, into a buffer taken from the
+ * current thread's pool. Tiles are copied out of the buffer, so they are still valid once the iteration moves to the next strip.</br>
+ * The buffer goes back to the pool once the last tile was read. An iteration stopped before that just leaves the buffer to the GC.
+ * Not thread safe.
+ */
+public class StripsTileIterator implements Iterator<Tile> {
+
+	private static final int POOL_MAX_SIZE = 4;
+
+	private static final ThreadLocal<ArrayDeque<Image8bpp>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private final List<String> stripsFileList;
+	private int stripIdx = -1;
+	// null once all the strips were read
+	private Image8bpp strip;
+	// width in pixels of the first strip. All strips must have the same width
+	private int width = -1;
+	// tiles of the current strip and position of the next tile
+	private int wt, ht, tx, ty;
+
+	/**
+	 * @param stripsFileList strips of the frame in top to bottom order
+	 * @return the tiles of the frame, decoding the strips every time it's iterated
+	 */
+	public static Iterable<Tile> tilesOf (List<String> stripsFileList) {
+		return () -> new StripsTileIterator(stripsFileList);
+	}
+
+	public StripsTileIterator (List<String> stripsFileList) {
+		this.stripsFileList = stripsFileList;
+		Image8bpp image = pool.get().poll();
+		strip = image != null ? image : new Image8bpp();
+	}
+
+	@Override
+	public boolean hasNext () {
+		while (strip != null && ty >= ht)
+			loadNextStrip();
+		return strip != null;
+	}
+
+	@Override
+	public Tile next () {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		Tile tile = Tile.getTile(strip.data, strip.w, strip.h, tx * 8, ty * 8, 8);
+		if (++tx == wt) {
+			tx = 0;
+			++ty;
+		}
+		return tile;
+	}
+
+	private void loadNextStrip () {
+		if (++stripIdx >= stripsFileList.size()) {
+			release(strip);
+			strip = null;
+			return;
+		}
+
+		final String imgFile = stripsFileList.get(stripIdx);
+		try {
+			// get tile data per pixel (color position in palette), check image dimension is aligned to tile, remove palette info if any
+			ImageUtilFast.checkImageNotNull(imgFile, ImageUtilFast.getImageAs8bpp(imgFile, true, true, strip));
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new RuntimeException("ERROR: " + StripsTileIterator.class.getSimpleName() + ": couldn't read strip " + imgFile + ". " + e.getMessage(), e);
+		}
+
+		ImageUtilFast.checkImageColorByte(imgFile, strip);
+
+		if (width == -1)
+			width = strip.w;
+		else if (strip.w != width)
+			throw new IllegalArgumentException("'" + imgFile + "' width is " + strip.w + " but previous strips width is " + width);
+
+		wt = strip.w / 8;
+		ht = strip.h / 8;
+		tx = 0;
+		ty = 0;
+	}
+
+	private static void release (Image8bpp image) {
+		ArrayDeque<Image8bpp> images = pool.get();
+		if (images.size() < POOL_MAX_SIZE)
+			images.push(image);
+	}
+
+}
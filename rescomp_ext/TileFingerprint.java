@@ -0,0 +1,137 @@
+package sgdk.rescomp.type;
+
+import sgdk.rescomp.type.Basics.TileEquality;
+
+/**
+ * Flip-canonical identity of a tile: the smallest (unsigned lexicographic order) of the 4 flip variants of the tile data,
+ * packed into 4 longs, plus the flip to apply on the canonical data to get back the original tile data.</br>
+ * A tile and its H, V and HV flipped versions have the same fingerprint, so it can be used as key in hash based lookups
+ * instead of comparing tiles pairwise. Palette and priority aren't part of the fingerprint, hence matches are meant to be
+ * confirmed with {@link Tile#getEquality(Tile)} which in the worst case is called only against the tiles sharing the fingerprint.
+ */
+public final class TileFingerprint {
+
+	public final long d0, d1, d2, d3;
+	/**
+	 * Flip to apply on the canonical data to get the original tile data.
+	 */
+	public final boolean hflip, vflip;
+
+	private final int hc;
+
+	private TileFingerprint (long d0, long d1, long d2, long d3, boolean hflip, boolean vflip) {
+		this.d0 = d0;
+		this.d1 = d1;
+		this.d2 = d2;
+		this.d3 = d3;
+		this.hflip = hflip;
+		this.vflip = vflip;
+		long h = d0;
+		h = h * 0x9E3779B97F4A7C15L + d1;
+		h = h * 0x9E3779B97F4A7C15L + d2;
+		h = h * 0x9E3779B97F4A7C15L + d3;
+		this.hc = (int) (h ^ (h >>> 32));
+	}
+
+	public static TileFingerprint of (Tile tile) {
+		return of(tile.data);
+	}
+
+	/**
+	 * Every tile data row is an int holding 8 pixels of 4 bits each, being the leftmost pixel the highest nibble.
+	 */
+	public static TileFingerprint of (int[] data) {
+		final int[] hflipped = new int[8];
+		for (int row = 0; row < 8; ++row)
+			hflipped[row] = reverseNibbles(data[row]);
+
+		// variants: 0 = as is, 1 = hflip, 2 = vflip, 3 = hvflip
+		int best = 0;
+		for (int variant = 1; variant < 4; ++variant) {
+			if (compareVariants(data, hflipped, variant, best) < 0)
+				best = variant;
+		}
+
+		return new TileFingerprint(
+				pack(variantRow(data, hflipped, best, 0), variantRow(data, hflipped, best, 1)),
+				pack(variantRow(data, hflipped, best, 2), variantRow(data, hflipped, best, 3)),
+				pack(variantRow(data, hflipped, best, 4), variantRow(data, hflipped, best, 5)),
+				pack(variantRow(data, hflipped, best, 6), variantRow(data, hflipped, best, 7)),
+				(best & 1) != 0, (best & 2) != 0);
+	}
+
+	/**
+	 * Flip to apply on the tile having this fingerprint to get the tile having the other fingerprint.
+	 * Only meaningful when both fingerprints are equal. Symmetric tiles have more than one valid answer,
+	 * so use {@link Tile#getEquality(Tile)} when the exact same flip than SGDK is needed.
+	 */
+	public TileEquality getFlipTo (TileFingerprint other) {
+		if (!equals(other))
+			return TileEquality.NONE;
+		final boolean h = hflip ^ other.hflip;
+		final boolean v = vflip ^ other.vflip;
+		if (h && v)
+			return TileEquality.HVFLIP;
+		if (h)
+			return TileEquality.HFLIP;
+		if (v)
+			return TileEquality.VFLIP;
+		return TileEquality.EQUAL;
+	}
+
+	/**
+	 * Canonical tile data, ie: the data of the flip variant used as fingerprint.
+	 */
+	public int[] getCanonicalData () {
+		return new int[] {
+				(int) (d0 >>> 32), (int) d0, (int) (d1 >>> 32), (int) d1,
+				(int) (d2 >>> 32), (int) d2, (int) (d3 >>> 32), (int) d3 };
+	}
+
+	private static int reverseNibbles (int value) {
+		// swap nibbles inside every byte and then reverse the bytes
+		return Integer.reverseBytes(((value & 0x0F0F0F0F) << 4) | ((value >>> 4) & 0x0F0F0F0F));
+	}
+
+	private static int compareVariants (int[] data, int[] hflipped, int variantA, int variantB) {
+		for (int row = 0; row < 8; ++row) {
+			int cmp = Integer.compareUnsigned(variantRow(data, hflipped, variantA, row), variantRow(data, hflipped, variantB, row));
+			if (cmp != 0)
+				return cmp;
+		}
+		return 0;
+	}
+
+	private static int variantRow (int[] data, int[] hflipped, int variant, int row) {
+		final int[] src = (variant & 1) != 0 ? hflipped : data;
+		return (variant & 2) != 0 ? src[7 - row] : src[row];
+	}
+
+	private static long pack (int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public int hashCode () {
+		return hc;
+	}
+
+	/**
+	 * Equality ignores the flip flags: a tile and any of its flipped versions are equal.
+	 */
+	@Override
+	public boolean equals (Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof TileFingerprint))
+			return false;
+		final TileFingerprint other = (TileFingerprint) obj;
+		return hc == other.hc && d0 == other.d0 && d1 == other.d1 && d2 == other.d2 && d3 == other.d3;
+	}
+
+	@Override
+	public String toString () {
+		return String.format("%016X%016X%016X%016X", d0, d1, d2, d3);
+	}
+
+}
@@ -0,0 +1,79 @@
+package sgdk.rescomp.tool;
+
+import java.util.List;
+
+import sgdk.rescomp.type.Basics.TileEquality;
+import sgdk.rescomp.type.Tile;
+import sgdk.rescomp.type.TileFingerprint;
+
+/**
+ * Index over a list of tiles which positions are bucketed by {@link TileFingerprint}.</br>
+ * It answers the same than scanning the list in order and returning the first tile for which
+ * <code>tile.getEquality(t) != TileEquality.NONE</code>, but only testing the tiles sharing the fingerprint.
+ */
+public class TileFingerprintIndex {
+
+	private final List<Tile> tiles;
+	// tile positions chained by fingerprint hash code
+	private final IntIndexTable positionsByFingerprint;
+
+	public TileFingerprintIndex (List<Tile> tiles) {
+		this.tiles = tiles;
+		this.positionsByFingerprint = new IntIndexTable(tiles.size());
+
+		// positions are chained in ascending order so the first match in a chain is the first match of a linear scan
+		for (int pos = 0; pos < tiles.size(); ++pos)
+			positionsByFingerprint.add(TileFingerprint.of(tiles.get(pos)).hashCode(), pos);
+	}
+
+	/**
+	 * @param tiles
+	 * @param fingerprintHashes hash codes of the fingerprints of the tiles, in the same order (ie: the ones saved in a binary tiles cache file)
+	 */
+	public TileFingerprintIndex (List<Tile> tiles, int[] fingerprintHashes) {
+		if (fingerprintHashes.length != tiles.size())
+			throw new IllegalArgumentException("ERROR: " + fingerprintHashes.length + " fingerprints for " + tiles.size() + " tiles");
+		this.tiles = tiles;
+		this.positionsByFingerprint = new IntIndexTable(tiles.size());
+
+		for (int pos = 0; pos < tiles.size(); ++pos)
+			positionsByFingerprint.add(fingerprintHashes[pos], pos);
+	}
+
+	public int indexOf (Tile tile) {
+		return indexOf(tile, TileFingerprint.of(tile));
+	}
+
+	/**
+	 * @param tile
+	 * @param fingerprint the fingerprint of the tile, so it's calculated only once when the tile is searched in several indexes
+	 * @return the position of the first tile in the list equal to the parameter tile or any of its flipped versions, or -1 if none
+	 */
+	public int indexOf (Tile tile, TileFingerprint fingerprint) {
+		// a hash code collision only costs an extra getEquality() call
+		for (int e = positionsByFingerprint.first(fingerprint.hashCode()); e != -1; e = positionsByFingerprint.next(e)) {
+			int pos = positionsByFingerprint.value(e);
+			if (tile.getEquality(tiles.get(pos)) != TileEquality.NONE)
+				return pos;
+		}
+
+		return -1;
+	}
+
+	public boolean contains (Tile tile, TileFingerprint fingerprint) {
+		return indexOf(tile, fingerprint) != -1;
+	}
+
+	public Tile get (int index) {
+		return tiles.get(index);
+	}
+
+	public int size () {
+		return tiles.size();
+	}
+
+	public boolean isEmpty () {
+		return tiles.isEmpty();
+	}
+
+}
@@ -0,0 +1,187 @@
+package sgdk.rescomp.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import sgdk.rescomp.type.Basics.TileEquality;
+import sgdk.rescomp.type.Tile;
+import sgdk.rescomp.type.TileFingerprint;
+
+/**
+ * Presence of every distinct tile along the frames of a movie. Every distinct tile (same data or flipped data, same palette and
+ * same priority, as {@link Tile#getEquality(Tile)} tells) gets an id and a {@link BitSet} of the frames having it, so the common
+ * tiles of any range of frames are the tiles whose bitset has no clear bit in the range. Hence the frames are read and indexed
+ * only once, instead of intersecting their tilesets again for every range they belong to.</br>
+ * Frames are added in ascending order with {@link #addFrame(int, List, boolean)}. A bitset starts at the first frame having
+ * the tile, so its memory depends on the frames between the first and the last appearance of the tile, not on the movie length.</br>
+ * Adding frames isn't thread safe. Once all the frames were added, {@link #getCommonTiles(int, int)} can be called from any thread.
+ */
+public class TilePresenceIndex {
+
+	private final int numFrames;
+	// frames taking part in the intersections
+	private final BitSet eligibleFrames;
+	// tiles of every frame as tile id << 2 | flip variant, in the same order than the frame's tileset
+	private final int[][] tileCodesPerFrame;
+	private int lastAddedFrame = -1;
+
+	// per tile id: first frame having it, frames having it relative to the first one, and the tile in every flip variant
+	private int[] firstFrame = new int[1024];
+	private BitSet[] presence = new BitSet[1024];
+	private Tile[][] variants = new Tile[1024][];
+	private int numIds;
+	// tile ids chained by fingerprint hash code
+	private final IntIndexTable idsByFingerprint = new IntIndexTable(4096);
+
+	public TilePresenceIndex (int numFrames) {
+		this.numFrames = numFrames;
+		this.eligibleFrames = new BitSet(numFrames);
+		this.tileCodesPerFrame = new int[numFrames][];
+	}
+
+	/**
+	 * @param frameIdx index of the frame. Must be greater than the index of the previously added frame
+	 * @param tiles tiles of the frame. Duplicates are kept, so {@link #getCommonTiles(int, int)} gives them the same way
+	 * @param eligible false to leave the frame out of every intersection (ie: its tileset is too small or too big), in which case
+	 * a range containing it gets the common tiles of its other frames
+	 */
+	public void addFrame (int frameIdx, List<Tile> tiles, boolean eligible) {
+		if (frameIdx <= lastAddedFrame || frameIdx >= numFrames)
+			throw new IllegalArgumentException("ERROR: " + TilePresenceIndex.class.getSimpleName() + ": frame " + frameIdx
+					+ " added after frame " + lastAddedFrame + " (" + numFrames + " frames)");
+		lastAddedFrame = frameIdx;
+
+		if (!eligible)
+			return;
+
+		eligibleFrames.set(frameIdx);
+		final int[] codes = new int[tiles.size()];
+		for (int i = 0; i < codes.length; ++i) {
+			final Tile tile = tiles.get(i);
+			final TileFingerprint fingerprint = TileFingerprint.of(tile);
+			final int variant = (fingerprint.hflip ? 1 : 0) | (fingerprint.vflip ? 2 : 0);
+			final int id = getOrAddId(tile, fingerprint);
+			presence[id].set(frameIdx - firstFrame[id]);
+			// same fingerprint and same flip means same data, so all the frames share the first instance found
+			if (variants[id][variant] == null)
+				variants[id][variant] = tile;
+			codes[i] = (id << 2) | variant;
+		}
+		tileCodesPerFrame[frameIdx] = codes;
+	}
+
+	private int getOrAddId (Tile tile, TileFingerprint fingerprint) {
+		final int hash = fingerprint.hashCode();
+		for (int e = idsByFingerprint.first(hash); e != -1; e = idsByFingerprint.next(e)) {
+			final int id = idsByFingerprint.value(e);
+			if (tile.getEquality(anyVariant(id)) != TileEquality.NONE)
+				return id;
+		}
+
+		if (numIds == firstFrame.length) {
+			firstFrame = Arrays.copyOf(firstFrame, numIds * 2);
+			presence = Arrays.copyOf(presence, numIds * 2);
+			variants = Arrays.copyOf(variants, numIds * 2);
+		}
+		final int id = numIds++;
+		firstFrame[id] = lastAddedFrame;
+		presence[id] = new BitSet();
+		variants[id] = new Tile[4];
+		idsByFingerprint.add(hash, id);
+		return id;
+	}
+
+	private Tile anyVariant (int id) {
+		for (Tile tile : variants[id])
+			if (tile != null)
+				return tile;
+		return null;
+	}
+
+	/**
+	 * @param startFrame
+	 * @param endFrame inclusive
+	 * @return tiles of the smallest eligible frame in the range (the first one if several have the same size) that are in
+	 * every eligible frame of the range, in the frame's order. Empty if the range has no eligible frame
+	 */
+	public List<Tile> getCommonTiles (int startFrame, int endFrame) {
+		final int smallest = getSmallestFrame(startFrame, endFrame);
+		if (smallest == -1)
+			return Collections.emptyList();
+
+		final int[] codes = tileCodesPerFrame[smallest];
+		final List<Tile> commonTiles = new ArrayList<>();
+		for (int code : codes) {
+			final int id = code >>> 2;
+			if (isInAllEligibleFrames(id, startFrame, endFrame))
+				commonTiles.add(variants[id][code & 3]);
+		}
+
+		return commonTiles;
+	}
+
+	/**
+	 * Same than <code>getCommonTiles(startFrame, endFrame).size()</code> without collecting the tiles.
+	 */
+	public int countCommonTiles (int startFrame, int endFrame) {
+		final int smallest = getSmallestFrame(startFrame, endFrame);
+		if (smallest == -1)
+			return 0;
+
+		int count = 0;
+		for (int code : tileCodesPerFrame[smallest])
+			if (isInAllEligibleFrames(code >>> 2, startFrame, endFrame))
+				++count;
+		return count;
+	}
+
+	/**
+	 * @return the eligible frame with less tiles in the range, the first one if several have the same size. -1 if none
+	 */
+	private int getSmallestFrame (int startFrame, int endFrame) {
+		int smallest = -1;
+		for (int f = eligibleFrames.nextSetBit(startFrame); f != -1 && f <= endFrame; f = eligibleFrames.nextSetBit(f + 1)) {
+			if (smallest == -1 || tileCodesPerFrame[f].length < tileCodesPerFrame[smallest].length)
+				smallest = f;
+		}
+		return smallest;
+	}
+
+	/**
+	 * @return true if every eligible frame in [startFrame, endFrame] has the tile. Frames without the tile are only allowed when
+	 * they aren't eligible
+	 */
+	private boolean isInAllEligibleFrames (int id, int startFrame, int endFrame) {
+		final int first = firstFrame[id];
+		final BitSet frames = presence[id];
+		int f = startFrame;
+		while (f <= endFrame) {
+			// first frame from f without the tile
+			f = f < first ? f : first + frames.nextClearBit(f - first);
+			if (f > endFrame)
+				return true;
+			if (eligibleFrames.get(f))
+				return false;
+			// skip the frames left out of the intersections
+			f = eligibleFrames.nextSetBit(f);
+			if (f == -1)
+				return true;
+		}
+		return true;
+	}
+
+	public int getNumFrames () {
+		return numFrames;
+	}
+
+	/**
+	 * @return number of distinct tiles in the eligible frames
+	 */
+	public int getNumDistinctTiles () {
+		return numIds;
+	}
+
+}
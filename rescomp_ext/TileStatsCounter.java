@@ -0,0 +1,173 @@
+package sgdk.rescomp.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import sgdk.rescomp.type.Tile;
+import sgdk.rescomp.type.TileFingerprint;
+
+/**
+ * Usage stats of the tiles of the resources under a tiles cache id: in how many resources a tile appears and how many times
+ * it appears along all of them.</br>
+ * Tiles are keyed by their flip-canonical {@link TileFingerprint} plus palette and priority, the same the tiles cache matches
+ * them. So the flipped versions of a tile count as one tile, and tiles with the same hash code are never merged.</br>
+ * Thread safe: resources built in parallel count their tiles at once. Counters are atomic ints, so once a tile is in the map
+ * counting it takes no lock.
+ */
+public class TileStatsCounter {
+
+	public static class TileStats {
+		// flip-canonical version of the tile
+		public final Tile tile;
+		public final int fingerprintHash;
+		private final AtomicInteger resources = new AtomicInteger();
+		private final AtomicInteger occurrences = new AtomicInteger();
+
+		TileStats (Tile tile, int fingerprintHash) {
+			this.tile = tile;
+			this.fingerprintHash = fingerprintHash;
+		}
+
+		public int getResources () {
+			return resources.get();
+		}
+
+		public int getOccurrences () {
+			return occurrences.get();
+		}
+	}
+
+	private static final class Key {
+		final TileFingerprint fingerprint;
+		final int pal;
+		final boolean prio;
+		final int hc;
+
+		Key (Tile tile) {
+			this.fingerprint = TileFingerprint.of(tile);
+			this.pal = tile.pal;
+			this.prio = tile.prio;
+			this.hc = (fingerprint.hashCode() * 31 + pal) * 2 + (prio ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode () {
+			return hc;
+		}
+
+		@Override
+		public boolean equals (Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hc == other.hc && pal == other.pal && prio == other.prio && fingerprint.equals(other.fingerprint);
+		}
+	}
+
+	private final ConcurrentHashMap<Key, TileStats> statsByTile = new ConcurrentHashMap<>((int)(4096 / 0.75) + 1);
+	private final AtomicInteger numResources = new AtomicInteger();
+
+	/**
+	 * Counts the resource once for every distinct tile of it (not the total count of a tile in the resource).
+	 * Blank tiles are ignored since SGDK reserves the first tile in VRAM for them.
+	 */
+	public void countResource (List<Tile> tiles) {
+		numResources.incrementAndGet();
+		HashSet<Key> alreadyProcessed = new HashSet<>((int)(tiles.size() / 0.75) + 1);
+		for (Tile tile : tiles) {
+			if (tile.getPlainValue() == 0)
+				continue;
+			Key key = new Key(tile);
+			if (alreadyProcessed.add(key))
+				getOrAdd(key).resources.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Counts every occurrence of the tiles. Blank tiles are ignored.
+	 */
+	public void countOccurrences (List<Tile> tiles) {
+		for (Tile tile : tiles) {
+			if (tile.getPlainValue() == 0)
+				continue;
+			getOrAdd(new Key(tile)).occurrences.incrementAndGet();
+		}
+	}
+
+	private TileStats getOrAdd (Key key) {
+		// get() first: computeIfAbsent() may lock the bin even when the tile is already in the map
+		TileStats stats = statsByTile.get(key);
+		if (stats != null)
+			return stats;
+		return statsByTile.computeIfAbsent(key, k -> new TileStats(new Tile(k.fingerprint.getCanonicalData(), 8, k.pal, k.prio, 0),
+				k.fingerprint.hashCode()));
+	}
+
+	/**
+	 * @return number of resources counted with {@link #countResource(List)}
+	 */
+	public int getNumResources () {
+		return numResources.get();
+	}
+
+	/**
+	 * @return number of distinct tiles
+	 */
+	public int size () {
+		return statsByTile.size();
+	}
+
+	public Collection<TileStats> getAll () {
+		return Collections.unmodifiableCollection(statsByTile.values());
+	}
+
+	/**
+	 * @return the n tiles present in most resources, most used first
+	 */
+	public List<TileStats> getTopByResources (int n) {
+		return getTop(n, TileStats::getResources);
+	}
+
+	/**
+	 * @return the n tiles with most occurrences, most used first
+	 */
+	public List<TileStats> getTopByOccurrences (int n) {
+		return getTop(n, TileStats::getOccurrences);
+	}
+
+	/**
+	 * Keeps the n most used tiles in a bounded min heap, so only n tiles are sorted instead of all of them.
+	 * Tile data settles the ties, so the order is the same on every run.
+	 */
+	private List<TileStats> getTop (int n, ToIntFunction<TileStats> count) {
+		if (n <= 0)
+			return Collections.emptyList();
+
+		final Comparator<TileStats> mostUsedFirst = Comparator.comparingInt(count).reversed()
+				.thenComparing((a, b) -> Arrays.compare(a.tile.data, b.tile.data));
+		// least used at the head
+		final PriorityQueue<TileStats> heap = new PriorityQueue<>(n + 1, mostUsedFirst.reversed());
+		for (TileStats stats : statsByTile.values()) {
+			if (heap.size() < n)
+				heap.add(stats);
+			else if (mostUsedFirst.compare(stats, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(stats);
+			}
+		}
+
+		List<TileStats> top = new ArrayList<>(heap);
+		top.sort(mostUsedFirst);
+		return top;
+	}
+
+}
@@ -3,7 +3,6 @@ package sgdk.rescomp.resource;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -12,7 +11,9 @@ import sgdk.rescomp.Resource;
 import sgdk.rescomp.tool.CommonTilesRangeManager;
 import sgdk.rescomp.tool.ExtProperties;
 import sgdk.rescomp.tool.RLEWCompressor;
+import sgdk.rescomp.tool.TileFingerprintIndex;
 import sgdk.rescomp.tool.TilemapCustomTools;
+import sgdk.rescomp.tool.TilemapDeltaManager;
 import sgdk.rescomp.tool.TilesCacheManager;
 import sgdk.rescomp.tool.Util;
 import sgdk.rescomp.type.Basics.Compression;
@@ -22,8 +23,10 @@ import sgdk.rescomp.type.Basics.TileOrdering;
 import sgdk.rescomp.type.CommonTilesRange;
 import sgdk.rescomp.type.CompressionCustom;
 import sgdk.rescomp.type.CustomDataTypes;
+import sgdk.rescomp.type.FrameTilesDelta;
 import sgdk.rescomp.type.Tile;
 import sgdk.rescomp.type.TileCacheMatch;
+import sgdk.rescomp.type.TileFingerprint;
 import sgdk.rescomp.type.TilemapCreationData;
 import sgdk.rescomp.type.ToggleMapTileBaseIndex;
 import sgdk.tool.ArrayUtil;
@@ -65,15 +68,15 @@ public class TilemapCustom extends Resource
     	}
 
         // fabri1983:
-        List<Tile> commonTiles = Collections.emptyList();
+        TileFingerprintIndex commonTiles = null;
         int startingImgNumInName = 0;
         List<CommonTilesRange> commonTilesRange = CommonTilesRangeManager.getFromResId(commonTilesRangeId);
         if (!commonTilesRange.isEmpty()) {
 			if (frameNum != null) {
 				CommonTilesRange commonTileObj = CommonTilesRangeManager.findRangeForImageNum(commonTilesRange, frameNum);
 				if (commonTileObj != null) {
-					// Get the list of common tiles for the current range
-					commonTiles = commonTileObj.getTiles();
+					// Get the common tiles for the current range
+					commonTiles = CommonTilesRangeManager.getTilesIndex(commonTileObj);
 					// What's the image num in the name of the starting image of the range?
 					startingImgNumInName = commonTileObj.getStartingImgNumInName();
 				}
@@ -91,7 +94,7 @@ public class TilemapCustom extends Resource
     				toggleMapTileBaseIndexFlag, startingImgNumInName, tileIndexA, tileIndexB);
     	}
 		// The offset for common tiles is always at the end of the frame buffer
-		int startingImgTilesetSize = maxFrameTilesetTotalSize - commonTiles.size();
+		int startingImgTilesetSize = maxFrameTilesetTotalSize - (commonTiles == null ? 0 : commonTiles.size());
 
 		// we have a base offset --> we can use system plain tiles
         final boolean useSystemTiles = mapBaseTileInd != 0;
@@ -121,9 +124,10 @@ public class TilemapCustom extends Resource
                     if (tile.isPlain() && tile.getPlainValue() == 0)
                         index = tile.getPlainValue();
                     else {
-                    	// fabri1983:
+                    	// fabri1983: calculated once and used for the cache and the common tiles lookups
+                    	final TileFingerprint fingerprint = TileFingerprint.of(tile);
 	                	// Test if the tile is cached
-                    	TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile);
+                    	TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile, fingerprint);
 	                	if (match != null) {
 	                		Tile cachedTile = match.getTile();
 	                        equality = tile.getEquality(cachedTile);
@@ -132,16 +136,11 @@ public class TilemapCustom extends Resource
 	                	else {
 	                		// fabri1983:
 	                		int indexInCommonTilesList = -1;
-	                        if (!commonTiles.isEmpty()) {
+	                        if (commonTiles != null) {
 	                        	// Try to match tile with a common tile, and get the index as it is in commonTiles
-	                    		for (int kk=0; kk < commonTiles.size(); kk++) {
-	                    			Tile commonTile = commonTiles.get(kk);
-	                                if (tile.getEquality(commonTile) != TileEquality.NONE) {
-	                                	equality = tile.getEquality(commonTile);
-	                                	indexInCommonTilesList = kk;
-	                                	break;
-	                                }
-	                            }
+	                        	indexInCommonTilesList = commonTiles.indexOf(tile, fingerprint);
+	                        	if (indexInCommonTilesList != -1)
+	                        		equality = tile.getEquality(commonTiles.get(indexInCommonTilesList));
 	                        }
 
                     		// Is tile a common tile?
@@ -167,9 +166,10 @@ public class TilemapCustom extends Resource
                         index = tile.getPlainValue();
                     else
                     {
-                    	// fabri1983:
+                    	// fabri1983: calculated once and used for the cache and the common tiles lookups
+                    	final TileFingerprint fingerprint = TileFingerprint.of(tile);
 	                	// Test if the tile is cached
-                    	TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile);
+                    	TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile, fingerprint);
                     	if (match != null) {
                     		Tile commonTile = match.getTile();
 	                        equality = tile.getEquality(commonTile);
@@ -182,16 +182,11 @@ public class TilemapCustom extends Resource
                 		else {
 	                    	// fabri1983:
                 			int indexInCommonTilesList = -1;
-	                        if (!commonTiles.isEmpty()) {
+	                        if (commonTiles != null) {
 	                        	// Try to match tile with a common tile, and get the index as it is in commonTiles
-	                    		for (int kk=0; kk < commonTiles.size(); kk++) {
-	                    			Tile commonTile = commonTiles.get(kk);
-	                                if (tile.getEquality(commonTile) != TileEquality.NONE) {
-	                                	equality = tile.getEquality(commonTile);
-	                                	indexInCommonTilesList = kk;
-	                                	break;
-	                                }
-	                            }
+	                        	indexInCommonTilesList = commonTiles.indexOf(tile, fingerprint);
+	                        	if (indexInCommonTilesList != -1)
+	                        		equality = tile.getEquality(commonTiles.get(indexInCommonTilesList));
 	                        }
 
                     		// Is tile a common tile?
@@ -240,11 +235,42 @@ public class TilemapCustom extends Resource
 			int startTileX, int startTileY, int widthTile, int heightTile, TileOptimization opt, Compression compression, 
 			CompressionCustom compressionCustom, int mapExtendedWidth, TileOrdering order, String tilesCacheId, boolean addCompressionField, 
 			String commonTilesRangeId, int maxFrameTilesetTotalSize)
+	{
+		return getTilemap(id, tilesets, offsetAccumPerTilesetChunk, toggleMapTileBaseIndexFlag, mapBase, image8bpp, imageWidth, imageHeight, 
+				startTileX, startTileY, widthTile, heightTile, opt, compression, compressionCustom, mapExtendedWidth, order, tilesCacheId, 
+				addCompressionField, commonTilesRangeId, maxFrameTilesetTotalSize, null, null, 0);
+	}
+
+	/**
+	 * fabri1983
+	 * @param tilesDelta when not null the tilemap is built against the frame tileset and then pointed to the frame buffer positions of its tiles
+	 * @param tilemapDeltaId when not null the tilemap only holds the cells changed against the tilemap of the previous frame in the same buffer
+	 * @param frameBufferBaseIndex see FrameTilesDeltaManager.getFrameBufferBaseIndex(). Only used along with tilemapDeltaId
+	 */
+	public static TilemapCustom getTilemap(String id, List<TilesetOriginalCustom> tilesets, int[] offsetAccumPerTilesetChunk, 
+			ToggleMapTileBaseIndex toggleMapTileBaseIndexFlag, int mapBase, byte[] image8bpp, int imageWidth, int imageHeight, 
+			int startTileX, int startTileY, int widthTile, int heightTile, TileOptimization opt, Compression compression, 
+			CompressionCustom compressionCustom, int mapExtendedWidth, TileOrdering order, String tilesCacheId, boolean addCompressionField, 
+			String commonTilesRangeId, int maxFrameTilesetTotalSize, FrameTilesDelta tilesDelta, String tilemapDeltaId, int frameBufferBaseIndex)
 	{
 		TilemapCreationData tmData = createTilemap(id, tilesets, offsetAccumPerTilesetChunk, toggleMapTileBaseIndexFlag, mapBase, image8bpp,
 				imageWidth, imageHeight, startTileX, startTileY, widthTile, heightTile, opt, compression, order, mapExtendedWidth, tilesCacheId,
 				commonTilesRangeId, maxFrameTilesetTotalSize);
 
+		if (tilesDelta != null)
+			tilesDelta.remapTilemap(tmData.data);
+
+		// the delta is taken over the tilemap as the player holds it in RAM, so before removing the extended width
+		if (tilemapDeltaId != null) {
+			byte[] delta = TilemapDeltaManager.nextFrame(tilemapDeltaId, frameBufferBaseIndex, startTileY, tmData.data, tmData.w, tmData.h);
+			if (delta != null) {
+				System.out.print("tilemap delta: " + TilemapDeltaManager.countWords(delta) + " words changed in " 
+						+ TilemapDeltaManager.countRuns(delta) + " runs, " + delta.length + " bytes. ");
+				return new TilemapCustom(tmData.id, delta, tmData.w, tmData.h, tmData.data.length * 2, addCompressionField);
+			}
+			System.out.print("tilemap delta: key frame. ");
+		}
+
 		if (compression == Compression.NONE && (compressionCustom == CompressionCustom.RLEW_A || compressionCustom == CompressionCustom.RLEW_B)) {
 			tmData.data = RLEWCompressor.extractTilemapDataOnly_short(tmData.data, widthTile, mapExtendedWidth);
 			tmData.w = widthTile;
@@ -296,14 +322,36 @@ public class TilemapCustom extends Resource
         }
         final BinCustom binResource = new BinCustom(id + "_data", data, compression, compressionCustom);
 
-        // add as resource (avoid duplicate)
-        bin = (BinCustom) addInternalResource(binResource);
-
-        // set the tilemap width in words as a property so the compressor uses the correct settings
+        // set the tilemap width in words as a property so the compressor uses the correct settings.
+        // Set before prepack() since the compression runs right away in the compressors pool
         if (compressionCustom == CompressionCustom.RLEW_A || compressionCustom == CompressionCustom.RLEW_B) {
-        	System.setProperty(bin.id + RLEWCompressor.RLE_PROPERTY_SUFFIX_WORDS_PER_ROW, String.valueOf(w));
+        	System.setProperty(binResource.id + RLEWCompressor.RLE_PROPERTY_SUFFIX_WORDS_PER_ROW, String.valueOf(w));
         }
 
+        // add as resource (avoid duplicate)
+        bin = ((BinCustom) addInternalResource(binResource)).prepack();
+
+        // compute hash code
+        hc = bin.hashCode() ^ (w << 8) ^ (h << 16);
+	}
+
+	/**
+	 * fabri1983: tilemap delta frame, the data is the delta stream encoded by TilemapDeltaManager.
+	 * @param unpackedSize size in bytes of the whole tilemap
+	 */
+	public TilemapCustom(String id, byte[] delta, int w, int h, int unpackedSize, boolean addCompressionField) {
+		super(id);
+
+        this.w = w;
+        this.h = h;
+        this.addCompressionField = addCompressionField;
+
+        final BinCustom binResource = new BinCustom(id + "_data", delta, Compression.NONE, CompressionCustom.NONE)
+        		.preEncoded(CompressionCustom.TILEMAP_DELTA, unpackedSize);
+
+        // add as resource (avoid duplicate)
+        bin = ((BinCustom) addInternalResource(binResource)).prepack();
+
         // compute hash code
         hc = bin.hashCode() ^ (w << 8) ^ (h << 16);
 	}
@@ -0,0 +1,34 @@
+package sgdk.rescomp.tool;
+
+/**
+ * 68000 cycles of <code>tilemap_delta_apply()</code> (src/decomp/tilemap_delta.c) for a stream encoded by {@link TilemapDeltaManager}.</br>
+ * The stream is walked run by run adding the cycles of the loop the C code compiles to (move.w/cmp.w/beq per run header, lea for
+ * the run destination, and move.w (a0)+,(a1)+ with dbra per word), so keep it in sync with the C code. Cycles are the ones from
+ * the 68000 manual without wait states (ie: data in RAM/ROM). The C call to the function is included, the DMA of the tilemap isn't.
+ */
+public class TilemapDeltaDecodeCost {
+
+	// jsr abs.l
+	private static final int JSR = 20;
+	// move.l 4(sp),a0 | move.l 8(sp),a1
+	private static final int ENTRY = 16 + 16;
+	// rts
+	private static final int EXIT = 16;
+	// move.w (a0)+,d0 | cmp.w #-1,d0 | beq.s not taken | lea 0(a1,d0.w),a2 | move.w (a0)+,d1 | dbra expired | bra.s
+	private static final int RUN = 8 + 8 + 8 + 12 + 8 + 14 + 10;
+	// move.w (a0)+,(a2)+ | dbra taken
+	private static final int WORD = 12 + 10;
+	// move.w (a0)+,d0 | cmp.w #-1,d0 | beq.s taken
+	private static final int END = 8 + 8 + 10;
+
+	/**
+	 * @param packed output of {@link TilemapDeltaManager#encode(short[], short[], int, int)}
+	 * @param unpackedSize not used, the cost is given by the runs in the stream
+	 * @return 68000 cycles taken by <code>tilemap_delta_apply()</code>
+	 */
+	public static long estimateCycles (byte[] packed, int unpackedSize) {
+		return JSR + ENTRY + EXIT + END + (long) RUN * TilemapDeltaManager.countRuns(packed)
+				+ (long) WORD * TilemapDeltaManager.countWords(packed);
+	}
+
+}
@@ -0,0 +1,184 @@
+package sgdk.rescomp.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import sgdk.rescomp.type.ToggleMapTileBaseIndex;
+
+/**
+ * Encodes the tilemap of every frame as the cells that changed against the tilemap previously decoded in the same tilemap buffer.</br>
+ * The video player loads the frames alternating 2 frame buffers (see {@link ToggleMapTileBaseIndex}) and keeps one tilemap buffer
+ * per frame buffer, so every frame is diffed against the frame loaded 2 frames before: the one using the same base tile index.</br>
+ * Stream format, big endian words as read by <code>tilemap_delta_apply()</code> (src/decomp/tilemap_delta.c):
+ * <pre>
+ *   u16 offset  byte offset of the run in the tilemap: (row * width + col) * 2. END_OF_STREAM ends the stream
+ *   u16 count   words of the run minus 1 (dbra counter)
+ *   u16 words[count + 1]
+ * </pre>
+ * A run never crosses a row. Runs of the same row separated by up to {@link #MAX_MERGED_GAP} unchanged cells are merged, since
+ * copying the unchanged cells again costs less than a new run. The offset already holds row and column so the player doesn't
+ * multiply, and the extended width columns never change so they are never in a run.</br>
+ * The first frame of every buffer, and the frames whose delta isn't smaller than the tilemap, are key frames: they keep the
+ * tilemap compression and decode the whole tilemap.</br>
+ * Frames must be created in playing order, which is the order of the .res file, and the player can't skip frames.
+ */
+public class TilemapDeltaManager {
+
+	public static final int END_OF_STREAM = 0xFFFF;
+	// 3 unchanged cells cost 6 bytes copied again against the 4 bytes of a new run header
+	public static final int MAX_MERGED_GAP = 2;
+
+	public static class Stats {
+		public int deltaFrames;
+		public int keyFrames;
+		public long runs;
+		public long changedWords;
+		// bytes of the delta streams and of the whole tilemaps they replace
+		public long deltaBytes;
+		public long tilemapBytes;
+	}
+
+	// tilemap decoded in every tilemap buffer
+	private static Map<String, short[]> tilemapsByBuffer = new ConcurrentHashMap<>();
+	private static Map<String, Stats> statsById = new LinkedHashMap<>();
+
+	/**
+	 * Diffs the tilemap against the one decoded previously in the same tilemap buffer and keeps it for the next frame.
+	 * @param tilemapDeltaId groups the frames of a video
+	 * @param bufferBaseIndex see {@link FrameTilesDeltaManager#getFrameBufferBaseIndex(ToggleMapTileBaseIndex, int, String)}
+	 * @param startTileY first row of the tilemap chunk in the frame, since every chunk is decoded in its own place
+	 * @param data tilemap as the player holds it in RAM, extended width included
+	 * @param w width in tiles of data
+	 * @param h height in tiles of data
+	 * @return the delta stream, or null if the frame is a key frame
+	 */
+	public static byte[] nextFrame (String tilemapDeltaId, int bufferBaseIndex, int startTileY, short[] data, int w, int h) {
+		if (data.length != w * h)
+			throw new IllegalArgumentException("ERROR: tilemap delta " + tilemapDeltaId + ": tilemap size " + data.length
+					+ " doesn't match " + w + "x" + h);
+
+		final String key = tilemapDeltaId + "@" + bufferBaseIndex + "#" + startTileY;
+		final short[] previous = tilemapsByBuffer.put(key, Arrays.copyOf(data, data.length));
+		final Stats stats = getOrAddStats(tilemapDeltaId);
+
+		byte[] delta = null;
+		if (previous != null) {
+			if (previous.length != data.length)
+				throw new RuntimeException("ERROR: tilemap delta " + tilemapDeltaId + ": tilemap size " + data.length
+						+ " differs from the previous frame in the same buffer " + previous.length);
+			delta = encode(previous, data, w, h);
+			// the whole tilemap is cheaper
+			if (delta.length >= data.length * 2)
+				delta = null;
+		}
+
+		synchronized (stats) {
+			if (delta == null)
+				++stats.keyFrames;
+			else {
+				++stats.deltaFrames;
+				stats.deltaBytes += delta.length;
+				stats.tilemapBytes += data.length * 2;
+				stats.runs += countRuns(delta);
+				stats.changedWords += countWords(delta);
+			}
+		}
+
+		return delta;
+	}
+
+	private static synchronized Stats getOrAddStats (String tilemapDeltaId) {
+		return statsById.computeIfAbsent(tilemapDeltaId, k -> new Stats());
+	}
+
+	/**
+	 * @return stats per tilemap delta id, in the order the ids were first used
+	 */
+	public static synchronized Map<String, Stats> getStats () {
+		return new LinkedHashMap<>(statsById);
+	}
+
+	/**
+	 * @param previous tilemap in the buffer
+	 * @param current tilemap to get in the buffer
+	 * @param w width in tiles
+	 * @param h height in tiles
+	 * @return runs turning previous into current
+	 */
+	public static byte[] encode (short[] previous, short[] current, int w, int h) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int row = 0; row < h; ++row) {
+			final int rowStart = row * w;
+			int col = 0;
+			while (col < w) {
+				if (previous[rowStart + col] == current[rowStart + col]) {
+					++col;
+					continue;
+				}
+
+				// run ends at the last changed cell not followed by more than MAX_MERGED_GAP unchanged cells
+				final int runStart = col;
+				int runEnd = col;
+				int gap = 0;
+				for (++col; col < w && gap <= MAX_MERGED_GAP; ++col) {
+					if (previous[rowStart + col] != current[rowStart + col]) {
+						runEnd = col;
+						gap = 0;
+					}
+					else
+						++gap;
+				}
+				col = runEnd + 1;
+
+				writeWord(out, (rowStart + runStart) * 2);
+				writeWord(out, runEnd - runStart);
+				for (int i = runStart; i <= runEnd; ++i)
+					writeWord(out, current[rowStart + i]);
+			}
+		}
+		writeWord(out, END_OF_STREAM);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Same than the player does: applies the runs over the tilemap.
+	 */
+	public static void apply (byte[] delta, short[] tilemap) {
+		int i = 0;
+		int offset;
+		while ((offset = readWord(delta, i)) != END_OF_STREAM) {
+			int dst = offset / 2;
+			int count = readWord(delta, i + 2) + 1;
+			i += 4;
+			for (int n = 0; n < count; ++n, i += 2)
+				tilemap[dst++] = (short) readWord(delta, i);
+		}
+	}
+
+	public static int countRuns (byte[] delta) {
+		int runs = 0;
+		for (int i = 0; readWord(delta, i) != END_OF_STREAM; i += 4 + (readWord(delta, i + 2) + 1) * 2)
+			++runs;
+		return runs;
+	}
+
+	public static int countWords (byte[] delta) {
+		int words = 0;
+		for (int i = 0; readWord(delta, i) != END_OF_STREAM; i += 4 + (readWord(delta, i + 2) + 1) * 2)
+			words += readWord(delta, i + 2) + 1;
+		return words;
+	}
+
+	private static void writeWord (ByteArrayOutputStream out, int value) {
+		out.write((value >> 8) & 0xFF);
+		out.write(value & 0xFF);
+	}
+
+	private static int readWord (byte[] data, int i) {
+		return ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+	}
+
+}
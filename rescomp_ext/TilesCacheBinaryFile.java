@@ -0,0 +1,205 @@
+package sgdk.rescomp.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import sgdk.rescomp.type.Tile;
+import sgdk.rescomp.type.TileFingerprint;
+
+/**
+ * Binary format of the tiles cache files, loaded with a memory mapped read only channel instead of parsing text.</br>
+ * The text files (<code>TILESCACHE_*.txt</code>: cache id in the first line and then 8 comma separated ints per tile) are still
+ * the format users write and edit. They are imported once and saved as a <code>.bin</code> file beside them, which is used
+ * while the text file keeps the same size and modification date.</br>
+ * Format, big endian:
+ * <pre>
+ * int    magic "TCCH"
+ * int    format version
+ * short  cache id length in bytes, followed by the cache id in UTF-8
+ * long   size of the text file it was imported from (-1 if none)
+ * long   modification date of the text file it was imported from (-1 if none)
+ * int    number of tiles
+ * per tile, 40 bytes: 8 ints of tile data, int hash code of its {@link TileFingerprint}, int flip to get it from the canonical data
+ *        (bit 0 = hflip, bit 1 = vflip)
+ * </pre>
+ */
+public class TilesCacheBinaryFile {
+
+	public static final String EXTENSION = ".bin";
+
+	// "TCCH"
+	private static final int MAGIC = 0x54434348;
+	// increment it when the format changes
+	private static final int FORMAT_VERSION = 1;
+	private static final int TILE_RECORD_INTS = 8 + 1 + 1;
+
+	/**
+	 * Tiles of a cache file along with the hash code of their fingerprints, so the lookup index doesn't calculate them again.
+	 */
+	public static class CacheTiles {
+		public final List<Tile> tiles;
+		public final int[] fingerprintHashes;
+
+		CacheTiles (List<Tile> tiles, int[] fingerprintHashes) {
+			this.tiles = tiles;
+			this.fingerprintHashes = fingerprintHashes;
+		}
+	}
+
+	public static boolean isBinaryFile (File file) {
+		if (!file.isFile() || file.length() < 4)
+			return false;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer bb = ByteBuffer.allocate(4);
+			channel.read(bb, 0);
+			bb.flip();
+			return bb.getInt() == MAGIC;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the binary file used for the text file: same name with {@link #EXTENSION} as extension
+	 */
+	public static File getBinaryFileFor (File textFile) {
+		String name = textFile.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(textFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+	}
+
+	/**
+	 * @param file
+	 * @param cacheId
+	 * @param sourceFile text file the binary file must have been imported from, or null to accept any binary file
+	 * @return the tiles, or null if the file doesn't exist, has another format version or cache id, or it's out of date
+	 * @throws IOException when the file is truncated
+	 */
+	public static CacheTiles load (File file, String cacheId, File sourceFile) throws IOException {
+		if (!file.isFile())
+			return null;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// the header is read into the heap, so a stale file isn't mapped while save() replaces it
+			if (channel.size() < 4 + 4 + 2)
+				return null;
+			ByteBuffer header = read(channel, 0, 4 + 4 + 2);
+			if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION)
+				return null;
+
+			final int idLength = header.getShort() & 0xFFFF;
+			header = read(channel, 4 + 4 + 2, idLength + 8 + 8 + 4);
+			byte[] idBytes = new byte[idLength];
+			header.get(idBytes);
+			if (!cacheId.equals(new String(idBytes, StandardCharsets.UTF_8)))
+				return null;
+
+			long sourceLength = header.getLong();
+			long sourceLastModified = header.getLong();
+			if (sourceFile != null && (sourceLength != sourceFile.length() || sourceLastModified != sourceFile.lastModified()))
+				return null;
+
+			final int numTiles = header.getInt();
+			final long recordsPos = 4 + 4 + 2 + idLength + 8 + 8 + 4;
+			final long recordsSize = channel.size() - recordsPos;
+			if (numTiles < 0 || recordsSize != (long) numTiles * TILE_RECORD_INTS * 4)
+				throw new IOException("expected " + numTiles + " tiles but the file has " + recordsSize + " bytes of tiles data");
+
+			// only the tiles of a current file are mapped. The mapping stays valid after the channel is closed, and is released
+			// once the buffer is collected
+			MappedByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, recordsPos, recordsSize);
+			IntBuffer records = bb.asIntBuffer();
+			List<Tile> tiles = new ArrayList<>(numTiles);
+			int[] fingerprintHashes = new int[numTiles];
+			for (int i = 0; i < numTiles; ++i) {
+				int[] data = new int[8];
+				records.get(data);
+				fingerprintHashes[i] = records.get();
+				// flip of the canonical data isn't needed to build the tile
+				records.get();
+				tiles.add(new Tile(data, 8, 0, false, 0));
+			}
+
+			return new CacheTiles(tiles, fingerprintHashes);
+		}
+	}
+
+	/**
+	 * @return a heap buffer with the bytes of the channel at the given position
+	 * @throws IOException when the file ends before
+	 */
+	private static ByteBuffer read (FileChannel channel, long pos, int bytes) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(bytes);
+		while (bb.hasRemaining()) {
+			if (channel.read(bb, pos + bb.position()) < 0)
+				throw new IOException("file ends at byte " + (pos + bb.position()) + " in the header");
+		}
+		bb.flip();
+		return bb;
+	}
+
+	/**
+	 * Writes the binary file, replacing any previous one only once it's fully written.
+	 * @param file
+	 * @param cacheId
+	 * @param tiles
+	 * @param sourceFile text file the tiles were imported from, or null
+	 * @return hash codes of the tiles fingerprints, in the same order than the tiles
+	 */
+	public static int[] save (File file, String cacheId, List<Tile> tiles, File sourceFile) throws IOException {
+		final int[] fingerprintHashes = new int[tiles.size()];
+		final byte[] idBytes = cacheId.getBytes(StandardCharsets.UTF_8);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(4 + 4 + 2 + idBytes.length + 8 + 8 + 4 + tiles.size() * TILE_RECORD_INTS * 4);
+		try (DataOutputStream dos = new DataOutputStream(baos)) {
+			dos.writeInt(MAGIC);
+			dos.writeInt(FORMAT_VERSION);
+			dos.writeShort(idBytes.length);
+			dos.write(idBytes);
+			dos.writeLong(sourceFile != null ? sourceFile.length() : -1);
+			dos.writeLong(sourceFile != null ? sourceFile.lastModified() : -1);
+			dos.writeInt(tiles.size());
+			for (int i = 0; i < tiles.size(); ++i) {
+				Tile tile = tiles.get(i);
+				TileFingerprint fingerprint = TileFingerprint.of(tile);
+				fingerprintHashes[i] = fingerprint.hashCode();
+				for (int row : tile.data)
+					dos.writeInt(row);
+				dos.writeInt(fingerprintHashes[i]);
+				dos.writeInt((fingerprint.hflip ? 1 : 0) | (fingerprint.vflip ? 2 : 0));
+			}
+		}
+
+		Path path = file.toPath();
+		Path tmpPath = new File(file.getPath() + "." + System.nanoTime() + ".tmp").toPath();
+		try {
+			Files.write(tmpPath, baos.toByteArray());
+			try {
+				Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(tmpPath);
+		}
+
+		return fingerprintHashes;
+	}
+
+}
@@ -0,0 +1,105 @@
+package sgdk.rescomp.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import sgdk.rescomp.Resource;
+import sgdk.rescomp.processor.TilesCacheBuilderProcessor;
+import sgdk.rescomp.tool.TilesCacheManager;
+import sgdk.rescomp.tool.TilesCacheSelector;
+
+public class TilesCacheBuilder extends Resource
+{
+    final int hc;
+    final String filename;
+    final boolean orderByUsage;
+
+    public TilesCacheBuilder(String id, String filename, boolean orderByUsage) throws Exception
+    {
+        super(id);
+
+        this.filename = filename;
+        this.orderByUsage = orderByUsage;
+
+        // compute hash code
+        hc = id.hashCode() ^ TilesCacheBuilder.class.getSimpleName().hashCode();
+    }
+
+	@Override
+    public int internalHashCode()
+    {
+        return hc;
+    }
+
+    @Override
+    public boolean internalEquals(Object obj)
+    {
+        if (obj instanceof TilesCacheBuilder)
+        {
+            final TilesCacheBuilder other = (TilesCacheBuilder) obj;
+            return hc == other.hc;
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<Bin> getInternalBinResources()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int shallowSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public int totalSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public void out(ByteArrayOutputStream outB, StringBuilder outS, StringBuilder outH)
+    {
+    	String tilesCacheId = this.id;
+
+    	// the frames resources counted their tiles when they were built, so the stats are complete here
+    	if (!TilesCacheManager.isStatsEnabledFor(tilesCacheId)) {
+    		System.out.println("[WARNING] " + TilesCacheBuilderProcessor.resId + ": stats for " + tilesCacheId 
+    				+ " aren't enabled. Cache file not written.");
+    		return;
+    	}
+
+    	TilesCacheSelector.Selection selection = TilesCacheSelector.select(tilesCacheId, orderByUsage);
+    	if (selection == null || selection.numFrames == 0) {
+    		System.out.println("[WARNING] " + TilesCacheBuilderProcessor.resId + ": no stats collected for " + tilesCacheId 
+    				+ ". Cache file not written.");
+    		return;
+    	}
+    	if (selection.capacity == 0) {
+    		System.out.println("[WARNING] " + TilesCacheBuilderProcessor.resId + ": " + tilesCacheId 
+    				+ " has no VRAM set (fixed ranges nor variable region). Cache file not written.");
+    		return;
+    	}
+    	if (selection.keptTiles > selection.capacity)
+    		System.out.println("[WARNING] " + TilesCacheBuilderProcessor.resId + ": " + tilesCacheId + " already has " 
+    				+ selection.keptTiles + " tiles for " + selection.capacity + " VRAM slots.");
+
+    	String fileDest = TilesCacheManager.saveCacheToFile(tilesCacheId, filename, selection.tiles);
+    	if (fileDest == null)
+    		return;
+
+		System.out.println(TilesCacheBuilderProcessor.resId + ": file saved " + fileDest);
+		System.out.println("  VRAM slots: " + selection.capacity + ". Tiles kept: " + selection.keptTiles + ". Tiles selected: " 
+				+ selection.getSelectedTiles() + " out of " + selection.candidates + " candidates.");
+		System.out.println("  Projected tiles removed from " + selection.numFrames + " frames tilesets: " + selection.removedTiles 
+				+ " (" + selection.getSavedBytes() + " bytes of tileset data and DMA, " 
+				+ (selection.getSavedBytes() / selection.numFrames) + " bytes per frame).");
+		System.out.println("  Net saved bytes after loading the selected tiles once: " + selection.getNetSavedBytes() 
+				+ ". Savings apply to the next build, which loads the new cache file.");
+    }
+}
@@ -0,0 +1,55 @@
+package sgdk.rescomp.processor;
+
+import sgdk.rescomp.Processor;
+import sgdk.rescomp.Resource;
+import sgdk.rescomp.resource.TilesCacheBuilder;
+
+public class TilesCacheBuilderProcessor implements Processor
+{
+	public static final String resId = "TILES_CACHE_BUILDER";
+
+	@Override
+    public String getId()
+    {
+        return resId;
+    }
+
+    @Override
+    public Resource execute(String[] fields) throws Exception
+    {
+        if (fields.length < 3)
+        {
+            System.out.println("Wrong " + resId + " definition");
+            System.out.println(resId + " tilesCacheId filename [order]");
+            System.out.println("  tilesCacheId      The same id you used in other resources to match this cache.");
+            System.out.println("  filename          Cache file to write with the selected tiles. Relative to res folder.");
+            System.out.println("                    Usually the same file than in " + TilesCacheLoaderProcessor.resId + ", used by the next build.");
+            System.out.println("  order             USAGE (default): all the tiles ordered by the number of frames using them, so the most used ones");
+            System.out.println("                    go to the VRAM regions loaded first.");
+            System.out.println("                    FILE: tiles already in the cache keep their order and the new ones go after them.");
+            System.out.println("  Tiles are chosen from the stats enabled with " + TilesCacheStatsEnablerProcessor.resId 
+            		+ " to fill the cache VRAM set in " + TilesCacheLoaderProcessor.resId + ".");
+            System.out.println("  Declare it after the movie frames resources.");
+            return null;
+        }
+
+        // get the tilesCacheId as the resource id
+        String tilesCacheId = fields[1].toUpperCase();
+        if (tilesCacheId == null || tilesCacheId.isEmpty() || tilesCacheId.isBlank())
+        	throw new IllegalArgumentException("tilesCacheId is invalid");
+
+        String filename = fields[2];
+        if (filename == null || filename.isBlank())
+        	throw new IllegalArgumentException("filename is invalid");
+
+        boolean orderByUsage = true;
+        if (fields.length >= 4) {
+        	String order = fields[3].toUpperCase();
+        	if (!"USAGE".equals(order) && !"FILE".equals(order))
+        		throw new IllegalArgumentException("order is invalid");
+        	orderByUsage = "USAGE".equals(order);
+        }
+
+        return new TilesCacheBuilder(tilesCacheId, filename, orderByUsage);
+    }
+}
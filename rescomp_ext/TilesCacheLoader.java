@@ -1,6 +1,7 @@
 package sgdk.rescomp.resource;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -9,6 +10,7 @@ import java.util.Map.Entry;
 import sgdk.rescomp.Resource;
 import sgdk.rescomp.tool.TilesCacheManager;
 import sgdk.rescomp.tool.Util;
+import sgdk.rescomp.tool.VramRegionAllocator;
 import sgdk.rescomp.type.Basics.Compression;
 import sgdk.rescomp.type.CompressionCustom;
 import sgdk.rescomp.type.Tile;
@@ -19,12 +21,15 @@ public class TilesCacheLoader extends Resource
 	final List<Tile> cachedTiles;
 	final String originalCacheId_keepCase;
 
-	// binary data block (tiles)
+	// binary data block (tiles). Null when split per VRAM region
 	public final BinCustom bin;
+	// fabri1983: binary data block per VRAM region, in the order the regions are filled. Null for the regions without tiles
+	public final BinCustom[] regionBins;
+	final int[] regionNumTiles;
 
     public TilesCacheLoader(String id, String originalCacheId_keepCase, int cacheStartIndexInVRAM_var, int cacheTilesNum_var, 
     		List<Entry<Integer,Integer>> cacheRangesInVRAM_fixed, String filename, boolean enable, Compression compression, 
-    		CompressionCustom compressionCustom) throws Exception
+    		CompressionCustom compressionCustom, boolean splitPerRegion) throws Exception
     {
         super(id);
 
@@ -39,25 +44,53 @@ public class TilesCacheLoader extends Resource
         else
         	cachedTiles = Collections.emptyList();
 
+        if (splitPerRegion) {
+        	// fabri1983: every region gets its own block, so the player unpacks and loads each one with a single DMA
+        	VramRegionAllocator vramRegions = TilesCacheManager.getVramRegions(id);
+        	regionBins = new BinCustom[vramRegions.getNumRegions()];
+        	regionNumTiles = new int[vramRegions.getNumRegions()];
+        	int hash = 0;
+        	int firstTile = 0;
+        	for (int r = 0; r < regionBins.length; ++r) {
+        		regionNumTiles[r] = Math.max(0, Math.min(vramRegions.getRegionLength(r), cachedTiles.size() - firstTile));
+        		if (regionNumTiles[r] > 0) {
+        			regionBins[r] = buildBin(id + "_region" + r + "_data", cachedTiles.subList(firstTile, firstTile + regionNumTiles[r]), 
+        					compression, compressionCustom);
+        			hash = hash * 31 + regionBins[r].hashCode();
+        		}
+        		firstTile += regionNumTiles[r];
+        	}
+        	bin = null;
+        	// compute hash code
+        	hc = hash ^ cachedTiles.size();
+        }
+        else {
+        	regionBins = new BinCustom[0];
+        	regionNumTiles = new int[0];
+        	bin = buildBin(id + "_data", cachedTiles, compression, compressionCustom);
+        	// compute hash code
+        	hc = bin.hashCode();
+        }
+    }
+
+    private BinCustom buildBin(String binId, List<Tile> tiles, Compression compression, CompressionCustom compressionCustom)
+    {
         // build the binary bloc
-        final int[] data = new int[cachedTiles.size() * 8];
+        final int[] data = new int[tiles.size() * 8];
 
 		int offset = 0;
-		for (Tile t : cachedTiles) {
+		for (Tile t : tiles) {
 			System.arraycopy(t.data, 0, data, offset, 8);
 			offset += 8;
 		}
 
 		// build BIN (tiles data) with wanted compression
-		final BinCustom binResource = new BinCustom(id + "_data", data, compression, compressionCustom);
+		final BinCustom binResource = new BinCustom(binId, data, compression, compressionCustom);
 		// internal
 		binResource.global = false;
 
 		// add as resource (avoid duplicate)
-		bin = (BinCustom) addInternalResource(binResource);
-
-		// compute hash code
-		hc = bin.hashCode();
+		return ((BinCustom) addInternalResource(binResource)).prepack();
     }
 
 	@Override
@@ -81,19 +114,29 @@ public class TilesCacheLoader extends Resource
     @Override
     public List<Bin> getInternalBinResources()
     {
-    	return Arrays.asList(bin);
+    	if (bin != null)
+    		return Arrays.asList(bin);
+    	List<Bin> bins = new ArrayList<>(regionBins.length);
+    	for (BinCustom regionBin : regionBins)
+    		if (regionBin != null)
+    			bins.add(regionBin);
+    	return bins;
     }
 
     @Override
     public int shallowSize()
     {
-        return 2 + 2 + 4;
+    	// a TileSet structure, plus one per region when split
+        return (2 + 2 + 4) * (1 + regionBins.length);
     }
 
     @Override
     public int totalSize()
     {
-        return bin.totalSize() + shallowSize();
+    	int binsSize = 0;
+    	for (Bin b : getInternalBinResources())
+    		binsSize += b.totalSize();
+        return binsSize + shallowSize();
     }
 
     @Override
@@ -102,21 +145,34 @@ public class TilesCacheLoader extends Resource
         // can't store pointer so we just reset binary stream here (used for compression only)
         outB.reset();
 
+        if (bin == null) {
+        	// fabri1983: a TileSet per VRAM region, named <cacheId>_region<N>, in the order the regions are filled
+        	for (int r = 0; r < regionBins.length; ++r)
+        		outTileSet(outS, outH, originalCacheId_keepCase + "_region" + r, regionBins[r], regionNumTiles[r]);
+        	// the cache TileSet keeps the total number of tiles, its data is in the regions
+        	outTileSet(outS, outH, originalCacheId_keepCase, null, cachedTiles.size());
+        }
+        else
+        	outTileSet(outS, outH, originalCacheId_keepCase, bin, cachedTiles.size());
+    }
+
+    private void outTileSet(StringBuilder outS, StringBuilder outH, String name, BinCustom tilesBin, int numTiles)
+    {
         // output TileSet structure
-        Util.decl(outS, outH, "TileSet", originalCacheId_keepCase, 2, global);
+        Util.decl(outS, outH, "TileSet", name, 2, global);
         outH.append("\n");
 
         // set compression info (very important that binary data had already been exported at this point)
         int compOrdinal = 0;
-        if (bin.doneCompression != Compression.NONE)
-        	compOrdinal = bin.doneCompression.ordinal() - 1;
-        else if (bin.doneCompressionCustom != CompressionCustom.NONE)
-        	compOrdinal = bin.doneCompressionCustom.getDefineValue();
+        if (tilesBin != null && tilesBin.doneCompression != Compression.NONE)
+        	compOrdinal = tilesBin.doneCompression.ordinal() - 1;
+        else if (tilesBin != null && tilesBin.doneCompressionCustom != CompressionCustom.NONE)
+        	compOrdinal = tilesBin.doneCompressionCustom.getDefineValue();
 		outS.append("    dc.w    " + compOrdinal + "\n");
         // set number of tile
-        outS.append("    dc.w    " + cachedTiles.size() + "\n");
+        outS.append("    dc.w    " + numTiles + "\n");
         // set data pointer
-        outS.append("    dc.l    " + (cachedTiles.isEmpty() ? 0 : bin.id) + "\n"); // 0 is NULL
+        outS.append("    dc.l    " + (tilesBin == null || numTiles == 0 ? 0 : tilesBin.id) + "\n"); // 0 is NULL
         outS.append("\n");
     }
 }
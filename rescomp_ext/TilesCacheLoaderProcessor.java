@@ -33,7 +33,7 @@ public class TilesCacheLoaderProcessor implements Processor
         if (fields.length < 5)
         {
             System.out.println("Wrong " + resId + " definition");
-            System.out.println(resId + " tilesCacheId enable cacheStartIndexInVRAM_var cacheVarTilesNum cacheStartIndexInVRAM_fixed cacheFixedTilesNum filename [compression compressionCustom]");
+            System.out.println(resId + " tilesCacheId enable cacheStartIndexInVRAM_var cacheVarTilesNum cacheStartIndexInVRAM_fixed cacheFixedTilesNum filename [compression compressionCustom splitPerRegion]");
             System.out.println("  tilesCacheId                  The same id you used in other resources to match this cache.");
             System.out.println("  enable                        Enables or disables the use of this cache. TRUE or FALSE.");
             System.out.println("  cacheStartIndexInVRAM_var     Starting index of the tiles cache in VRAM variable region.");
@@ -41,7 +41,9 @@ public class TilesCacheLoaderProcessor implements Processor
             System.out.println("                                Use NULL or 0 to disable it.");
             System.out.println("  cacheRangesInVRAM_fixed       Comma separated values with the starting index in VRAM and number of tiles. Eg: 792-10,912-32.");
             System.out.println("                                Use NULL or 0-0 to disable it.");
-            System.out.println("  filename                      File containing the definition for cached tiles. Relative to res folder.");
+            System.out.println("                                Cached tiles fill the fixed ranges by starting index and then the variable region.");
+            System.out.println("                                No region can overlap another one nor TILES_CACHE_VRAM_RESERVED_RANGES (ext.resource.properties).");
+            System.out.println("  filename                      File containing the definition for cached tiles (text, or the .bin file imported from it). Relative to res folder.");
 			System.out.println("  compression                   Compression type. Accepted values:");
 			System.out.println("                                 -1 / BEST / AUTO = use best compression");
 			System.out.println("                                  0 / NONE        = no compression (default)");
@@ -50,6 +52,8 @@ public class TilesCacheLoaderProcessor implements Processor
 			System.out.println("  compressionCustom             Overrides the compression parameter. Accepted values:");
 			for (CompressionCustom cc : CompressionCustom.values())
 				System.out.println("                            " + cc.getValue());
+            System.out.println("  splitPerRegion                TRUE to output a TileSet per VRAM region (<tilesCacheId>_region<N>), so every region");
+            System.out.println("                                is unpacked and loaded with a single DMA. FALSE by default.");
             return null;
         }
 
@@ -78,8 +82,13 @@ public class TilesCacheLoaderProcessor implements Processor
         if (fields.length >= 9)
         	compressionCustom = CompressionCustom.from(fields[8]);
 
+        // fabri1983: one TileSet per VRAM region
+        boolean splitPerRegion = false;
+        if (fields.length >= 10)
+        	splitPerRegion = "TRUE".equals(fields[9].toUpperCase());
+
 		return new TilesCacheLoader(tilesCacheId, originalCacheId_keepCase, cacheStartIndexInVRAM_var, cacheTilesNum_var, cacheRangesInVRAM_fixed, 
-				filename, enable, compression, compressionCustom);
+				filename, enable, compression, compressionCustom, splitPerRegion);
     }
 
     public static List<Map.Entry<Integer, Integer>> parseCacheFixedPairs(String input) {
@@ -1,57 +1,67 @@
 package sgdk.rescomp.tool;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.AbstractMap;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Scanner;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.ToIntFunction;
 
-import sgdk.rescomp.type.Basics.TileEquality;
 import sgdk.rescomp.type.Tile;
 import sgdk.rescomp.type.TileCacheMatch;
+import sgdk.rescomp.type.TileFingerprint;
 
 public class TilesCacheManager {
 
 	private static String rescomp_ext_jar_path = new File(MdComp.class.getProtectionDomain().getCodeSource().getLocation().getPath())
 			.getParentFile().getAbsolutePath();
 
-	private static Map<String, List<Tile>> cachedTilesByCacheId = new HashMap<>();
+	// fabri1983: concurrent maps since the cache is also looked up from the worker threads of ImageStripsFramePipeline
+	private static Map<String, List<Tile>> cachedTilesByCacheId = new ConcurrentHashMap<>();
 
-	private static Map<String, Boolean> statsEnabledById = new HashMap<>();
+	private static Map<String, Boolean> statsEnabledById = new ConcurrentHashMap<>();
 	/**
-	 * Counts in how many resources, under the same tile cache id, a tile appears (not the total count of the tile in all resources).
+	 * Usage stats of the tiles per tile cache id: in how many resources a tile appears and its total count in all resources.
 	 */
-	private static Map<String, Map<Integer, AtomicInteger>> statsCacheResourcesPerTileByCacheId = new HashMap<>();
+	private static Map<String, TileStatsCounter> statsByCacheId = new ConcurrentHashMap<>();
 
 	/**
-	 * Counts how many times a tile appears along all the resources under the same tile cache id.
+	 * Counts in how many resources, under the same tile cache id, every cached tile is used. Indexed by position in the cache.
 	 */
-	private static Map<String, Map<Integer, AtomicInteger>> statsCacheTotalOccurrsByCacheId = new HashMap<>();
+	private static Map<String, AtomicIntegerArray> statsCachedTilesUsageByCacheId = new ConcurrentHashMap<>();
 
-	/*
-	 * This used only when collecting the stats.
-	 */
-	private static Map<String, Map<Integer, Tile>> tileByHashCodeByCacheId = new HashMap<>();
+	private static Map<String, Integer> minTilesetSizeForStatsByCacheId = new ConcurrentHashMap<>();
+
+	private static Map<String, Integer> cacheStartIndexInVRAM_var_ById = new ConcurrentHashMap<>();
+	private static Map<String, Integer> cacheTilesNum_var_ById = new ConcurrentHashMap<>();
+	private static Map<String, List<Entry<Integer,Integer>>> cacheRangesInVRAM_fixed_ById = new ConcurrentHashMap<>();
 
-	private static Map<String, Integer> minTilesetSizeForStatsByCacheId = new HashMap<>();
+	/**
+	 * Lookup index per cache id. Built once when the cache is loaded (or lazily after the VRAM settings change) 
+	 * so getCachedTile() doesn't need to scan the whole cache for every tile of every frame.
+	 */
+	private static Map<String, CacheIndex> cacheIndexByCacheId = new ConcurrentHashMap<>();
 
-	private static Map<String, Integer> cacheStartIndexInVRAM_var_ById = new HashMap<>();
-	private static Map<String, Integer> cacheTilesNum_var_ById = new HashMap<>();
-	private static Map<String, List<Entry<Integer,Integer>>> cacheRangesInVRAM_fixed_ById = new HashMap<>();
+	/**
+	 * Hash codes of the fingerprints of the cached tiles when loaded from a binary cache file.
+	 */
+	private static Map<String, int[]> fingerprintHashesByCacheId = new ConcurrentHashMap<>();
 
 	public static void setMinTilesetSizeForStatsFor (String cacheId, int minTilesetSize) {
 		minTilesetSizeForStatsByCacheId.put(cacheId, Integer.valueOf(minTilesetSize));
@@ -66,14 +76,27 @@ public class TilesCacheManager {
 
 	public static void setStartIndexInVRAM_var (String cacheId, int cacheStartIndexInVRAM_1) {
 		cacheStartIndexInVRAM_var_ById.put(cacheId, Integer.valueOf(cacheStartIndexInVRAM_1));
+		// VRAM slots need to be recalculated
+		cacheIndexByCacheId.remove(cacheId);
+		ImageStripsFramePipeline.discardPending();
 	}
 	
 	public static void setCacheTilesNum_var (String cacheId, int cacheVarTilesNum) {
 		cacheTilesNum_var_ById.put(cacheId, Integer.valueOf(cacheVarTilesNum));
+		// VRAM slots need to be recalculated
+		cacheIndexByCacheId.remove(cacheId);
+		ImageStripsFramePipeline.discardPending();
 	}
 
 	public static void setRangesInVRAM_fixed (String cacheId, List<Entry<Integer,Integer>> cacheRangesInVRAM_fixed) {
-		cacheRangesInVRAM_fixed_ById.put(cacheId, cacheRangesInVRAM_fixed);
+		// concurrent map doesn't accept null values, and a missing entry is handled the same than a null one
+		if (cacheRangesInVRAM_fixed == null)
+			cacheRangesInVRAM_fixed_ById.remove(cacheId);
+		else
+			cacheRangesInVRAM_fixed_ById.put(cacheId, cacheRangesInVRAM_fixed);
+		// VRAM slots need to be recalculated
+		cacheIndexByCacheId.remove(cacheId);
+		ImageStripsFramePipeline.discardPending();
 	}
 
 	public static int getStartIndexInVRAM_var (String cacheId) {
@@ -114,17 +137,56 @@ public class TilesCacheManager {
 		return lastEntry.getKey() + lastEntry.getValue() - 1;
 	}
 
+	/**
+	 * Loads the tiles of the cache from a text file or from a binary file (see {@link TilesCacheBinaryFile}).
+	 * A text file is parsed only the first time, or after it's modified: its tiles are saved in the binary file beside it.
+	 */
 	public static List<Tile> loadCacheFromFile (String cacheId, String filename) {
 		boolean isAbsolutePath = false; // use this variable for debugging purpose
 		String location = isAbsolutePath ? "" : rescomp_ext_jar_path;
 		File file = new File(location + File.separator + filename);
 
-		try (Scanner scanner = new Scanner(file)) {
-			if (!file.exists()) {
-				System.out.println("ERROR! Couldn't load file " + filename);
-				return Collections.emptyList();
+		if (!file.exists()) {
+			System.out.println("ERROR! Couldn't load file " + filename);
+			return Collections.emptyList();
+		}
+
+		// fabri1983: binary files are memory mapped, and text files are imported into a binary file used by the next runs
+		final boolean isBinaryFile = TilesCacheBinaryFile.isBinaryFile(file);
+		final File binaryFile = isBinaryFile ? file : TilesCacheBinaryFile.getBinaryFileFor(file);
+		try {
+			TilesCacheBinaryFile.CacheTiles cacheTiles = TilesCacheBinaryFile.load(binaryFile, cacheId, isBinaryFile ? null : file);
+			if (cacheTiles != null) {
+				System.out.println(cacheId + ": Loaded tiles: " + cacheTiles.tiles.size() + " (from " + binaryFile.getName() + ")");
+				setCacheTiles(cacheId, cacheTiles.tiles, cacheTiles.fingerprintHashes);
+				return cacheTiles.tiles;
 			}
+		} catch (IOException e) {
+			System.out.println("[WARNING] " + TilesCacheManager.class.getSimpleName() + ": couldn't load " + binaryFile + ". " + e.getMessage());
+		}
 
+		if (isBinaryFile) {
+			System.out.println("ERROR! " + TilesCacheManager.class.getSimpleName() + ": provided cacheId is different from cacheId in file " 
+					+ filename + " or its format version isn't supported");
+			return Collections.emptyList();
+		}
+
+		List<Tile> tiles = loadCacheFromTextFile(cacheId, file, filename);
+		if (tiles.isEmpty())
+			return tiles;
+
+		int[] fingerprintHashes = null;
+		try {
+			fingerprintHashes = TilesCacheBinaryFile.save(binaryFile, cacheId, tiles, file);
+		} catch (IOException e) {
+			System.out.println("[WARNING] " + TilesCacheManager.class.getSimpleName() + ": couldn't save " + binaryFile + ". " + e.getMessage());
+		}
+		setCacheTiles(cacheId, tiles, fingerprintHashes);
+		return tiles;
+	}
+
+	private static List<Tile> loadCacheFromTextFile (String cacheId, File file, String filename) {
+		try (Scanner scanner = new Scanner(file)) {
 			// Read the first line as the id
 			String id = null;
 			if (scanner.hasNextLine()) {
@@ -150,7 +212,6 @@ public class TilesCacheManager {
 			}
 
 			System.out.println(cacheId + ": Loaded tiles: " + tiles.size());
-			cachedTilesByCacheId.put(cacheId, tiles);
 			return tiles;
 
 		} catch (FileNotFoundException e) {
@@ -159,106 +220,105 @@ public class TilesCacheManager {
 		}
 	}
 
-	private static List<Map.Entry<Integer, Integer>> calculateGaps (List<Map.Entry<Integer, Integer>> rangesInVRAM_fixed) {
-		if (rangesInVRAM_fixed.isEmpty())
+	/**
+	 * Same than {@link #loadCacheFromFile(String, String)} but with the tiles already in memory (ie: synthetic caches used by the benchmarks).
+	 */
+	public static void setCacheTiles (String cacheId, List<Tile> tiles) {
+		setCacheTiles(cacheId, tiles, null);
+	}
+
+	/**
+	 * @param fingerprintHashes hash codes of the tiles fingerprints, as saved in the binary cache file. Null to calculate them
+	 */
+	private static void setCacheTiles (String cacheId, List<Tile> tiles, int[] fingerprintHashes) {
+		cachedTilesByCacheId.put(cacheId, tiles);
+		if (fingerprintHashes != null && fingerprintHashes.length == tiles.size())
+			fingerprintHashesByCacheId.put(cacheId, fingerprintHashes);
+		else
+			fingerprintHashesByCacheId.remove(cacheId);
+		cacheIndexByCacheId.put(cacheId, buildCacheIndex(cacheId, tiles));
+		// usage was counted for the previous tiles
+		statsCachedTilesUsageByCacheId.remove(cacheId);
+		ImageStripsFramePipeline.discardPending();
+	}
+
+	/**
+	 * @return tiles of the cache, or an empty list if the cache id is null or it has no tiles loaded
+	 */
+	public static List<Tile> getCacheTiles (String cacheId) {
+		List<Tile> tiles = cacheId == null ? null : cachedTilesByCacheId.get(cacheId);
+		if (tiles == null)
 			return Collections.emptyList();
+		return tiles;
+	}
 
-        List<Map.Entry<Integer, Integer>> result = new ArrayList<>(rangesInVRAM_fixed.size());
+	/**
+	 * @return VRAM regions of the cache, validated against each other and against the VRAM reserved by the video player
+	 */
+	public static VramRegionAllocator getVramRegions (String cacheId) {
+		return new VramRegionAllocator(cacheId, getRangesInVRAM_fixed(cacheId), getStartIndexInVRAM_var(cacheId), getCacheTilesNum_var(cacheId));
+	}
 
-        for (int i = 0; i < rangesInVRAM_fixed.size(); i++) {
-            Map.Entry<Integer, Integer> currentRange = rangesInVRAM_fixed.get(i);
-            // calculate the end index of the range
-            int endIndex = currentRange.getKey() + currentRange.getValue() - 1;
-            // calculate the gap between the end index and the next range's start
-            int gapToNextRange = 0;
-            if (i < rangesInVRAM_fixed.size() - 1) {
-                Map.Entry<Integer, Integer> nextRange = rangesInVRAM_fixed.get(i + 1);
-                gapToNextRange = nextRange.getKey() - endIndex;
-            }
+	/**
+	 * Builds the lookup index for the cached tiles: tile positions bucketed by their flip-canonical {@link TileFingerprint} and 
+	 * the VRAM regions giving the VRAM index of every position.
+	 */
+	private static CacheIndex buildCacheIndex (String cacheId, List<Tile> tiles) {
+		final VramRegionAllocator vramRegions = getVramRegions(cacheId);
+		if (tiles.size() > vramRegions.getCapacity())
+			System.out.println("[WARNING] " + TilesCacheManager.class.getSimpleName() + ": cache " + cacheId + " has " + tiles.size() 
+					+ " tiles but its VRAM regions fit " + vramRegions.getCapacity() + ". Using the exceeding tiles will fail.");
 
-            // Add the new entry to the result list
-            result.add(new AbstractMap.SimpleEntry<>(endIndex, gapToNextRange));
-        }
+		int[] fingerprintHashes = fingerprintHashesByCacheId.get(cacheId);
+		TileFingerprintIndex tilesIndex = fingerprintHashes != null ? new TileFingerprintIndex(tiles, fingerprintHashes) : new TileFingerprintIndex(tiles);
 
-        return result;
-    }
+		return new CacheIndex(tilesIndex, vramRegions);
+	}
+
+	private static CacheIndex getCacheIndex (String cacheId) {
+		// rebuilt when VRAM settings were changed after the cache was loaded. Built only once even if several threads ask for it
+		return cacheIndexByCacheId.computeIfAbsent(cacheId, id -> buildCacheIndex(id, cachedTilesByCacheId.get(id)));
+	}
 
 	/**
 	 * Check if the parameter tile exist in the cache. The search uses TileEquality to consider H/V flip cases.
 	 */
 	public static TileCacheMatch getCachedTile (String cacheId, Tile tile) {
-		if (!cachedTilesByCacheId.containsKey(cacheId))
+		if (cacheId == null || !cachedTilesByCacheId.containsKey(cacheId))
+			return null;
+		return getCachedTile(cacheId, tile, TileFingerprint.of(tile));
+	}
+
+	/**
+	 * Same than {@link #getCachedTile(String, Tile)} but using the already calculated fingerprint of the tile.
+	 */
+	public static TileCacheMatch getCachedTile (String cacheId, Tile tile, TileFingerprint fingerprint) {
+		if (cacheId == null || !cachedTilesByCacheId.containsKey(cacheId))
 			return null;
 
 		List<Tile> tiles = cachedTilesByCacheId.get(cacheId);
 		if (tiles == null || tiles.isEmpty())
 			return null;
 
-		final int startIndexInVRAM_var = getStartIndexInVRAM_var(cacheId);
-		final int cacheTilesNum_var = getCacheTilesNum_var(cacheId);
-		final int endIndexInVRAM_var = startIndexInVRAM_var + cacheTilesNum_var - 1;
-		final List<Entry<Integer,Integer>> rangesInVRAM_fixed = getRangesInVRAM_fixed(cacheId);
-		final int endIndexInVRAM_fixed = getCacheFixedEndIndex(cacheId);
-		
-		// Start assigning an index at the the beginning of fixed VRAM. If not fixed VRAM then use variable VRAM starting index
-		final int startIndexInVRAM = rangesInVRAM_fixed.isEmpty() ? startIndexInVRAM_var : rangesInVRAM_fixed.get(0).getKey();
-		// End index
-		final int endIndexInVRAM = rangesInVRAM_fixed.isEmpty() ? endIndexInVRAM_var : endIndexInVRAM_fixed;
-
-		// Only when a range of fixed VRAM is set, we need to use the ranges list to know the gaps the indexInCache has to add to it self
-		List<Entry<Integer,Integer>> rangesForGaps = calculateGaps(rangesInVRAM_fixed);
-
-		Tile tileFound = null;
-		int indexInCache = startIndexInVRAM;
-		// we have to search over all entries since the tile might be flipped.
-		for (Tile t : tiles) {
-			if (tile.getEquality(t) != TileEquality.NONE) {
-				tileFound = t;
-				break;
-			}
-			++indexInCache; // stepping forward in VRAM
-
-			// Ensure the stepping in VRAM is along the fixed VRAM regions 
-			if (!rangesForGaps.isEmpty()) {
-				for (int i=0; i < rangesForGaps.size(); ++i) {
-					Entry<Integer, Integer> range = rangesForGaps.get(i);
-					if (indexInCache > range.getKey()) {
-						// apply the gap so it continues into next range
-						indexInCache += range.getValue();
-						// remove the gap
-						rangesForGaps.remove(i);
-						break;
-					}
-				}
-			}
-			
-			// Once the rangesForGaps is empty it means we have not found the tile among the fixed VRAM indexes,
-			// so we continue normally without gaps into variable VRAM indexes.
-		}
+		final CacheIndex cacheIndex = getCacheIndex(cacheId);
 
-		if (tileFound == null)
+		// only the tiles sharing the fingerprint can be equal to the tile or to any of its flipped versions
+		int pos = cacheIndex.tilesIndex.indexOf(tile, fingerprint);
+		if (pos == -1)
 			return null;
 
-		// THE NEXT VALIDATES FOR THE SCENARIO WHEN ONLY ONE SETTING WAS SET WHETHER FIXED OR VAR VRAM CACHE.
-		// If indexInCache exceeds endIndexInVRAM_fixed it means we exhausted the fixed VRAM, 
-		// then we need to set indexInCache at variable VRAM startIndexInVRAM_var (if available).
-		if (indexInCache > endIndexInVRAM) {
-			// No fixed cache was set? Then we have exceeded the variable VRAM
-			if (rangesInVRAM_fixed.isEmpty())
-				throw new RuntimeException("indexInCache > endIndexInVRAM_var: " + indexInCache + " > " + endIndexInVRAM_var);
-			// Fixed cache was set and exhausted. Ensure we have variable VRAM to be used. If not then throw exception
-			else if (cacheTilesNum_var == 0)
-				throw new RuntimeException("Fixed VRAM for cache " + cacheId + " exhausted and there is no Variable VRAM to occupy.");
-
-			// At this point we have exhausted the fixed VRAM and we need to check if we haven't exhausted variable VRAM
-			final int exceeded = indexInCache - endIndexInVRAM;
-			indexInCache = startIndexInVRAM_var + exceeded - 1;
-			// Ensure indexInCache doesn't exceed variable VRAM
-			if (indexInCache > endIndexInVRAM_var)
-				throw new RuntimeException("indexInCache > endIndexInVRAM_var: " + indexInCache + " > " + endIndexInVRAM_var);
+		return new TileCacheMatch(cacheIndex.tilesIndex.get(pos), cacheIndex.vramRegions.getIndexInVRAM(pos));
+	}
+
+	private static class CacheIndex {
+
+		final TileFingerprintIndex tilesIndex;
+		final VramRegionAllocator vramRegions;
+
+		CacheIndex (TileFingerprintIndex tilesIndex, VramRegionAllocator vramRegions) {
+			this.tilesIndex = tilesIndex;
+			this.vramRegions = vramRegions;
 		}
-	
-		return new TileCacheMatch(tileFound, indexInCache);
 	}
 
 	public static void enableStatsFor (String cacheId) {
@@ -272,15 +332,7 @@ public class TilesCacheManager {
 	}
 
 	public static void createStatsCacheIfNotExist (String cacheId) {
-		if (!statsCacheTotalOccurrsByCacheId.containsKey(cacheId)) {
-			Map<Integer, AtomicInteger> occurrencesPerTile = new HashMap<>((int)(2048 / 0.75) + 1);
-			statsCacheTotalOccurrsByCacheId.put(cacheId, occurrencesPerTile);
-		}
-		
-		if (!statsCacheResourcesPerTileByCacheId.containsKey(cacheId)) {
-			Map<Integer, AtomicInteger> occurrencesPerTile = new HashMap<>((int)(2048 / 0.75) + 1);
-			statsCacheResourcesPerTileByCacheId.put(cacheId, occurrencesPerTile);
-		}
+		statsByCacheId.computeIfAbsent(cacheId, id -> new TileStatsCounter());
 	}
 
 	/**
@@ -289,35 +341,10 @@ public class TilesCacheManager {
 	 * @param tiles
 	 */
 	public static void countResourcesPerTile (String cacheId, List<Tile> tiles) {
-		if (cacheId == null)
-			return;
-		if (!statsCacheResourcesPerTileByCacheId.containsKey(cacheId))
+		TileStatsCounter stats = getStatsCounter(cacheId);
+		if (stats == null)
 			return;
-
-		Map<Integer, Tile> tileByHashCode = tileByHashCodeByCacheId.get(cacheId);
-		if (tileByHashCode == null) {
-			tileByHashCode = new HashMap<>();
-			tileByHashCodeByCacheId.put(cacheId, tileByHashCode);
-		}
-
-		Map<Integer, AtomicInteger> resourcesPerTile = statsCacheResourcesPerTileByCacheId.get(cacheId);
-		HashSet<Integer> alreadyProcessed = new HashSet<>((int)(tiles.size() / 0.75) + 1);
-		for (Tile tile : tiles) {
-			// we don't process the tile that is black because that's the first SGDK tile reserved in VRAM at address 0
-			if (tile.getPlainValue() == 0)
-				continue;
-			int key = tile.hashCode();//Arrays.hashCode(tile.data);
-			if (alreadyProcessed.contains(key))
-				continue;
-			if (!resourcesPerTile.containsKey(key))
-				resourcesPerTile.put(key, new AtomicInteger(1));
-			else {
-				AtomicInteger currentCount = resourcesPerTile.get(key);
-				currentCount.incrementAndGet();
-			}
-			alreadyProcessed.add(key);
-			tileByHashCode.put(tile.hashCode(), tile);
-		}
+		stats.countResource(tiles);
 	}
 
 	/**
@@ -326,108 +353,139 @@ public class TilesCacheManager {
 	 * @param tiles
 	 */
 	public static void countTotalTiles (String cacheId, List<Tile> tiles) {
-		if (cacheId == null)
-			return;
-		if (!statsCacheTotalOccurrsByCacheId.containsKey(cacheId))
+		TileStatsCounter stats = getStatsCounter(cacheId);
+		if (stats == null)
 			return;
+		stats.countOccurrences(tiles);
+	}
 
-		Map<Integer, Tile> tileByHashCode = tileByHashCodeByCacheId.get(cacheId);
-		if (tileByHashCode == null) {
-			tileByHashCode = new HashMap<>();
-			tileByHashCodeByCacheId.put(cacheId, tileByHashCode);
-		}
+	/**
+	 * Counts the resource once for every cached tile it uses (flipped or not). Cached tiles aren't in the tilesets, so their usage
+	 * is counted with a pass over the tiles of the image.
+	 * @param cacheId
+	 * @param image8bpp
+	 * @param w width in pixels
+	 * @param h height in pixels
+	 */
+	public static void countCachedTilesUsage (String cacheId, byte[] image8bpp, int w, int h) {
+		if (getStatsCounter(cacheId) == null)
+			return;
+		List<Tile> cachedTiles = cachedTilesByCacheId.get(cacheId);
+		if (cachedTiles == null || cachedTiles.isEmpty())
+			return;
 
-		Map<Integer, AtomicInteger> occurrencesPerTile = statsCacheTotalOccurrsByCacheId.get(cacheId);
-		for (Tile tile : tiles) {
-			// we don't process the tile that is black because that's the first tile SGDK reserves in VRAM at address 0
-			if (tile.getPlainValue() == 0)
-				continue;
-			int key = tile.hashCode();//Arrays.hashCode(tile.data);
-			if (!occurrencesPerTile.containsKey(key))
-				occurrencesPerTile.put(key, new AtomicInteger(1));
-			else {
-				AtomicInteger currentCount = occurrencesPerTile.get(key);
-				currentCount.incrementAndGet();
+		final TileFingerprintIndex tilesIndex = getCacheIndex(cacheId).tilesIndex;
+		final BitSet usedPositions = new BitSet(cachedTiles.size());
+		for (int y = 0; y < h; y += 8) {
+			for (int x = 0; x < w; x += 8) {
+				Tile tile = Tile.getTile(image8bpp, w, h, x, y, 8);
+				if (tile.getPlainValue() == 0)
+					continue;
+				int pos = tilesIndex.indexOf(tile);
+				if (pos != -1)
+					usedPositions.set(pos);
 			}
-			tileByHashCode.put(tile.hashCode(), tile);
 		}
+
+		AtomicIntegerArray usage = statsCachedTilesUsageByCacheId.computeIfAbsent(cacheId, id -> new AtomicIntegerArray(cachedTiles.size()));
+		for (int pos = usedPositions.nextSetBit(0); pos != -1; pos = usedPositions.nextSetBit(pos + 1))
+			usage.incrementAndGet(pos);
 	}
 
-	public static String getStats (String cacheId) {
-		if (!statsCacheResourcesPerTileByCacheId.containsKey(cacheId) && !statsCacheTotalOccurrsByCacheId.containsKey(cacheId))
-			return "WARNING! Stats Cache for id " + cacheId + " don't exist.";
+	/**
+	 * @return in how many resources the cached tile at the given position was used. 0 if the usage wasn't counted
+	 */
+	static int getCachedTileUsage (String cacheId, int pos) {
+		AtomicIntegerArray usage = statsCachedTilesUsageByCacheId.get(cacheId);
+		if (usage == null || pos >= usage.length())
+			return 0;
+		return usage.get(pos);
+	}
 
-		Map<Integer, AtomicInteger> resourcesPerTile = statsCacheResourcesPerTileByCacheId.get(cacheId);
-		Map<Integer, AtomicInteger> occurrencesPerTile = statsCacheTotalOccurrsByCacheId.get(cacheId);
-		Map<Integer, Tile> tileByHashCode = tileByHashCodeByCacheId.get(cacheId);
+	/**
+	 * @return the stats of the cache id, or null if they weren't created
+	 */
+	static TileStatsCounter getStatsCounter (String cacheId) {
+		if (cacheId == null)
+			return null;
+		return statsByCacheId.get(cacheId);
+	}
 
-		StringBuilder sb = new StringBuilder(50000); // 50k chars (bytes)
-		int topNusedTiles = ExtProperties.getInt(ExtProperties.TOP_N_USED_TILES);
+	public static String getStats (String cacheId) {
+		TileStatsCounter stats = getStatsCounter(cacheId);
+		if (stats == null)
+			return "WARNING! Stats Cache for id " + cacheId + " don't exist.";
 
-		List<Entry<Integer, AtomicInteger>> sortedTopNresourcesPerTile = resourcesPerTile.entrySet()
-                .stream()
-                .sorted((entry1, entry2) -> entry2.getValue().get() - entry1.getValue().get())
-                .limit(topNusedTiles)
-                .collect(Collectors.toList());
-		sb.append("##-----------------------------------------------------------------------------##").append(System.lineSeparator());
-		sb.append("##  [TOP ").append(sortedTopNresourcesPerTile.size()).append("] Tiles in Resources under cache id: ").append(cacheId).append(System.lineSeparator());
-		sb.append("##-----------------------------------------------------------------------------##").append(System.lineSeparator());
-		sb.append(String.format("%-12s %4s  %s", "hash", "#", "data")).append(System.lineSeparator());
-		for (Entry<Integer, AtomicInteger> entry : sortedTopNresourcesPerTile) {
-			String tileDataArrayStr = tileDataToStr(tileByHashCode.get(entry.getKey()));
-			String dataStr = String.format("%-12d %4d  %s", entry.getKey().intValue(), entry.getValue().intValue(), tileDataArrayStr);
-			sb.append(dataStr).append(System.lineSeparator());
+		StringWriter sw = new StringWriter(50000); // 50k chars (bytes)
+		try {
+			writeStats(cacheId, stats, sw);
+		} catch (IOException e) {
+			// a StringWriter doesn't throw it
 		}
+		return sw.toString();
+	}
 
-		List<Entry<Integer, AtomicInteger>> sortedTopNoccursPerTile = occurrencesPerTile.entrySet()
-                .stream()
-                .sorted((entry1, entry2) -> entry2.getValue().get() - entry1.getValue().get())
-                .limit(topNusedTiles)
-                .collect(Collectors.toList());
-		sb.append("##-----------------------------------------------------------------------------##").append(System.lineSeparator());
-		sb.append("##  [TOP ").append(sortedTopNoccursPerTile.size()).append("] Tiles total in all Resources under cache id: ").append(cacheId).append(System.lineSeparator());
-		sb.append("##-----------------------------------------------------------------------------##").append(System.lineSeparator());
-		sb.append(String.format("%-12s %4s  %s", "hash", "#", "data")).append(System.lineSeparator());
-		for (Entry<Integer, AtomicInteger> entry : sortedTopNoccursPerTile) {
-			String tileDataArrayStr = tileDataToStr(tileByHashCode.get(entry.getKey()));
-			String dataStr = String.format("%-12d %4d  %s", entry.getKey().intValue(), entry.getValue().intValue(), tileDataArrayStr);
-			sb.append(dataStr).append(System.lineSeparator());
-		}
+	private static void writeStats (String cacheId, TileStatsCounter stats, Writer w) throws IOException {
+		int topNusedTiles = ExtProperties.getInt(ExtProperties.TOP_N_USED_TILES);
+		writeTopTiles(w, stats.getTopByResources(topNusedTiles), TileStatsCounter.TileStats::getResources, 
+				"] Tiles in Resources under cache id: " + cacheId);
+		writeTopTiles(w, stats.getTopByOccurrences(topNusedTiles), TileStatsCounter.TileStats::getOccurrences, 
+				"] Tiles total in all Resources under cache id: " + cacheId);
+	}
 
-//		sb.append("##-----------------------------------------------------------------##").append(System.lineSeparator());
-//		sb.append("##  Tiles in Resources under cache id: ").append(cacheId).append(System.lineSeparator());
-//		sb.append("##-----------------------------------------------------------------##").append(System.lineSeparator());
-//		sb.append(String.format("%-12s %4s", "hash", "#")).append(System.lineSeparator());
-//		for (Entry<Integer, AtomicInteger> entry : resourcesPerTile.entrySet()) {
-//			String dataStr = String.format("%-12d %4d", entry.getKey().intValue(), entry.getValue().get());
-//			sb.append(dataStr).append(System.lineSeparator());
-//		}
-//
-//		sb.append("##-----------------------------------------------------------------##").append(System.lineSeparator());
-//		sb.append("##  Tiles total in all Resources under cache id: ").append(cacheId).append(System.lineSeparator());
-//		sb.append("##-----------------------------------------------------------------##").append(System.lineSeparator());
-//		sb.append(String.format("%-12s %4s", "hash", "#")).append(System.lineSeparator());
-//		for (Entry<Integer, AtomicInteger> entry : occurrencesPerTile.entrySet()) {
-//			String dataStr = String.format("%-12d %4d", entry.getKey().intValue(), entry.getValue().get());
-//			sb.append(dataStr).append(System.lineSeparator());
-//		}
+	private static void writeTopTiles (Writer w, List<TileStatsCounter.TileStats> top, ToIntFunction<TileStatsCounter.TileStats> count, 
+			String title) throws IOException {
+		final String separator = "##-----------------------------------------------------------------------------##";
+		final String nl = System.lineSeparator();
+		w.write(separator);
+		w.write(nl);
+		w.write("##  [TOP ");
+		w.write(String.valueOf(top.size()));
+		w.write(title);
+		w.write(nl);
+		w.write(separator);
+		w.write(nl);
+		writeStatsRow(w, "hash", "#", "data");
+		// the hash is the one of the flip-canonical fingerprint of the tile
+		for (TileStatsCounter.TileStats tileStats : top)
+			writeStatsRow(w, String.valueOf(tileStats.fingerprintHash), String.valueOf(count.applyAsInt(tileStats)), tileDataToStr(tileStats.tile));
+	}
 
-		return sb.toString();
+	/**
+	 * Same columns than <code>String.format("%-12s %4s  %s")</code> without parsing the format for every row.
+	 */
+	private static void writeStatsRow (Writer w, String hash, String count, String data) throws IOException {
+		w.write(hash);
+		for (int i = hash.length(); i < 12; ++i)
+			w.write(' ');
+		w.write(' ');
+		for (int i = count.length(); i < 4; ++i)
+			w.write(' ');
+		w.write(count);
+		w.write("  ");
+		w.write(data);
+		w.write(System.lineSeparator());
 	}
 
 	private static String tileDataToStr (Tile tile) {
-		return Arrays.stream(tile.data)
-		        .boxed()
-				.map(i -> String.valueOf(i))
-				.collect(Collectors.joining(","));
+		StringBuilder sb = new StringBuilder(96);
+		for (int i = 0; i < tile.data.length; ++i) {
+			if (i > 0)
+				sb.append(',');
+			sb.append(tile.data[i]);
+		}
+		return sb.toString();
 	}
 
 	public static String saveStatsToFile (String cacheId) {
 		String fileDest = rescomp_ext_jar_path + File.separator + cacheId + "_stats.txt";
-		deleteFile(fileDest);
-		String stats = getStats(cacheId);
-		try {
-			writeBytesToFile(stats.getBytes(), fileDest);
+		TileStatsCounter stats = getStatsCounter(cacheId);
+		// rows are streamed to the file instead of building the whole text first
+		try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileDest))) {
+			if (stats == null)
+				writer.write(getStats(cacheId));
+			else
+				writeStats(cacheId, stats, writer);
 			return fileDest;
 		}
 		catch (IOException e) {
@@ -436,6 +494,38 @@ public class TilesCacheManager {
 		}
 	}
 
+	/**
+	 * Writes the tiles in the text format read by {@link #loadCacheFromFile(String, String)}: the cache id and then the data of 
+	 * every tile. The binary file imported from a previous version of the file is outdated by the new file date and size.
+	 * @param filename relative to the location of rescomp_ext.jar
+	 * @return the file path, or null if it couldn't be saved
+	 */
+	public static String saveCacheToFile (String cacheId, String filename, List<Tile> tiles) {
+		Path path = Paths.get(rescomp_ext_jar_path + File.separator + filename);
+		Path tmpPath = Paths.get(path.toString() + "." + System.nanoTime() + ".tmp");
+
+		StringBuilder sb = new StringBuilder(cacheId.length() + 1 + tiles.size() * 90);
+		sb.append(cacheId).append('\n');
+		for (Tile tile : tiles)
+			sb.append(tileDataToStr(tile)).append('\n');
+
+		try {
+			writeBytesToFile(sb.toString().getBytes(), tmpPath.toString());
+			// never leave a half written cache file
+			try {
+				Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return path.toString();
+		}
+		catch (IOException e) {
+			System.out.println("ERROR! Couldn't save file " + path + ". " + e.getMessage());
+			deleteFile(tmpPath.toString());
+			return null;
+		}
+	}
+
 	private static void writeBytesToFile (byte[] data, String fileName) throws IOException {
 		try (FileOutputStream fos = new FileOutputStream(fileName)) {
 			fos.write(data);
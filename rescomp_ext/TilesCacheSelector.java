@@ -0,0 +1,141 @@
+package sgdk.rescomp.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import sgdk.rescomp.type.Tile;
+import sgdk.rescomp.type.TileFingerprint;
+
+/**
+ * Chooses the tiles of a tiles cache out of the stats collected with TILES_CACHE_STATS_ENABLER, instead of picking them by hand
+ * from the <code>_stats.txt</code> file.</br>
+ * Every cached tile is left out of every frame tileset having it, so it saves 32 bytes of tileset data and of DMA per occurrence,
+ * and costs one VRAM slot plus its 32 bytes loaded once along with the cache. Tiles and their flipped versions match the same
+ * cached tile, and the stats count them as one tile. Since every tile takes exactly one slot and the savings of the tiles don't
+ * depend on each other, taking the tiles with most occurrences until the cache VRAM (fixed ranges plus variable region) is full
+ * is the optimal selection.</br>
+ * Tiles already in the cache aren't in the stats (they were left out of the tilesets), so they are kept.</br>
+ * The cache file only holds the tile data, so the cached tiles are loaded with palette 0 and no priority, and the tilemaps only
+ * match them against tiles with that same palette and priority. Tiles with other palette or priority are never candidates.</br>
+ * The cache fills its VRAM regions in order (see {@link VramRegionAllocator}), so the tiles can be ordered by the number of frames
+ * using them: the most used tiles go to the first regions, which the video player loads first.
+ */
+public class TilesCacheSelector {
+
+	public static class Selection {
+		// tiles already in the cache followed by the selected ones
+		public final List<Tile> tiles;
+		public final int keptTiles;
+		public final int capacity;
+		public final int candidates;
+		// occurrences of the selected tiles along the frames tilesets, ie: tiles no longer in the tilesets
+		public final long removedTiles;
+		public final int numFrames;
+
+		Selection (List<Tile> tiles, int keptTiles, int capacity, int candidates, long removedTiles, int numFrames) {
+			this.tiles = tiles;
+			this.keptTiles = keptTiles;
+			this.capacity = capacity;
+			this.candidates = candidates;
+			this.removedTiles = removedTiles;
+			this.numFrames = numFrames;
+		}
+
+		public int getSelectedTiles () {
+			return tiles.size() - keptTiles;
+		}
+
+		/**
+		 * @return bytes of tileset data (and of DMA) the frames don't need anymore
+		 */
+		public long getSavedBytes () {
+			return removedTiles * 32;
+		}
+
+		/**
+		 * @return saved bytes minus the bytes of the selected tiles, which are loaded once along with the cache
+		 */
+		public long getNetSavedBytes () {
+			return getSavedBytes() - getSelectedTiles() * 32L;
+		}
+	}
+
+	/**
+	 * @param cacheId
+	 * @param orderByUsage true to order all the tiles, the ones already in the cache included, by the number of frames using them.
+	 * False to keep the tiles already in the cache first and in their order, followed by the selected ones
+	 * @return the tiles for the cache. Null if no stats were collected for the cache id
+	 */
+	public static Selection select (String cacheId, boolean orderByUsage) {
+		final TileStatsCounter stats = TilesCacheManager.getStatsCounter(cacheId);
+		if (stats == null)
+			return null;
+
+		final int capacity = TilesCacheManager.getVramRegions(cacheId).getCapacity();
+		final List<Tile> cachedTiles = TilesCacheManager.getCacheTiles(cacheId);
+		final TileFingerprintIndex cachedIndex = new TileFingerprintIndex(cachedTiles);
+
+		// stats already count the flipped versions of a tile as the same tile
+		final List<TileStatsCounter.TileStats> candidates = new ArrayList<>(stats.size());
+		for (TileStatsCounter.TileStats tileStats : stats.getAll()) {
+			// a cached tile only matches tiles with palette 0 and no priority, so their occurrences are the only ones it saves
+			if (tileStats.tile.pal != 0 || tileStats.tile.prio)
+				continue;
+			if (!cachedIndex.contains(tileStats.tile, TileFingerprint.of(tileStats.tile)))
+				candidates.add(tileStats);
+		}
+
+		// most occurrences first, then present in most frames. Tile data settles the ties so the file is the same on every run
+		candidates.sort((a, b) -> {
+			if (a.getOccurrences() != b.getOccurrences())
+				return Integer.compare(b.getOccurrences(), a.getOccurrences());
+			if (a.getResources() != b.getResources())
+				return Integer.compare(b.getResources(), a.getResources());
+			return Arrays.compare(a.tile.data, b.tile.data);
+		});
+
+		List<Tile> tiles = new ArrayList<>(Math.max(capacity, cachedTiles.size()));
+		// frames using every tile
+		int[] usage = new int[Math.max(capacity, cachedTiles.size())];
+		for (int i = 0; i < cachedTiles.size(); ++i) {
+			tiles.add(cachedTiles.get(i));
+			usage[i] = TilesCacheManager.getCachedTileUsage(cacheId, i);
+		}
+		long removedTiles = 0;
+		for (TileStatsCounter.TileStats candidate : candidates) {
+			if (tiles.size() >= capacity)
+				break;
+			// a tile used only once saves nothing, since the cache loads it anyway
+			if (candidate.getOccurrences() < 2)
+				break;
+			usage[tiles.size()] = candidate.getResources();
+			tiles.add(candidate.tile);
+			removedTiles += candidate.getOccurrences();
+		}
+
+		if (orderByUsage)
+			tiles = orderByUsage(tiles, usage);
+
+		return new Selection(Collections.unmodifiableList(tiles), cachedTiles.size(), capacity, candidates.size(), removedTiles,
+				stats.getNumResources());
+	}
+
+	/**
+	 * @return the tiles from the most used to the least used one. Ties keep their order
+	 */
+	private static List<Tile> orderByUsage (List<Tile> tiles, int[] usage) {
+		Integer[] order = new Integer[tiles.size()];
+		for (int i = 0; i < order.length; ++i)
+			order[i] = Integer.valueOf(i);
+		// stable sort
+		Arrays.sort(order, (a, b) -> Integer.compare(usage[b.intValue()], usage[a.intValue()]));
+
+		List<Tile> result = new ArrayList<>(tiles.size());
+		for (Integer i : order)
+			result.add(tiles.get(i.intValue()));
+		return result;
+	}
+
+}
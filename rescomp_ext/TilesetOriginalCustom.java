@@ -7,8 +7,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -16,6 +14,8 @@ import java.util.regex.Pattern;
 import sgdk.rescomp.Resource;
 import sgdk.rescomp.tool.CommonTilesRangeManager;
 import sgdk.rescomp.tool.ImageUtilFast;
+import sgdk.rescomp.tool.IntIndexTable;
+import sgdk.rescomp.tool.TileFingerprintIndex;
 import sgdk.rescomp.tool.TilesCacheManager;
 import sgdk.rescomp.tool.Util;
 import sgdk.rescomp.type.Basics.Compression;
@@ -27,6 +27,7 @@ import sgdk.rescomp.type.CompressionCustom;
 import sgdk.rescomp.type.CustomDataTypes;
 import sgdk.rescomp.type.Tile;
 import sgdk.rescomp.type.TileCacheMatch;
+import sgdk.rescomp.type.TileFingerprint;
 import sgdk.tool.ArrayUtil;
 import sgdk.tool.FileUtil;
 import sgdk.tool.ImageUtil;
@@ -93,8 +94,9 @@ public class TilesetOriginalCustom extends Resource
 
     // internals
     final boolean isDuplicate;
-    final private java.util.Map<Tile, Integer> tileIndexesMap;
-    final private java.util.Map<Integer, List<Tile>> tileByHashcodeMap;
+    // fabri1983: tile positions in tiles list chained by Tile.hashCode() (same hash code for a tile and its flipped versions).
+    // Temporary tilesets give it back to the thread's pool once built, and it's rebuilt on demand if used afterwards.
+    private IntIndexTable tileIndexesTable;
 
     public TilesetOriginalCustom(String id, byte[] image8bpp, int imageWidth, int imageHeight, int startTileX, int startTileY, int widthTile, int heightTile,
             TileOptimization opt, Compression compression, CompressionCustom compressionCustom, boolean addBlank, boolean temp, TileOrdering order, 
@@ -105,12 +107,11 @@ public class TilesetOriginalCustom extends Resource
         boolean hasBlank = false;
 
         tiles = new ArrayList<>();
-        tileIndexesMap = new HashMap<>();
-        tileByHashcodeMap = new HashMap<>();
+        tileIndexesTable = temp ? IntIndexTable.acquire() : new IntIndexTable();
         this.addCompressionField = addCompressionField;
 
         // fabri1983:
-        List<Tile> commonTiles = Collections.emptyList();
+        TileFingerprintIndex commonTiles = null;
         List<CommonTilesRange> commonTilesRanges = CommonTilesRangeManager.getFromResId(commonTilesRangeId);
         if (!commonTilesRanges.isEmpty()) {
         	Matcher baseFileNameMatcher = imageNameStripsFromResIdPattern.matcher(id);
@@ -118,8 +119,8 @@ public class TilesetOriginalCustom extends Resource
 				int imageNum = Integer.parseInt(baseFileNameMatcher.group(1));
 				CommonTilesRange commonTileObj = CommonTilesRangeManager.findRangeForImageNum(commonTilesRanges, imageNum);
 				if (commonTileObj != null) {
-					// Get the list of common tiles for the current range
-					commonTiles = commonTileObj.getTiles();
+					// Get the common tiles for the current range
+					commonTiles = CommonTilesRangeManager.getTilesIndex(commonTileObj);
 				}
 			}
 			else {
@@ -146,26 +147,17 @@ public class TilesetOriginalCustom extends Resource
                     if (tile.getPlainValue() == 0)
                     	continue;
 
-                    // fabri1983:
-                    TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile);
+                    // fabri1983: calculated once and used for the cache and the common tiles lookups
+                    final TileFingerprint fingerprint = TileFingerprint.of(tile);
+                    TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile, fingerprint);
                 	// found the cached tile? then continue with next one
                 	if (match != null)
                 		continue;
  
                 	// fabri1983:
                 	// Test if current tile is one of the common tiles in current range 
-                	if (!commonTiles.isEmpty()) {
-                        // Search for the reference tile in the common tiles list
-                		boolean commonTileFoundMatches = false;
-                        for (Tile commonTile : commonTiles) {
-                            if (tile.getEquality(commonTile) != TileEquality.NONE) {
-                                commonTileFoundMatches = true;
-                                break;
-                            }
-                        }
-                        if (commonTileFoundMatches)
-                        	continue;
-                	}
+                	if (commonTiles != null && commonTiles.contains(tile, fingerprint))
+                		continue;
 
             		// not found in the current list of tiles --> add it
                     if (index == -1)
@@ -191,26 +183,17 @@ public class TilesetOriginalCustom extends Resource
                     if (tile.getPlainValue() == 0)
                     	continue;
 
-                    // fabri1983:
-                    TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile);
+                    // fabri1983: calculated once and used for the cache and the common tiles lookups
+                    final TileFingerprint fingerprint = TileFingerprint.of(tile);
+                    TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile, fingerprint);
                 	// found the cached tile? then continue with next one
                 	if (match != null)
                 		continue;
 
                 	// fabri1983:
                 	// Test if current tile is one of the common tiles in current range
-                	if (!commonTiles.isEmpty()) {
-                        // Search for the reference tile in the common tiles list
-                		boolean commonTileFound = false;
-                        for (Tile commonTile : commonTiles) {
-                            if (tile.getEquality(commonTile) != TileEquality.NONE) {
-                            	commonTileFound = true;
-                                break;
-                            }
-                        }
-                        if (commonTileFound)
-                        	continue;
-                	}
+                	if (commonTiles != null && commonTiles.contains(tile, fingerprint))
+                		continue;
 
             		// not found in the current list of tiles --> add it
                     if (index == -1)
@@ -253,14 +236,21 @@ public class TilesetOriginalCustom extends Resource
             // keep track of duplicate bin resource here
             isDuplicate = findResource(binResource) != null;
             // add as resource (avoid duplicate)
-            bin = (BinCustom) addInternalResource(binResource);
+            bin = ((BinCustom) addInternalResource(binResource)).prepack();
         }
 
         // compute hash code
         hc = bin.hashCode();
+
+        // fabri1983: temporary tileset is only used for its tiles list
+        if (temp)
+        {
+            IntIndexTable.release(tileIndexesTable);
+            tileIndexesTable = null;
+        }
     }
 
-    public TilesetOriginalCustom(String id, List<Tile> tilesSource, TileOptimization opt, Compression compression, CompressionCustom compressionCustom, 
+    public TilesetOriginalCustom(String id, Iterable<Tile> tilesSource, TileOptimization opt, Compression compression, CompressionCustom compressionCustom, 
     		boolean addBlank, boolean temp, TileOrdering order, String tilesCacheId, boolean addCompressionField, String commonTilesRangeId)
     {
         super(id);
@@ -268,12 +258,11 @@ public class TilesetOriginalCustom extends Resource
         boolean hasBlank = false;
 
         tiles = new ArrayList<>();
-        tileIndexesMap = new HashMap<>();
-        tileByHashcodeMap = new HashMap<>();
+        tileIndexesTable = temp ? IntIndexTable.acquire() : new IntIndexTable();
         this.addCompressionField = addCompressionField;
 
         // fabri1983:
-        List<Tile> commonTiles = Collections.emptyList();
+        TileFingerprintIndex commonTiles = null;
         List<CommonTilesRange> commonTilesRanges = CommonTilesRangeManager.getFromResId(commonTilesRangeId);
         if (!commonTilesRanges.isEmpty()) {
         	Matcher baseFileNameMatcher = imageNameStripsFromResIdPattern.matcher(id);
@@ -281,8 +270,8 @@ public class TilesetOriginalCustom extends Resource
 				int imageNum = Integer.parseInt(baseFileNameMatcher.group(1));
 				CommonTilesRange commonTileObj = CommonTilesRangeManager.findRangeForImageNum(commonTilesRanges, imageNum);
 				if (commonTileObj != null) {
-					// Get the list of common tiles for the current range
-					commonTiles = commonTileObj.getTiles();
+					// Get the common tiles for the current range
+					commonTiles = CommonTilesRangeManager.getTilesIndex(commonTileObj);
 				}
 			}
 			else {
@@ -302,26 +291,17 @@ public class TilesetOriginalCustom extends Resource
             if (tile.getPlainValue() == 0)
             	continue;
 
-            // fabri1983:
-            TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile);
+            // fabri1983: calculated once and used for the cache and the common tiles lookups
+            final TileFingerprint fingerprint = TileFingerprint.of(tile);
+            TileCacheMatch match = TilesCacheManager.getCachedTile(tilesCacheId, tile, fingerprint);
         	// found the cached tile? then continue with next one
         	if (match != null)
         		continue;
 
         	// fabri1983:
         	// Test if current tile is one of the common tiles in current range
-        	if (!commonTiles.isEmpty()) {
-                // Search for the reference tile in the common tiles list
-        		boolean commonTileFound = false;
-                for (Tile commonTile : commonTiles) {
-                    if (tile.getEquality(commonTile) != TileEquality.NONE) {
-                    	commonTileFound = true;
-                        break;
-                    }
-                }
-                if (commonTileFound)
-                	continue;
-        	}
+        	if (commonTiles != null && commonTiles.contains(tile, fingerprint))
+        		continue;
 
     		// not found in the current list of tiles --> add it
             if (index == -1)
@@ -362,11 +342,18 @@ public class TilesetOriginalCustom extends Resource
             // keep track of duplicate bin resource here
             isDuplicate = findResource(binResource) != null;
             // add as resource (avoid duplicate)
-            bin = (BinCustom) addInternalResource(binResource);
+            bin = ((BinCustom) addInternalResource(binResource)).prepack();
         }
 
         // compute hash code
         hc = bin.hashCode();
+
+        // fabri1983: temporary tileset is only used for its tiles list
+        if (temp)
+        {
+            IntIndexTable.release(tileIndexesTable);
+            tileIndexesTable = null;
+        }
     }
 
     public int getNumTile()
@@ -393,20 +380,36 @@ public class TilesetOriginalCustom extends Resource
 
     private void addInternal(Tile tile)
     {
-        // better to keep first index if duplicated (should not be really useful)..
-        // if (!tileIndexesMap.containsKey(tile))
-        tileIndexesMap.put(tile, Integer.valueOf(tiles.size()));
+        getTileIndexesTable().add(tile.hashCode(), tiles.size());
+    }
 
-        final Integer hashKey = Integer.valueOf(tile.hashCode());
-        List<Tile> hashTiles = tileByHashcodeMap.get(hashKey);
+    private IntIndexTable getTileIndexesTable()
+    {
+        if (tileIndexesTable == null)
+        {
+            tileIndexesTable = new IntIndexTable(tiles.size());
+            for (int i = 0; i < tiles.size(); i++)
+                tileIndexesTable.add(tiles.get(i).hashCode(), i);
+        }
 
-        if (hashTiles == null)
+        return tileIndexesTable;
+    }
+
+    /**
+     * Index of the last added tile equal to the parameter tile, or -1 if none.
+     */
+    private int getExactTileIndex(IntIndexTable table, Tile tile)
+    {
+        int result = -1;
+        // keep last index if duplicated, as the previous Map<Tile,Integer> did (should not be really useful)..
+        for (int e = table.first(tile.hashCode()); e != -1; e = table.next(e))
         {
-            hashTiles = new ArrayList<>();
-            tileByHashcodeMap.put(hashKey, hashTiles);
+            final int ind = table.value(e);
+            if (tiles.get(ind).equals(tile))
+                result = ind;
         }
 
-        hashTiles.add(tile);
+        return result;
     }
 
     public int getTileIndex(Tile tile, TileOptimization opt)
@@ -415,28 +418,26 @@ public class TilesetOriginalCustom extends Resource
         if (opt == TileOptimization.NONE)
             return -1;
 
+        final IntIndexTable table = getTileIndexesTable();
+
         // fast perfect match test (preferred choice if possible)
-        final Integer key = tileIndexesMap.get(tile);
+        final int key = getExactTileIndex(table, tile);
         // found ? --> return index
-        if (key != null)
-            return key.intValue();
+        if (key != -1)
+            return key;
 
         // allow flip ?
         if (opt == TileOptimization.ALL)
         {
             // get all tiles with same hash code
-            final List<Tile> hashTiles = tileByHashcodeMap.get(Integer.valueOf(tile.hashCode()));
-
-            // have some ?
-            if (hashTiles != null)
+            for (int e = table.first(tile.hashCode()); e != -1; e = table.next(e))
             {
-                for (Tile t : hashTiles)
-                {
-                    // flipped version ?
-                    if (t.getFlipEquality(tile) != TileEquality.NONE)
-                        // return index of the original tile
-                        return tileIndexesMap.get(t).intValue();
-                }
+                final Tile t = tiles.get(table.value(e));
+
+                // flipped version ?
+                if (t.getFlipEquality(tile) != TileEquality.NONE)
+                    // return index of the original tile
+                    return getExactTileIndex(table, t);
             }
         }
 
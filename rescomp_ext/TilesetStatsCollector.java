@@ -3,6 +3,7 @@ package sgdk.rescomp.tool;
 import java.util.HashMap;
 import java.util.Map;
 
+// fabri1983: public methods are synchronized so the stats can be counted from several threads
 public class TilesetStatsCollector {
 
 	private static Map<String, Integer> minTilenumPerId = new HashMap<>();
@@ -13,12 +14,12 @@ public class TilesetStatsCollector {
 	private static Map<String, Integer> minTotalTilenumPerId = new HashMap<>();
 	private static Map<String, Integer> maxTotalTilenumPerId = new HashMap<>();
 
-	public static boolean isOnlyChunk1Valid(String id){
+	public static synchronized boolean isOnlyChunk1Valid(String id){
 		return (maxTilenumChunk2PerId.get(id) == null || maxTilenumChunk2PerId.get(id) == 0) 
 				&& (maxTilenumChunk3PerId.get(id) == null || maxTilenumChunk3PerId.get(id) == 0);
 	}
 
-	public static void count1chunk(String id, int chunkSize1) {
+	public static synchronized void count1chunk(String id, int chunkSize1) {
 		if (id == null || "".equals(id))
 			return;
 		counForMin(id, chunkSize1, minTilenumPerId);
@@ -30,7 +31,7 @@ public class TilesetStatsCollector {
 		counForMax(id, chunkSize1, maxTotalTilenumPerId);
 	}
 
-	public static void count2chunks(String id, int chunkSize1, int chunkSize2) {
+	public static synchronized void count2chunks(String id, int chunkSize1, int chunkSize2) {
 		if (id == null || "".equals(id))
 			return;
 		counForMin(id, chunkSize1, minTilenumPerId);
@@ -44,7 +45,7 @@ public class TilesetStatsCollector {
 		counForMax(id, chunkSize1 + chunkSize2, maxTotalTilenumPerId);
 	}
 
-	public static void count3chunks(String id, int chunkSize1, int chunkSize2, int chunkSize3) {
+	public static synchronized void count3chunks(String id, int chunkSize1, int chunkSize2, int chunkSize3) {
 		if (id == null || "".equals(id))
 			return;
 		counForMin(id, chunkSize1, minTilenumPerId);
@@ -84,7 +85,7 @@ public class TilesetStatsCollector {
 			map.put(id, Integer.valueOf(chunkSize));
 	}
 
-	public static Integer getMinTileNum(String id) {
+	public static synchronized Integer getMinTileNum(String id) {
 		if (id == null || "".equals(id))
 			return null;
 		Integer min = minTilenumPerId.get(id);
@@ -93,7 +94,7 @@ public class TilesetStatsCollector {
 		return min.intValue();
 	}
 
-	public static Integer getMaxTileNum(String id) {
+	public static synchronized Integer getMaxTileNum(String id) {
 		if (id == null || "".equals(id))
 			return null;
 		Integer max = maxTilenumPerId.get(id);
@@ -102,7 +103,7 @@ public class TilesetStatsCollector {
 		return max.intValue();
 	}
 
-	public static Integer getMaxTileNumChunk1(String id) {
+	public static synchronized Integer getMaxTileNumChunk1(String id) {
 		if (id == null || "".equals(id))
 			return null;
 		Integer max = maxTilenumChunk1PerId.get(id);
@@ -111,7 +112,7 @@ public class TilesetStatsCollector {
 		return max.intValue();
 	}
 
-	public static Integer getMaxTileNumChunk2(String id) {
+	public static synchronized Integer getMaxTileNumChunk2(String id) {
 		if (id == null || "".equals(id))
 			return null;
 		Integer max = maxTilenumChunk2PerId.get(id);
@@ -120,7 +121,7 @@ public class TilesetStatsCollector {
 		return max.intValue();
 	}
 
-	public static Integer getMaxTileNumChunk3(String id) {
+	public static synchronized Integer getMaxTileNumChunk3(String id) {
 		if (id == null || "".equals(id))
 			return null;
 		Integer max = maxTilenumChunk3PerId.get(id);
@@ -129,7 +130,7 @@ public class TilesetStatsCollector {
 		return max.intValue();
 	}
 
-	public static Integer getMinTotalTileNum(String id) {
+	public static synchronized Integer getMinTotalTileNum(String id) {
 		if (id == null || "".equals(id))
 			return null;
 		Integer minTotal = minTotalTilenumPerId.get(id);
@@ -138,7 +139,7 @@ public class TilesetStatsCollector {
 		return minTotal.intValue();
 	}
 
-	public static Integer getMaxTotalTileNum(String id) {
+	public static synchronized Integer getMaxTotalTileNum(String id) {
 		if (id == null || "".equals(id))
 			return null;
 		Integer maxTotal = maxTotalTilenumPerId.get(id);
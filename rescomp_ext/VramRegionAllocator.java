@@ -0,0 +1,153 @@
+package sgdk.rescomp.tool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * VRAM slots of the tiles of a tiles cache. The cached tiles fill the regions in order: the fixed ranges sorted by their starting
+ * index and then the variable region, the same way the video player loads them (see loadTilesCache() in videoPlayer.c). So any
+ * number of fixed ranges can be set, ie: to use the VRAM holes left by the planes and the SAT.</br>
+ * The VRAM index of every cached tile is calculated once in a dense array. Regions are validated when the allocator is built:
+ * they must fit in VRAM, can't overlap each other and can't overlap the VRAM reserved by the video player, set with
+ * TILES_CACHE_VRAM_RESERVED_RANGES in ext.resource.properties.
+ */
+public class VramRegionAllocator {
+
+	// 64 KB of VRAM
+	public static final int VRAM_TILES = 2048;
+	// tile 0 is the blank tile SGDK reserves. BG_A/BG_B/Window planes at 0xE000 (64x32 tiles), SAT and HScroll table at 0xF000
+	private static final String DEFAULT_RESERVED_RANGES = "0-1,1792-129";
+
+	private final String cacheId;
+	private final int[] regionStart;
+	private final int[] regionLength;
+	// VRAM index of every cache index
+	private final int[] slots;
+
+	/**
+	 * @param cacheId
+	 * @param rangesInVRAM_fixed starting index and number of tiles of every fixed range. Empty ranges are ignored
+	 * @param startIndexInVRAM_var
+	 * @param tilesNum_var 0 if there is no variable region
+	 */
+	public VramRegionAllocator (String cacheId, List<Entry<Integer,Integer>> rangesInVRAM_fixed, int startIndexInVRAM_var, int tilesNum_var) {
+		this.cacheId = cacheId;
+
+		List<int[]> regions = new ArrayList<>(rangesInVRAM_fixed.size() + 1);
+		for (Entry<Integer,Integer> range : rangesInVRAM_fixed) {
+			if (range.getValue().intValue() != 0)
+				regions.add(new int[] {range.getKey().intValue(), range.getValue().intValue()});
+		}
+		// fixed ranges are filled by starting index
+		regions.sort((a, b) -> Integer.compare(a[0], b[0]));
+		if (tilesNum_var != 0)
+			regions.add(new int[] {startIndexInVRAM_var, tilesNum_var});
+
+		regionStart = new int[regions.size()];
+		regionLength = new int[regions.size()];
+		int capacity = 0;
+		for (int r = 0; r < regions.size(); ++r) {
+			regionStart[r] = regions.get(r)[0];
+			regionLength[r] = regions.get(r)[1];
+			capacity += regionLength[r];
+		}
+
+		validate(getReservedRanges());
+
+		slots = new int[capacity];
+		int cacheIndex = 0;
+		for (int r = 0; r < regionStart.length; ++r)
+			for (int i = 0; i < regionLength[r]; ++i)
+				slots[cacheIndex++] = regionStart[r] + i;
+	}
+
+	private void validate (List<int[]> reservedRanges) {
+		for (int r = 0; r < regionStart.length; ++r) {
+			final int start = regionStart[r];
+			final int end = start + regionLength[r] - 1;
+			if (regionLength[r] < 0 || start < 0 || end >= VRAM_TILES)
+				throw new IllegalArgumentException("ERROR: tiles cache " + cacheId + ": VRAM region " + toString(start, regionLength[r])
+						+ " is out of VRAM [0, " + (VRAM_TILES - 1) + "]");
+
+			for (int o = r + 1; o < regionStart.length; ++o) {
+				if (overlaps(start, regionLength[r], regionStart[o], regionLength[o]))
+					throw new IllegalArgumentException("ERROR: tiles cache " + cacheId + ": VRAM region " + toString(start, regionLength[r])
+							+ " overlaps region " + toString(regionStart[o], regionLength[o]));
+			}
+
+			for (int[] reserved : reservedRanges) {
+				if (overlaps(start, regionLength[r], reserved[0], reserved[1]))
+					throw new IllegalArgumentException("ERROR: tiles cache " + cacheId + ": VRAM region " + toString(start, regionLength[r])
+							+ " overlaps VRAM reserved by the video player " + toString(reserved[0], reserved[1])
+							+ ". See " + ExtProperties.TILES_CACHE_VRAM_RESERVED_RANGES + " in ext.resource.properties");
+			}
+		}
+	}
+
+	private static boolean overlaps (int start1, int length1, int start2, int length2) {
+		return start1 < start2 + length2 && start2 < start1 + length1;
+	}
+
+	private static String toString (int start, int length) {
+		return "[" + start + ", " + (start + length - 1) + "]";
+	}
+
+	/**
+	 * @return VRAM ranges the cache can't use, as starting index and number of tiles
+	 */
+	private static List<int[]> getReservedRanges () {
+		String value = ExtProperties.getString(ExtProperties.TILES_CACHE_VRAM_RESERVED_RANGES);
+		if (value == null)
+			value = DEFAULT_RESERVED_RANGES;
+		if (value.isBlank())
+			return Collections.emptyList();
+
+		List<int[]> result = new ArrayList<>();
+		for (String pair : value.split(",")) {
+			String[] values = pair.split("-");
+			if (values.length != 2)
+				throw new IllegalArgumentException("ERROR: " + ExtProperties.TILES_CACHE_VRAM_RESERVED_RANGES + " has an invalid pair: " + pair);
+			try {
+				result.add(new int[] {Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())});
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("ERROR: " + ExtProperties.TILES_CACHE_VRAM_RESERVED_RANGES + " has an invalid integer in pair: " + pair, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of tiles that fit in all the regions
+	 */
+	public int getCapacity () {
+		return slots.length;
+	}
+
+	/**
+	 * @param cacheIndex position of the tile in the cache
+	 * @return VRAM index of the tile
+	 */
+	public int getIndexInVRAM (int cacheIndex) {
+		if (cacheIndex >= slots.length)
+			throw new RuntimeException("Tile " + cacheIndex + " of cache " + cacheId + " exceeds its VRAM regions of " + slots.length + " tiles");
+		return slots[cacheIndex];
+	}
+
+	/**
+	 * @return number of non empty regions: the fixed ones by starting index and then the variable one, if set
+	 */
+	public int getNumRegions () {
+		return regionStart.length;
+	}
+
+	public int getRegionStart (int region) {
+		return regionStart[region];
+	}
+
+	public int getRegionLength (int region) {
+		return regionLength[region];
+	}
+
+}
@@ -108,6 +108,7 @@ CD tempClassesDir
 CD ..
 
 jar cvf rescomp_ext.jar ^
+	./sgdk/rescomp/processor/DecodeBudgetReportProcessor.class ^
 	./sgdk/rescomp/processor/HeaderAppenderAllCustomProcessor.class ^
 	./sgdk/rescomp/processor/HeaderAppenderCompressionCustomProcessor.class ^
 	./sgdk/rescomp/processor/HeaderAppenderCompressionCustomTrackerProcessor.class ^
@@ -123,6 +124,7 @@ jar cvf rescomp_ext.jar ^
 	./sgdk/rescomp/processor/SpriteMultiPalNoPalProcessor.class ^
 	./sgdk/rescomp/processor/SpriteMultiPalProcessor.class ^
 	./sgdk/rescomp/processor/SpriteNoPalProcessor.class ^
+	./sgdk/rescomp/processor/TilesCacheBuilderProcessor.class ^
 	./sgdk/rescomp/processor/TilesCacheLoaderProcessor.class ^
 	./sgdk/rescomp/processor/TilesCacheStatsEnablerProcessor.class ^
 	./sgdk/rescomp/processor/TilesCacheStatsPrinterProcessor.class ^
@@ -130,6 +132,7 @@ jar cvf rescomp_ext.jar ^
 	./sgdk/rescomp/processor/ext.processor.properties ^
 	./sgdk/rescomp/resource/BinCustom$1.class ^
 	./sgdk/rescomp/resource/BinCustom.class ^
+	./sgdk/rescomp/resource/DecodeBudgetReportPrinter.class ^
 	./sgdk/rescomp/resource/HeaderAppender.class ^
 	./sgdk/rescomp/resource/HeaderAppenderAllCustomResource.class ^
 	./sgdk/rescomp/resource/HeaderAppenderCompressionCustom.class ^
@@ -153,6 +156,7 @@ jar cvf rescomp_ext.jar ^
 	./sgdk/rescomp/resource/SpriteNoPal.class ^
 	./sgdk/rescomp/resource/TilemapCustom.class ^
 	./sgdk/rescomp/resource/TilemapOriginalCustom.class ^
+	./sgdk/rescomp/resource/TilesCacheBuilder.class ^
 	./sgdk/rescomp/resource/TilesCacheLoader.class ^
 	./sgdk/rescomp/resource/TilesCacheStatsEnabler.class ^
 	./sgdk/rescomp/resource/TilesCacheStatsPrinter.class ^
@@ -164,27 +168,67 @@ jar cvf rescomp_ext.jar ^
 	./sgdk/rescomp/resource/internal/SpriteFrameMultiPal$1.class ^
 	./sgdk/rescomp/resource/internal/SpriteFrameMultiPal.class ^
 	./sgdk/rescomp/resource/internal/VDPSpriteMultiPal.class ^
+	./sgdk/rescomp/tool/CommonTilesRangeFile.class ^
 	./sgdk/rescomp/tool/CommonTilesRangeManager.class ^
 	./sgdk/rescomp/tool/CommonTilesRangeOptimizerV1.class ^
 	./sgdk/rescomp/tool/CommonTilesRangeOptimizerV2.class ^
+	./sgdk/rescomp/tool/CompressionCache.class ^
 	./sgdk/rescomp/tool/CompressionCustomUsageTracker.class ^
+	./sgdk/rescomp/tool/CompressionDecodeCost$1.class ^
+	./sgdk/rescomp/tool/CompressionDecodeCost$LinearModel.class ^
+	./sgdk/rescomp/tool/CompressionDecodeCost$Model.class ^
+	./sgdk/rescomp/tool/CompressionDecodeCost.class ^
+	./sgdk/rescomp/tool/DecodeBudgetReport.class ^
+	./sgdk/rescomp/tool/DecodedFrameCache$DecodedFrame$1.class ^
+	./sgdk/rescomp/tool/DecodedFrameCache$DecodedFrame.class ^
+	./sgdk/rescomp/tool/DecodedFrameCache$Entry.class ^
+	./sgdk/rescomp/tool/DecodedFrameCache$FrameTileset.class ^
+	./sgdk/rescomp/tool/DecodedFrameCache.class ^
 	./sgdk/rescomp/tool/ExtProperties.class ^
+	./sgdk/rescomp/tool/FrameTilesDeltaManager$FrameBuffer.class ^
+	./sgdk/rescomp/tool/FrameTilesDeltaManager.class ^
+	./sgdk/rescomp/tool/ImageStripsFramePipeline.class ^
+	./sgdk/rescomp/tool/ImageStripsFramePipeline$Frame.class ^
 	./sgdk/rescomp/tool/ImageUtilFast.class ^
+	./sgdk/rescomp/tool/ImageUtilFast$Image8bpp.class ^
+	./sgdk/rescomp/tool/IntIndexTable.class ^
 	./sgdk/rescomp/tool/MdComp.class ^
+	./sgdk/rescomp/tool/RLEWCompressor$ByteStream.class ^
 	./sgdk/rescomp/tool/RLEWCompressor$WordInfo.class ^
 	./sgdk/rescomp/tool/RLEWCompressor.class ^
+	./sgdk/rescomp/tool/RLEWDecodeCost.class ^
+	./sgdk/rescomp/tool/RLEWDecompressor$Output.class ^
+	./sgdk/rescomp/tool/RLEWDecompressor.class ^
 	./sgdk/rescomp/tool/SpriteBoundariesPalettes.class ^
+	./sgdk/rescomp/tool/StripsTileIterator.class ^
+	./sgdk/rescomp/tool/TileFingerprintIndex.class ^
+	./sgdk/rescomp/tool/TilePresenceIndex.class ^
+	./sgdk/rescomp/tool/TileStatsCounter$Key.class ^
+	./sgdk/rescomp/tool/TileStatsCounter$TileStats.class ^
+	./sgdk/rescomp/tool/TileStatsCounter.class ^
 	./sgdk/rescomp/tool/TilemapCustomTools.class ^
+	./sgdk/rescomp/tool/TilemapDeltaDecodeCost.class ^
+	./sgdk/rescomp/tool/TilemapDeltaManager$Stats.class ^
+	./sgdk/rescomp/tool/TilemapDeltaManager.class ^
+	./sgdk/rescomp/tool/TilesCacheBinaryFile$CacheTiles.class ^
+	./sgdk/rescomp/tool/TilesCacheBinaryFile.class ^
+	./sgdk/rescomp/tool/TilesCacheManager$CacheIndex.class ^
 	./sgdk/rescomp/tool/TilesCacheManager.class ^
+	./sgdk/rescomp/tool/TilesCacheSelector$Selection.class ^
+	./sgdk/rescomp/tool/TilesCacheSelector.class ^
 	./sgdk/rescomp/tool/TilesetSizeSplitCalculator.class ^
 	./sgdk/rescomp/tool/TilesetStatsCollector.class ^
+	./sgdk/rescomp/tool/VramRegionAllocator.class ^
 	./sgdk/rescomp/type/CompressionCustom.class ^
 	./sgdk/rescomp/type/CommonTilesRange.class ^
+	./sgdk/rescomp/type/CommonTilesRangeCandidates.class ^
 	./sgdk/rescomp/type/CommonTilesRangeResData.class ^
 	./sgdk/rescomp/type/CustomDataTypes.class ^
+	./sgdk/rescomp/type/FrameTilesDelta.class ^
 	./sgdk/rescomp/type/PackedDataCustom.class ^
 	./sgdk/rescomp/type/PalettesPositionEnum.class ^
 	./sgdk/rescomp/type/TileCacheMatch.class ^
+	./sgdk/rescomp/type/TileFingerprint.class ^
 	./sgdk/rescomp/type/TilemapCreationData.class ^
 	./sgdk/rescomp/type/TilesetSplitStrategyEnum.class ^
 	./sgdk/rescomp/type/ToggleMapTileBaseIndex.class
@@ -0,0 +1,33 @@
+@ECHO OFF
+setlocal EnableDelayedExpansion
+
+:: Locate this script at %GDK_WIN%\tools\rescomp
+:: Run create_extension_jar.bat first so the classes are compiled in bin folder. Benchmark classes aren't added to rescomp_ext.jar.
+:: Arguments are passed to sgdk.rescomp.tool.RescompExtBenchmark. Eg:
+::   run_benchmarks.bat -o bench_before.csv
+::   run_benchmarks.bat -baseline bench_before.csv
+::   run_benchmarks.bat RLEWCompressor -wi 3 -i 5
+
+IF "%JAVA_HOME%"=="" (
+    echo ERROR: JAVA_HOME environment variable is not set!
+	PAUSE
+	GOTO FINISHED
+)
+
+IF NOT "%~dp0" == "%GDK_WIN%\tools\rescomp\" (
+	ECHO ERROR: Please locate this script at %GDK_WIN%\tools\rescomp\
+	PAUSE
+	GOTO FINISHED
+)
+
+IF NOT EXIST bin\sgdk\rescomp\tool\RescompExtBenchmark.class (
+	ECHO ERROR: benchmark classes not found in bin folder. Run create_extension_jar.bat first
+	PAUSE
+	GOTO FINISHED
+)
+
+:: fixed heap so GC sizing doesn't change between runs
+java -Xms1g -Xmx1g -cp "bin;../apj/bin;../commons/bin;../lz4w/bin" sgdk.rescomp.tool.RescompExtBenchmark %*
+
+:FINISHED
+EXIT /B
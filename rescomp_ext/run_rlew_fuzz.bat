@@ -0,0 +1,31 @@
+@ECHO OFF
+setlocal EnableDelayedExpansion
+
+:: Locate this script at %GDK_WIN%\tools\rescomp
+:: Run create_extension_jar.bat first so the classes are compiled in bin folder. Fuzz classes aren't added to rescomp_ext.jar.
+:: Arguments are passed to sgdk.rescomp.tool.RLEWRoundTripFuzz. Eg:
+::   run_rlew_fuzz.bat -n 20000
+::   run_rlew_fuzz.bat -seed 1234 -n 1
+
+IF "%JAVA_HOME%"=="" (
+    echo ERROR: JAVA_HOME environment variable is not set!
+	PAUSE
+	GOTO FINISHED
+)
+
+IF NOT "%~dp0" == "%GDK_WIN%\tools\rescomp\" (
+	ECHO ERROR: Please locate this script at %GDK_WIN%\tools\rescomp\
+	PAUSE
+	GOTO FINISHED
+)
+
+IF NOT EXIST bin\sgdk\rescomp\tool\RLEWRoundTripFuzz.class (
+	ECHO ERROR: fuzz classes not found in bin folder. Run create_extension_jar.bat first
+	PAUSE
+	GOTO FINISHED
+)
+
+java -cp "bin;../apj/bin;../commons/bin;../lz4w/bin" sgdk.rescomp.tool.RLEWRoundTripFuzz %*
+
+:FINISHED
+EXIT /B
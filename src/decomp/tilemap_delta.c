@@ -0,0 +1,19 @@
+#include <types.h>
+#include "decomp/tilemap_delta.h"
+
+// Keep TilemapDeltaDecodeCost.java in sync with the code generated for this loop
+void tilemap_delta_apply (u8* in, u8* out)
+{
+    u16* src = (u16*) in;
+    u16 offset;
+
+    #pragma GCC unroll 0 // do not unroll this loop
+    while ((offset = *src++) != TILEMAP_DELTA_END_OF_STREAM) {
+        // offset is < 32KB so the signed word index of lea d(a1,d0.w) is fine
+        u16* dst = (u16*) (out + (s16) offset);
+        u16 count = *src++; // words of the run minus 1, so the loop ends in a dbra
+        do {
+            *dst++ = *src++;
+        } while (count--);
+    }
+}
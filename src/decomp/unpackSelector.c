@@ -7,6 +7,7 @@
 #include "decomp/nibbler.h"
 #include "decomp/rlew.h"
 #include "decomp/sbz.h"
+#include "decomp/tilemap_delta.h"
 #include <tools.h> // constants: COMPRESSION_APLIB and COMPRESSION_LZ4W
 
 #ifdef USING_MEGAPACK
@@ -171,6 +172,11 @@ FORCE_INLINE void unpackSelector (u16 compression, u8* src, u8* dest, u16 additi
             SNKDec(src, dest);
             break;
         #endif
+        #ifdef USING_TILEMAP_DELTA
+        case TILEMAP_DELTA:
+            tilemap_delta_apply(src, dest); // dest already holds the tilemap the delta was encoded against
+            break;
+        #endif
         #ifdef USING_TWIZZLER
         case TWIZZLER:
             TwizDec(src, dest);
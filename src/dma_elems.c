@@ -13,6 +13,10 @@ static bool dmaElemTileset2_ready;
 #if MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES > MOVIE_FRAME_WIDTH_IN_TILES
 static DMAOpInfo dmaElemTilemap;
 #endif
+#if MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES == MOVIE_FRAME_WIDTH_IN_TILES && MOVIE_FRAME_TILEMAP_DELTA
+// With tilemap delta the tilemap comes from the tilemap buffer of the frame buffer, so the source address isn't fixed
+static u32 dmaElemTilemap_fromAddr;
+#endif
 static bool dmaElemTilemap_ready;
 #if MOVIE_FRAME_STRIPS == 1
 // TODO PALS_1: this is going to be useful when first 2 strips' palettes (previously unpacked) will be enqueued
@@ -62,6 +66,8 @@ FORCE_INLINE void DMA_ELEMS_queue (u32 fromAddr, u16 to, u16 len, u8 dmaElemType
         dmaElemTilemap.regAddrHAddrL = 0x97009500 | ((fromAddr >> 1) & 0x7F00FF);
         // VDP command
         dmaElemTilemap.regCtrlWrite = VDP_DMA_VRAM_ADDR((u32)to);
+        #elif MOVIE_FRAME_TILEMAP_DELTA
+        dmaElemTilemap_fromAddr = fromAddr;
         #endif
 
         dmaElemTilemap_ready = TRUE;
@@ -129,7 +135,11 @@ void DMA_ELEMS_flush ()
         dmaElemTilemap_ready = FALSE;
 
         // Setup DMA address ONLY ONCE
+        #if MOVIE_FRAME_TILEMAP_DELTA
+        u32 from = dmaElemTilemap_fromAddr;
+        #else
         u32 from = RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS + 0*MOVIE_FRAME_WIDTH_IN_TILES*2;
+        #endif
         from >>= 1;
         *(vu16*)vdpCtrl_ptr_l = 0x9500 + (from & 0xff); // low
         from >>= 8;
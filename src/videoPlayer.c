@@ -19,6 +19,18 @@
 #include "utils.h"
 #include "memcpy.h"
 
+// Tiles delta frames only load the tiles missing in the frame buffer, so every frame must be loaded
+#if MOVIE_FRAME_TILES_DELTA && !FORCE_NO_MISSING_FRAMES
+#error "MOVIE_FRAME_TILES_DELTA needs FORCE_NO_MISSING_FRAMES set to TRUE"
+#endif
+#if MOVIE_FRAME_TILES_DELTA && defined(COMMON_TILES_IN_RANGE)
+#error "MOVIE_FRAME_TILES_DELTA can't be used along with the common tiles range"
+#endif
+// Tilemap delta frames are applied over the tilemap of the frame loaded 2 frames before, so every frame must be loaded
+#if MOVIE_FRAME_TILEMAP_DELTA && !FORCE_NO_MISSING_FRAMES
+#error "MOVIE_FRAME_TILEMAP_DELTA needs FORCE_NO_MISSING_FRAMES set to TRUE"
+#endif
+
 static u32* unpackedTilesetChunk = NULL;
 static u16* unpackedPalsRender = NULL;
 static u16* unpackedPalsBuffer = NULL;
@@ -166,6 +178,18 @@ static void loadTilesCache ()
     // VDP_fillTileData(0x66, MOVIE_TILES_CACHE_START_INDEX_VAR, MOVIE_TILES_CACHE_TILES_NUM_VAR, TRUE);
     #endif
 
+    #if MOVIE_TILES_CACHE_SPLIT_PER_REGION
+    // Every VRAM region has its own TileSet: unpack and load it with a single DMA. Regions are ordered the same way the tiles were
+    // placed by rescomp, so the most used tiles are at the first regions
+    for (u16 i=0; i < MOVIE_TILES_CACHE_REGIONS_NUM; ++i) {
+        const TileSet* region = cacheRegionsTileSet[i];
+        if (region->numTile == 0)
+            continue;
+        TileSet* t = unpackTileSet((TileSet* const) region, NULL);
+        VDP_loadTileData(t->tiles, cacheRegionsStartInVRAM[i], region->numTile, DMA); // DMA or DMA_QUEUE_COPY
+        MEM_free(t);
+    }
+    #else
     TileSet* t = unpackTileSet((TileSet* const) &tilesCache_movie1, NULL);
     u16 tilesPlacedAccumCounter = 0;
     // First, place tiles at fixed VRAM location
@@ -186,6 +210,7 @@ static void loadTilesCache ()
         VDP_loadTileData(cacheTiles_ptr, MOVIE_TILES_CACHE_START_INDEX_VAR, MOVIE_TILES_CACHE_TILES_NUM_VAR, DMA); // DMA or DMA_QUEUE_COPY
     }
     MEM_free(t);
+    #endif
 
     #if VIDEO_PLAYER_DEBUG_TILES_CACHE
     // Set palette buffer with white color 0xEEE only for strips using PAL0
@@ -229,11 +254,23 @@ static void allocateTilemapBuffer ()
 	u16 lenInWords = MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES * MOVIE_FRAME_HEIGHT_IN_TILES;
     u16* unpackedTilemap = (u16*) RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS;
 	memsetU16(unpackedTilemap, TILE_SYSTEM_INDEX, lenInWords); // set TILE_SYSTEM_INDEX (black tile) all over the buffer
+    #if MOVIE_FRAME_TILEMAP_DELTA
+    memsetU16((u16*) RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS_ODD, TILE_SYSTEM_INDEX, lenInWords);
+    #endif
 }
 
-static FORCE_INLINE void unpackFrameTilemap (TileMapCustomCompField* src)
+/// @brief Tilemap buffer of the frame. With tilemap delta every frame buffer has its own one, so it goes by the frame parity.
+static FORCE_INLINE u16* getTilemapBuffer (u16 vFrame)
+{
+    #if MOVIE_FRAME_TILEMAP_DELTA
+    return (u16*) ((vFrame & 1) ? RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS_ODD : RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS);
+    #else
+    return (u16*) RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS;
+    #endif
+}
+
+static FORCE_INLINE void unpackFrameTilemap (TileMapCustomCompField* src, u16* unpackedTilemap)
 {
-    u16* unpackedTilemap = (u16*) RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS;
     const u16 lenBytes = MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES * MOVIE_FRAME_HEIGHT_IN_TILES * 2; // bytes
 
 	if (src->compression != COMPRESSION_NONE) {
@@ -318,13 +355,13 @@ static FORCE_INLINE void queueTilesetData (u16 startTileIndex, u16 length, u8 dm
 	DMA_ELEMS_queue((u32) unpackedTilesetChunk, startTileIndex * 32, lenInWords, dmaElemType);
 }
 
-static FORCE_INLINE void queueTilemapData ()
+static FORCE_INLINE void queueTilemapData (u16* unpackedTilemap)
 {
 	const u16 lenInWords = MOVIE_FRAME_EXTENDED_WIDTH_IN_TILES * MOVIE_FRAME_HEIGHT_IN_TILES;
 	// This was the previous one, which benefits from tilemap width being 64 tiles
 	// VDP_setTileMapData(VIDEO_FRAME_PLANE_ADDRESS, unpackedTilemap, 0 & TILE_INDEX_MASK, lenInWords, 2, DMA_QUEUE);
 	// Now we use custom DMA_queueDmaFast() because the data is in RAM, so no 128KB bank boundary check is needed
-	DMA_ELEMS_queue(RAM_FIXED_MOVIE_FRAME_UNPACKED_TILEMAP_ADDRESS, VIDEO_FRAME_PLANE_ADDRESS + ((0 & TILE_INDEX_MASK) * 2), 
+	DMA_ELEMS_queue((u32) unpackedTilemap, VIDEO_FRAME_PLANE_ADDRESS + ((0 & TILE_INDEX_MASK) * 2), 
         lenInWords, VIDEO_PLAYER_DMA_ELEM_TYPE_TILEMAP);
 }
 
@@ -590,8 +627,14 @@ void playMovie ()
                 #endif
             }
             else {
+                #if MOVIE_FRAME_TILES_DELTA
+                // Tilesets hold only the tiles missing in the frame buffer, loaded from tilesOffset on
+                const ImageNoPalsSplit31TilesDeltaCompField* imageSplit = data[vFrame];
+                u16 tilesOffsetVRAM = baseTileIndex + imageSplit->tilesOffset;
+                #else
                 const ImageNoPalsSplit31CompField* imageSplit = data[vFrame];
                 u16 tilesOffsetVRAM = baseTileIndex;
+                #endif
 
                 unpackFrameTileset(imageSplit->tileset1);
                 u16 numTile1 = imageSplit->tileset1->numTile;
@@ -629,8 +672,10 @@ void playMovie ()
             DMA_ELEMS_queue((u32) unpackedPalsRender, 0*2, MOVIE_FRAME_COLORS_PER_STRIP, VIDEO_PLAYER_DMA_ELEM_TYPE_PALETTE);
             #endif
 
-			unpackFrameTilemap(data[vFrame]->tilemap1);
-			queueTilemapData();
+			// Tilemap delta frames decode only the changed cells, but the whole tilemap is still loaded since the plane holds the previous frame
+			u16* unpackedTilemap = getTilemapBuffer(vFrame);
+			unpackFrameTilemap(data[vFrame]->tilemap1, unpackedTilemap);
+			queueTilemapData(unpackedTilemap);
 
 			#if VIDEO_PLAYER_DEBUG_FIXED_VFRAME
             #else